@@ -0,0 +1,230 @@
+package org.team484.api.motion;
+
+import org.team484.api.motion.ShifterDrive.ShifterMode;
+
+/**
+ * The gear selection logic of ShifterDrive, separated from the solenoids and encoders so that it can
+ * be run against recorded or simulated speeds. Every call to update is given the time explicitly, so
+ * the same inputs always produce the same gear commands. In auto mode the gear is picked by a
+ * ShiftScheduler, which defaults to a ThresholdShiftScheduler.
+ * <p>
+ * Outside of the cooldown, update commands a gear every cycle even when the gearbox is already in
+ * it. ShifterSolenoid ignores commands for the value it is already set to, so this does not reach
+ * the PCM. For gearboxes with more than two speeds, updateGear picks a gear from a GearTable, with
+ * HIGH as the top gear and LOW as the lowest. A two speed gearbox is gears 0 (low) and 1 (high), and
+ * both methods command gears through the same cooldown.
+ */
+public class AutoShifter {
+
+	private final ThresholdShiftScheduler thresholdScheduler = new ThresholdShiftScheduler();
+	private volatile ShiftScheduler scheduler = thresholdScheduler;
+	private volatile long shiftingWaitTime = 500000000L; //A cooldown time (in ns)
+
+	private volatile boolean isInLowGear = true;
+	private volatile int gear = 0;
+	private volatile boolean hasShifted = false;
+	private volatile long lastShiftTime = 0; //The clock time of the last shift
+	private volatile boolean skipCooldown = false;
+	private final ShiftInputs rateInputs = new ShiftInputs();
+	private final ShiftInputs speedInputs = new ShiftInputs();
+
+	/**
+	 * Sets the speed at which the default scheduler will change back and fourth between high and low
+	 * gears.
+	 * @param speed - speed in units per seconds.
+	 */
+	public void setShiftingSpeed(double speed) {
+		thresholdScheduler.setShiftingSpeed(speed);
+	}
+
+	/**
+	 * Sets the deadband for shifting with the default scheduler (in units per second).
+	 * @param deadband - the deadband in the shifter
+	 */
+	public void setShiftingDeadband(double deadband) {
+		thresholdScheduler.setShiftingDeadband(deadband);
+	}
+
+	/**
+	 * Sets the cooldown time between shifts.
+	 * @param ms - Cooldown time in milliseconds (default 500)
+	 */
+	public void setShiftingCooldown(int ms) {
+		shiftingWaitTime = ms * 1000000L;
+	}
+
+	/**
+	 * Lets the next gear command skip the cooldown, for a shift planned ahead of time such as one at a
+	 * trajectory waypoint. The cooldown still starts again from that shift.
+	 */
+	public void skipNextCooldown() {
+		skipCooldown = true;
+	}
+
+	/**
+	 * Sets the scheduler that picks the gear in auto mode.
+	 * @param scheduler - The scheduler, or null for the default speed threshold scheduler.
+	 */
+	public void setScheduler(ShiftScheduler scheduler) {
+		this.scheduler = scheduler == null ? thresholdScheduler : scheduler;
+	}
+
+	/**
+	 * Gets the scheduler that picks the gear in auto mode.
+	 * @return the scheduler.
+	 */
+	public ShiftScheduler getScheduler() {
+		return scheduler;
+	}
+
+	/**
+	 * Checks if low gear was the last gear commanded.
+	 * @return true if the gearbox should be in low gear.
+	 */
+	public boolean isInLowGear() {
+		return isInLowGear;
+	}
+
+	/**
+	 * Gets the gear last commanded. For a two speed gearbox, 0 is low gear and 1 is high gear.
+	 * @return the gear, from 0 for the lowest.
+	 */
+	public int getGear() {
+		return gear;
+	}
+
+	/**
+	 * Decides which gear of a gearbox with any number of speeds to command from the speed alone.
+	 * Schedulers that need more than the speed should be given full inputs instead.
+	 * @param mode - The shifter mode the drive is in. HIGH is the top gear of the table and LOW is gear 0.
+	 * @param table - The gears of the gearbox.
+	 * @param speed - The absolute speed of the robot in encoder units per second.
+	 * @param nowNanos - The current time in nanoseconds.
+	 * @return the gear to set, or -1 if the pistons should be left alone because the shifter is in its
+	 *         cooldown.
+	 */
+	public int updateGear(ShifterMode mode, GearTable table, double speed, long nowNanos) {
+		speedInputs.speed = speed;
+		speedInputs.nowNanos = nowNanos;
+		return updateGear(mode, table, speedInputs);
+	}
+
+	/**
+	 * Decides which gear of a gearbox with any number of speeds to command. In auto mode the scheduler's
+	 * selectGear picks the gear, which by default moves one gear at a time by the gear table's shift
+	 * speeds, and the cooldown applies to every command.
+	 * @param mode - The shifter mode the drive is in. HIGH is the top gear of the table and LOW is gear 0.
+	 * @param table - The gears of the gearbox.
+	 * @param inputs - The current measurements. The lowGear field is filled in by this method.
+	 * @return the gear to set, or -1 if the pistons should be left alone because the shifter is in its
+	 *         cooldown.
+	 */
+	public int updateGear(ShifterMode mode, GearTable table, ShiftInputs inputs) {
+		int target;
+		switch(mode) {
+		case HIGH:
+			target = table.getTopGear();
+			break;
+		case LOW:
+			target = 0;
+			break;
+		case AUTO:
+			inputs.lowGear = isInLowGear;
+			target = scheduler.selectGear(inputs, table, gear);
+			break;
+		default:
+			return -1;
+		}
+		return commandGear(target, inputs.nowNanos, true);
+	}
+
+	/**
+	 * Decides which gear to command from the speeds of the two sides alone. Schedulers that need more
+	 * than the speed should be given full inputs instead.
+	 * @param mode - The shifter mode the drive is in.
+	 * @param leftRate - The speed of the left gearbox in units per second.
+	 * @param rightRate - The speed of the right gearbox in units per second.
+	 * @param nowNanos - The current time in nanoseconds.
+	 * @return HIGH or LOW if the solenoids should be set to that gear, or null if they should be left
+	 *         alone because the shifter is in its cooldown.
+	 */
+	public ShifterMode update(ShifterMode mode, double leftRate, double rightRate, long nowNanos) {
+		rateInputs.speed = combineSpeeds(Math.abs(leftRate), Math.abs(rightRate));
+		rateInputs.nowNanos = nowNanos;
+		return update(mode, rateInputs);
+	}
+
+	/**
+	 * Decides which gear to command.
+	 * @param mode - The shifter mode the drive is in.
+	 * @param inputs - The current measurements. The lowGear field is filled in by this method.
+	 * @return HIGH or LOW if the solenoids should be set to that gear, or null if they should be left
+	 *         alone because the shifter is in its cooldown.
+	 */
+	public ShifterMode update(ShifterMode mode, ShiftInputs inputs) {
+		int target;
+		boolean useCooldown = true;
+		switch(mode) {
+		case HIGH:
+			target = 1;
+			break;
+		case LOW:
+			target = 0;
+			break;
+		case AUTO:
+			ShiftScheduler scheduler = this.scheduler;
+			inputs.lowGear = isInLowGear;
+			target = scheduler.selectLowGear(inputs) ? 0 : 1;
+			useCooldown = scheduler.usesCooldown();
+			break;
+		default:
+			return null;
+		}
+		int commanded = commandGear(target, inputs.nowNanos, useCooldown);
+		if (commanded < 0) {
+			return null;
+		}
+		return commanded == 0 ? ShifterMode.LOW : ShifterMode.HIGH;
+	}
+
+	/**
+	 * Combines the speeds of the two sides the way ShifterDrive always has: the larger of the two,
+	 * unless one side reads 0, in which case the other side is used.
+	 * @param leftSpeed - The absolute speed of the left gearbox.
+	 * @param rightSpeed - The absolute speed of the right gearbox.
+	 * @return the speed to shift on.
+	 */
+	public static double combineSpeeds(double leftSpeed, double rightSpeed) {
+		if (leftSpeed == 0) {
+			return rightSpeed;
+		} else if (rightSpeed == 0) {
+			return leftSpeed;
+		} else {
+			return Math.max(leftSpeed, rightSpeed);
+		}
+	}
+
+	/**
+	 * Commands a gear if the cooldown is over. This is the only place the cooldown is checked, for two
+	 * speed and table driven gearboxes alike. Only a command for a different gear restarts the
+	 * cooldown, so commanding the same gear every cycle does not hold off the next shift.
+	 * @param target - The gear to command, from 0 for the lowest.
+	 * @param nowNanos - The current time in nanoseconds.
+	 * @param useCooldown - False to command the gear even during the cooldown.
+	 * @return the gear to set, or -1 if still in the cooldown.
+	 */
+	private int commandGear(int target, long nowNanos, boolean useCooldown) {
+		if (useCooldown && !skipCooldown && hasShifted
+				&& Math.abs(nowNanos - lastShiftTime) < shiftingWaitTime) {
+			return -1;
+		}
+		skipCooldown = false;
+		if (!hasShifted || target != gear) {
+			lastShiftTime = nowNanos;
+		}
+		hasShifted = true;
+		gear = target;
+		isInLowGear = target == 0;
+		return target;
+	}
+}
@@ -0,0 +1,218 @@
+package org.team484.api.motion;
+
+import com.ctre.CANTalon;
+import com.ctre.CANTalon.TalonControlMode;
+
+/**
+ * Motor backend for CANTalon (Talon SRX) controllers. The control mode and ramp rate are remembered
+ * so that setting them to the value they already have does not make a call into the CAN driver.
+ * Creating a backend does not change the Talon: it starts out in whatever mode the Talon is in, and
+ * configure or setControlMode has to be called to change it. Each set is sent to the Talon right
+ * away, as the Talon has no way to take several outputs in one write. A Talon can follow another
+ * Talon on the same CAN bus, after which it copies the leader's output without being written to.
+ */
+public class CANTalonMotorBackend implements MotorBackend {
+
+	private final CANTalon talon;
+
+	private ControlMode mode;
+	private double rampRate = Double.NaN;
+	private double output = 0;
+	private boolean following;
+
+	/**
+	 * Creates a new backend for a CANTalon. The Talon's control mode is read but not changed.
+	 * @param talon - The Talon to wrap.
+	 */
+	public CANTalonMotorBackend(CANTalon talon) {
+		this.talon = talon;
+		TalonControlMode talonMode = talon.getControlMode();
+		following = talonMode == TalonControlMode.Follower;
+		mode = toControlMode(talonMode);
+	}
+
+	/**
+	 * Puts the Talon in PercentVbus mode and stops it following, ready to be used by a drive class.
+	 */
+	public void configure() {
+		following = false;
+		mode = ControlMode.PERCENT;
+		talon.changeControlMode(TalonControlMode.PercentVbus);
+	}
+
+	/**
+	 * Gets the CANTalon this backend wraps.
+	 * @return the Talon.
+	 */
+	public CANTalon getTalon() {
+		return talon;
+	}
+
+	@Override
+	public void set(double speed) {
+		if (following) {
+			follow(null);
+		}
+		output = speed;
+		talon.set(speed);
+	}
+
+	/**
+	 * Gets the last value given to set. This does not read from the Talon.
+	 * @return the last set value.
+	 */
+	@Override
+	public double get() {
+		return output;
+	}
+
+	@Override
+	public void pidWrite(double output) {
+		set(output);
+	}
+
+	@Override
+	public void setInverted(boolean isInverted) {
+		talon.setInverted(isInverted);
+	}
+
+	@Override
+	public boolean getInverted() {
+		return talon.getInverted();
+	}
+
+	@Override
+	public void disable() {
+		output = 0;
+		talon.disable();
+	}
+
+	@Override
+	public void stopMotor() {
+		output = 0;
+		talon.stopMotor();
+	}
+
+	@Override
+	public boolean supportsVoltageMode() {
+		return true;
+	}
+
+	@Override
+	public boolean supportsVelocityMode() {
+		return true;
+	}
+
+	@Override
+	public boolean supportsRampRate() {
+		return true;
+	}
+
+	@Override
+	public boolean supportsBatchedUpdate() {
+		return false;
+	}
+
+	@Override
+	public boolean supportsFollowing() {
+		return true;
+	}
+
+	@Override
+	public boolean setControlMode(ControlMode mode) {
+		if (mode == this.mode && !following) {
+			return true;
+		}
+		switch (mode) {
+		case PERCENT:
+			talon.changeControlMode(TalonControlMode.PercentVbus);
+			break;
+		case VOLTAGE:
+			talon.changeControlMode(TalonControlMode.Voltage);
+			break;
+		case VELOCITY:
+			talon.changeControlMode(TalonControlMode.Speed);
+			break;
+		default:
+			return false;
+		}
+		this.mode = mode;
+		following = false;
+		return true;
+	}
+
+	/**
+	 * Gets how the value given to set is currently interpreted.
+	 * @return the current control mode, or null if the Talon was set up outside of this backend in a mode
+	 *         other than PercentVbus, Voltage or Speed.
+	 */
+	@Override
+	public ControlMode getControlMode() {
+		return mode;
+	}
+
+	@Override
+	public void setRampRate(double voltsPerSecond) {
+		if (voltsPerSecond == rampRate) {
+			return;
+		}
+		rampRate = voltsPerSecond;
+		talon.setVoltageRampRate(voltsPerSecond);
+	}
+
+	@Override
+	public void setBatched(boolean batched) {
+	}
+
+	@Override
+	public void flush() {
+	}
+
+	@Override
+	public boolean follow(MotorBackend leader) {
+		if (leader == null) {
+			if (following) {
+				following = false;
+				mode = ControlMode.PERCENT;
+				output = 0;
+				talon.changeControlMode(TalonControlMode.PercentVbus);
+				talon.set(0);
+			}
+			return true;
+		}
+		if (!(leader instanceof CANTalonMotorBackend) || leader == this) {
+			return false;
+		}
+		talon.changeControlMode(TalonControlMode.Follower);
+		talon.set(((CANTalonMotorBackend) leader).getTalon().getDeviceID());
+		following = true;
+		return true;
+	}
+
+	@Override
+	public boolean isFollowing() {
+		return following;
+	}
+
+	@Override
+	public void free() {
+		talon.delete();
+	}
+
+	private static ControlMode toControlMode(TalonControlMode talonMode) {
+		if (talonMode == null) {
+			return null;
+		}
+		switch (talonMode) {
+		case PercentVbus:
+		case Follower:
+			return ControlMode.PERCENT;
+		case Voltage:
+			return ControlMode.VOLTAGE;
+		case Speed:
+			return ControlMode.VELOCITY;
+		default:
+			return null;
+		}
+	}
+}
@@ -0,0 +1,116 @@
+package org.team484.api.motion;
+
+/**
+ * A shift scheduler that adds current limits to another scheduler. When the robot is pushing against
+ * something, its wheels turn slowly while the motors pull a lot of current, and staying in high gear
+ * can brown out the robot. This scheduler shifts to low gear once the current has been high while the
+ * speed is low for long enough, and holds low gear while the battery voltage is sagging. Otherwise it
+ * picks the same gear as the scheduler it wraps.
+ * <p>
+ * It needs the current and batteryVoltage inputs, which ShifterDrive fills in once current sensing
+ * is enabled. While either is unknown it only uses the wrapped scheduler. The same limits apply to
+ * gearboxes with more speeds driven through a Transmission: pushing shifts straight to the lowest gear
+ * and a sagging battery holds the current gear instead of shifting up.
+ */
+public class CurrentAwareShiftScheduler implements ShiftScheduler {
+
+	private final ShiftScheduler scheduler;
+	private volatile double stallCurrent = 100;
+	private volatile double stallSpeed = 20;
+	private volatile long stallTime = 250000000L; //How long the current must stay high (in ns)
+	private volatile double minUpshiftVoltage = 9;
+
+	private boolean stalling = false;
+	private long stallStart = 0;
+
+	/**
+	 * Creates a scheduler that adds current limits to another one.
+	 * @param scheduler - The scheduler to pick the gear when the current and voltage are fine, such as a
+	 *                    ThresholdShiftScheduler.
+	 */
+	public CurrentAwareShiftScheduler(ShiftScheduler scheduler) {
+		this.scheduler = scheduler;
+	}
+
+	/**
+	 * Sets the current above which the robot is considered to be pushing.
+	 * @param amps - The current of the motors of one gearbox in amps (default 100)
+	 */
+	public void setStallCurrent(double amps) {
+		stallCurrent = amps;
+	}
+
+	/**
+	 * Sets the speed below which the robot is considered to be pushing.
+	 * @param speed - The speed in encoder units per second (default 20)
+	 */
+	public void setStallSpeed(double speed) {
+		stallSpeed = speed;
+	}
+
+	/**
+	 * Sets how long the current must stay high at low speed before shifting down.
+	 * @param ms - The time in milliseconds (default 250)
+	 */
+	public void setStallTime(double ms) {
+		stallTime = (long) (ms * 1e6);
+	}
+
+	/**
+	 * Sets the battery voltage below which the robot will not shift up.
+	 * @param volts - The minimum voltage (default 9)
+	 */
+	public void setMinUpshiftVoltage(double volts) {
+		minUpshiftVoltage = volts;
+	}
+
+	/**
+	 * Gets the scheduler this one adds current limits to.
+	 * @return the wrapped scheduler.
+	 */
+	public ShiftScheduler getScheduler() {
+		return scheduler;
+	}
+
+	@Override
+	public boolean usesCooldown() {
+		return scheduler.usesCooldown();
+	}
+
+	@Override
+	public boolean selectLowGear(ShiftInputs inputs) {
+		boolean lowGear = scheduler.selectLowGear(inputs);
+		return limitGear(inputs, inputs.lowGear ? 0 : 1, lowGear ? 0 : 1) == 0;
+	}
+
+	@Override
+	public int selectGear(ShiftInputs inputs, GearTable table, int gear) {
+		return limitGear(inputs, gear, scheduler.selectGear(inputs, table, gear));
+	}
+
+	/**
+	 * Applies the current limits to the gear picked by the wrapped scheduler.
+	 * @param inputs - The current measurements.
+	 * @param gear - The gear last commanded.
+	 * @param selected - The gear the wrapped scheduler picked.
+	 * @return the gear to be in.
+	 */
+	private int limitGear(ShiftInputs inputs, int gear, int selected) {
+		if (!Double.isNaN(inputs.current) && inputs.current > stallCurrent && inputs.speed < stallSpeed) {
+			if (!stalling) {
+				stalling = true;
+				stallStart = inputs.nowNanos;
+			}
+			if (inputs.nowNanos - stallStart >= stallTime) {
+				return 0;
+			}
+		} else {
+			stalling = false;
+		}
+
+		if (selected > gear && inputs.batteryVoltage < minUpshiftVoltage) {
+			return gear;
+		}
+		return selected;
+	}
+}
@@ -0,0 +1,123 @@
+package org.team484.api.motion;
+
+import org.team484.api.util.PDPSampler;
+import org.team484.api.util.PeriodicThread;
+
+/**
+ * CurrentBalancer evens out the current drawn by the motors of a SpeedControllerGroup. When one motor
+ * in a gearbox draws more than the others, because of its wiring or wear, it heats up first. Every
+ * period the balancer reads each member's current from a PDPSampler and lowers the output of the
+ * members drawing more than the average, by trimming each member's share of the group's output. The
+ * member that most needs it always gets the full output, so balancing never makes the gearbox faster,
+ * and no member is trimmed by more than the maximum trim.
+ * <p>
+ * Trims are only changed while the group is drawing enough current for the readings to be meaningful,
+ * and are held otherwise. The trims are published to the group as a new array each period, so set
+ * reads them without locking or allocating. Because trimmed members no longer all have the same
+ * output, a GroupHealthMonitor on the same group should have a tolerance larger than the maximum trim.
+ * Use SpeedControllerGroup.enableCurrentBalancing to start one.
+ */
+public class CurrentBalancer extends PeriodicThread {
+
+	private final SpeedControllerGroup group;
+	private final PDPSampler pdp;
+	private final int[] channels;
+	private final double[] trims;
+
+	private volatile double gain = 0.1;
+	private volatile double maxTrim = 0.15;
+	private volatile double minCurrent = 10;
+
+	/**
+	 * Creates a new balancer. The sampler is told to watch the channels.
+	 * @param group - The group to balance.
+	 * @param pdp - The sampler to read currents from, which must be started separately.
+	 * @param channels - The PDP channel of each member, in the order they were given to the group.
+	 * @param periodMs - Milliseconds between adjustments. Currents change slowly, so this can be 100 or
+	 *                   more.
+	 */
+	CurrentBalancer(SpeedControllerGroup group, PDPSampler pdp, int[] channels, double periodMs) {
+		super("CurrentBalancer", periodMs);
+		this.group = group;
+		this.pdp = pdp;
+		this.channels = channels.clone();
+		trims = new double[channels.length];
+		for (int i = 0; i < trims.length; i++) {
+			trims[i] = 1;
+		}
+		pdp.watch(channels);
+	}
+
+	/**
+	 * Tells the sampler the balancer no longer needs the channels it was created with. Called once the
+	 * balancer has been stopped.
+	 */
+	void unwatchChannels() {
+		pdp.unwatch(channels);
+	}
+
+	/**
+	 * Sets how strongly the trims react to a difference in current.
+	 * @param gain - The change in trim per period for a member drawing twice the average current
+	 *               (default 0.1)
+	 */
+	public void setGain(double gain) {
+		this.gain = gain;
+	}
+
+	/**
+	 * Sets how much a member's output may be lowered.
+	 * @param maxTrim - The largest fraction of the group's output to take away from a member
+	 *                  (default 0.15)
+	 */
+	public void setMaxTrim(double maxTrim) {
+		this.maxTrim = Math.max(Math.min(maxTrim, 1), 0);
+	}
+
+	/**
+	 * Sets the least average current at which the trims are adjusted.
+	 * @param amps - The minimum average current per member (default 10)
+	 */
+	public void setMinCurrent(double amps) {
+		minCurrent = amps;
+	}
+
+	/**
+	 * Gets the trim of a member as of the last adjustment.
+	 * @param member - The index of the member, in the order they were given to the group.
+	 * @return the fraction of the group's output given to the member, from 1 - maxTrim to 1.
+	 */
+	public double getTrim(int member) {
+		return group.getTrim(member);
+	}
+
+	@Override
+	protected void periodic(long nowNanos) {
+		double mean = 0;
+		for (int channel : channels) {
+			mean += pdp.getCurrent(channel);
+		}
+		mean /= channels.length;
+		if (Double.isNaN(mean) || mean < minCurrent) {
+			return;
+		}
+
+		double lowest = 1 - maxTrim;
+		double highest = 0;
+		for (int i = 0; i < trims.length; i++) {
+			double error = (pdp.getCurrent(channels[i]) - mean) / mean;
+			trims[i] = Math.max(Math.min(trims[i] * (1 - gain * error), 1), lowest);
+			highest = Math.max(highest, trims[i]);
+		}
+		if (highest <= 0) {
+			return;
+		}
+		//Scale so the member that needs it most gets the full output
+		double[] published = new double[trims.length];
+		for (int i = 0; i < trims.length; i++) {
+			trims[i] = Math.max(trims[i] / highest, lowest);
+			published[i] = trims[i];
+		}
+		group.setTrims(this, published);
+	}
+}
@@ -0,0 +1,180 @@
+package org.team484.api.motion;
+
+import org.team484.api.sensor.ShifterEncoder;
+import org.team484.api.util.PeriodicThread;
+import org.team484.api.util.Pose;
+import org.team484.api.util.PoseHolder;
+
+import edu.wpi.first.wpilibj.interfaces.Gyro;
+
+/**
+ * DifferentialOdometry tracks the position of a tank drive robot on the field from the encoders of
+ * its two shifting gearboxes. It runs in its own thread at a fixed rate and integrates the distance
+ * each side traveled. If a gyro is given, the gyro is used for the heading and the encoders only for
+ * the distance; otherwise the heading is integrated from the difference between the two sides.
+ * <p>
+ * When a gearbox shifts, the jolt of the dog gears engaging shows up as a jump in the encoder distance
+ * that the robot never traveled. For a short blanking time after each shift, a side's encoder is
+ * ignored and that side is assumed to keep the speed it had before the shift; afterwards the encoder
+ * is picked up again from wherever it reads. The shift times come from each encoder's ShifterSolenoid,
+ * or from its Transmission if it has one, so their clocks must read System.nanoTime().
+ * <p>
+ * The pose is published through a PoseHolder, the same as SwerveOdometry, so any thread may read the
+ * latest pose without blocking the odometry loop. Call start to begin tracking and interrupt the thread
+ * to stop.
+ */
+public class DifferentialOdometry extends PeriodicThread {
+
+	private final ShifterEncoder[] encoders;
+	private final double trackWidth;
+	private final Gyro gyro;
+
+	private final PoseHolder pose = new PoseHolder();
+	private final double[] lastDistance = new double[2];
+	private final double[] rate = new double[2]; //The speed of each side before a shift
+	private long lastTime = 0;
+	private boolean initialized = false;
+	private volatile long blankingTime = 100000000L; //How long to ignore an encoder after a shift (in ns)
+
+	private double x = 0;
+	private double y = 0;
+	private double heading = 0;
+	private double gyroZero = 0; //The gyro angle (clockwise) that corresponds to a heading of 0
+
+	private volatile boolean resetPending = false;
+	private volatile double resetX, resetY, resetHeading;
+
+	/**
+	 * Creates a new odometry thread for a tank drive.
+	 * @param left - The encoder of the left gearbox, set to getDistance in field units.
+	 * @param right - The encoder of the right gearbox, set to getDistance in field units.
+	 * @param trackWidth - The distance between the left and right wheels, in field units.
+	 * @param gyro - The gyro to use for the heading, or null to integrate the heading from the wheels.
+	 * @param periodMs - Milliseconds between odometry updates.
+	 */
+	public DifferentialOdometry(ShifterEncoder left, ShifterEncoder right, double trackWidth, Gyro gyro,
+			double periodMs) {
+		super("DifferentialOdometry", periodMs);
+		encoders = new ShifterEncoder[] {left, right};
+		this.trackWidth = trackWidth;
+		this.gyro = gyro;
+	}
+
+	/**
+	 * Sets how long an encoder is ignored after its gearbox shifts.
+	 * @param ms - The blanking time in milliseconds (default 100)
+	 */
+	public void setShiftBlankingTime(double ms) {
+		blankingTime = (long) (ms * 1e6);
+	}
+
+	/**
+	 * Sets the pose of the robot. The new pose takes effect on the next odometry update.
+	 * @param x - The x (right) position.
+	 * @param y - The y (forward) position.
+	 * @param heading - The heading in degrees, counter clockwise increasing.
+	 */
+	public void resetPose(double x, double y, double heading) {
+		resetX = x;
+		resetY = y;
+		resetHeading = heading;
+		resetPending = true;
+	}
+
+	/**
+	 * Copies the latest pose into the given object without allocating.
+	 * @param out - The pose to copy into.
+	 * @return the same pose object that was passed in.
+	 */
+	public Pose getPose(Pose out) {
+		return pose.get(out);
+	}
+
+	/**
+	 * Gets a copy of the latest pose in a new object.
+	 * @return the latest pose.
+	 */
+	public Pose getPose() {
+		return pose.get();
+	}
+
+	/**
+	 * Gets the holder the pose is published through, for sharing with other classes.
+	 * @return the pose holder.
+	 */
+	public PoseHolder getPoseHolder() {
+		return pose;
+	}
+
+	@Override
+	protected void periodic(long nowNanos) {
+		if (!initialized || resetPending) {
+			for (int i = 0; i < 2; i++) {
+				lastDistance[i] = encoders[i].getDistance();
+				rate[i] = 0;
+			}
+			if (resetPending) {
+				resetPending = false;
+				x = resetX;
+				y = resetY;
+				heading = resetHeading;
+			}
+			if (gyro != null) {
+				gyroZero = gyro.getAngle() + heading;
+			}
+			initialized = true;
+			lastTime = nowNanos;
+			pose.set(x, y, heading, nowNanos);
+			return;
+		}
+
+		double dt = (nowNanos - lastTime) / 1e9;
+		lastTime = nowNanos;
+		double leftDelta = getDelta(0, nowNanos, dt);
+		double rightDelta = getDelta(1, nowNanos, dt);
+
+		double newHeading;
+		if (gyro != null) {
+			newHeading = gyroZero - gyro.getAngle();
+		} else {
+			newHeading = heading + Math.toDegrees((rightDelta - leftDelta) / trackWidth);
+		}
+
+		//Move forward along the heading half way through the move
+		double forward = (leftDelta + rightDelta) / 2.0;
+		double midHeading = Math.toRadians((heading + newHeading) / 2.0);
+		x -= forward * Math.sin(midHeading);
+		y += forward * Math.cos(midHeading);
+		heading = newHeading;
+
+		pose.set(x, y, heading, nowNanos);
+	}
+
+	/**
+	 * Gets the distance a side traveled since the last update, using the speed from before the last
+	 * shift while the side's encoder is being ignored.
+	 */
+	private double getDelta(int side, long nowNanos, double dt) {
+		double distance = encoders[side].getDistance();
+		double delta = distance - lastDistance[side];
+		lastDistance[side] = distance;
+
+		long shiftTime = getLastShiftTime(encoders[side]);
+		if (shiftTime != 0 && nowNanos - shiftTime < blankingTime) {
+			return rate[side] * dt;
+		}
+		if (dt > 0) {
+			rate[side] = delta / dt;
+		}
+		return delta;
+	}
+
+	private static long getLastShiftTime(ShifterEncoder encoder) {
+		Transmission transmission = encoder.getTransmission();
+		if (transmission != null) {
+			return transmission.getLastShiftTime();
+		}
+		ShifterSolenoid shifter = encoder.getShifterSolenoid();
+		return shifter == null ? 0 : shifter.getLastShiftTime();
+	}
+}
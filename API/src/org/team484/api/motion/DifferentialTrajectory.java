@@ -0,0 +1,466 @@
+package org.team484.api.motion;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.List;
+
+import org.team484.api.util.ParameterSweep;
+
+/**
+ * A time parameterized path for a differential (tank) drive. The path goes through a list of
+ * waypoints along quintic Hermite splines, so the heading and curvature change smoothly, and the speed
+ * along it is limited by the maximum speed, the maximum acceleration, and the curvature: in a turn the
+ * outside wheels must stay under the maximum speed and the robot under a maximum sideways
+ * acceleration. Like SwerveTrajectory, it is stored as parallel arrays of primitives, sampled without
+ * allocating, and meant to be generated once and saved to a file.
+ * <p>
+ * Each stretch of the path between two waypoints is a segment, and every segment can be given a gear
+ * with planGears so that the robot only shifts at waypoints and never in the middle of a curve. Gears
+ * are numbered as in AutoShifter.getGear, 0 for low gear and 1 for high gear.
+ * <p>
+ * Positions are in field units with x to the right and y forward from the robot's starting position.
+ * Headings are in degrees and increase counter clockwise. Curvature is in radians per field unit and
+ * is positive when turning counter clockwise. Sampling uses a cursor the same way SwerveTrajectory
+ * does, so a trajectory should only be sampled from one thread.
+ */
+public class DifferentialTrajectory {
+
+	private static final int FILE_MAGIC = 0x44465452; //"DFTR"
+	private static final int FILE_VERSION = 1;
+	private static final int SPLINE_SAMPLES = 200; //Points per segment used to find the velocity limits
+
+	/**
+	 * A list of waypoints to generate a trajectory through.
+	 */
+	public static class Path {
+		public final double[] xs;
+		public final double[] ys;
+		public final double[] headings;
+
+		/**
+		 * @param xs - The x position of each waypoint.
+		 * @param ys - The y position of each waypoint.
+		 * @param headings - The heading of the robot at each waypoint in degrees.
+		 */
+		public Path(double[] xs, double[] ys, double[] headings) {
+			this.xs = xs;
+			this.ys = ys;
+			this.headings = headings;
+		}
+	}
+
+	private final double trackWidth;
+	private final double[] time;
+	private final double[] x;
+	private final double[] y;
+	private final double[] heading;
+	private final double[] velocity;
+	private final double[] acceleration;
+	private final double[] curvature;
+	private final int[] segment;
+	private final int[] gear;
+
+	private int cursor = 0;
+
+	private DifferentialTrajectory(int length, double trackWidth) {
+		this.trackWidth = trackWidth;
+		time = new double[length];
+		x = new double[length];
+		y = new double[length];
+		heading = new double[length];
+		velocity = new double[length];
+		acceleration = new double[length];
+		curvature = new double[length];
+		segment = new int[length];
+		gear = new int[length];
+	}
+
+	/**
+	 * Generates a trajectory through a list of waypoints. The robot starts and ends at rest.
+	 * @param path - The waypoints to go through.
+	 * @param trackWidth - The distance between the left and right wheels, in field units.
+	 * @param maxVelocity - The maximum speed of any wheel in field units per second.
+	 * @param maxAcceleration - The maximum acceleration in field units per second squared.
+	 * @param maxCentripetal - The maximum sideways acceleration in turns in field units per second
+	 *                         squared, or 0 for no limit.
+	 * @param dt - Seconds between samples.
+	 * @return the generated trajectory.
+	 */
+	public static DifferentialTrajectory generate(Path path, double trackWidth, double maxVelocity,
+			double maxAcceleration, double maxCentripetal, double dt) {
+		double[] xs = path.xs;
+		double[] ys = path.ys;
+		double[] headings = path.headings;
+		if (xs.length != ys.length || xs.length != headings.length || xs.length < 2) {
+			throw new IllegalArgumentException("Need at least two waypoints with an x, y and heading each");
+		}
+
+		//Sample the splines densely and find the speed limit at each point
+		int segments = xs.length - 1;
+		int points = segments * SPLINE_SAMPLES + 1;
+		double[] px = new double[points];
+		double[] py = new double[points];
+		double[] pHeading = new double[points];
+		double[] pCurvature = new double[points];
+		int[] pSegment = new int[points];
+		double[] limit = new double[points];
+		double[] spline = new double[6];
+		for (int s = 0; s < segments; s++) {
+			double chord = Math.hypot(xs[s + 1] - xs[s], ys[s + 1] - ys[s]);
+			double scale = 1.2 * chord;
+			double h0 = Math.toRadians(headings[s]);
+			double h1 = Math.toRadians(headings[s + 1]);
+			double dx0 = -Math.sin(h0) * scale, dy0 = Math.cos(h0) * scale;
+			double dx1 = -Math.sin(h1) * scale, dy1 = Math.cos(h1) * scale;
+			for (int j = (s == 0 ? 0 : 1); j <= SPLINE_SAMPLES; j++) {
+				int i = s * SPLINE_SAMPLES + j;
+				double u = (double) j / SPLINE_SAMPLES;
+				hermite(u, xs[s], dx0, xs[s + 1], dx1, spline, 0);
+				hermite(u, ys[s], dy0, ys[s + 1], dy1, spline, 3);
+				px[i] = spline[0];
+				py[i] = spline[3];
+				double speed = Math.hypot(spline[1], spline[4]);
+				if (speed > 1e-9) {
+					pHeading[i] = Math.toDegrees(Math.atan2(-spline[1], spline[4]));
+					pCurvature[i] = (spline[1] * spline[5] - spline[4] * spline[2]) / (speed * speed * speed);
+				} else {
+					pHeading[i] = headings[s];
+				}
+				pSegment[i] = s;
+				double k = Math.abs(pCurvature[i]);
+				limit[i] = maxVelocity / (1 + k * trackWidth / 2.0);
+				if (maxCentripetal > 0 && k > 1e-9) {
+					limit[i] = Math.min(limit[i], Math.sqrt(maxCentripetal / k));
+				}
+			}
+		}
+
+		//Forward and backward passes so the speed never changes faster than the max acceleration
+		double[] distance = new double[points];
+		double[] v = new double[points];
+		for (int i = 1; i < points; i++) {
+			distance[i] = Math.hypot(px[i] - px[i - 1], py[i] - py[i - 1]);
+		}
+		v[0] = 0;
+		for (int i = 1; i < points; i++) {
+			v[i] = Math.min(limit[i], Math.sqrt(v[i - 1] * v[i - 1] + 2 * maxAcceleration * distance[i]));
+		}
+		v[points - 1] = 0;
+		for (int i = points - 2; i >= 0; i--) {
+			v[i] = Math.min(v[i], Math.sqrt(v[i + 1] * v[i + 1] + 2 * maxAcceleration * distance[i + 1]));
+		}
+
+		//Time each point, then resample at a fixed time step
+		double[] t = new double[points];
+		double[] a = new double[points];
+		for (int i = 1; i < points; i++) {
+			double sum = v[i - 1] + v[i];
+			t[i] = t[i - 1] + (sum > 0 ? 2 * distance[i] / sum : 0);
+			if (distance[i] > 0) {
+				a[i - 1] = (v[i] * v[i] - v[i - 1] * v[i - 1]) / (2 * distance[i]);
+			}
+		}
+		double totalTime = t[points - 1];
+		int length = (int) Math.ceil(totalTime / dt) + 1;
+		DifferentialTrajectory trajectory = new DifferentialTrajectory(length, trackWidth);
+		int p = 0;
+		for (int i = 0; i < length; i++) {
+			double sampleTime = Math.min(i * dt, totalTime);
+			while (p < points - 2 && t[p + 1] <= sampleTime) {
+				p++;
+			}
+			double span = t[p + 1] - t[p];
+			double fraction = span > 0 ? Math.min((sampleTime - t[p]) / span, 1) : 0;
+			trajectory.time[i] = sampleTime;
+			trajectory.x[i] = lerp(px[p], px[p + 1], fraction);
+			trajectory.y[i] = lerp(py[p], py[p + 1], fraction);
+			trajectory.heading[i] = wrapDegrees(pHeading[p] + wrapDegrees(pHeading[p + 1] - pHeading[p]) * fraction);
+			trajectory.velocity[i] = lerp(v[p], v[p + 1], fraction);
+			trajectory.acceleration[i] = a[p];
+			trajectory.curvature[i] = lerp(pCurvature[p], pCurvature[p + 1], fraction);
+			trajectory.segment[i] = pSegment[p];
+		}
+		return trajectory;
+	}
+
+	/**
+	 * Generates several trajectories in parallel, such as every autonomous path when the robot program
+	 * starts.
+	 * @param paths - The waypoints of each trajectory.
+	 * @param trackWidth - The distance between the left and right wheels, in field units.
+	 * @param maxVelocity - The maximum speed of any wheel in field units per second.
+	 * @param maxAcceleration - The maximum acceleration in field units per second squared.
+	 * @param maxCentripetal - The maximum sideways acceleration in turns, or 0 for no limit.
+	 * @param dt - Seconds between samples.
+	 * @return the trajectories in the same order as the paths, or null if generating failed.
+	 */
+	public static List<DifferentialTrajectory> generateAll(List<Path> paths, double trackWidth,
+			double maxVelocity, double maxAcceleration, double maxCentripetal, double dt) {
+		return ParameterSweep.run(paths,
+				path -> generate(path, trackWidth, maxVelocity, maxAcceleration, maxCentripetal, dt));
+	}
+
+	/**
+	 * Picks a gear for each segment of the trajectory. A segment is driven in high gear if its top
+	 * speed is above the shifting speed, unless it curves more sharply than the given curvature, in
+	 * which case it keeps the gear of the segment before it so the robot does not shift going into a
+	 * turn.
+	 * @param shiftingSpeed - The speed to shift up above, in field units per second.
+	 * @param maxShiftCurvature - The sharpest curvature a segment may have and still be shifted into,
+	 *                            in radians per field unit.
+	 */
+	public void planGears(double shiftingSpeed, double maxShiftCurvature) {
+		int segments = segment[segment.length - 1] + 1;
+		double[] peakVelocity = new double[segments];
+		double[] peakCurvature = new double[segments];
+		for (int i = 0; i < time.length; i++) {
+			int s = segment[i];
+			peakVelocity[s] = Math.max(peakVelocity[s], velocity[i]);
+			peakCurvature[s] = Math.max(peakCurvature[s], Math.abs(curvature[i]));
+		}
+		int[] segmentGear = new int[segments];
+		for (int s = 0; s < segments; s++) {
+			int wanted = peakVelocity[s] > shiftingSpeed ? 1 : 0;
+			if (s > 0 && peakCurvature[s] > maxShiftCurvature) {
+				wanted = segmentGear[s - 1];
+			}
+			segmentGear[s] = wanted;
+		}
+		for (int i = 0; i < time.length; i++) {
+			gear[i] = segmentGear[segment[i]];
+		}
+	}
+
+	/**
+	 * Loads a trajectory that was previously saved with save.
+	 * @param file - The file to load from.
+	 * @return the trajectory, or null if the file could not be read.
+	 */
+	public static DifferentialTrajectory load(File file) {
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+			if (in.readInt() != FILE_MAGIC || in.readInt() != FILE_VERSION) {
+				System.err.println("Not a differential trajectory file: " + file);
+				return null;
+			}
+			//7 doubles and 2 ints per sample follow a 20 byte header, so a length the file cannot hold
+			//means it is corrupt
+			int length = in.readInt();
+			if (length < 1 || length > (file.length() - 20) / 64) {
+				System.err.println("Differential trajectory file has a bad length: " + file);
+				return null;
+			}
+			DifferentialTrajectory trajectory = new DifferentialTrajectory(length, in.readDouble());
+			readArray(in, trajectory.time);
+			readArray(in, trajectory.x);
+			readArray(in, trajectory.y);
+			readArray(in, trajectory.heading);
+			readArray(in, trajectory.velocity);
+			readArray(in, trajectory.acceleration);
+			readArray(in, trajectory.curvature);
+			readArray(in, trajectory.segment);
+			readArray(in, trajectory.gear);
+			return trajectory;
+		} catch (IOException e) {
+			e.printStackTrace();
+			return null;
+		}
+	}
+
+	/**
+	 * Saves this trajectory, including its planned gears, to a file so it can be loaded later without
+	 * generating it again.
+	 * @param file - The file to save to.
+	 * @return - If the trajectory was saved successfully.
+	 */
+	public boolean save(File file) {
+		try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)))) {
+			out.writeInt(FILE_MAGIC);
+			out.writeInt(FILE_VERSION);
+			out.writeInt(time.length);
+			out.writeDouble(trackWidth);
+			writeArray(out, time);
+			writeArray(out, x);
+			writeArray(out, y);
+			writeArray(out, heading);
+			writeArray(out, velocity);
+			writeArray(out, acceleration);
+			writeArray(out, curvature);
+			writeArray(out, segment);
+			writeArray(out, gear);
+			return true;
+		} catch (IOException e) {
+			e.printStackTrace();
+			return false;
+		}
+	}
+
+	/**
+	 * Gets the track width the trajectory was generated for.
+	 * @return the distance between the left and right wheels, in field units.
+	 */
+	public double getTrackWidth() {
+		return trackWidth;
+	}
+
+	/**
+	 * Gets the total time it takes to follow this trajectory.
+	 * @return the duration in seconds.
+	 */
+	public double getDuration() {
+		return time[time.length - 1];
+	}
+
+	/**
+	 * Gets the number of samples in this trajectory.
+	 * @return the number of samples.
+	 */
+	public int length() {
+		return time.length;
+	}
+
+	/**
+	 * Samples the trajectory at a point in time, interpolating between the stored samples. Times
+	 * before the start or after the end are clamped to the first or last sample.
+	 * @param t - The time since the start of the trajectory in seconds.
+	 * @param out - The state object to write the sample into.
+	 * @return the same state object that was passed in.
+	 */
+	public State sample(double t, State out) {
+		int last = time.length - 1;
+		if (last == 0 || t <= time[0]) {
+			return copySample(0, out);
+		}
+		if (t >= time[last]) {
+			return copySample(last, out);
+		}
+
+		//Move the cursor forward for increasing times, otherwise binary search for the sample
+		if (t < time[cursor]) {
+			int low = 0, high = cursor;
+			while (high - low > 1) {
+				int mid = (low + high) >>> 1;
+				if (time[mid] <= t) {
+					low = mid;
+				} else {
+					high = mid;
+				}
+			}
+			cursor = low;
+		}
+		while (cursor < last - 1 && time[cursor + 1] <= t) {
+			cursor++;
+		}
+
+		int i = cursor;
+		double fraction = (t - time[i]) / (time[i + 1] - time[i]);
+		out.time = t;
+		out.x = lerp(x[i], x[i + 1], fraction);
+		out.y = lerp(y[i], y[i + 1], fraction);
+		out.heading = wrapDegrees(heading[i] + wrapDegrees(heading[i + 1] - heading[i]) * fraction);
+		out.velocity = lerp(velocity[i], velocity[i + 1], fraction);
+		out.acceleration = acceleration[i];
+		out.curvature = lerp(curvature[i], curvature[i + 1], fraction);
+		out.segment = segment[i];
+		out.gear = gear[i];
+		return out;
+	}
+
+	private State copySample(int i, State out) {
+		out.time = time[i];
+		out.x = x[i];
+		out.y = y[i];
+		out.heading = heading[i];
+		out.velocity = velocity[i];
+		out.acceleration = acceleration[i];
+		out.curvature = curvature[i];
+		out.segment = segment[i];
+		out.gear = gear[i];
+		return out;
+	}
+
+	/**
+	 * The state of the robot at one point in a trajectory. State objects are mutable so a follower can
+	 * reuse the same one every loop.
+	 */
+	public static class State {
+		public double time;
+		public double x;
+		public double y;
+		public double heading;
+		public double velocity;
+		public double acceleration;
+		public double curvature;
+		public int segment;
+		public int gear;
+	}
+
+	/**
+	 * Evaluates one axis of a quintic Hermite spline with zero second derivatives at its ends.
+	 * @param out - Receives the position, first derivative and second derivative at out[offset...].
+	 */
+	private static void hermite(double u, double p0, double d0, double p1, double d1, double[] out, int offset) {
+		double u2 = u * u;
+		double u3 = u2 * u;
+		double u4 = u3 * u;
+		double u5 = u4 * u;
+		double h0 = 1 - 10 * u3 + 15 * u4 - 6 * u5;
+		double h1 = u - 6 * u3 + 8 * u4 - 3 * u5;
+		double h5 = 10 * u3 - 15 * u4 + 6 * u5;
+		double h4 = -4 * u3 + 7 * u4 - 3 * u5;
+		double dh0 = -30 * u2 + 60 * u3 - 30 * u4;
+		double dh1 = 1 - 18 * u2 + 32 * u3 - 15 * u4;
+		double dh5 = 30 * u2 - 60 * u3 + 30 * u4;
+		double dh4 = -12 * u2 + 28 * u3 - 15 * u4;
+		double ddh0 = -60 * u + 180 * u2 - 120 * u3;
+		double ddh1 = -36 * u + 96 * u2 - 60 * u3;
+		double ddh5 = 60 * u - 180 * u2 + 120 * u3;
+		double ddh4 = -24 * u + 84 * u2 - 60 * u3;
+		out[offset] = h0 * p0 + h1 * d0 + h4 * d1 + h5 * p1;
+		out[offset + 1] = dh0 * p0 + dh1 * d0 + dh4 * d1 + dh5 * p1;
+		out[offset + 2] = ddh0 * p0 + ddh1 * d0 + ddh4 * d1 + ddh5 * p1;
+	}
+
+	private static double lerp(double a, double b, double fraction) {
+		return a + (b - a) * fraction;
+	}
+
+	private static double wrapDegrees(double angle) {
+		while (angle > 180) {
+			angle -= 360;
+		}
+		while (angle <= -180) {
+			angle += 360;
+		}
+		return angle;
+	}
+
+	private static void writeArray(DataOutputStream out, double[] array) throws IOException {
+		for (double value : array) {
+			out.writeDouble(value);
+		}
+	}
+
+	private static void writeArray(DataOutputStream out, int[] array) throws IOException {
+		for (int value : array) {
+			out.writeInt(value);
+		}
+	}
+
+	private static void readArray(DataInputStream in, double[] array) throws IOException {
+		for (int i = 0; i < array.length; i++) {
+			array[i] = in.readDouble();
+		}
+	}
+
+	private static void readArray(DataInputStream in, int[] array) throws IOException {
+		for (int i = 0; i < array.length; i++) {
+			array[i] = in.readInt();
+		}
+	}
+}
@@ -0,0 +1,216 @@
+package org.team484.api.motion;
+
+import org.team484.api.motion.ShifterDrive.ShifterMode;
+import org.team484.api.util.Clock;
+import org.team484.api.util.Pose;
+import org.team484.api.util.PoseHolder;
+
+/**
+ * Follows a DifferentialTrajectory with a ShifterDrive by sampling it by time every cycle. The speed
+ * and curvature from the trajectory are turned into a speed for each side, and each side is driven
+ * with a feed forward of the form kS + kV * velocity + kA * acceleration using the gains for the gear
+ * the drive is in. If the trajectory has had planGears called on it, the follower also holds the
+ * drive in the gear planned for each segment, so it only shifts at waypoints. Planned shifts skip the
+ * drive's shifting cooldown, so they are not delayed past the waypoint. If a PoseHolder (for
+ * example from DifferentialOdometry) is given, the error between the measured and planned pose is
+ * corrected proportionally. Nothing is allocated per cycle.
+ * <p>
+ * Call start once when the trajectory should begin, then call update every cycle until isFinished
+ * returns true. The shifter mode the drive was in before start is restored at the end. The time since
+ * start is read from a Clock, which is System.nanoTime() unless set otherwise.
+ */
+public class DifferentialTrajectoryFollower {
+
+	private final ShifterDrive drive;
+	private final DifferentialTrajectory trajectory;
+	private final double halfTrackWidth;
+
+	private final double[] kS = new double[2];
+	private final double[] kV = new double[2];
+	private final double[] kA = new double[2];
+	private boolean gearControl = true;
+
+	private PoseHolder poseSource = null;
+	private double kPosition = 0;
+	private double kHeading = 0;
+
+	private final DifferentialTrajectory.State state = new DifferentialTrajectory.State();
+	private final Pose pose = new Pose();
+	private ShifterMode previousMode = null;
+	private int commandedGear = -1;
+	private double leftVelocity = 0;
+	private double rightVelocity = 0;
+	private volatile Clock clock = Clock.SYSTEM;
+	private long startTime = 0;
+	private boolean started = false;
+	private boolean finished = false;
+
+	/**
+	 * Creates a new follower for a trajectory. The feed forward starts out as velocity divided by the
+	 * top speed of the gear, with no static or acceleration term.
+	 * @param drive - The shifter drive to command.
+	 * @param trajectory - The trajectory to follow.
+	 * @param lowGearMaxVelocity - The speed of each side at full output in low gear, in field units per
+	 *                             second.
+	 * @param highGearMaxVelocity - The speed of each side at full output in high gear, in field units
+	 *                              per second.
+	 */
+	public DifferentialTrajectoryFollower(ShifterDrive drive, DifferentialTrajectory trajectory,
+			double lowGearMaxVelocity, double highGearMaxVelocity) {
+		this.drive = drive;
+		this.trajectory = trajectory;
+		halfTrackWidth = trajectory.getTrackWidth() / 2.0;
+		kV[0] = 1.0 / lowGearMaxVelocity;
+		kV[1] = 1.0 / highGearMaxVelocity;
+	}
+
+	/**
+	 * Sets the feed forward gains for one gear.
+	 * @param gear - 0 for low gear, or 1 for high gear.
+	 * @param kS - The output needed to overcome friction, applied in the direction of travel.
+	 * @param kV - Output per field unit per second of velocity.
+	 * @param kA - Output per field unit per second squared of acceleration.
+	 */
+	public void setFeedforward(int gear, double kS, double kV, double kA) {
+		if (gear < 0 || gear > 1) {
+			System.err.println("Feed forward gear must be 0 (low) or 1 (high)");
+			return;
+		}
+		this.kS[gear] = kS;
+		this.kV[gear] = kV;
+		this.kA[gear] = kA;
+	}
+
+	/**
+	 * Sets whether the follower shifts the drive into the gear planned for each segment. When turned off,
+	 * the drive keeps whatever shifter mode it was in and the feed forward follows the gear it picks.
+	 * @param enabled - True to shift to the planned gears (default true)
+	 */
+	public void setGearControl(boolean enabled) {
+		gearControl = enabled;
+	}
+
+	/**
+	 * Sets a source for the measured pose of the robot and the gains used to correct for the error
+	 * between the measured and planned pose. Without a pose source, the follower assumes the robot is
+	 * exactly where the trajectory says it should be.
+	 * @param poseSource - The holder to read the measured pose from.
+	 * @param kPosition - Field units per second of correction per field unit of position error along the
+	 *                    path.
+	 * @param kHeading - Degrees per second of turning correction per degree of heading error.
+	 */
+	public void setPoseFeedback(PoseHolder poseSource, double kPosition, double kHeading) {
+		this.poseSource = poseSource;
+		this.kPosition = kPosition;
+		this.kHeading = kHeading;
+	}
+
+	/**
+	 * Starts following the trajectory from the beginning.
+	 */
+	public void start() {
+		previousMode = drive.getShifterMode();
+		commandedGear = -1;
+		finished = false;
+		startTime = clock.nanoTime();
+		started = true;
+	}
+
+	/**
+	 * Checks if the end of the trajectory has been reached.
+	 * @return true once the trajectory's duration has elapsed.
+	 */
+	public boolean isFinished() {
+		return started && getElapsedTime() >= trajectory.getDuration();
+	}
+
+	/**
+	 * Gets the time since start was called.
+	 * @return the elapsed time in seconds.
+	 */
+	public double getElapsedTime() {
+		return (clock.nanoTime() - startTime) / 1e9;
+	}
+
+	/**
+	 * Sets the clock the trajectory is timed with. This is only needed to follow the trajectory against
+	 * a controlled clock, such as in a simulation or when replaying recorded inputs, and should be set
+	 * before start.
+	 * @param clock - The clock to use (default Clock.SYSTEM)
+	 */
+	public void setClock(Clock clock) {
+		this.clock = clock;
+	}
+
+	/**
+	 * Gets the left side speed commanded on the last update, including pose correction.
+	 * @return the speed in field units per second.
+	 */
+	public double getLeftVelocity() {
+		return leftVelocity;
+	}
+
+	/**
+	 * Gets the right side speed commanded on the last update, including pose correction.
+	 * @return the speed in field units per second.
+	 */
+	public double getRightVelocity() {
+		return rightVelocity;
+	}
+
+	/**
+	 * Samples the trajectory for the current time and drives the robot. Should be called every cycle.
+	 * Stops the drive motors and restores the previous shifter mode once the trajectory is finished.
+	 */
+	public void update() {
+		if (!started) {
+			return;
+		}
+		double t = getElapsedTime();
+		if (t >= trajectory.getDuration()) {
+			if (!finished) {
+				finished = true;
+				leftVelocity = 0;
+				rightVelocity = 0;
+				drive.linearTankDrive(0, 0);
+				if (gearControl && previousMode != null) {
+					drive.setShifterMode(previousMode);
+				}
+			}
+			return;
+		}
+		trajectory.sample(t, state);
+
+		if (gearControl && state.gear != commandedGear) {
+			commandedGear = state.gear;
+			drive.setShifterMode(commandedGear > 0 ? ShifterMode.HIGH : ShifterMode.LOW, true);
+		}
+
+		double velocity = state.velocity;
+		double turnRate = state.velocity * state.curvature; //Radians per second, counter clockwise
+		if (poseSource != null) {
+			poseSource.get(pose);
+			double heading = Math.toRadians(state.heading);
+			double errorX = state.x - pose.getX();
+			double errorY = state.y - pose.getY();
+			//Only the error along the path can be fixed by changing speed
+			velocity += kPosition * (-errorX * Math.sin(heading) + errorY * Math.cos(heading));
+			double headingError = state.heading - pose.getHeading();
+			while (headingError > 180) headingError -= 360;
+			while (headingError <= -180) headingError += 360;
+			turnRate += Math.toRadians(kHeading * headingError);
+		}
+		leftVelocity = velocity - turnRate * halfTrackWidth;
+		rightVelocity = velocity + turnRate * halfTrackWidth;
+
+		double angularAcceleration = state.acceleration * state.curvature;
+		int gear = drive.getGear() > 0 ? 1 : 0;
+		double left = feedforward(gear, leftVelocity, state.acceleration - angularAcceleration * halfTrackWidth);
+		double right = feedforward(gear, rightVelocity, state.acceleration + angularAcceleration * halfTrackWidth);
+		drive.linearTankDrive(Math.max(Math.min(left, 1.0), -1.0), Math.max(Math.min(right, 1.0), -1.0));
+	}
+
+	private double feedforward(int gear, double velocity, double acceleration) {
+		return kS[gear] * Math.signum(velocity) + kV[gear] * velocity + kA[gear] * acceleration;
+	}
+}
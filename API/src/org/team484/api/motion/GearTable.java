@@ -0,0 +1,148 @@
+package org.team484.api.motion;
+
+/**
+ * A table describing each gear of a shifting gearbox with any number of speeds: the rotations per
+ * encoder pulse in that gear, the pattern of pistons that selects it, and the speeds to shift out of
+ * it. Gears are numbered from 0 for the lowest gear. The table is fixed once created, so gear lookups
+ * are array reads and picking a gear never allocates.
+ * <p>
+ * A piston pattern has one bit per piston of the Transmission, bit 0 for the first piston. A set bit
+ * means the piston's solenoid is set to kForward, a clear bit kReverse. A two speed gearbox on a single
+ * ShifterSolenoid has patterns 1 for low gear and 0 for high gear; a three speed gearbox built from
+ * two pistons uses three of the four patterns of two bits.
+ */
+public class GearTable {
+
+	private final double[] rpp;
+	private final int[] patterns;
+	private final double[] upshiftSpeeds;
+	private final double[] downshiftSpeeds;
+
+	/**
+	 * Creates a gear table. All of the arrays must have one entry per gear, from lowest to highest.
+	 * @param rpp - The rotations of the motors per encoder pulse in each gear.
+	 * @param patterns - The piston pattern that selects each gear.
+	 * @param upshiftSpeeds - The speed above which to shift up out of each gear, in encoder units per
+	 *                        second. The entry for the highest gear is not used.
+	 * @param downshiftSpeeds - The speed below which to shift down out of each gear, in encoder units
+	 *                          per second. The entry for the lowest gear is not used.
+	 */
+	public GearTable(double[] rpp, int[] patterns, double[] upshiftSpeeds, double[] downshiftSpeeds) {
+		if (rpp.length == 0 || rpp.length != patterns.length || rpp.length != upshiftSpeeds.length
+				|| rpp.length != downshiftSpeeds.length) {
+			System.err.println("Gear table needs the same number of RPP, pattern, upshift and downshift entries");
+		}
+		int gears = Math.max(Math.min(Math.min(rpp.length, patterns.length),
+				Math.min(upshiftSpeeds.length, downshiftSpeeds.length)), 1);
+		this.rpp = new double[gears];
+		this.patterns = new int[gears];
+		this.upshiftSpeeds = new double[gears];
+		this.downshiftSpeeds = new double[gears];
+		System.arraycopy(rpp, 0, this.rpp, 0, Math.min(rpp.length, gears));
+		System.arraycopy(patterns, 0, this.patterns, 0, Math.min(patterns.length, gears));
+		System.arraycopy(upshiftSpeeds, 0, this.upshiftSpeeds, 0, Math.min(upshiftSpeeds.length, gears));
+		System.arraycopy(downshiftSpeeds, 0, this.downshiftSpeeds, 0, Math.min(downshiftSpeeds.length, gears));
+	}
+
+	/**
+	 * Creates the table for a two speed gearbox on a single ShifterSolenoid, shifting the same way as
+	 * ThresholdShiftScheduler.
+	 * @param lowGearRPP - The rotations per pulse in low gear.
+	 * @param highGearRPP - The rotations per pulse in high gear.
+	 * @param shiftingSpeed - The speed to shift around, in encoder units per second.
+	 * @param deadband - How far past the shifting speed to go before shifting.
+	 * @return the gear table.
+	 */
+	public static GearTable twoSpeed(double lowGearRPP, double highGearRPP, double shiftingSpeed,
+			double deadband) {
+		return new GearTable(new double[] {lowGearRPP, highGearRPP}, new int[] {1, 0},
+				new double[] {shiftingSpeed + deadband, Double.POSITIVE_INFINITY},
+				new double[] {0, shiftingSpeed - deadband});
+	}
+
+	/**
+	 * Gets the number of gears.
+	 * @return the gear count.
+	 */
+	public int getGearCount() {
+		return rpp.length;
+	}
+
+	/**
+	 * Gets the highest gear.
+	 * @return the number of the highest gear.
+	 */
+	public int getTopGear() {
+		return rpp.length - 1;
+	}
+
+	/**
+	 * Gets the rotations of the motors per encoder pulse in a gear.
+	 * @param gear - The gear, from 0 for the lowest.
+	 * @return the rotations per pulse.
+	 */
+	public double getRPP(int gear) {
+		return rpp[clamp(gear)];
+	}
+
+	/**
+	 * Gets the piston pattern that selects a gear.
+	 * @param gear - The gear, from 0 for the lowest.
+	 * @return the pattern, one bit per piston.
+	 */
+	public int getPattern(int gear) {
+		return patterns[clamp(gear)];
+	}
+
+	/**
+	 * Finds the gear a piston pattern selects.
+	 * @param pattern - The piston pattern.
+	 * @return the gear, or -1 if no gear uses the pattern.
+	 */
+	public int findGear(int pattern) {
+		for (int gear = 0; gear < patterns.length; gear++) {
+			if (patterns[gear] == pattern) {
+				return gear;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Gets the speed above which to shift up out of a gear.
+	 * @param gear - The gear, from 0 for the lowest.
+	 * @return the speed in encoder units per second.
+	 */
+	public double getUpshiftSpeed(int gear) {
+		return upshiftSpeeds[clamp(gear)];
+	}
+
+	/**
+	 * Gets the speed below which to shift down out of a gear.
+	 * @param gear - The gear, from 0 for the lowest.
+	 * @return the speed in encoder units per second.
+	 */
+	public double getDownshiftSpeed(int gear) {
+		return downshiftSpeeds[clamp(gear)];
+	}
+
+	/**
+	 * Picks the gear to be in at a speed, moving at most one gear from the current one.
+	 * @param gear - The current gear.
+	 * @param speed - The absolute speed in encoder units per second.
+	 * @return the gear to be in.
+	 */
+	public int selectGear(int gear, double speed) {
+		gear = clamp(gear);
+		if (gear < rpp.length - 1 && speed > upshiftSpeeds[gear]) {
+			return gear + 1;
+		} else if (gear > 0 && speed < downshiftSpeeds[gear]) {
+			return gear - 1;
+		}
+		return gear;
+	}
+
+	private int clamp(int gear) {
+		return Math.max(Math.min(gear, rpp.length - 1), 0);
+	}
+}
@@ -0,0 +1,251 @@
+package org.team484.api.motion;
+
+import org.team484.api.util.PDPSampler;
+import org.team484.api.util.PeriodicThread;
+
+import edu.wpi.first.wpilibj.SpeedController;
+
+/**
+ * GroupHealthMonitor checks the members of a SpeedControllerGroup in the background, so a motor that
+ * has stopped working is noticed even though the group's getters only ask the first member. Every
+ * period it reads each member's output and inversion, and the member's current from a PDPSampler if
+ * the member's PDP channel has been given. A member is flagged when:
+ * <ul>
+ * <li>its output is further than the tolerance from the median output of the group, or its inversion
+ * is not the same as most of the group (it diverges), or</li>
+ * <li>its output is at least the load output but it draws less than the minimum current (it has no
+ * current under load).</li>
+ * </ul>
+ * A member has to be flagged for several samples in a row to be reported as unhealthy, so a sample
+ * taken part way through the group being set is not reported. The number of samples each member was
+ * flagged for is counted for diagnostics.
+ * <p>
+ * Most speed controllers report the value they were last set to rather than what the motor is doing,
+ * so an unplugged motor can only be found by its current. In a group of two, a divergence flags both
+ * members, as there is no majority to tell which one is wrong. Members following the first one in
+ * follower mode are taken to have its output.
+ * <p>
+ * The monitor only reads from the members, so it adds nothing to the cost of set. The counters may
+ * be slightly behind when read from another thread. Call start to begin monitoring and interrupt the
+ * thread to stop, or use SpeedControllerGroup.startHealthMonitor.
+ */
+public class GroupHealthMonitor extends PeriodicThread {
+
+	private final SpeedControllerGroup group;
+	private final int members;
+
+	private volatile PDPSampler pdp = null;
+	private final int[] channels;
+	private volatile double tolerance = 0.05;
+	private volatile double loadOutput = 0.3;
+	private volatile double minCurrent = 2;
+	private volatile int persistence = 3;
+
+	private final double[] outputs;
+	private final double[] sorted;
+	private final boolean[] inverted;
+	private final int[] divergentSamples; //Flagged samples in a row
+	private final int[] noCurrentSamples;
+	private final long[] divergenceCount;
+	private final long[] noCurrentCount;
+	private volatile long sampleCount = 0;
+	private volatile long unhealthyMembers = 0; //One bit per member
+
+	/**
+	 * Creates a new health monitor for a group.
+	 * @param group - The group to monitor.
+	 * @param periodMs - Milliseconds between checks. Health does not need to be checked quickly, so
+	 *                   this can be 100 or more.
+	 */
+	public GroupHealthMonitor(SpeedControllerGroup group, double periodMs) {
+		super("GroupHealthMonitor", periodMs);
+		this.group = group;
+		members = Math.min(group.getSpeedControllerCount(), 64);
+		channels = new int[members];
+		for (int i = 0; i < members; i++) {
+			channels[i] = -1;
+		}
+		outputs = new double[members];
+		sorted = new double[members];
+		inverted = new boolean[members];
+		divergentSamples = new int[members];
+		noCurrentSamples = new int[members];
+		divergenceCount = new long[members];
+		noCurrentCount = new long[members];
+	}
+
+	/**
+	 * Sets where to read the current of each member from. The sampler is told to watch the channels,
+	 * and the channels given before are unwatched.
+	 * @param pdp - The sampler to read currents from, which must be started separately.
+	 * @param channels - The PDP channel of each member, in the order they were given to the group, or -1
+	 *                   for a member that is not on a known channel.
+	 */
+	public void setCurrentChannels(PDPSampler pdp, int... channels) {
+		if (channels.length != members) {
+			System.err.println("The group has " + members + " members but " + channels.length
+					+ " PDP channels were given");
+			return;
+		}
+		PDPSampler previous = this.pdp;
+		this.pdp = null;
+		for (int i = 0; i < members; i++) {
+			if (previous != null && this.channels[i] >= 0) {
+				previous.unwatch(this.channels[i]);
+			}
+			this.channels[i] = channels[i];
+			if (channels[i] >= 0) {
+				pdp.watch(channels[i]);
+			}
+		}
+		this.pdp = pdp;
+	}
+
+	/**
+	 * Sets how far a member's output may be from the rest of the group before it is flagged.
+	 * @param tolerance - The largest difference in output allowed (default 0.05)
+	 */
+	public void setTolerance(double tolerance) {
+		this.tolerance = tolerance;
+	}
+
+	/**
+	 * Sets when a member is expected to draw current.
+	 * @param loadOutput - The output at or above which a member should draw current (default 0.3)
+	 * @param minCurrent - The least current in amps a member should draw at that output (default 2)
+	 */
+	public void setCurrentThreshold(double loadOutput, double minCurrent) {
+		this.loadOutput = loadOutput;
+		this.minCurrent = minCurrent;
+	}
+
+	/**
+	 * Sets how many samples in a row a member has to be flagged for before it is reported as unhealthy.
+	 * @param samples - The number of samples (default 3)
+	 */
+	public void setPersistence(int samples) {
+		persistence = Math.max(samples, 1);
+	}
+
+	/**
+	 * Checks if a member is working as far as the monitor can tell.
+	 * @param member - The index of the member, in the order they were given to the group.
+	 * @return false if the member has been flagged for the persistence number of samples in a row.
+	 */
+	public boolean isHealthy(int member) {
+		return (unhealthyMembers & (1L << member)) == 0;
+	}
+
+	/**
+	 * Checks if every member is working as far as the monitor can tell.
+	 * @return true if no member is unhealthy.
+	 */
+	public boolean isHealthy() {
+		return unhealthyMembers == 0;
+	}
+
+	/**
+	 * Gets the number of times the group has been checked.
+	 * @return the sample count.
+	 */
+	public long getSampleCount() {
+		return sampleCount;
+	}
+
+	/**
+	 * Gets the number of samples in which a member diverged from the group.
+	 * @param member - The index of the member, in the order they were given to the group.
+	 * @return the divergent sample count.
+	 */
+	public long getDivergenceCount(int member) {
+		return divergenceCount[member];
+	}
+
+	/**
+	 * Gets the number of samples in which a member drew no current under load.
+	 * @param member - The index of the member, in the order they were given to the group.
+	 * @return the no current sample count.
+	 */
+	public long getNoCurrentCount(int member) {
+		return noCurrentCount[member];
+	}
+
+	/**
+	 * Sets all counters back to 0 and marks every member healthy.
+	 */
+	public void resetCounters() {
+		for (int i = 0; i < members; i++) {
+			divergenceCount[i] = 0;
+			noCurrentCount[i] = 0;
+		}
+		unhealthyMembers = 0;
+	}
+
+	@Override
+	protected void periodic(long nowNanos) {
+		if (members == 0) {
+			return;
+		}
+		int invertedCount = 0;
+		for (int i = 0; i < members; i++) {
+			SpeedController controller = group.getSpeedController(i);
+			//A follower's own output reads back as its leader's ID on some hardware
+			outputs[i] = i > 0 && group.isFollowing(i) ? outputs[0] : controller.get();
+			sorted[i] = outputs[i];
+			inverted[i] = controller.getInverted();
+			if (inverted[i]) {
+				invertedCount++;
+			}
+		}
+		double median = median(sorted);
+		boolean majorityInverted = invertedCount * 2 > members;
+
+		PDPSampler pdp = this.pdp;
+		long unhealthy = unhealthyMembers;
+		for (int i = 0; i < members; i++) {
+			boolean divergent = Math.abs(outputs[i] - median) > tolerance
+					|| inverted[i] != majorityInverted;
+			boolean noCurrent = false;
+			if (pdp != null && channels[i] >= 0 && Math.abs(outputs[i]) >= loadOutput) {
+				double current = pdp.getCurrent(channels[i]);
+				noCurrent = !Double.isNaN(current) && current < minCurrent;
+			}
+
+			divergentSamples[i] = divergent ? divergentSamples[i] + 1 : 0;
+			noCurrentSamples[i] = noCurrent ? noCurrentSamples[i] + 1 : 0;
+			if (divergent) {
+				divergenceCount[i]++;
+			}
+			if (noCurrent) {
+				noCurrentCount[i]++;
+			}
+			if (divergentSamples[i] >= persistence || noCurrentSamples[i] >= persistence) {
+				unhealthy |= 1L << i;
+			} else if (divergentSamples[i] == 0 && noCurrentSamples[i] == 0) {
+				unhealthy &= ~(1L << i);
+			}
+		}
+		unhealthyMembers = unhealthy;
+		sampleCount++;
+	}
+
+	/**
+	 * Sorts the values in place and gets their median.
+	 */
+	private static double median(double[] values) {
+		for (int i = 1; i < values.length; i++) {
+			double value = values[i];
+			int j = i - 1;
+			while (j >= 0 && values[j] > value) {
+				values[j + 1] = values[j];
+				j--;
+			}
+			values[j + 1] = value;
+		}
+		int middle = values.length / 2;
+		if (values.length % 2 == 0) {
+			return (values[middle - 1] + values[middle]) / 2.0;
+		}
+		return values[middle];
+	}
+}
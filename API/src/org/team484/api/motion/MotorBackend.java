@@ -0,0 +1,137 @@
+package org.team484.api.motion;
+
+import com.ctre.CANTalon;
+
+import edu.wpi.first.wpilibj.SpeedController;
+
+/**
+ * MotorBackend is a SpeedController that can also report and change how it is controlled. Drive
+ * classes use it instead of casting to specific motor controller classes, so the same drive code
+ * works with PWM controllers, CAN controllers and simulated controllers mixed together. Features
+ * that only some hardware has are checked with the supports methods before they are used.
+ * <p>
+ * Use MotorBackend.of to wrap an existing SpeedController in the right backend. Wrapping does not
+ * change the hardware, so call setControlMode before relying on the control mode.
+ */
+public interface MotorBackend extends SpeedController {
+
+	/**
+	 * The ways a motor backend can interpret the value given to set.
+	 */
+	enum ControlMode {
+		/**
+		 * The value is a fraction of the battery voltage (-1 to 1)
+		 */
+		PERCENT,
+
+		/**
+		 * The value is a voltage to apply regardless of the battery voltage
+		 */
+		VOLTAGE,
+
+		/**
+		 * The value is a velocity that the controller holds with its own closed loop
+		 */
+		VELOCITY
+	}
+
+	/**
+	 * Checks if this backend can be put in VOLTAGE mode.
+	 * @return true if voltage mode is supported.
+	 */
+	boolean supportsVoltageMode();
+
+	/**
+	 * Checks if this backend can be put in VELOCITY mode.
+	 * @return true if velocity mode is supported.
+	 */
+	boolean supportsVelocityMode();
+
+	/**
+	 * Checks if this backend can limit how quickly its output changes on its own.
+	 * @return true if setRampRate has an effect.
+	 */
+	boolean supportsRampRate();
+
+	/**
+	 * Checks if this backend can hold outputs and send them all at once when flush is called.
+	 * @return true if setBatched has an effect.
+	 */
+	boolean supportsBatchedUpdate();
+
+	/**
+	 * Checks if this backend can copy the output of another backend in hardware.
+	 * @return true if follow can succeed for a leader of the same kind.
+	 */
+	boolean supportsFollowing();
+
+	/**
+	 * Changes how the value given to set is interpreted. Changing to the mode the backend is already
+	 * in does nothing.
+	 * @param mode - The mode to change to.
+	 * @return true if the backend is now in the given mode, false if the mode is not supported.
+	 */
+	boolean setControlMode(ControlMode mode);
+
+	/**
+	 * Gets how the value given to set is currently interpreted.
+	 * @return the current control mode.
+	 */
+	ControlMode getControlMode();
+
+	/**
+	 * Sets how quickly the output of the controller may change. Does nothing if ramp rates are not
+	 * supported.
+	 * @param voltsPerSecond - The maximum change in output voltage per second. 0 disables the ramp.
+	 */
+	void setRampRate(double voltsPerSecond);
+
+	/**
+	 * Sets whether values given to set are held until flush is called. Does nothing if batched
+	 * updates are not supported, in which case every set is sent right away.
+	 * @param batched - True to hold values until flush is called.
+	 */
+	void setBatched(boolean batched);
+
+	/**
+	 * Sends any output that is being held because of batching to the hardware.
+	 */
+	void flush();
+
+	/**
+	 * Makes this backend copy the output of a leader in hardware, so it no longer needs to be set.
+	 * Following only works between backends of the same kind of hardware. Setting or changing the
+	 * control mode of a following backend stops it following.
+	 * @param leader - The backend to follow, or null to stop following and go back to PERCENT mode.
+	 * @return true if the backend is now following the leader (or has stopped following if the
+	 *         leader is null), false if it could not follow the leader.
+	 */
+	boolean follow(MotorBackend leader);
+
+	/**
+	 * Checks if this backend is copying the output of a leader.
+	 * @return true if the backend is following.
+	 */
+	boolean isFollowing();
+
+	/**
+	 * Frees the hardware resources used by this backend.
+	 */
+	void free();
+
+	/**
+	 * Wraps a speed controller in the motor backend that matches its hardware. If the speed
+	 * controller is already a motor backend, it is returned as is.
+	 * @param controller - The speed controller to wrap.
+	 * @return the motor backend for the speed controller.
+	 */
+	static MotorBackend of(SpeedController controller) {
+		if (controller instanceof MotorBackend) {
+			return (MotorBackend) controller;
+		}
+		if (controller instanceof CANTalon) {
+			return new CANTalonMotorBackend((CANTalon) controller);
+		}
+		return new PWMMotorBackend(controller);
+	}
+}
@@ -0,0 +1,128 @@
+package org.team484.api.motion;
+
+import edu.wpi.first.wpilibj.PWM;
+import edu.wpi.first.wpilibj.SpeedController;
+
+/**
+ * Motor backend for PWM speed controllers (and any other speed controller without a dedicated
+ * backend). PWM controllers only support PERCENT mode, cannot follow, and every set is sent right away.
+ */
+public class PWMMotorBackend implements MotorBackend {
+
+	private final SpeedController controller;
+
+	/**
+	 * Creates a new backend for a PWM speed controller.
+	 * @param controller - The speed controller to wrap.
+	 */
+	public PWMMotorBackend(SpeedController controller) {
+		this.controller = controller;
+	}
+
+	/**
+	 * Gets the speed controller this backend wraps.
+	 * @return the speed controller.
+	 */
+	public SpeedController getController() {
+		return controller;
+	}
+
+	@Override
+	public void set(double speed) {
+		controller.set(speed);
+	}
+
+	@Override
+	public double get() {
+		return controller.get();
+	}
+
+	@Override
+	public void pidWrite(double output) {
+		controller.pidWrite(output);
+	}
+
+	@Override
+	public void setInverted(boolean isInverted) {
+		controller.setInverted(isInverted);
+	}
+
+	@Override
+	public boolean getInverted() {
+		return controller.getInverted();
+	}
+
+	@Override
+	public void disable() {
+		controller.disable();
+	}
+
+	@Override
+	public void stopMotor() {
+		controller.stopMotor();
+	}
+
+	@Override
+	public boolean supportsVoltageMode() {
+		return false;
+	}
+
+	@Override
+	public boolean supportsVelocityMode() {
+		return false;
+	}
+
+	@Override
+	public boolean supportsRampRate() {
+		return false;
+	}
+
+	@Override
+	public boolean supportsBatchedUpdate() {
+		return false;
+	}
+
+	@Override
+	public boolean supportsFollowing() {
+		return false;
+	}
+
+	@Override
+	public boolean setControlMode(ControlMode mode) {
+		return mode == ControlMode.PERCENT;
+	}
+
+	@Override
+	public ControlMode getControlMode() {
+		return ControlMode.PERCENT;
+	}
+
+	@Override
+	public void setRampRate(double voltsPerSecond) {
+	}
+
+	@Override
+	public void setBatched(boolean batched) {
+	}
+
+	@Override
+	public void flush() {
+	}
+
+	@Override
+	public boolean follow(MotorBackend leader) {
+		return leader == null;
+	}
+
+	@Override
+	public boolean isFollowing() {
+		return false;
+	}
+
+	@Override
+	public void free() {
+		if (controller instanceof PWM) {
+			((PWM) controller).free();
+		}
+	}
+}
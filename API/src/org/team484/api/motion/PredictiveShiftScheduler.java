@@ -0,0 +1,151 @@
+package org.team484.api.motion;
+
+/**
+ * A shift scheduler that shifts on motor RPM instead of robot speed. It estimates how quickly the
+ * motors are speeding up or slowing down, predicts the motor RPM in each gear at the moment a shift
+ * started now would finish, and compares the prediction to a powerband curve that depends on
+ * throttle: at full throttle it holds low gear until the motors are near the top of their powerband,
+ * and at light throttle it shifts up early.
+ * <p>
+ * Instead of a cooldown, it only shifts when the predicted RPM in the new gear is clear of the
+ * threshold for shifting back by a hysteresis margin, so it never shifts into a gear it would
+ * immediately leave. It needs the lowGearRPM and highGearRPM inputs, which ShifterDrive fills in from
+ * ShifterEncoder.getRPM. When the encoders estimate acceleration, that estimate is used in place of
+ * the scheduler's own.
+ */
+public class PredictiveShiftScheduler implements ShiftScheduler {
+
+	/**
+	 * A powerband curve, replaced as a whole so the shifting thread never sees half of a new curve
+	 */
+	private static class Powerband {
+		final double[] throttlePoints;
+		final double[] upshiftRPM;
+		final double[] downshiftRPM;
+
+		Powerband(double[] throttlePoints, double[] upshiftRPM, double[] downshiftRPM) {
+			this.throttlePoints = throttlePoints;
+			this.upshiftRPM = upshiftRPM;
+			this.downshiftRPM = downshiftRPM;
+		}
+	}
+
+	private volatile Powerband powerband = new Powerband(new double[] {0, 1}, new double[] {3000, 4500},
+			new double[] {600, 1000});
+	private volatile double hysteresisRPM = 150;
+	private volatile double shiftLatency = 0.1;
+	private volatile double accelerationTimeConstant = 0.1;
+
+	private double lastLowGearRPM = Double.NaN;
+	private long lastTime = 0;
+	private volatile double lowGearAcceleration = 0; //Low gear RPM per second
+
+	/**
+	 * Sets the powerband curve. The upshift and downshift RPMs are interpolated between the throttle
+	 * points, and held at the ends beyond them.
+	 * @param throttlePoints - Throttle values from 0 to 1 in increasing order.
+	 * @param upshiftRPM - The low gear motor RPM to shift up at for each throttle value.
+	 * @param downshiftRPM - The high gear motor RPM to shift down at for each throttle value.
+	 */
+	public void setPowerband(double[] throttlePoints, double[] upshiftRPM, double[] downshiftRPM) {
+		if (throttlePoints.length == 0 || throttlePoints.length != upshiftRPM.length
+				|| throttlePoints.length != downshiftRPM.length) {
+			System.err.println("Powerband curve needs the same number of throttle, upshift and downshift points");
+			return;
+		}
+		powerband = new Powerband(throttlePoints.clone(), upshiftRPM.clone(), downshiftRPM.clone());
+	}
+
+	/**
+	 * Sets how far past the threshold for shifting back the predicted RPM in the new gear must be for a
+	 * shift to happen.
+	 * @param rpm - The hysteresis in motor RPM (default 150)
+	 */
+	public void setHysteresis(double rpm) {
+		hysteresisRPM = rpm;
+	}
+
+	/**
+	 * Sets how far ahead to predict the motor RPM, which should be the time from commanding a shift to
+	 * the gearbox being in the new gear.
+	 * @param seconds - The shift latency (default 0.1)
+	 */
+	public void setShiftLatency(double seconds) {
+		shiftLatency = seconds;
+	}
+
+	/**
+	 * Sets how much the acceleration estimate is smoothed.
+	 * @param seconds - The time constant of the smoothing filter (default 0.1)
+	 */
+	public void setAccelerationTimeConstant(double seconds) {
+		accelerationTimeConstant = seconds;
+	}
+
+	/**
+	 * Gets the latest acceleration estimate.
+	 * @return the rate of change of the low gear motor RPM in RPM per second.
+	 */
+	public double getLowGearAcceleration() {
+		return lowGearAcceleration;
+	}
+
+	@Override
+	public boolean usesCooldown() {
+		return false;
+	}
+
+	@Override
+	public boolean selectLowGear(ShiftInputs inputs) {
+		double lowRPM = inputs.lowGearRPM;
+		double highRPM = inputs.highGearRPM;
+		if (Double.isNaN(lowRPM) || Double.isNaN(highRPM)) {
+			return inputs.lowGear;
+		}
+		updateAcceleration(lowRPM, inputs.nowNanos);
+		double acceleration = Double.isNaN(inputs.lowGearAcceleration) ? lowGearAcceleration
+				: inputs.lowGearAcceleration;
+
+		//Both gears see the same change in wheel speed, scaled by their ratios
+		double ratio = lowRPM > 0 ? highRPM / lowRPM : 0;
+		double predictedLow = Math.max(lowRPM + acceleration * shiftLatency, 0);
+		double predictedHigh = ratio > 0 ? predictedLow * ratio : highRPM;
+
+		double throttle = Math.max(Math.min(Math.abs(inputs.throttle), 1), 0);
+		Powerband powerband = this.powerband;
+		double upshift = interpolate(powerband.throttlePoints, powerband.upshiftRPM, throttle);
+		double downshift = interpolate(powerband.throttlePoints, powerband.downshiftRPM, throttle);
+
+		if (inputs.lowGear) {
+			return !(predictedLow > upshift && predictedHigh > downshift + hysteresisRPM);
+		} else {
+			return predictedHigh < downshift && predictedLow < upshift - hysteresisRPM;
+		}
+	}
+
+	private void updateAcceleration(double lowRPM, long nowNanos) {
+		if (!Double.isNaN(lastLowGearRPM)) {
+			double dt = (nowNanos - lastTime) / 1e9;
+			if (dt > 0) {
+				double measured = (lowRPM - lastLowGearRPM) / dt;
+				double alpha = dt / (accelerationTimeConstant + dt);
+				lowGearAcceleration += alpha * (measured - lowGearAcceleration);
+			}
+		}
+		lastLowGearRPM = lowRPM;
+		lastTime = nowNanos;
+	}
+
+	private static double interpolate(double[] points, double[] values, double throttle) {
+		if (throttle <= points[0]) {
+			return values[0];
+		}
+		for (int i = 1; i < points.length; i++) {
+			if (throttle <= points[i]) {
+				double t = (throttle - points[i - 1]) / (points[i] - points[i - 1]);
+				return values[i - 1] + t * (values[i] - values[i - 1]);
+			}
+		}
+		return values[values.length - 1];
+	}
+}
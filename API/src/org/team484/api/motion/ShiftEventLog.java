@@ -0,0 +1,92 @@
+package org.team484.api.motion;
+
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A fixed size record of the most recent shifts. Every entry is allocated when the log is created, so
+ * recording a shift never allocates; once the log is full each shift replaces the oldest one. Each
+ * entry holds the clock time of the shift, the gear shifted into (0 for the lowest gear), and the
+ * speed the robot was going.
+ * <p>
+ * Only one thread may call record. Any thread may call the other methods; copy uses a sequence lock
+ * so it never returns a shift that was half written. The entries are kept in atomic arrays (the speeds
+ * as their raw long bits) so their reads and writes cannot be reordered around the sequence counter.
+ */
+public class ShiftEventLog {
+
+	private final AtomicLongArray times;
+	private final AtomicIntegerArray gears;
+	private final AtomicLongArray speeds; //Double.doubleToRawLongBits of each speed
+	private volatile int sequence = 0;
+	private volatile long total = 0;
+
+	/**
+	 * Creates an empty log.
+	 * @param capacity - The number of shifts to keep.
+	 */
+	public ShiftEventLog(int capacity) {
+		times = new AtomicLongArray(Math.max(capacity, 1));
+		gears = new AtomicIntegerArray(times.length());
+		speeds = new AtomicLongArray(times.length());
+	}
+
+	/**
+	 * Records a shift. Must only be called from a single thread.
+	 * @param nanos - The clock time of the shift.
+	 * @param gear - The gear shifted into, from 0 for the lowest.
+	 * @param speed - The speed of the robot when it shifted.
+	 */
+	public void record(long nanos, int gear, double speed) {
+		int index = (int) (total % times.length());
+		sequence++;
+		times.set(index, nanos);
+		gears.set(index, gear);
+		speeds.set(index, Double.doubleToRawLongBits(speed));
+		total++;
+		sequence++;
+	}
+
+	/**
+	 * Gets the number of shifts recorded, including ones that have since been replaced.
+	 * @return the shift count.
+	 */
+	public long getTotal() {
+		return total;
+	}
+
+	/**
+	 * Gets the number of shifts the log can hold.
+	 * @return the capacity.
+	 */
+	public int capacity() {
+		return times.length();
+	}
+
+	/**
+	 * Copies the most recent shifts, newest first. As many shifts are copied as are in the log and fit
+	 * in the smallest of the arrays.
+	 * @param times - The array to copy the clock times of the shifts to.
+	 * @param gears - The array to copy the gears to, from 0 for the lowest.
+	 * @param speeds - The array to copy the speeds to.
+	 * @return the number of shifts copied.
+	 */
+	public int copy(long[] times, int[] gears, double[] speeds) {
+		int limit = Math.min(Math.min(times.length, gears.length), speeds.length);
+		int seq;
+		int count;
+		do {
+			seq = sequence;
+			long total = this.total;
+			int capacity = this.times.length();
+			count = (int) Math.min(Math.min(total, capacity), limit);
+			for (int age = 0; age < count; age++) {
+				int index = (int) ((total - 1 - age) % capacity);
+				times[age] = this.times.get(index);
+				gears[age] = this.gears.get(index);
+				speeds[age] = Double.longBitsToDouble(this.speeds.get(index));
+			}
+		} while ((seq & 1) != 0 || seq != sequence);
+		return count;
+	}
+}
@@ -0,0 +1,57 @@
+package org.team484.api.motion;
+
+/**
+ * The measurements a ShiftScheduler decides the gear from. ShifterDrive fills in one ShiftInputs
+ * object every cycle and reuses it, so a scheduler should copy any value it needs to keep.
+ */
+public class ShiftInputs {
+
+	/**
+	 * The speed of the robot in encoder units per second, the larger of the two sides. Always positive.
+	 */
+	public double speed;
+
+	/**
+	 * The RPM the drive motors would turn at the current speed if the gearboxes were in low gear, or NaN
+	 * if it is not known
+	 */
+	public double lowGearRPM = Double.NaN;
+
+	/**
+	 * The RPM the drive motors would turn at the current speed if the gearboxes were in high gear, or
+	 * NaN if it is not known
+	 */
+	public double highGearRPM = Double.NaN;
+
+	/**
+	 * How quickly lowGearRPM is changing in RPM per second, or NaN if the encoders are not estimating
+	 * acceleration
+	 */
+	public double lowGearAcceleration = Double.NaN;
+
+	/**
+	 * The current drawn by the motors of the gearbox drawing the most in amps, or NaN if current sensing
+	 * is not enabled
+	 */
+	public double current = Double.NaN;
+
+	/**
+	 * The battery voltage, or NaN if current sensing is not enabled
+	 */
+	public double batteryVoltage = Double.NaN;
+
+	/**
+	 * How hard the driver is commanding the robot, from 0 to 1
+	 */
+	public double throttle;
+
+	/**
+	 * True if low gear was the last gear commanded
+	 */
+	public boolean lowGear;
+
+	/**
+	 * The time of the measurements in nanoseconds
+	 */
+	public long nowNanos;
+}
@@ -0,0 +1,17 @@
+package org.team484.api.motion;
+
+/**
+ * A listener that is told when a ShifterSolenoid changes gear. Listeners are called on the thread that
+ * commanded the shift, while the shifter is locked, so they should return quickly.
+ */
+@FunctionalInterface
+public interface ShiftListener {
+
+	/**
+	 * Called after a shifter has been commanded into a different gear.
+	 * @param shifter - The shifter that shifted.
+	 * @param lowGear - True if it shifted into low gear, false for high gear.
+	 * @param nanos - The clock time the shift was commanded at.
+	 */
+	void shifted(ShifterSolenoid shifter, boolean lowGear, long nanos);
+}
@@ -0,0 +1,37 @@
+package org.team484.api.motion;
+
+/**
+ * Decides which gear a two speed drive should be in while ShifterDrive is in auto mode. It is called
+ * once per drive cycle from the thread driving the robot. Drives with a Transmission ask it through
+ * selectGear instead, which by default uses the shift speeds of the GearTable.
+ */
+public interface ShiftScheduler {
+
+	/**
+	 * Picks the gear for this cycle.
+	 * @param inputs - The current measurements.
+	 * @return true for low gear, false for high gear.
+	 */
+	boolean selectLowGear(ShiftInputs inputs);
+
+	/**
+	 * Picks the gear for this cycle for a gearbox with any number of speeds. The default picks the gear
+	 * from the table's shift speeds, so only schedulers that add to that need to override it.
+	 * @param inputs - The current measurements.
+	 * @param table - The gears of the gearbox.
+	 * @param gear - The gear last commanded.
+	 * @return the gear to be in, from 0 for the lowest.
+	 */
+	default int selectGear(ShiftInputs inputs, GearTable table, int gear) {
+		return table.selectGear(gear, inputs.speed);
+	}
+
+	/**
+	 * Used to find out if the shifter should hold each gear for the shifting cooldown. Schedulers that
+	 * prevent hunting themselves return false so a needed shift is never delayed.
+	 * @return true to apply the shifting cooldown.
+	 */
+	default boolean usesCooldown() {
+		return true;
+	}
+}
@@ -1,9 +1,18 @@
 package org.team484.api.motion;
 
 import org.team484.api.sensor.ShifterEncoder;
+import org.team484.api.util.Clock;
+import org.team484.api.util.CommandMailbox;
+import org.team484.api.util.LatencyTracer;
+import org.team484.api.util.LatencyTracer.Stage;
+import org.team484.api.util.PDPSampler;
+import org.team484.api.util.PeriodicThread;
+import org.team484.api.util.PowerGovernor;
 
+import edu.wpi.first.wpilibj.PowerDistributionPanel;
 import edu.wpi.first.wpilibj.SpeedController;
 import edu.wpi.first.wpilibj.drive.DifferentialDrive;
+import edu.wpi.first.wpilibj.interfaces.Gyro;
 
 /**
  * The ShifterDrive class is an alternative to RobotDrive that is designed to be used with a pair of
@@ -13,6 +22,10 @@ import edu.wpi.first.wpilibj.drive.DifferentialDrive;
  * <p>
  * For this class, high gear is the gear that moves faster but has less pushing power, and low gear is the
  * gear that moves more slowly but has more pushing power.
+ * <p>
+ * Gearboxes with more than two speeds are driven by giving a Transmission for each side to
+ * setTransmissions. The gear is then picked from the transmissions' GearTable, with HIGH meaning the
+ * top gear and LOW meaning the lowest gear.
  */
 public class ShifterDrive {
 	
@@ -49,19 +62,32 @@ public class ShifterDrive {
 	private DifferentialDrive drive;
 	private SpeedController leftSC, rightSC;
 	
-	private ShifterMode shifterMode = ShifterMode.AUTO;
-	private boolean isInLowGear = true;
+	private volatile ShifterMode shifterMode = ShifterMode.AUTO;
 	
 	private ShifterEncoder leftShifterEncoder;
 	private ShifterEncoder rightShifterEncoder;
+	private volatile Transmission leftTransmission = null;
+	private volatile Transmission rightTransmission = null;
+	private volatile PDPSampler pdpSampler = null;
+	private volatile int[] leftChannels = new int[0];
+	private volatile int[] rightChannels = new int[0];
+	private boolean ownsPDPSampler = false;
+	private volatile DifferentialOdometry odometry = null;
 	
-	//The robot shifts to high gear when its speed >shiftingSpeed + deadband
-	//The robot shifts to low gear when its speed <shiftingSpeed - deadband
-	private double shiftingSpeed = 70;
-	private double shiftingDeadband = 5;
+	private final AutoShifter autoShifter = new AutoShifter();
+	private final ShiftInputs shiftInputs = new ShiftInputs();
+	private volatile double throttle = 0; //How hard the last drive command pushed, from 0 to 1
+	private volatile Clock clock = Clock.SYSTEM;
+	private volatile PowerGovernor powerGovernor = null;
+	private volatile double maxOutput = 1;
+	private double appliedMaxOutput = 1; //The max output last given to the DifferentialDrive
 	
-	private long lastShiftTime = 0; //The last time (UNIX time) a shift occured
-	private int shiftingWaitTime = 500; //A cooldown time (in ms)
+	private final CommandMailbox<ShifterDriveCommand> mailbox = new CommandMailbox<>();
+	private volatile long lastCommandLatency = 0;
+	private PeriodicThread controlLoop = null;
+	private volatile PeriodicThread shiftController = null;
+	private final ShiftEventLog shiftEvents = new ShiftEventLog(64);
+	private volatile LatencyTracer tracer = null;
 	
 	/**
 	 * Creates a new ShifterDrive object using a Speed Controller Group for each side of the robot as well as
@@ -85,7 +111,7 @@ public class ShifterDrive {
 	 * @param speed - speed in units per seconds.
 	 */
 	public void setShiftingSpeed(double speed) {
-		shiftingSpeed = speed;
+		autoShifter.setShiftingSpeed(speed);
 	}
 	
 	/**
@@ -95,7 +121,7 @@ public class ShifterDrive {
 	 * @param deadband - the deadband in the shifter
 	 */
 	public void setShiftingDeadband(double deadband) {
-		shiftingDeadband = deadband;
+		autoShifter.setShiftingDeadband(deadband);
 	}
 	
 	/**
@@ -104,7 +130,34 @@ public class ShifterDrive {
 	 * @param ms - Cooldown time in milliseconds (default 500)
 	 */
 	public void setShiftingCooldown(int ms) {
-		shiftingWaitTime = ms;
+		autoShifter.setShiftingCooldown(ms);
+	}
+	
+	/**
+	 * Sets the clock the shifting cooldown is timed with and drive commands are timestamped with. This
+	 * is only needed to run the drive against a controlled clock, such as when replaying recorded
+	 * inputs, in which case commands given to post and any latency tracer must use the same clock.
+	 * @param clock - The clock to use (default Clock.SYSTEM)
+	 */
+	public void setClock(Clock clock) {
+		this.clock = clock;
+	}
+	
+	/**
+	 * Sets how the gear is picked in auto mode. The default shifts on speed with setShiftingSpeed and
+	 * setShiftingDeadband. A PredictiveShiftScheduler shifts on motor RPM from the ShifterEncoders.
+	 * @param scheduler - The scheduler to use, or null for the default.
+	 */
+	public void setShiftScheduler(ShiftScheduler scheduler) {
+		autoShifter.setScheduler(scheduler);
+	}
+	
+	/**
+	 * Gets the gear selection logic used in auto mode, which also tracks the gear last commanded.
+	 * @return the auto shifter.
+	 */
+	public AutoShifter getAutoShifter() {
+		return autoShifter;
 	}
 	
 	/**
@@ -130,10 +183,31 @@ public class ShifterDrive {
 	 * Configure the scaling factor for using RobotDrive with motor controllers in a mode other than
 	 * PercentVbus. (For example votage compensation mode on the TalonSRX controllers)
 	 *
+	 * The power governor's scale, if there is one, is multiplied in on top of this. Takes effect on the
+	 * next drive command.
+	 *
 	 * @param maxOutput Multiplied with the output percentage computed by the drive functions.
 	 */
 	public void setMaxOutput(double maxOutput) {
-		drive.setMaxOutput(maxOutput);
+		this.maxOutput = maxOutput;
+	}
+	
+	/**
+	 * Sets a governor to scale the drive outputs by as the battery sags. The scale is read every time a
+	 * drive command is applied. If the SpeedControllerGroups of this drive are given the same governor,
+	 * the outputs will be scaled twice, so give it to one or the other.
+	 * @param governor - The governor to read the scale from, or null to always use full output.
+	 */
+	public void setPowerGovernor(PowerGovernor governor) {
+		powerGovernor = governor;
+	}
+	
+	/**
+	 * Gets the governor set with setPowerGovernor.
+	 * @return the power governor, or null if there is none.
+	 */
+	public PowerGovernor getPowerGovernor() {
+		return powerGovernor;
 	}
 	
 	/**
@@ -146,6 +220,20 @@ public class ShifterDrive {
 	public void setShifterMode(ShifterMode mode) {
 		this.shifterMode = mode;
 	}
+
+	/**
+	 * Sets which "shifting mode" the drivetrain should be in, optionally without waiting for the
+	 * shifting cooldown. Skipping the cooldown is meant for shifts planned ahead of time, such as the
+	 * gear changes of a DifferentialTrajectory, which should happen exactly where they were planned.
+	 * @param mode - The mode to switch to.
+	 * @param skipCooldown - True to shift on the next drive cycle even if the cooldown has not ended.
+	 */
+	public void setShifterMode(ShifterMode mode, boolean skipCooldown) {
+		this.shifterMode = mode;
+		if (skipCooldown) {
+			autoShifter.skipNextCooldown();
+		}
+	}
 	
 	/**
 	 * Gets which "shifting mode" the drivetrain is currently running in. The three possible modes are low,
@@ -166,8 +254,7 @@ public class ShifterDrive {
 	 * @param rotation - The rate at which to rotate clockwise/counterclockwise. (from 1 to -1)
 	 */
 	public void arcadeDrive(double speed, double rotation) {
-		drive.arcadeDrive(speed, rotation);
-		checkShifterGear();
+		applyDrive(ShifterDriveCommand.Type.ARCADE, speed, rotation, clock.nanoTime());
 	}
 	
 	/**
@@ -177,8 +264,7 @@ public class ShifterDrive {
 	 * @param rightSpeed - Speed of the right wheels. (from 1 to -1)
 	 */
 	public void tankDrive(double leftSpeed, double rightSpeed) {
-		drive.tankDrive(leftSpeed, rightSpeed);
-		checkShifterGear();
+		applyDrive(ShifterDriveCommand.Type.TANK, leftSpeed, rightSpeed, clock.nanoTime());
 	}
 	
 	/**
@@ -187,87 +273,445 @@ public class ShifterDrive {
 	 * @param rotation - The rate at which to rotate clockwise/counterclockwise. (from 1 to -1)
 	 */
 	public void linearDrive(double speed, double rotation) {
-		drive.arcadeDrive(speed, rotation, false);
-		checkShifterGear();
+		applyDrive(ShifterDriveCommand.Type.LINEAR, speed, rotation, clock.nanoTime());
+	}
+	
+	/**
+	 * Drives like tank drive but without the squared inputs. This is useful for following trajectories,
+	 * where each side is given the output for its planned velocity.
+	 * @param leftSpeed - Speed of the left wheels. (from 1 to -1)
+	 * @param rightSpeed - Speed of the right wheels. (from 1 to -1)
+	 */
+	public void linearTankDrive(double leftSpeed, double rightSpeed) {
+		applyDrive(ShifterDriveCommand.Type.LINEAR_TANK, leftSpeed, rightSpeed, clock.nanoTime());
 	}
 	
 	/**
-	 * Checks the current ShifterMode to determine which shifter method to use.
+	 * Writes the motor outputs for a drive command and then checks if the robot should shift.
+	 * @param type - Which drive method to apply the command with.
+	 * @param first - The speed for arcade and linear drive, or the left speed for tank and linear tank
+	 *                drive.
+	 * @param second - The rotation for arcade and linear drive, or the right speed for tank and linear
+	 *                 tank drive.
+	 * @param commandTimestamp - The clock time when the command was created.
 	 */
-	private void checkShifterGear() {
-		switch(shifterMode) {
-		case HIGH:
-			setShifterHigh();
+	private void applyDrive(ShifterDriveCommand.Type type, double first, double second, long commandTimestamp) {
+		PowerGovernor governor = powerGovernor;
+		double output = governor == null ? maxOutput : maxOutput * governor.getScale();
+		if (output != appliedMaxOutput) {
+			appliedMaxOutput = output;
+			drive.setMaxOutput(output);
+		}
+		switch (type) {
+		case ARCADE:
+			drive.arcadeDrive(first, second);
+			throttle = Math.abs(first);
 			break;
-		case LOW:
-			setShifterLow();
+		case TANK:
+			drive.tankDrive(first, second);
+			throttle = Math.max(Math.abs(first), Math.abs(second));
 			break;
-		case AUTO:
-			autoShift();
+		case LINEAR:
+			drive.arcadeDrive(first, second, false);
+			throttle = Math.abs(first);
+			break;
+		case LINEAR_TANK:
+			drive.tankDrive(first, second, false);
+			throttle = Math.max(Math.abs(first), Math.abs(second));
 			break;
 		default:
 			break;
 		}
+		throttle = Math.min(throttle, 1);
+		LatencyTracer tracer = this.tracer;
+		if (tracer != null) {
+			tracer.record(Stage.OUTPUTS_WRITTEN, commandTimestamp);
+		}
+		if (shiftController == null && checkShifterGear() && tracer != null) {
+			tracer.record(Stage.SHIFT_COMMANDED, commandTimestamp);
+		}
+	}
+	
+	/**
+	 * Sets the tracer used to record how long drive commands take to get through each stage. Drive
+	 * commands given with post are traced from when they were posted, and commands given with the
+	 * drive methods are traced from when the method was called.
+	 * @param tracer - The tracer to record to, or null to stop tracing.
+	 */
+	public void setLatencyTracer(LatencyTracer tracer) {
+		this.tracer = tracer;
 	}
 	
 	/**
-	 * Puts everything in high gear.
+	 * Posts a drive command to be applied by the next call to update. Unlike the drive methods, this
+	 * is safe to call from any thread, and if several commands are posted before update runs only the
+	 * latest is applied. When commands are posted, only the control loop should call the drive methods.
+	 * @param command - The command to apply.
 	 */
-	private void setShifterHigh() {
-		if (Math.abs(System.currentTimeMillis() - lastShiftTime) < shiftingWaitTime) {
+	public void post(ShifterDriveCommand command) {
+		mailbox.post(command);
+	}
+	
+	/**
+	 * Posts an arcade drive command to be applied by the next call to update.
+	 * @param speed - The speed to drive forward/backward. (from 1 to -1)
+	 * @param rotation - The rate at which to rotate clockwise/counterclockwise. (from 1 to -1)
+	 */
+	public void postArcadeDrive(double speed, double rotation) {
+		post(new ShifterDriveCommand(ShifterDriveCommand.Type.ARCADE, speed, rotation, clock.nanoTime()));
+	}
+	
+	/**
+	 * Posts a tank drive command to be applied by the next call to update.
+	 * @param leftSpeed - Speed of the left wheels. (from 1 to -1)
+	 * @param rightSpeed - Speed of the right wheels. (from 1 to -1)
+	 */
+	public void postTankDrive(double leftSpeed, double rightSpeed) {
+		post(new ShifterDriveCommand(ShifterDriveCommand.Type.TANK, leftSpeed, rightSpeed, clock.nanoTime()));
+	}
+	
+	/**
+	 * Posts a linear drive command to be applied by the next call to update.
+	 * @param speed - The speed to drive forward/backward. (from 1 to -1)
+	 * @param rotation - The rate at which to rotate clockwise/counterclockwise. (from 1 to -1)
+	 */
+	public void postLinearDrive(double speed, double rotation) {
+		post(new ShifterDriveCommand(ShifterDriveCommand.Type.LINEAR, speed, rotation, clock.nanoTime()));
+	}
+	
+	/**
+	 * Posts a linear tank drive command to be applied by the next call to update.
+	 * @param leftSpeed - Speed of the left wheels. (from 1 to -1)
+	 * @param rightSpeed - Speed of the right wheels. (from 1 to -1)
+	 */
+	public void postLinearTankDrive(double leftSpeed, double rightSpeed) {
+		post(new ShifterDriveCommand(ShifterDriveCommand.Type.LINEAR_TANK, leftSpeed, rightSpeed,
+				clock.nanoTime()));
+	}
+	
+	/**
+	 * Applies the latest posted drive command. If no command was posted since the last update, nothing
+	 * is written and the motor safety of the drive will stop the motors if commands stop coming. Should
+	 * be called every cycle from a single control thread, or use startControlLoop to run it in its own
+	 * thread.
+	 */
+	public void update() {
+		ShifterDriveCommand command = mailbox.take();
+		if (command == null) {
 			return;
 		}
-		lastShiftTime = System.currentTimeMillis();
-		leftShifterEncoder.getShifterSolenoid().shiftToHigh();
-		rightShifterEncoder.getShifterSolenoid().shiftToHigh();
-		isInLowGear = false;
+		LatencyTracer tracer = this.tracer;
+		if (tracer != null) {
+			tracer.record(Stage.COMMAND_ACCEPTED, command.timestamp);
+		}
+		applyDrive(command.type, command.first, command.second, command.timestamp);
+		lastCommandLatency = clock.nanoTime() - command.timestamp;
 	}
 	
 	/**
-	 * Puts everything in low gear.
+	 * Gets the time between the latest command being posted and its outputs being written.
+	 * @return the latency in nanoseconds.
 	 */
-	private void setShifterLow() {
-		if (Math.abs(System.currentTimeMillis() - lastShiftTime) < shiftingWaitTime) {
+	public long getLastCommandLatency() {
+		return lastCommandLatency;
+	}
+	
+	/**
+	 * Gets the mailbox posted commands go through, for its post and replaced counts.
+	 * @return the command mailbox.
+	 */
+	public CommandMailbox<ShifterDriveCommand> getCommandMailbox() {
+		return mailbox;
+	}
+	
+	/**
+	 * Starts a thread that calls update at a fixed rate. Drive commands should then only be given
+	 * with the post methods.
+	 * @param periodMs - Milliseconds between updates.
+	 */
+	public synchronized void startControlLoop(double periodMs) {
+		stopControlLoop();
+		controlLoop = new PeriodicThread("ShifterDrive", periodMs) {
+			@Override
+			protected void periodic(long nowNanos) {
+				update();
+			}
+		};
+		controlLoop.start();
+	}
+	
+	/**
+	 * Stops the thread started by startControlLoop.
+	 */
+	public synchronized void stopControlLoop() {
+		if (controlLoop != null) {
+			controlLoop.interrupt();
+			controlLoop = null;
+		}
+	}
+	
+	/**
+	 * Starts a thread that checks the gear at a fixed rate, separate from the drive commands. Without
+	 * it, the gear is only checked when a drive command is applied, so shifting stops if drive commands
+	 * stop and is only as regular as they are. While the thread runs, applying a drive command no longer
+	 * checks the gear.
+	 * @param periodMs - Milliseconds between gear checks.
+	 */
+	public synchronized void startShiftController(double periodMs) {
+		stopShiftController();
+		PeriodicThread thread = new PeriodicThread("ShiftController", periodMs) {
+			@Override
+			protected void periodic(long nowNanos) {
+				checkShifterGear();
+			}
+		};
+		shiftController = thread;
+		thread.start();
+	}
+	
+	/**
+	 * Stops the thread started by startShiftController. The gear goes back to being checked when drive
+	 * commands are applied.
+	 */
+	public synchronized void stopShiftController() {
+		PeriodicThread thread = shiftController;
+		shiftController = null;
+		if (thread != null) {
+			thread.interrupt();
+		}
+	}
+	
+	/**
+	 * Checks if low gear was the last gear commanded. Safe to call from any thread.
+	 * @return true if the gearboxes should be in low gear.
+	 */
+	public boolean isInLowGear() {
+		return autoShifter.isInLowGear();
+	}
+	
+	/**
+	 * Gets the gear last commanded. With a two speed gearbox, 0 is low gear and 1 is high gear.
+	 * @return the gear, from 0 for the lowest.
+	 */
+	public int getGear() {
+		return autoShifter.getGear();
+	}
+	
+	/**
+	 * Sets the transmissions of gearboxes with more than two speeds. Both transmissions should share the
+	 * same GearTable; the left one's table is used to pick the gear. The encoders are given the
+	 * transmissions so that they report the RPM of the gear each side is in.
+	 * @param left - The transmission of the left gearbox, or null to go back to the ShifterSolenoids.
+	 * @param right - The transmission of the right gearbox, or null to go back to the ShifterSolenoids.
+	 */
+	public synchronized void setTransmissions(Transmission left, Transmission right) {
+		if ((left == null) != (right == null)) {
+			System.err.println("ShifterDrive needs a transmission for both sides or neither");
 			return;
 		}
-		lastShiftTime = System.currentTimeMillis();
-		leftShifterEncoder.getShifterSolenoid().shiftToLow();
-		rightShifterEncoder.getShifterSolenoid().shiftToLow();
-		isInLowGear = true;
+		leftShifterEncoder.setTransmission(left);
+		rightShifterEncoder.setTransmission(right);
+		leftTransmission = left;
+		rightTransmission = right;
 	}
 	
 	/**
-	 * Automatically shifts between high and low gears based on motor RPM.
+	 * Starts sampling the currents of the gearbox motors and the battery voltage from the PDP on a
+	 * background thread, and passes them to the shift scheduler. The currents are only used by a
+	 * scheduler that looks at them, such as a CurrentAwareShiftScheduler.
+	 * @param pdp - The PDP the drive motors are wired to.
+	 * @param leftChannels - The PDP channels of the left gearbox motors.
+	 * @param rightChannels - The PDP channels of the right gearbox motors.
+	 * @param samplePeriodMs - Milliseconds between samples.
+	 * @return the sampler, which can be given more channels to watch for other users.
 	 */
-	private void autoShift() {
-		
-		double leftSpeed = Math.abs(leftShifterEncoder.getRate());
-		double rightSpeed = Math.abs(rightShifterEncoder.getRate());
-		
-		double speed;
-		if (leftSpeed == 0) {
-			speed = rightSpeed;
-		} else if (rightSpeed == 0) {
-			speed = leftSpeed;
-		} else {
-			speed = Math.max(leftSpeed, rightSpeed);
+	public synchronized PDPSampler enableCurrentSensing(PowerDistributionPanel pdp, int[] leftChannels,
+			int[] rightChannels, double samplePeriodMs) {
+		PDPSampler sampler = new PDPSampler(pdp, samplePeriodMs);
+		if (!enableCurrentSensing(sampler, leftChannels, rightChannels)) {
+			return null;
 		}
-		
-		if (isInLowGear) {
-			if (speed > shiftingSpeed+shiftingDeadband) {
-				setShifterHigh();
-			} else {
-				setShifterLow();
+		ownsPDPSampler = true;
+		sampler.start();
+		return sampler;
+	}
+	
+	/**
+	 * Passes the currents of the gearbox motors and the battery voltage from a PDPSampler to the shift
+	 * scheduler. The sampler should be shared with anything else reading the PDP, and must be started
+	 * by the caller.
+	 * @param sampler - The sampler of the PDP the drive motors are wired to.
+	 * @param leftChannels - The PDP channels of the left gearbox motors.
+	 * @param rightChannels - The PDP channels of the right gearbox motors.
+	 * @return true if current sensing was enabled.
+	 */
+	public synchronized boolean enableCurrentSensing(PDPSampler sampler, int[] leftChannels,
+			int[] rightChannels) {
+		for (int channel : leftChannels) {
+			if (channel < 0 || channel >= PDPSampler.CHANNELS) {
+				System.err.println("PDP channel " + channel + " does not exist");
+				return false;
 			}
-			
-		} else {
-			
-			if (speed < shiftingSpeed - shiftingDeadband) {
-				setShifterLow();
-			} else {
-				setShifterHigh();
+		}
+		for (int channel : rightChannels) {
+			if (channel < 0 || channel >= PDPSampler.CHANNELS) {
+				System.err.println("PDP channel " + channel + " does not exist");
+				return false;
 			}
-			
 		}
+		disableCurrentSensing();
+		sampler.watch(leftChannels);
+		sampler.watch(rightChannels);
+		this.leftChannels = leftChannels.clone();
+		this.rightChannels = rightChannels.clone();
+		pdpSampler = sampler;
+		return true;
+	}
+	
+	/**
+	 * Stops passing currents to the shift scheduler and stops watching the gearbox channels. A sampler
+	 * started by enableCurrentSensing is stopped.
+	 */
+	public synchronized void disableCurrentSensing() {
+		PDPSampler sampler = pdpSampler;
+		pdpSampler = null;
+		if (sampler != null) {
+			sampler.unwatch(leftChannels);
+			sampler.unwatch(rightChannels);
+			if (ownsPDPSampler) {
+				sampler.interrupt();
+			}
+		}
+		ownsPDPSampler = false;
+	}
+	
+	/**
+	 * Starts tracking the position of the robot from the ShifterEncoders on a background thread. The
+	 * encoders must be set to getDistance in field units. Any odometry already running is stopped.
+	 * @param trackWidth - The distance between the left and right wheels, in field units.
+	 * @param gyro - The gyro to use for the heading, or null to integrate the heading from the wheels.
+	 * @param periodMs - Milliseconds between odometry updates.
+	 * @return the running odometry thread, to read the pose from.
+	 */
+	public synchronized DifferentialOdometry startOdometry(double trackWidth, Gyro gyro, double periodMs) {
+		stopOdometry();
+		DifferentialOdometry newOdometry = new DifferentialOdometry(leftShifterEncoder, rightShifterEncoder,
+				trackWidth, gyro, periodMs);
+		newOdometry.start();
+		odometry = newOdometry;
+		return newOdometry;
+	}
+	
+	/**
+	 * Stops the odometry thread started by startOdometry.
+	 */
+	public synchronized void stopOdometry() {
+		DifferentialOdometry oldOdometry = odometry;
+		odometry = null;
+		if (oldOdometry != null) {
+			oldOdometry.interrupt();
+		}
+	}
+	
+	/**
+	 * Gets the odometry thread started by startOdometry.
+	 * @return the odometry, or null if it is not running.
+	 */
+	public DifferentialOdometry getOdometry() {
+		return odometry;
+	}
+	
+	/**
+	 * Gets the log of recent shifts. Each shift is recorded with its clock time, the gear shifted into,
+	 * and the speed the robot was going.
+	 * @return the shift event log.
+	 */
+	public ShiftEventLog getShiftEventLog() {
+		return shiftEvents;
+	}
+	
+	/**
+	 * Gets how quickly the low gear RPM of a gearbox is changing, signed so that it is positive when the
+	 * motors are speeding up in either direction.
+	 * @param encoder - The encoder of the gearbox.
+	 * @return the change in RPM per second, or NaN if the encoder is not estimating acceleration.
+	 */
+	private static double getRPMAcceleration(ShifterEncoder encoder) {
+		if (encoder.getSampler() == null) {
+			return Double.NaN;
+		}
+		return Math.signum(encoder.getFilteredRawRate()) * encoder.getRPMAcceleration(true);
+	}
+	
+	/**
+	 * Checks the current ShifterMode and sets the shifter solenoids to the gear it calls for. Shifts
+	 * into a different gear are recorded in the shift event log. Synchronized since the shift controller
+	 * thread and a drive command can both check the gear while the controller is being stopped. The
+	 * solenoids are set again every time the gear is checked, even when it has not changed.
+	 * @return - If the shifters were moved into a different gear.
+	 */
+	private synchronized boolean checkShifterGear() {
+		shiftInputs.speed = AutoShifter.combineSpeeds(Math.abs(leftShifterEncoder.getFilteredRate()),
+				Math.abs(rightShifterEncoder.getFilteredRate()));
+		double leftRPM = leftShifterEncoder.getRPM(true);
+		double rightRPM = rightShifterEncoder.getRPM(true);
+		shiftInputs.lowGearRPM = Math.max(leftRPM, rightRPM);
+		shiftInputs.lowGearAcceleration = getRPMAcceleration(leftRPM >= rightRPM ? leftShifterEncoder
+				: rightShifterEncoder);
+		shiftInputs.highGearRPM = Math.max(leftShifterEncoder.getRPM(false), rightShifterEncoder.getRPM(false));
+		shiftInputs.throttle = throttle;
+		PDPSampler pdpSampler = this.pdpSampler;
+		if (pdpSampler != null) {
+			shiftInputs.current = Math.max(pdpSampler.getCurrent(leftChannels),
+					pdpSampler.getCurrent(rightChannels));
+			shiftInputs.batteryVoltage = pdpSampler.getVoltage();
+		} else {
+			shiftInputs.current = Double.NaN;
+			shiftInputs.batteryVoltage = Double.NaN;
+		}
+		shiftInputs.nowNanos = clock.nanoTime();
+		Transmission leftTransmission = this.leftTransmission;
+		Transmission rightTransmission = this.rightTransmission;
+		if (leftTransmission != null && rightTransmission != null) {
+			return shiftTransmissions(leftTransmission, rightTransmission);
+		}
+		boolean wasInLowGear = autoShifter.isInLowGear();
+		ShifterMode gear = autoShifter.update(shifterMode, shiftInputs);
+		if (gear == null) {
+			return false;
+		}
+		boolean shifted = (gear == ShifterMode.LOW) != wasInLowGear;
+		if (shifted) {
+			shiftEvents.record(shiftInputs.nowNanos, gear == ShifterMode.LOW ? 0 : 1, shiftInputs.speed);
+		}
+		if (gear == ShifterMode.LOW) {
+			leftShifterEncoder.getShifterSolenoid().shiftToLow();
+			rightShifterEncoder.getShifterSolenoid().shiftToLow();
+		} else {
+			leftShifterEncoder.getShifterSolenoid().shiftToHigh();
+			rightShifterEncoder.getShifterSolenoid().shiftToHigh();
+		}
+		return shifted;
+	}
+	
+	/**
+	 * Sets the transmissions to the gear picked from their gear table.
+	 * @param left - The transmission of the left gearbox.
+	 * @param right - The transmission of the right gearbox.
+	 * @return - If the transmissions were moved into a different gear.
+	 */
+	private boolean shiftTransmissions(Transmission left, Transmission right) {
+		int previousGear = autoShifter.getGear();
+		int gear = autoShifter.updateGear(shifterMode, left.getGearTable(), shiftInputs);
+		if (gear < 0) {
+			return false;
+		}
+		boolean shifted = gear != previousGear;
+		if (shifted) {
+			shiftEvents.record(shiftInputs.nowNanos, gear, shiftInputs.speed);
+		}
+		left.shiftTo(gear);
+		right.shiftTo(gear);
+		return shifted;
 	}
 }
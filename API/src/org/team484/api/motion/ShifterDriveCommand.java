@@ -0,0 +1,83 @@
+package org.team484.api.motion;
+
+/**
+ * An immutable drive command for ShifterDrive. The command holds which drive method to use, the two
+ * values to pass to it and the time the command was created so the latency until it is applied can
+ * be measured. The time must be from the same clock as the drive's.
+ */
+public class ShifterDriveCommand {
+
+	/**
+	 * An enumeration of the ShifterDrive methods a command can be applied with.
+	 */
+	public enum Type {
+		/**
+		 * arcadeDrive(speed, rotation)
+		 */
+		ARCADE,
+
+		/**
+		 * tankDrive(leftSpeed, rightSpeed)
+		 */
+		TANK,
+
+		/**
+		 * linearDrive(speed, rotation)
+		 */
+		LINEAR,
+
+		/**
+		 * linearTankDrive(leftSpeed, rightSpeed)
+		 */
+		LINEAR_TANK
+	}
+
+	/**
+	 * Which drive method the command is applied with
+	 */
+	public final Type type;
+
+	/**
+	 * The speed for arcade and linear drive, or the left speed for tank and linear tank drive
+	 */
+	public final double first;
+
+	/**
+	 * The rotation for arcade and linear drive, or the right speed for tank and linear tank drive
+	 */
+	public final double second;
+
+	/**
+	 * The clock time in nanoseconds when the command was created
+	 */
+	public final long timestamp;
+
+	/**
+	 * Creates a new shifter drive command timestamped with System.nanoTime(), for a drive using the
+	 * default clock.
+	 * @param type - Which drive method to apply the command with.
+	 * @param first - The speed for arcade and linear drive, or the left speed for tank and linear tank
+	 *                drive.
+	 * @param second - The rotation for arcade and linear drive, or the right speed for tank and linear
+	 *                 tank drive.
+	 */
+	public ShifterDriveCommand(Type type, double first, double second) {
+		this(type, first, second, System.nanoTime());
+	}
+
+	/**
+	 * Creates a new shifter drive command with a given timestamp.
+	 * @param type - Which drive method to apply the command with.
+	 * @param first - The speed for arcade and linear drive, or the left speed for tank and linear tank
+	 *                drive.
+	 * @param second - The rotation for arcade and linear drive, or the right speed for tank and linear
+	 *                 tank drive.
+	 * @param timestamp - The time the command was created, from the drive's clock.
+	 */
+	public ShifterDriveCommand(Type type, double first, double second, long timestamp) {
+		this.type = type;
+		this.first = first;
+		this.second = second;
+		this.timestamp = timestamp;
+	}
+}
@@ -1,5 +1,9 @@
 package org.team484.api.motion;
 
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.team484.api.util.Clock;
+
 import edu.wpi.first.wpilibj.DoubleSolenoid;
 
 /**
@@ -9,9 +13,35 @@ import edu.wpi.first.wpilibj.DoubleSolenoid;
  *
  * <p>The ShifterSolenoid class is typically used to actuate a binary pancake actuator that is mounted
  * on a shifting gearbox and is connected to the PCM via two separate digital channels.
+ *
+ * <p>The commanded value and the time it was commanded are kept in the object, so get and the gear
+ * checks never read the PCM, and setting the value the solenoid is already set to does nothing. The
+ * time a shift takes to complete can be set so that isLowGearEngaged reports the gear the gearbox is
+ * actually in, and ShiftListeners can be registered to be told about every change of gear.
  */
 public class ShifterSolenoid extends DoubleSolenoid {
 	
+	/**
+	 * The commanded value and the one before it, replaced as a whole so readers on other threads never
+	 * see a new value with an old shift time
+	 */
+	private static class State {
+		final Value value;
+		final Value previous;
+		final long time;
+		
+		State(Value value, Value previous, long time) {
+			this.value = value;
+			this.previous = previous;
+			this.time = time;
+		}
+	}
+	
+	private volatile State state;
+	private volatile Clock clock = Clock.SYSTEM;
+	private volatile long shiftDelay = 0; //Time for a shift to complete (in ns)
+	private final CopyOnWriteArrayList<ShiftListener> listeners = new CopyOnWriteArrayList<>();
+	
 	/**
 	* Constructor. Uses the default PCM ID (defaults to 0).
 	*
@@ -20,6 +50,7 @@ public class ShifterSolenoid extends DoubleSolenoid {
 	*/
 	public ShifterSolenoid(int lowGearChannel, int highGearChannel) {
 		super(lowGearChannel, highGearChannel);
+		state = new State(super.get(), super.get(), 0);
 	}
 	
 	/**
@@ -31,6 +62,94 @@ public class ShifterSolenoid extends DoubleSolenoid {
 	*/
 	public ShifterSolenoid(int module, int lowGearChannel, int highGearChannel) {
 		super(module, lowGearChannel, highGearChannel);
+		state = new State(super.get(), super.get(), 0);
+	}
+	
+	/**
+	 * Sets the solenoid, unless it is already set to the value. When the value changes, the time is
+	 * recorded and the shift listeners are told if the gear changed.
+	 * @param value - The value to set the solenoid to.
+	 */
+	@Override
+	public synchronized void set(Value value) {
+		State old = state;
+		if (value == old.value) {
+			return;
+		}
+		super.set(value);
+		long now = clock.nanoTime();
+		state = new State(value, old.value, now);
+		if (value != Value.kOff) {
+			boolean lowGear = value == Value.kForward;
+			for (ShiftListener listener : listeners) {
+				listener.shifted(this, lowGear, now);
+			}
+		}
+	}
+	
+	/**
+	 * Gets the value the solenoid was last set to, without reading the PCM.
+	 * @return the commanded value.
+	 */
+	@Override
+	public Value get() {
+		return state.value;
+	}
+	
+	/**
+	 * Reads the value of the solenoid from the PCM.
+	 * @return the value the PCM reports.
+	 */
+	public Value getFromHardware() {
+		return super.get();
+	}
+	
+	/**
+	 * Sends the commanded value to the PCM again, in case the PCM lost it such as after a brownout.
+	 */
+	public synchronized void refresh() {
+		super.set(state.value);
+	}
+	
+	/**
+	 * Sets the time from commanding a shift to the gearbox being in the new gear, as measured on the
+	 * robot. isLowGearEngaged and isHighGearEngaged report the old gear until this time has passed.
+	 * @param ms - The shift time in milliseconds (default 0)
+	 */
+	public void setShiftDelay(double ms) {
+		shiftDelay = (long) (ms * 1e6);
+	}
+	
+	/**
+	 * Sets the clock that shift times are read from.
+	 * @param clock - The clock to use (default Clock.SYSTEM)
+	 */
+	public void setClock(Clock clock) {
+		this.clock = clock;
+	}
+	
+	/**
+	 * Gets the clock time the solenoid last changed value.
+	 * @return the time in nanoseconds, or 0 if it has not changed.
+	 */
+	public long getLastShiftTime() {
+		return state.time;
+	}
+	
+	/**
+	 * Adds a listener to be told whenever the shifter changes gear.
+	 * @param listener - The listener to add.
+	 */
+	public void addShiftListener(ShiftListener listener) {
+		listeners.addIfAbsent(listener);
+	}
+	
+	/**
+	 * Removes a listener added with addShiftListener.
+	 * @param listener - The listener to remove.
+	 */
+	public void removeShiftListener(ShiftListener listener) {
+		listeners.remove(listener);
 	}
 	
 	/**
@@ -62,4 +181,25 @@ public class ShifterSolenoid extends DoubleSolenoid {
 	public boolean isHighGear() {
 		return !isLowGear();
 	}
+	
+	/**
+	 * Checks if the gearbox has finished shifting into low gear. During the shift delay after a shift,
+	 * this reports the gear the gearbox was shifting out of.
+	 * @return - true only if the gearbox is in low gear.
+	 */
+	public boolean isLowGearEngaged() {
+		State state = this.state;
+		if (shiftDelay > 0 && clock.nanoTime() - state.time < shiftDelay) {
+			return state.previous == Value.kForward;
+		}
+		return state.value == Value.kForward;
+	}
+	
+	/**
+	 * Checks if the gearbox has finished shifting into high gear.
+	 * @return - true only if the gearbox is in high gear.
+	 */
+	public boolean isHighGearEngaged() {
+		return !isLowGearEngaged();
+	}
 }
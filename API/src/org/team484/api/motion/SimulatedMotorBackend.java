@@ -0,0 +1,233 @@
+package org.team484.api.motion;
+
+/**
+ * Motor backend with no hardware behind it, for running drive code off of the robot. It supports
+ * every feature so that code paths for all hardware can be exercised, and it records the value it
+ * was set to along with how many times it was written so tests and simulations can check them. A
+ * simulated backend can follow another simulated backend, in which case it reports the leader's output
+ * and is not written to.
+ */
+public class SimulatedMotorBackend implements MotorBackend {
+
+	private volatile double output = 0;
+	private volatile double pendingOutput = 0;
+	private volatile boolean outputPending = false;
+	private volatile boolean inverted = false;
+	private volatile boolean enabled = true;
+	private volatile ControlMode mode = ControlMode.PERCENT;
+	private volatile double rampRate = 0;
+	private volatile boolean batched = false;
+	private volatile long writeCount = 0;
+	private volatile long configurationCount = 0;
+	private volatile SimulatedMotorBackend leader = null;
+
+	@Override
+	public void set(double speed) {
+		if (leader != null) {
+			follow(null);
+		}
+		enabled = true;
+		if (batched) {
+			pendingOutput = speed;
+			outputPending = true;
+		} else {
+			output = speed;
+			writeCount++;
+		}
+	}
+
+	@Override
+	public double get() {
+		SimulatedMotorBackend leader = this.leader;
+		if (leader != null) {
+			return leader.get();
+		}
+		return outputPending ? pendingOutput : output;
+	}
+
+	/**
+	 * Gets the output the simulated motor is actually applying, taking inversion, disabling, batching
+	 * and following into account.
+	 * @return the applied output in the units of the current control mode.
+	 */
+	public double getAppliedOutput() {
+		SimulatedMotorBackend leader = this.leader;
+		if (leader != null) {
+			return leader.getAppliedOutput();
+		}
+		if (!enabled) {
+			return 0;
+		}
+		return inverted ? -output : output;
+	}
+
+	/**
+	 * Gets the voltage the simulated motor is applying for a given battery voltage.
+	 * @param batteryVoltage - The voltage of the battery.
+	 * @return the applied voltage, limited to the battery voltage.
+	 */
+	public double getAppliedVoltage(double batteryVoltage) {
+		double applied = getAppliedOutput();
+		switch (mode) {
+		case PERCENT:
+			applied *= batteryVoltage;
+			break;
+		case VOLTAGE:
+			break;
+		case VELOCITY:
+		default:
+			applied = 0;
+			break;
+		}
+		return Math.max(Math.min(applied, batteryVoltage), -batteryVoltage);
+	}
+
+	/**
+	 * Gets the number of writes that reached the simulated hardware.
+	 * @return the write count.
+	 */
+	public long getWriteCount() {
+		return writeCount;
+	}
+
+	/**
+	 * Gets the number of control mode and ramp rate changes that reached the simulated hardware.
+	 * @return the configuration change count.
+	 */
+	public long getConfigurationCount() {
+		return configurationCount;
+	}
+
+	/**
+	 * Gets the ramp rate the backend was last set to.
+	 * @return the ramp rate in volts per second.
+	 */
+	public double getRampRate() {
+		return rampRate;
+	}
+
+	@Override
+	public void pidWrite(double output) {
+		set(output);
+	}
+
+	@Override
+	public void setInverted(boolean isInverted) {
+		inverted = isInverted;
+	}
+
+	@Override
+	public boolean getInverted() {
+		return inverted;
+	}
+
+	@Override
+	public void disable() {
+		enabled = false;
+	}
+
+	@Override
+	public void stopMotor() {
+		outputPending = false;
+		output = 0;
+		writeCount++;
+	}
+
+	@Override
+	public boolean supportsVoltageMode() {
+		return true;
+	}
+
+	@Override
+	public boolean supportsVelocityMode() {
+		return true;
+	}
+
+	@Override
+	public boolean supportsRampRate() {
+		return true;
+	}
+
+	@Override
+	public boolean supportsBatchedUpdate() {
+		return true;
+	}
+
+	@Override
+	public boolean supportsFollowing() {
+		return true;
+	}
+
+	@Override
+	public boolean setControlMode(ControlMode mode) {
+		if (leader != null) {
+			leader = null;
+			configurationCount++;
+		}
+		if (mode != this.mode) {
+			this.mode = mode;
+			configurationCount++;
+		}
+		return true;
+	}
+
+	@Override
+	public ControlMode getControlMode() {
+		return mode;
+	}
+
+	@Override
+	public void setRampRate(double voltsPerSecond) {
+		if (voltsPerSecond != rampRate) {
+			rampRate = voltsPerSecond;
+			configurationCount++;
+		}
+	}
+
+	@Override
+	public void setBatched(boolean batched) {
+		if (!batched) {
+			flush();
+		}
+		this.batched = batched;
+	}
+
+	@Override
+	public void flush() {
+		if (outputPending) {
+			outputPending = false;
+			output = pendingOutput;
+			writeCount++;
+		}
+	}
+
+	@Override
+	public boolean follow(MotorBackend leader) {
+		if (leader == null) {
+			if (this.leader != null) {
+				this.leader = null;
+				mode = ControlMode.PERCENT;
+				output = 0;
+				configurationCount++;
+			}
+			return true;
+		}
+		if (!(leader instanceof SimulatedMotorBackend) || leader == this) {
+			return false;
+		}
+		outputPending = false;
+		this.leader = (SimulatedMotorBackend) leader;
+		configurationCount++;
+		return true;
+	}
+
+	@Override
+	public boolean isFollowing() {
+		return leader != null;
+	}
+
+	@Override
+	public void free() {
+		enabled = false;
+	}
+}
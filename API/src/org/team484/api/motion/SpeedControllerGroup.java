@@ -3,6 +3,11 @@ package org.team484.api.motion;
 import java.util.ArrayList;
 import java.util.Collections;
 
+import org.team484.api.util.PDPSampler;
+import org.team484.api.util.PowerGovernor;
+import org.team484.api.util.SlewRateLimiter;
+import org.team484.api.util.WriteCoalescer;
+
 import edu.wpi.first.wpilibj.SpeedController;
 import edu.wpi.first.wpilibj.Talon;
 
@@ -15,8 +20,15 @@ import edu.wpi.first.wpilibj.Talon;
  * <p>
  * This class alters the state of the speed controllers given to it. For this reason, it's not recommended to
  * interface with the speed controllers objects given to the constructor from outside the methods of this
- * class. For all getters, the first speed controller object is used to get the values as in most cases all
- * speed controllers should report the same value (unless they're being controlled from outside this object).
+ * class. Except for get, which returns the group's last setpoint, the getters use the first speed controller
+ * object to get the values as in most cases all speed controllers should report the same value (unless
+ * they're being controlled from outside this object).
+ * <p>
+ * The group can limit how quickly its output changes with enableRampLimiting, which turns step changes
+ * in the speed into ramps to keep current spikes from browning out the robot. The limit is applied before
+ * write coalescing, so a ramp is never held back by a skipped write. Since the getters only ask the first
+ * speed controller, startHealthMonitor can be used to check the others in the background, and
+ * enableCurrentBalancing can trim the output of each speed controller to even out their currents.
  */
 public class SpeedControllerGroup implements SpeedController {
 	
@@ -26,6 +38,61 @@ public class SpeedControllerGroup implements SpeedController {
 	 */
 	private ArrayList<SpeedController> speedControllers = new ArrayList<>();
 	
+	/*
+	 * The backend of each speed controller, in the same order. They are created once with the group, so
+	 * the follower state they keep lasts as long as the group. Writes go through them, not the speed
+	 * controllers, so their state matches what was written.
+	 */
+	private final MotorBackend[] backends;
+	
+	/*
+	 * The backends that set, pidWrite, disable and stopMotor write to. This is every backend unless
+	 * follower mode is enabled, in which case it is the leader and any backend that could not follow it.
+	 * Replaced as a whole when follower mode changes.
+	 */
+	private volatile MotorBackend[] writeTargets;
+	
+	/*
+	 * The number of writes made to speed controllers by set and pidWrite.
+	 */
+	private long memberWriteCount = 0;
+	
+	/*
+	 * The fraction of the output given to each speed controller by current balancing, or null to give
+	 * every speed controller the full output. Replaced as a whole by the balancer.
+	 */
+	private volatile double[] trims = null;
+	
+	/*
+	 * The thread balancing the current of the speed controllers, or null if it is not running.
+	 */
+	private volatile CurrentBalancer balancer = null;
+	
+	/*
+	 * The governor whose scale every output is multiplied by, or null.
+	 */
+	private volatile PowerGovernor powerGovernor = null;
+	
+	/*
+	 * Every member is always set to the same value, so the group only needs one coalescing channel.
+	 */
+	private final WriteCoalescer coalescer = new WriteCoalescer(1);
+	
+	/*
+	 * The last output of the group after ramp limiting and power governing, before any trims.
+	 */
+	private volatile double setpoint = 0;
+	
+	/*
+	 * Limits how quickly the output changes. Starts out disabled.
+	 */
+	private final SlewRateLimiter limiter = new SlewRateLimiter();
+	
+	/*
+	 * The thread checking the health of the members, or null if it is not running.
+	 */
+	private volatile GroupHealthMonitor healthMonitor = null;
+	
 	/**
 	 * Creates a new speed controller group with a list of PWM ports. New speed controller objects are
 	 * created as Talons here. If you are using a different speed controller, use the other constructor.
@@ -35,6 +102,8 @@ public class SpeedControllerGroup implements SpeedController {
 		for (int port : ports) {
 			speedControllers.add(new Talon(port));
 		}
+		backends = createBackends(speedControllers);
+		writeTargets = backends.clone();
 	}
 	
 	/**
@@ -45,29 +114,62 @@ public class SpeedControllerGroup implements SpeedController {
 	 */
 	public SpeedControllerGroup(SpeedController...controllers) {
 		Collections.addAll(speedControllers, controllers);
+		backends = createBackends(speedControllers);
+		writeTargets = backends.clone();
 		setInverted(false);
 	}
 	
+	/**
+	 * Wraps each speed controller in its backend. Wrapping does not change the hardware.
+	 * @param controllers - The speed controllers of the group.
+	 * @return the backends, in the same order.
+	 */
+	private static MotorBackend[] createBackends(ArrayList<SpeedController> controllers) {
+		MotorBackend[] backends = new MotorBackend[controllers.size()];
+		for (int i = 0; i < backends.length; i++) {
+			backends[i] = MotorBackend.of(controllers.get(i));
+		}
+		return backends;
+	}
+	
 	/**
 	 * Set the output to the value calculated by PIDController.
 	 * @param output - The value calculated by PIDController.
 	 */
 	@Override
 	public void pidWrite(double output) {
-		for (SpeedController controller : speedControllers) {
-			controller.pidWrite(output);
+		output = limiter.calculate(output);
+		PowerGovernor governor = powerGovernor;
+		if (governor != null) {
+			output *= governor.getScale();
+		}
+		setpoint = output;
+		if (!coalescer.shouldWrite(0, output)) {
+			return;
 		}
+		MotorBackend[] targets = writeTargets;
+		double[] trims = this.trims;
+		if (trims != null && trims.length == targets.length) {
+			for (int i = 0; i < targets.length; i++) {
+				targets[i].pidWrite(output * trims[i]);
+			}
+		} else {
+			for (MotorBackend controller : targets) {
+				controller.pidWrite(output);
+			}
+		}
+		memberWriteCount += targets.length;
 	}
 
 	/**
-	 * Method for getting the current set speed of the speed controller group. This getter uses the first
-	 * speed controller in the group for its value.
+	 * Method for getting the current set speed of the speed controller group. This is the last speed the
+	 * group was set to after ramp limiting and power governing, not the trimmed output of any one speed
+	 * controller.
 	 * @return The current set speed. Value is between -1.0 and 1.0.
 	 */
 	@Override
 	public double get() {
-		if (speedControllers.size() == 0) return 0;
-		return speedControllers.get(0).get();
+		return setpoint;
 	}
 
 	/**
@@ -76,10 +178,27 @@ public class SpeedControllerGroup implements SpeedController {
 	 */
 	@Override
 	public void set(double speed) {
-		for (SpeedController controller : speedControllers) {
-			controller.set(speed);
+		speed = limiter.calculate(speed);
+		PowerGovernor governor = powerGovernor;
+		if (governor != null) {
+			speed *= governor.getScale();
+		}
+		setpoint = speed;
+		if (!coalescer.shouldWrite(0, speed)) {
+			return;
 		}
-		
+		MotorBackend[] targets = writeTargets;
+		double[] trims = this.trims;
+		if (trims != null && trims.length == targets.length) {
+			for (int i = 0; i < targets.length; i++) {
+				targets[i].set(speed * trims[i]);
+			}
+		} else {
+			for (MotorBackend controller : targets) {
+				controller.set(speed);
+			}
+		}
+		memberWriteCount += targets.length;
 	}
 
 	/**
@@ -91,6 +210,7 @@ public class SpeedControllerGroup implements SpeedController {
 		for (SpeedController controller : speedControllers) {
 			controller.setInverted(isInverted);
 		}
+		coalescer.invalidate();
 	}
 
 	/**
@@ -109,9 +229,12 @@ public class SpeedControllerGroup implements SpeedController {
 	 */
 	@Override
 	public void disable() {
-		for (SpeedController controller : speedControllers) {
+		for (MotorBackend controller : writeTargets) {
 			controller.disable();
 		}
+		setpoint = 0;
+		coalescer.invalidate();
+		limiter.reset(0);
 	}
 
 	/**
@@ -119,9 +242,302 @@ public class SpeedControllerGroup implements SpeedController {
 	 */
 	@Override
 	public void stopMotor() {
-		for (SpeedController controller : speedControllers) {
+		for (MotorBackend controller : writeTargets) {
 			controller.stopMotor();
 		}
+		setpoint = 0;
+		coalescer.invalidate();
+		limiter.reset(0);
+	}
+	
+	/**
+	 * Enables skipping writes to the speed controllers when the value is within epsilon of the last
+	 * value written. This reduces CAN bus traffic when the output is not changing. A value is still
+	 * written every refreshMs so motor safety watchdogs do not time out.
+	 * @param epsilon - The largest change in output that is not worth writing.
+	 * @param refreshMs - Milliseconds after which an unchanged output is written anyway.
+	 */
+	public void enableWriteCoalescing(double epsilon, double refreshMs) {
+		coalescer.enable(epsilon, refreshMs);
+	}
+	
+	/**
+	 * Disables write coalescing so every set is passed on to the speed controllers.
+	 */
+	public void disableWriteCoalescing() {
+		coalescer.disable();
+	}
+	
+	/**
+	 * Gets the write coalescer for this group, which counts the sets that were passed on to the speed
+	 * controllers and the ones that were skipped. Each count is per call, not per speed controller.
+	 * @return the write coalescer.
+	 */
+	public WriteCoalescer getWriteCoalescer() {
+		return coalescer;
+	}
+	
+	/**
+	 * Enables limiting how quickly the output of the group changes, at all battery voltages.
+	 * @param accelerationRate - The fastest the output may move away from 0, in output per second.
+	 * @param decelerationRate - The fastest the output may move towards 0, in output per second.
+	 */
+	public void enableRampLimiting(double accelerationRate, double decelerationRate) {
+		limiter.enable(accelerationRate, decelerationRate);
+	}
+	
+	/**
+	 * Enables limiting how quickly the output of the group changes, only while the battery voltage is
+	 * below a threshold. The sampler must be started for the voltage to be read.
+	 * @param accelerationRate - The fastest the output may move away from 0, in output per second.
+	 * @param decelerationRate - The fastest the output may move towards 0, in output per second.
+	 * @param voltageSource - The sampler to read the battery voltage from.
+	 * @param lowVoltage - The battery voltage to start limiting below.
+	 */
+	public void enableRampLimiting(double accelerationRate, double decelerationRate, PDPSampler voltageSource,
+			double lowVoltage) {
+		limiter.enable(accelerationRate, decelerationRate, voltageSource, lowVoltage);
+	}
+	
+	/**
+	 * Disables ramp limiting so every set is passed on as given.
+	 */
+	public void disableRampLimiting() {
+		limiter.disable();
+	}
+	
+	/**
+	 * Gets the slew rate limiter for this group, for changing its clock or reading how often it limited
+	 * the output.
+	 * @return the slew rate limiter.
+	 */
+	public SlewRateLimiter getRampLimiter() {
+		return limiter;
+	}
+	
+	/**
+	 * Enables follower mode, in which the other speed controllers copy the output of the first one in
+	 * hardware so that set only has to write to the first one. Speed controllers whose hardware cannot
+	 * follow the first one (such as PWM controllers) are still written to on every set. Followers cannot
+	 * be trimmed, so this stops current balancing.
+	 * @return true if at least one speed controller is now following, false if every speed controller
+	 *         is still written to.
+	 */
+	public synchronized boolean enableFollowerMode() {
+		disableCurrentBalancing();
+		disableFollowerMode();
+		int count = backends.length;
+		if (count < 2) {
+			return false;
+		}
+		ArrayList<MotorBackend> targets = new ArrayList<>();
+		targets.add(backends[0]);
+		for (int i = 1; i < count; i++) {
+			if (!backends[i].supportsFollowing() || !backends[i].follow(backends[0])) {
+				targets.add(backends[i]);
+			}
+		}
+		if (targets.size() == count) {
+			return false;
+		}
+		writeTargets = targets.toArray(new MotorBackend[0]);
+		coalescer.invalidate();
+		return true;
+	}
+	
+	/**
+	 * Disables follower mode so every speed controller is written to on every set again. The speed
+	 * controllers that were following are stopped until the next set.
+	 */
+	public synchronized void disableFollowerMode() {
+		if (!isFollowerModeEnabled()) {
+			return;
+		}
+		for (MotorBackend backend : backends) {
+			if (backend.isFollowing()) {
+				backend.follow(null);
+			}
+		}
+		writeTargets = backends.clone();
+		coalescer.invalidate();
+	}
+	
+	/**
+	 * Checks if follower mode is enabled and at least one speed controller is following.
+	 * @return true if the group is in follower mode.
+	 */
+	public boolean isFollowerModeEnabled() {
+		return writeTargets.length < backends.length;
+	}
+	
+	/**
+	 * Gets the number of speed controllers each set or pidWrite that is not skipped by write coalescing
+	 * writes to. This is the number of speed controllers in the group unless follower mode is enabled.
+	 * @return the writes per call.
+	 */
+	public int getWritesPerCall() {
+		return writeTargets.length;
+	}
+	
+	/**
+	 * Gets the total number of writes made to speed controllers by set and pidWrite. Together with the
+	 * write coalescer's write count, this shows how many bus writes follower mode saved. May be slightly
+	 * behind when read from another thread.
+	 * @return the member write count.
+	 */
+	public long getMemberWriteCount() {
+		return memberWriteCount;
+	}
+	
+	/**
+	 * Starts a thread that evens out the current drawn by the speed controllers in the group by giving
+	 * the ones drawing the most a slightly lower output. Use the returned balancer to tune it. Any
+	 * balancer already running is stopped, and follower mode is disabled since followers cannot be
+	 * trimmed.
+	 * @param pdp - The sampler to read currents from, which must be started separately.
+	 * @param channels - The PDP channel of each speed controller, in the order they were given to the
+	 *                   constructor.
+	 * @param periodMs - Milliseconds between adjustments.
+	 * @return the current balancer, or null if the channels do not match the speed controllers.
+	 */
+	public synchronized CurrentBalancer enableCurrentBalancing(PDPSampler pdp, int[] channels, double periodMs) {
+		if (channels.length != speedControllers.size() || channels.length < 2) {
+			System.err.println("Current balancing needs a PDP channel for each of at least two speed controllers");
+			return null;
+		}
+		for (int channel : channels) {
+			if (channel < 0 || channel >= PDPSampler.CHANNELS) {
+				System.err.println("PDP channel " + channel + " does not exist");
+				return null;
+			}
+		}
+		disableCurrentBalancing();
+		disableFollowerMode();
+		CurrentBalancer newBalancer = new CurrentBalancer(this, pdp, channels, periodMs);
+		balancer = newBalancer;
+		newBalancer.start();
+		return newBalancer;
+	}
+	
+	/**
+	 * Stops the thread started by enableCurrentBalancing and gives every speed controller the full output
+	 * again.
+	 */
+	public synchronized void disableCurrentBalancing() {
+		CurrentBalancer oldBalancer = balancer;
+		balancer = null;
+		trims = null;
+		coalescer.invalidate();
+		if (oldBalancer != null) {
+			oldBalancer.interrupt();
+			oldBalancer.unwatchChannels();
+		}
+	}
+	
+	/**
+	 * Gets the current balancer started by enableCurrentBalancing.
+	 * @return the current balancer, or null if it is not running.
+	 */
+	public CurrentBalancer getCurrentBalancer() {
+		return balancer;
+	}
+	
+	/**
+	 * Gets the fraction of the group's output given to one speed controller by current balancing.
+	 * @param index - The index of the speed controller, in the order they were given to the constructor.
+	 * @return the trim, which is 1 if current balancing is not enabled.
+	 */
+	public double getTrim(int index) {
+		double[] trims = this.trims;
+		return trims == null ? 1 : trims[index];
+	}
+	
+	/**
+	 * Publishes new trims from a balancer, unless the balancer has been stopped. The coalescer only
+	 * compares the untrimmed output, so it is invalidated for the next set to write the new trims.
+	 */
+	synchronized void setTrims(CurrentBalancer from, double[] newTrims) {
+		if (from == balancer) {
+			trims = newTrims;
+			coalescer.invalidate();
+		}
+	}
+	
+	/**
+	 * Sets a governor to scale the output of the group by as the battery sags. The scale is applied after
+	 * ramp limiting, so the ramp itself is not slowed down.
+	 * @param governor - The governor to read the scale from, or null to always use full output.
+	 */
+	public void setPowerGovernor(PowerGovernor governor) {
+		powerGovernor = governor;
+	}
+	
+	/**
+	 * Gets the governor set with setPowerGovernor.
+	 * @return the power governor, or null if there is none.
+	 */
+	public PowerGovernor getPowerGovernor() {
+		return powerGovernor;
+	}
+	
+	/**
+	 * Gets the number of speed controllers in this group.
+	 * @return the number of speed controllers.
+	 */
+	public int getSpeedControllerCount() {
+		return speedControllers.size();
+	}
+	
+	/**
+	 * Gets one of the speed controllers in this group.
+	 * @param index - The index of the speed controller, in the order they were given to the constructor.
+	 * @return the speed controller.
+	 */
+	SpeedController getSpeedController(int index) {
+		return speedControllers.get(index);
+	}
+	
+	/**
+	 * Checks if one of the speed controllers in this group is following the first one in hardware.
+	 * @param index - The index of the speed controller, in the order they were given to the constructor.
+	 * @return true if the speed controller is following.
+	 */
+	boolean isFollowing(int index) {
+		return backends[index].isFollowing();
+	}
+	
+	/**
+	 * Starts a thread that checks the health of every speed controller in the group in the background.
+	 * Use the returned monitor to give it the PDP channels of the speed controllers and to read the
+	 * results. Any monitor already running is stopped.
+	 * @param periodMs - Milliseconds between checks.
+	 * @return the health monitor.
+	 */
+	public synchronized GroupHealthMonitor startHealthMonitor(double periodMs) {
+		stopHealthMonitor();
+		GroupHealthMonitor monitor = new GroupHealthMonitor(this, periodMs);
+		healthMonitor = monitor;
+		monitor.start();
+		return monitor;
+	}
+	
+	/**
+	 * Stops the thread started by startHealthMonitor.
+	 */
+	public synchronized void stopHealthMonitor() {
+		GroupHealthMonitor monitor = healthMonitor;
+		healthMonitor = null;
+		if (monitor != null) {
+			monitor.interrupt();
+		}
+	}
+	
+	/**
+	 * Gets the health monitor started by startHealthMonitor.
+	 * @return the health monitor, or null if it is not running.
+	 */
+	public GroupHealthMonitor getHealthMonitor() {
+		return healthMonitor;
 	}
 
 }
@@ -0,0 +1,128 @@
+package org.team484.api.motion;
+
+import edu.wpi.first.wpilibj.PIDController;
+import edu.wpi.first.wpilibj.PIDOutput;
+import edu.wpi.first.wpilibj.PIDSource;
+
+/**
+ * SteeringController is the part of a PID loop that SwerveDrive uses to turn each wheel to an angle.
+ * SwerveDrive builds its four loops with a SteeringController.Factory, so a simulation or replay can
+ * give it loops that do not need the robot's hardware and are stepped by the caller. On the robot,
+ * SteeringController.WPILIB builds WPILib PIDControllers that run on their own timers.
+ */
+public interface SteeringController {
+
+	/**
+	 * Builds the steering loop for one wheel.
+	 */
+	interface Factory {
+		/**
+		 * Creates a steering loop. The loop must treat its input as continuous from -180 to 180 degrees
+		 * and limit its output to -1 to 1. It starts out disabled.
+		 * @param kP - The proportional value.
+		 * @param kI - The integral value.
+		 * @param kD - The derivative value.
+		 * @param source - The source of the wheel angle in degrees.
+		 * @param output - The output the loop writes to.
+		 * @return the steering loop.
+		 */
+		SteeringController create(double kP, double kI, double kD, PIDSource source, PIDOutput output);
+	}
+
+	/**
+	 * The factory that builds WPILib PIDControllers, for use on the robot
+	 */
+	Factory WPILIB = (kP, kI, kD, source, output) -> {
+		PIDController pid = new PIDController(kP, kI, kD, source, output);
+		pid.setContinuous();
+		pid.setInputRange(-180, 180);
+		pid.setOutputRange(-1, 1);
+		return of(pid);
+	};
+
+	/**
+	 * Changes the PID values.
+	 * @param kP - The proportional value.
+	 * @param kI - The integral value.
+	 * @param kD - The derivative value.
+	 */
+	void setPID(double kP, double kI, double kD);
+
+	/**
+	 * Sets the angle the loop drives to.
+	 * @param setpoint - The setpoint in degrees.
+	 */
+	void setSetpoint(double setpoint);
+
+	/**
+	 * Gets the angle the loop drives to.
+	 * @return the setpoint in degrees.
+	 */
+	double getSetpoint();
+
+	/**
+	 * Gets the error from the last calculation.
+	 * @return the error in degrees.
+	 */
+	double getError();
+
+	/**
+	 * Starts the loop writing to its output.
+	 */
+	void enable();
+
+	/**
+	 * Stops the loop and writes 0 to its output.
+	 */
+	void disable();
+
+	/**
+	 * Frees the resources used by the loop.
+	 */
+	void free();
+
+	/**
+	 * Wraps a WPILib PIDController as a steering controller. The controller must already be set up to
+	 * be continuous from -180 to 180 with an output range of -1 to 1.
+	 * @param pid - The controller to wrap.
+	 * @return the steering controller for the PIDController.
+	 */
+	static SteeringController of(final PIDController pid) {
+		return new SteeringController() {
+			@Override
+			public void setPID(double kP, double kI, double kD) {
+				pid.setPID(kP, kI, kD);
+			}
+
+			@Override
+			public void setSetpoint(double setpoint) {
+				pid.setSetpoint(setpoint);
+			}
+
+			@Override
+			public double getSetpoint() {
+				return pid.getSetpoint();
+			}
+
+			@Override
+			public double getError() {
+				return pid.getError();
+			}
+
+			@Override
+			public void enable() {
+				pid.enable();
+			}
+
+			@Override
+			public void disable() {
+				pid.disable();
+			}
+
+			@Override
+			public void free() {
+				pid.free();
+			}
+		};
+	}
+}
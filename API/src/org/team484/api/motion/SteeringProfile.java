@@ -0,0 +1,238 @@
+package org.team484.api.motion;
+
+/**
+ * SteeringProfile limits how quickly the angle setpoint of a swerve module moves toward its target.
+ * Instead of jumping the PID setpoint straight to a new angle, which saturates the PID loop and
+ * makes the module overshoot, the setpoint moves along a trapezoidal profile (or an S-curve when a
+ * jerk limit is set) and the PID loop only has to correct small errors. The velocity and
+ * acceleration of the profile are turned into a feed forward that is added to the PID output.
+ * <p>
+ * Angles are in degrees from -180 to 180 and the profile always turns the short way around. The
+ * profile is stepped by the drive thread while the feed forward is read by the PID thread, so the
+ * feed forward is published through a volatile field. Call stop when the profile stops being stepped
+ * so the feed forward does not keep driving the module.
+ */
+public class SteeringProfile {
+
+	private double maxVelocity;
+	private double maxAcceleration;
+	private double maxJerk;
+	private double kV;
+	private double kA;
+
+	private volatile boolean initialized = false;
+	private double position = 0;
+	private double velocity = 0;
+	private double acceleration = 0;
+	private long lastUpdate = 0;
+
+	private volatile double feedForward = 0;
+
+	/**
+	 * Creates a new trapezoidal steering profile.
+	 * @param maxVelocity - The maximum turning speed of the module in degrees per second.
+	 * @param maxAcceleration - The maximum turning acceleration in degrees per second squared.
+	 * @param kV - Motor output per degree per second of profile velocity.
+	 * @param kA - Motor output per degree per second squared of profile acceleration.
+	 */
+	public SteeringProfile(double maxVelocity, double maxAcceleration, double kV, double kA) {
+		this(maxVelocity, maxAcceleration, 0, kV, kA);
+	}
+
+	/**
+	 * Creates a new steering profile with an optional jerk limit, which turns the trapezoid into an
+	 * S-curve.
+	 * @param maxVelocity - The maximum turning speed of the module in degrees per second.
+	 * @param maxAcceleration - The maximum turning acceleration in degrees per second squared.
+	 * @param maxJerk - The maximum change in acceleration in degrees per second cubed, 0 for none.
+	 * @param kV - Motor output per degree per second of profile velocity.
+	 * @param kA - Motor output per degree per second squared of profile acceleration.
+	 */
+	public SteeringProfile(double maxVelocity, double maxAcceleration, double maxJerk, double kV, double kA) {
+		this.maxVelocity = maxVelocity;
+		this.maxAcceleration = maxAcceleration;
+		this.maxJerk = maxJerk;
+		this.kV = kV;
+		this.kA = kA;
+	}
+
+	/**
+	 * Moves the profile's setpoint toward the target angle by the time since the last update.
+	 * @param target - The angle the module should end up at.
+	 * @param measured - The angle the module is currently at, used to start the profile.
+	 * @param nowNanos - The current System.nanoTime() value.
+	 * @return the angle the module's PID setpoint should be set to.
+	 */
+	public double update(double target, double measured, long nowNanos) {
+		if (!initialized) {
+			reset(measured, nowNanos);
+		}
+		double dt = Math.min((nowNanos - lastUpdate) / 1e9, 0.1);
+		lastUpdate = nowNanos;
+		if (dt <= 0) {
+			return position;
+		}
+
+		double error = wrap(target - position);
+
+		double desiredAcceleration;
+		if (maxJerk > 0) {
+			desiredAcceleration = sCurveAcceleration(error, dt);
+		} else {
+			//The fastest speed from which the module can still stop at the target
+			double stoppingVelocity = Math.sqrt(2.0 * maxAcceleration * Math.abs(error));
+			double desiredVelocity = Math.copySign(Math.min(maxVelocity, stoppingVelocity), error);
+			desiredAcceleration = clamp((desiredVelocity - velocity) / dt, maxAcceleration);
+		}
+
+		double newVelocity = velocity + desiredAcceleration * dt;
+		double step = (velocity + newVelocity) / 2.0 * dt;
+		//An S-curve comes to rest just short of the target, within what one step of jerk could move
+		boolean settled = maxJerk > 0 && Math.abs(error) <= 2.0 * maxJerk * dt * dt * dt
+				&& Math.abs(velocity) <= maxJerk * dt * dt;
+		if (settled || Math.abs(step) >= Math.abs(error) && Math.signum(step) == Math.signum(error)) {
+			//Close enough to finish this cycle
+			position = target;
+			velocity = 0;
+			acceleration = 0;
+		} else {
+			position = wrap(position + step);
+			acceleration = desiredAcceleration;
+			velocity = newVelocity;
+		}
+		feedForward = kV * velocity + kA * acceleration;
+		return position;
+	}
+
+	/**
+	 * Restarts the profile at rest at the given angle.
+	 * @param angle - The angle to start from.
+	 * @param nowNanos - The current System.nanoTime() value.
+	 */
+	public void reset(double angle, long nowNanos) {
+		position = angle;
+		velocity = 0;
+		acceleration = 0;
+		feedForward = 0;
+		lastUpdate = nowNanos;
+		initialized = true;
+	}
+
+	/**
+	 * Stops the profile where it is and clears the feed forward. The next update restarts the profile
+	 * from the measured angle. Safe to call from any thread.
+	 */
+	public void stop() {
+		initialized = false;
+		feedForward = 0;
+	}
+
+	/**
+	 * Gets the feed forward for the current point in the profile. This is safe to call from the PID
+	 * thread.
+	 * @return the motor output to add to the PID output.
+	 */
+	public double getFeedForward() {
+		return feedForward;
+	}
+
+	/**
+	 * Gets the current setpoint of the profile.
+	 * @return the setpoint angle in degrees.
+	 */
+	public double getPosition() {
+		return position;
+	}
+
+	/**
+	 * Gets the current turning speed of the profile.
+	 * @return the velocity in degrees per second.
+	 */
+	public double getVelocity() {
+		return velocity;
+	}
+
+	/**
+	 * Picks the acceleration for the next step of an S-curve: the most it can change towards the target
+	 * while still being able to come to rest at the target with the jerk limit, or else the hardest
+	 * braking the jerk limit allows. Works in a frame where the target is in the positive direction.
+	 */
+	private double sCurveAcceleration(double error, double dt) {
+		double sign = error >= 0 ? 1 : -1;
+		double distance = Math.abs(error);
+		double v = sign * velocity;
+		double a = sign * acceleration;
+		double change = maxJerk * dt;
+
+		//Stay under the acceleration from which the velocity can still level off at its limit
+		double levelOff = Math.sqrt(2.0 * maxJerk * Math.max(maxVelocity - v, 0));
+		double up = Math.max(Math.min(Math.min(a + change, maxAcceleration), levelOff), a - change);
+		double hold = Math.min(a, up);
+		double brake = Math.max(a - change, -maxAcceleration);
+		if (canStop(distance, v, a, up, dt)) {
+			return sign * up;
+		}
+		if (canStop(distance, v, a, hold, dt)) {
+			return sign * hold;
+		}
+		return sign * brake;
+	}
+
+	/**
+	 * Checks if, after changing the acceleration from a to next over dt, the profile can still come to
+	 * rest within the distance.
+	 */
+	private boolean canStop(double distance, double v, double a, double next, double dt) {
+		double moved = v * dt + (2.0 * a + next) / 6.0 * dt * dt;
+		double newVelocity = v + (a + next) / 2.0 * dt;
+		return moved + stoppingDistance(newVelocity, next) <= distance;
+	}
+
+	/**
+	 * Gets the distance it takes to come to rest from a velocity and acceleration with the jerk and
+	 * acceleration limits: the acceleration ramps down to a peak deceleration, holds there if the peak
+	 * is at the limit, and ramps back up to 0 as the velocity reaches 0.
+	 */
+	private double stoppingDistance(double v, double a) {
+		if (v <= 0) {
+			return 0;
+		}
+		double j = maxJerk;
+		if (a < 0 && a * a / 2.0 > j * v) {
+			//Already braking harder than needed, so only the ramp back to 0 is left
+			double t = -a / j;
+			return Math.max(v * t + a * t * t / 2.0 + j * t * t * t / 6.0, 0);
+		}
+		double peak = Math.sqrt(j * v + a * a / 2.0);
+		double holdTime = 0;
+		if (peak > maxAcceleration) {
+			peak = maxAcceleration;
+			holdTime = (v + a * a / (2.0 * j) - peak * peak / j) / peak;
+		}
+		//Ramp down to the peak deceleration
+		double t = (a + peak) / j;
+		double total = v * t + a * t * t / 2.0 - j * t * t * t / 6.0;
+		v += a * t - j * t * t / 2.0;
+		//Hold the peak deceleration
+		total += v * holdTime - peak * holdTime * holdTime / 2.0;
+		v -= peak * holdTime;
+		//Ramp back up to 0
+		t = peak / j;
+		total += v * t - peak * t * t / 2.0 + j * t * t * t / 6.0;
+		return total;
+	}
+
+	private static double clamp(double value, double limit) {
+		return Math.max(Math.min(value, limit), -limit);
+	}
+
+	private static double wrap(double angle) {
+		while (angle > 180) {
+			angle -= 360;
+		}
+		while (angle <= -180) {
+			angle += 360;
+		}
+		return angle;
+	}
+}
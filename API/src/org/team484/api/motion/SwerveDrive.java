@@ -1,15 +1,24 @@
 package org.team484.api.motion;
 
-import com.ctre.CANTalon;
-import com.ctre.CANTalon.TalonControlMode;
+import org.team484.api.motion.MotorBackend.ControlMode;
+import org.team484.api.sensor.DistanceSensor;
+import org.team484.api.sensor.GyroSampler;
+import org.team484.api.util.Clock;
+import org.team484.api.util.CommandMailbox;
+import org.team484.api.util.LatencyTracer;
+import org.team484.api.util.LatencyTracer.Stage;
+import org.team484.api.util.PeriodicThread;
+import org.team484.api.util.PowerGovernor;
+import org.team484.api.util.WriteCoalescer;
+
+import java.util.concurrent.atomic.AtomicLongArray;
 
 import edu.wpi.first.wpilibj.Encoder;
-import edu.wpi.first.wpilibj.PIDController;
 import edu.wpi.first.wpilibj.PIDOutput; 
 import edu.wpi.first.wpilibj.PIDSource;
 import edu.wpi.first.wpilibj.PIDSourceType;
-import edu.wpi.first.wpilibj.PWM;
 import edu.wpi.first.wpilibj.SpeedController;
+import edu.wpi.first.wpilibj.interfaces.Gyro;
 
 /**
  * Class designed to allow for manipulating swerve drive on a robot.
@@ -55,10 +64,10 @@ public class SwerveDrive {
 	    }
 	  }
 
-	private PIDController pidFL;
-	private PIDController pidRL;
-	private PIDController pidFR;
-	private PIDController pidRR;
+	private SteeringController pidFL;
+	private SteeringController pidRL;
+	private SteeringController pidFR;
+	private SteeringController pidRR;
 
 	private double width = 1.0;
 	private double length = 1.0;
@@ -68,23 +77,47 @@ public class SwerveDrive {
 	private double rotAngFR;
 	private double rotAngRR;
 
-	private SpeedController transFL;
-	private SpeedController transRL;
-	private SpeedController transFR;
-	private SpeedController transRR;
+	private MotorBackend transFL;
+	private MotorBackend transRL;
+	private MotorBackend transFR;
+	private MotorBackend transRR;
 
-	private SpeedController rotFL;
-	private SpeedController rotRL;
-	private SpeedController rotFR;
-	private SpeedController rotRR;
+	private MotorBackend rotFL;
+	private MotorBackend rotRL;
+	private MotorBackend rotFR;
+	private MotorBackend rotRR;
 
-	private Encoder encFL;
-	private Encoder encRL;
-	private Encoder encFR;
-	private Encoder encRR;
+	private DistanceSensor encFL;
+	private DistanceSensor encRL;
+	private DistanceSensor encFR;
+	private DistanceSensor encRR;
+	
+	private final CommandMailbox<SwerveDriveCommand> mailbox = new CommandMailbox<>();
+	private SwerveDriveCommand lastCommand = null;
+	private volatile long commandTimeout = 100000000L; //How long a command may be re-applied for (in ns)
+	private volatile long lastCommandLatency = 0;
+	private PeriodicThread controlLoop = null;
+	
+	private volatile LatencyTracer tracer = null;
+	//Timestamp of the command each wheel's PID loop has not run with yet, 0 when there is none
+	private final AtomicLongArray untracedSetpoints = new AtomicLongArray(4);
+	
+	private volatile SteeringProfile[] steeringProfiles = null;
+	private volatile Clock clock = Clock.SYSTEM;
+	private volatile PowerGovernor powerGovernor = null;
+	
+	private volatile GyroSampler fieldOrientedGyro = null;
+	private boolean ownsFieldOrientedGyro = false;
+	private volatile long fieldOrientedLead = 0;
+	private boolean cosineScaling = false;
 	
 	private boolean voltageCompensate = false;
 	private double maxVoltage = 12;
+	private double voltageRampRate = 0;
+	
+	//Output channels 0-3 are the drive motors and 4-7 are the rotation motors, by MotorType value
+	private final WriteCoalescer coalescer = new WriteCoalescer(8);
+	private double writeEpsilon = 0; //In percent output, scaled for drive motors in voltage mode
 	
 	/**
 	 * Constructor for the Swerve Drive class. requires setting values for the PID
@@ -107,15 +140,76 @@ public class SwerveDrive {
 	 * @param invertWheelRotation set to true if wheels rotate clockwise when set to a positive value
 	 */
 	public SwerveDrive(double kP, double kI, double kD, Encoder iEncFL, Encoder iEncRL, Encoder iEncFR, Encoder iEncRR, SpeedController spFL, SpeedController spRL, SpeedController spFR, SpeedController spRR, SpeedController iTransFL, SpeedController iTransRL, SpeedController iTransFR, SpeedController iTransRR, boolean invertWheelRotation) {
-		transFL = iTransFL;
-		transRL = iTransRL;
-		transFR = iTransFR;
-		transRR = iTransRR;
+		this(kP, kI, kD, DistanceSensor.of(iEncFL), DistanceSensor.of(iEncRL), DistanceSensor.of(iEncFR),
+				DistanceSensor.of(iEncRR), spFL, spRL, spFR, spRR, iTransFL, iTransRL, iTransFR, iTransRR,
+				invertWheelRotation);
+	}
+
+	/**
+	 * Constructor for the Swerve Drive class using any distance sensors for the wheel angles, such as
+	 * simulated encoders. requires setting values for the PID loop used to rotate the swerve wheels to
+	 * set angles, as well as passing through motor controllers for swerve drive
+	 * @param kP proportional value for PID loop
+	 * @param kI inegral value for PID loop
+	 * @param kD derivitive value for PID loop
+	 * @param iEncFL front left encoder (must be preset to getDistance in degrees with counter clockwise increasing)
+	 * @param iEncRL rear left encoder (must be preset to getDistance in degrees with counter clockwise increasing)
+	 * @param iEncFR front right encoder (must be preset to getDistance in degrees with counter clockwise increasing)
+	 * @param iEncRR rear right encoder (must be preset to getDistance in degrees with counter clockwise increasing)
+	 * @param spFL motor controller used to rotate the front left wheel to a set angle
+	 * @param spRL motor controller used to rotate the rear left wheel to a set angle
+	 * @param spFR motor controller used to rotate the front right wheel to a set angle
+	 * @param spRR motor controller used to rotate the rear right wheel to a set angle
+	 * @param iTransFL motor controller used to power front left wheel
+	 * @param iTransRL motor controller used to power rear left wheel
+	 * @param iTransFR motor controller used to power front right wheel
+	 * @param iTransRR motor controller used to power rear right wheel
+	 * @param invertWheelRotation set to true if wheels rotate clockwise when set to a positive value
+	 */
+	public SwerveDrive(double kP, double kI, double kD, DistanceSensor iEncFL, DistanceSensor iEncRL, DistanceSensor iEncFR, DistanceSensor iEncRR, SpeedController spFL, SpeedController spRL, SpeedController spFR, SpeedController spRR, SpeedController iTransFL, SpeedController iTransRL, SpeedController iTransFR, SpeedController iTransRR, boolean invertWheelRotation) {
+		this(kP, kI, kD, iEncFL, iEncRL, iEncFR, iEncRR, spFL, spRL, spFR, spRR, iTransFL, iTransRL, iTransFR,
+				iTransRR, invertWheelRotation, SteeringController.WPILIB);
+	}
+
+	/**
+	 * Constructor for the Swerve Drive class that builds the wheel rotation PID loops with a factory,
+	 * so the drive can run with no robot attached, such as in a simulation or replay where the loops
+	 * are stepped by the caller. requires setting values for the PID loop used to rotate the swerve
+	 * wheels to set angles, as well as passing through motor controllers for swerve drive
+	 * @param kP proportional value for PID loop
+	 * @param kI inegral value for PID loop
+	 * @param kD derivitive value for PID loop
+	 * @param iEncFL front left encoder (must be preset to getDistance in degrees with counter clockwise increasing)
+	 * @param iEncRL rear left encoder (must be preset to getDistance in degrees with counter clockwise increasing)
+	 * @param iEncFR front right encoder (must be preset to getDistance in degrees with counter clockwise increasing)
+	 * @param iEncRR rear right encoder (must be preset to getDistance in degrees with counter clockwise increasing)
+	 * @param spFL motor controller used to rotate the front left wheel to a set angle
+	 * @param spRL motor controller used to rotate the rear left wheel to a set angle
+	 * @param spFR motor controller used to rotate the front right wheel to a set angle
+	 * @param spRR motor controller used to rotate the rear right wheel to a set angle
+	 * @param iTransFL motor controller used to power front left wheel
+	 * @param iTransRL motor controller used to power rear left wheel
+	 * @param iTransFR motor controller used to power front right wheel
+	 * @param iTransRR motor controller used to power rear right wheel
+	 * @param invertWheelRotation set to true if wheels rotate clockwise when set to a positive value
+	 * @param steeringControllers builds the PID loop for each wheel (SteeringController.WPILIB on the robot)
+	 */
+	public SwerveDrive(double kP, double kI, double kD, DistanceSensor iEncFL, DistanceSensor iEncRL, DistanceSensor iEncFR, DistanceSensor iEncRR, SpeedController spFL, SpeedController spRL, SpeedController spFR, SpeedController spRR, SpeedController iTransFL, SpeedController iTransRL, SpeedController iTransFR, SpeedController iTransRR, boolean invertWheelRotation, SteeringController.Factory steeringControllers) {
+		transFL = MotorBackend.of(iTransFL);
+		transRL = MotorBackend.of(iTransRL);
+		transFR = MotorBackend.of(iTransFR);
+		transRR = MotorBackend.of(iTransRR);
+
+		rotFL = MotorBackend.of(spFL);
+		rotRL = MotorBackend.of(spRL);
+		rotFR = MotorBackend.of(spFR);
+		rotRR = MotorBackend.of(spRR);
 
-		rotFL = spFL;
-		rotRL = spRL;
-		rotFR = spFR;
-		rotRR = spRR;
+		//Wrapping a motor controller does not change its mode, so put every motor in percent output
+		for (int wheel = 0; wheel < 4; wheel++) {
+			getTrans(wheel).setControlMode(ControlMode.PERCENT);
+			getRot(wheel).setControlMode(ControlMode.PERCENT);
+		}
 
 		encFL = iEncFL;
 		encRL = iEncRL;
@@ -125,7 +219,7 @@ public class SwerveDrive {
 		setWheelbaseDimensions(25.75, 18.25);
 		
 		if (invertWheelRotation) {
-			pidFL = new PIDController(kP, kI, kD, new PIDSource() {
+			pidFL = steeringControllers.create(kP, kI, kD, new PIDSource() {
 				public double pidGet() {
 					return findEncAng(encFL.getDistance());
 				}
@@ -141,10 +235,11 @@ public class SwerveDrive {
 				}
 			}, new PIDOutput() {
 				public void pidWrite(double d) {
-						rotFL.set(-d);
+						traceSetpointConsumed(0);
+						setRot(0, -(d + steeringFeedForward(0)));
 				}
 			});
-			pidRL = new PIDController(kP, kI, kD, new PIDSource() {
+			pidRL = steeringControllers.create(kP, kI, kD, new PIDSource() {
 				public double pidGet() {
 					return findEncAng(encRL.getDistance());
 				}
@@ -159,10 +254,11 @@ public class SwerveDrive {
 					return PIDSourceType.kDisplacement;				}
 			}, new PIDOutput() {
 				public void pidWrite(double d) {
-						rotRL.set(-d);
+						traceSetpointConsumed(1);
+						setRot(1, -(d + steeringFeedForward(1)));
 				}
 			});
-			pidFR = new PIDController(kP, kI, kD, new PIDSource() {
+			pidFR = steeringControllers.create(kP, kI, kD, new PIDSource() {
 				public double pidGet() {
 					return findEncAng(encFR.getDistance());
 				}
@@ -177,10 +273,11 @@ public class SwerveDrive {
 					return PIDSourceType.kDisplacement;				}
 			}, new PIDOutput() {
 				public void pidWrite(double d) {
-						rotFR.set(-d);
+						traceSetpointConsumed(2);
+						setRot(2, -(d + steeringFeedForward(2)));
 				}
 			});
-			pidRR = new PIDController(kP, kI, kD, new PIDSource() {
+			pidRR = steeringControllers.create(kP, kI, kD, new PIDSource() {
 				public double pidGet() {
 					return findEncAng(encRR.getDistance());
 				}
@@ -195,11 +292,12 @@ public class SwerveDrive {
 					return PIDSourceType.kDisplacement;				}
 			}, new PIDOutput() {
 				public void pidWrite(double d) {
-						rotRR.set(-d);
+						traceSetpointConsumed(3);
+						setRot(3, -(d + steeringFeedForward(3)));
 				}
 			});
 		} else {
-			pidFL = new PIDController(kP, kI, kD, new PIDSource() {
+			pidFL = steeringControllers.create(kP, kI, kD, new PIDSource() {
 				public double pidGet() {
 					return findEncAng(encFL.getDistance());
 				}
@@ -214,10 +312,11 @@ public class SwerveDrive {
 					return PIDSourceType.kDisplacement;				}
 			}, new PIDOutput() {
 				public void pidWrite(double d) {
-						rotFL.set(d);
+						traceSetpointConsumed(0);
+						setRot(0, d + steeringFeedForward(0));
 				}
 			});
-			pidRL = new PIDController(kP, kI, kD, new PIDSource() {
+			pidRL = steeringControllers.create(kP, kI, kD, new PIDSource() {
 				public double pidGet() {
 					return findEncAng(encRL.getDistance());
 				}
@@ -232,10 +331,11 @@ public class SwerveDrive {
 					return PIDSourceType.kDisplacement;				}
 			}, new PIDOutput() {
 				public void pidWrite(double d) {
-						rotRL.set(d);
+						traceSetpointConsumed(1);
+						setRot(1, d + steeringFeedForward(1));
 				}
 			});
-			pidFR = new PIDController(kP, kI, kD, new PIDSource() {
+			pidFR = steeringControllers.create(kP, kI, kD, new PIDSource() {
 				public double pidGet() {
 					return findEncAng(encFR.getDistance());
 				}
@@ -250,10 +350,11 @@ public class SwerveDrive {
 					return PIDSourceType.kDisplacement;				}
 			}, new PIDOutput() {
 				public void pidWrite(double d) {
-						rotFR.set(d);
+						traceSetpointConsumed(2);
+						setRot(2, d + steeringFeedForward(2));
 				}
 			});
-			pidRR = new PIDController(kP, kI, kD, new PIDSource() {
+			pidRR = steeringControllers.create(kP, kI, kD, new PIDSource() {
 				public double pidGet() {
 					return findEncAng(encRR.getDistance());
 				}
@@ -268,25 +369,11 @@ public class SwerveDrive {
 					return PIDSourceType.kDisplacement;				}
 			}, new PIDOutput() {
 				public void pidWrite(double d) {
-						rotRR.set(d);
+						traceSetpointConsumed(3);
+						setRot(3, d + steeringFeedForward(3));
 				}
 			});
 		}
-		pidFL.setContinuous();
-		pidRL.setContinuous();
-		pidFR.setContinuous();
-		pidRR.setContinuous();
-
-		pidFL.setInputRange(-180, 180);
-		pidRL.setInputRange(-180, 180);
-		pidFR.setInputRange(-180, 180);
-		pidRR.setInputRange(-180, 180);
-
-		pidFL.setOutputRange(-1, 1);
-		pidRL.setOutputRange(-1, 1);
-		pidFR.setOutputRange(-1, 1);
-		pidRR.setOutputRange(-1, 1);
-
 		pidFL.setSetpoint(0);
 		pidRL.setSetpoint(0);
 		pidFR.setSetpoint(0);
@@ -312,6 +399,22 @@ public class SwerveDrive {
 		rotAngFL = -rotAngFR;
 	}
 
+	/**
+	 * Gets the distance between the left and right wheels
+	 * @return the wheelbase width
+	 */
+	public double getWheelbaseWidth() {
+		return width;
+	}
+
+	/**
+	 * Gets the distance between the front and back wheels
+	 * @return the wheelbase length
+	 */
+	public double getWheelbaseLength() {
+		return length;
+	}
+
 	/**
 	 * Used to change the PID values used for rotating the wheels
 	 * @param kP proportional PID value
@@ -325,6 +428,18 @@ public class SwerveDrive {
 		pidRR.setPID(kP, kI, kD);
 	}
 
+	/**
+	 * Used to change the PID values used for rotating one wheel, for modules that need different
+	 * tuning from the others
+	 * @param motor location of wheel frontLeft, rearLeft, frontRight, rearRight
+	 * @param kP proportional PID value
+	 * @param kI integral PID value
+	 * @param kD derivitive PID value
+	 */
+	public void setPID(MotorType motor, double kP, double kI, double kD) {
+		getPID(motor.value).setPID(kP, kI, kD);
+	}
+
 	/**
 	 * Used to get the angle of one of the encoders
 	 * @param motor location of encoder frontLeft, rearLeft, frontRight, rearRight
@@ -497,27 +612,249 @@ public class SwerveDrive {
 		if (wheelRot < -180) {
 			wheelRot += 360;
 		}
+		setSteeringTarget(wheel, wheelRot, currentWheelAngle);
+		return wheelMag * driveScale(wheelRot, currentWheelAngle);
+
+	}
+
+	/**
+	 * Gets the drive motor backend for a wheel
+	 * @param wheel the MotorType value of the wheel
+	 * @return the drive motor backend
+	 */
+	private MotorBackend getTrans(int wheel) {
 		switch(wheel) {
 		case 0:
-			pidFL.setSetpoint(wheelRot);
-			break;
+			return transFL;
 		case 1:
-			pidRL.setSetpoint(wheelRot);
-			break;
+			return transRL;
 		case 2:
-			pidFR.setSetpoint(wheelRot);
-			break;
-		case 3:
-			pidRR.setSetpoint(wheelRot);
-			break;
+			return transFR;
 		default:
-			break;
+			return transRR;
+		}
+	}
+
+	/**
+	 * Gets the rotation motor backend for a wheel
+	 * @param wheel the MotorType value of the wheel
+	 * @return the rotation motor backend
+	 */
+	private MotorBackend getRot(int wheel) {
+		switch(wheel) {
+		case 0:
+			return rotFL;
+		case 1:
+			return rotRL;
+		case 2:
+			return rotFR;
+		default:
+			return rotRR;
+		}
+	}
+
+	/**
+	 * Sets the output of a drive motor if it has changed enough to be worth writing. The output is
+	 * scaled by the power governor if there is one, and motors in voltage mode have the output scaled
+	 * up to the max voltage.
+	 * @param wheel the MotorType value of the wheel
+	 * @param value the output to set the motor to (-1 to 1)
+	 */
+	private void setTrans(int wheel, double value) {
+		MotorBackend trans = getTrans(wheel);
+		PowerGovernor governor = powerGovernor;
+		if (governor != null) {
+			value *= governor.getScale();
+		}
+		if (trans.getControlMode() == ControlMode.VOLTAGE) {
+			value *= maxVoltage;
+		}
+		if (coalescer.shouldWrite(wheel, value)) {
+			trans.set(value);
+		}
+	}
+
+	/**
+	 * Sets the output of a rotation motor if it has changed enough to be worth writing
+	 * @param wheel the MotorType value of the wheel
+	 * @param value the value to set the motor controller to
+	 */
+	private void setRot(int wheel, double value) {
+		if (coalescer.shouldWrite(wheel + 4, value)) {
+			getRot(wheel).set(value);
+		}
+	}
+
+	/**
+	 * Enables skipping motor controller writes that are within epsilon of the last value written to
+	 * that controller. This reduces CAN bus traffic when the outputs are not changing. A value is
+	 * still written every refreshMs so motor safety watchdogs do not time out.
+	 * @param epsilon the largest change in output that is not worth writing
+	 * @param refreshMs milliseconds after which an unchanged output is written anyway
+	 */
+	public void enableWriteCoalescing(double epsilon, double refreshMs) {
+		writeEpsilon = epsilon;
+		coalescer.enable(epsilon, refreshMs);
+		updateDriveEpsilons();
+	}
+
+	/**
+	 * Sets the epsilon of each drive motor's coalescing channel in the units it is written in, which
+	 * is volts for motors in voltage mode
+	 */
+	private void updateDriveEpsilons() {
+		for (int wheel = 0; wheel < 4; wheel++) {
+			boolean volts = getTrans(wheel).getControlMode() == ControlMode.VOLTAGE;
+			coalescer.setEpsilon(wheel, volts ? writeEpsilon * maxVoltage : writeEpsilon);
+		}
+	}
+
+	/**
+	 * Disables write coalescing so every output is written to the motor controllers
+	 */
+	public void disableWriteCoalescing() {
+		coalescer.disable();
+	}
+
+	/**
+	 * Used to get the write coalescer for the drive and rotation motors, which counts the writes that
+	 * were made and skipped. Channels 0-3 are the drive motors and 4-7 are the rotation motors, in
+	 * the order of their MotorType values. Drive motors in voltage mode are coalesced in volts.
+	 * @return the write coalescer
+	 */
+	public WriteCoalescer getWriteCoalescer() {
+		return coalescer;
+	}
+
+	/**
+	 * Used to get the PID loop for a wheel
+	 * @param wheel the MotorType value of the wheel
+	 * @return the PID loop that rotates the wheel
+	 */
+	private SteeringController getPID(int wheel) {
+		switch(wheel) {
+		case 0:
+			return pidFL;
+		case 1:
+			return pidRL;
+		case 2:
+			return pidFR;
+		default:
+			return pidRR;
+		}
+	}
+
+	/**
+	 * Points a wheel at an angle, through the steering profile if one is enabled
+	 * @param wheel the MotorType value of the wheel
+	 * @param angle the angle the wheel should end up at
+	 * @param currentWheelAngle the angle the wheel is at now
+	 */
+	private void setSteeringTarget(int wheel, double angle, double currentWheelAngle) {
+		SteeringProfile[] profiles = steeringProfiles;
+		if (profiles != null) {
+			angle = profiles[wheel].update(angle, currentWheelAngle, clock.nanoTime());
+		}
+		getPID(wheel).setSetpoint(angle);
+	}
+
+	/**
+	 * Used to get the feed forward from a wheel's steering profile. Called from the PID thread.
+	 * @param wheel the MotorType value of the wheel
+	 * @return the output to add to the PID output, 0 when there is no steering profile
+	 */
+	private double steeringFeedForward(int wheel) {
+		SteeringProfile[] profiles = steeringProfiles;
+		if (profiles == null) {
+			return 0;
+		}
+		return profiles[wheel].getFeedForward();
+	}
+
+	/**
+	 * Used to get how much of the drive output to apply given how far the wheel still has to turn.
+	 * With cosine scaling the drive output is scaled by the cosine of the steering error, so a wheel
+	 * does not push in the wrong direction while it turns.
+	 * @param targetAngle the angle the wheel is turning to
+	 * @param currentWheelAngle the angle the wheel is at now
+	 * @return the scale for the drive output (0 to 1)
+	 */
+	private double driveScale(double targetAngle, double currentWheelAngle) {
+		if (!cosineScaling) {
+			return 1;
+		}
+		return Math.max(Math.cos(Math.toRadians(findEncAng(targetAngle - currentWheelAngle))), 0);
+	}
+
+	/**
+	 * Enables a trapezoidal motion profile for turning each wheel. Instead of jumping the PID
+	 * setpoint to the new angle, the setpoint moves toward it at a limited speed and acceleration, and
+	 * the profile's speed and acceleration are added to the PID output as a feed forward. The drive
+	 * methods must be called every cycle for the profile to advance.
+	 * @param maxVelocity the maximum turning speed in degrees per second
+	 * @param maxAcceleration the maximum turning acceleration in degrees per second squared
+	 * @param kV output per degree per second of turning speed
+	 * @param kA output per degree per second squared of turning acceleration
+	 */
+	public void enableSteeringProfile(double maxVelocity, double maxAcceleration, double kV, double kA) {
+		enableSteeringProfile(maxVelocity, maxAcceleration, 0, kV, kA);
+	}
+
+	/**
+	 * Enables an S-curve motion profile for turning each wheel. This is the same as the trapezoidal
+	 * profile but with the change in acceleration limited as well.
+	 * @param maxVelocity the maximum turning speed in degrees per second
+	 * @param maxAcceleration the maximum turning acceleration in degrees per second squared
+	 * @param maxJerk the maximum change in acceleration in degrees per second cubed
+	 * @param kV output per degree per second of turning speed
+	 * @param kA output per degree per second squared of turning acceleration
+	 */
+	public void enableSteeringProfile(double maxVelocity, double maxAcceleration, double maxJerk, double kV,
+			double kA) {
+		SteeringProfile[] profiles = new SteeringProfile[4];
+		for (int wheel = 0; wheel < 4; wheel++) {
+			profiles[wheel] = new SteeringProfile(maxVelocity, maxAcceleration, maxJerk, kV, kA);
 		}
-		return wheelMag;
+		steeringProfiles = profiles;
+	}
+
+	/**
+	 * Disables the steering profile so the PID setpoints go straight to the target angles
+	 */
+	public void disableSteeringProfile() {
+		stopSteeringProfiles();
+		steeringProfiles = null;
+	}
 
+	/**
+	 * Stops every steering profile so their feed forwards stop being added to the PID outputs
+	 */
+	private void stopSteeringProfiles() {
+		SteeringProfile[] profiles = steeringProfiles;
+		if (profiles != null) {
+			for (SteeringProfile profile : profiles) {
+				profile.stop();
+			}
+		}
 	}
 
-	private static boolean goToAngle(double wheelRot, double currentWheelAngle) {
+	/**
+	 * Sets whether the drive output of each wheel is scaled by the cosine of how far the wheel still
+	 * has to turn. This keeps a wheel from pushing the robot the wrong way while it is turning.
+	 * @param enabled true to scale the drive outputs
+	 */
+	public void setDriveCosineScaling(boolean enabled) {
+		cosineScaling = enabled;
+	}
+
+	/**
+	 * Used to decide whether a wheel should turn to an angle or to the opposite angle and drive
+	 * backwards, whichever is less than 90 degrees away
+	 * @param wheelRot the angle the wheel should point (-180 to 180)
+	 * @param currentWheelAngle the angle the wheel is at now (-180 to 180)
+	 * @return true to turn to wheelRot, false to turn to the opposite angle and reverse the wheel
+	 */
+	public static boolean goToAngle(double wheelRot, double currentWheelAngle) {
 		if (Math.abs(wheelRot - currentWheelAngle) < 90) {
 			return true;
 		}
@@ -614,44 +951,81 @@ public class SwerveDrive {
 		if (angle < -180) {
 			angle += 360;
 		}
+		setSteeringTarget(wheel, angle, currentWheelAngle);
+		magnitude *= driveScale(angle, currentWheelAngle);
 		switch(wheel) {
 		case 0:
-			pidFL.setSetpoint(angle);
-			if (voltageCompensate) {
-				transFL.set(magnitude * maxVoltage);
-			} else {
-				transFL.set(magnitude);
-			}
+			setTrans(0, magnitude);
 			break;
 		case 1:
-			pidRL.setSetpoint(angle);
-			if (voltageCompensate) {
-				transRL.set(magnitude * maxVoltage);
-			} else {
-				transRL.set(magnitude);
-			}
+			setTrans(1, magnitude);
 			break;
 		case 2:
-			pidFR.setSetpoint(angle);
-			if (voltageCompensate) {
-				transFR.set(magnitude * maxVoltage * 1.2);
-			} else {
-				transFR.set(magnitude * 1.2);
-			}
+			setTrans(2, magnitude * 1.2);
 			break;
 		case 3:
-			pidRR.setSetpoint(angle);
-			if (voltageCompensate) {
-				transRR.set(magnitude * maxVoltage * 1.2);
-			} else {
-				transRR.set(magnitude * 1.2);
-			}
+			setTrans(3, magnitude * 1.2);
 			break;
 		default:
 			break;
 		}
 	}
 	
+	/**
+	 * Makes the drive field oriented: the stick angle is taken relative to the field instead of the
+	 * robot, using a gyro sampled on its own thread. The heading is extrapolated from the latest sample
+	 * to the time each drive command is applied, so it is not stale while the robot spins. Any angle
+	 * offset passed to drive is still applied on top of the gyro.
+	 * @param gyro the gyro, with its angle at 0 when the robot faces down the field
+	 * @param samplePeriodMs milliseconds between gyro samples
+	 * @return the sampler that was started, to reset the gyro or read the heading
+	 */
+	public synchronized GyroSampler enableFieldOriented(Gyro gyro, double samplePeriodMs) {
+		GyroSampler sampler = new GyroSampler(gyro, samplePeriodMs);
+		sampler.start();
+		enableFieldOriented(sampler);
+		ownsFieldOrientedGyro = true;
+		return sampler;
+	}
+
+	/**
+	 * Makes the drive field oriented using a gyro sampler that is already running. The sampler is not
+	 * stopped when field oriented driving is disabled.
+	 * @param sampler the started gyro sampler
+	 */
+	public synchronized void enableFieldOriented(GyroSampler sampler) {
+		disableFieldOriented();
+		fieldOrientedGyro = sampler;
+	}
+
+	/**
+	 * Makes the drive robot oriented again, stopping the gyro sampler if enableFieldOriented started it
+	 */
+	public synchronized void disableFieldOriented() {
+		if (fieldOrientedGyro != null && ownsFieldOrientedGyro) {
+			fieldOrientedGyro.interrupt();
+		}
+		fieldOrientedGyro = null;
+		ownsFieldOrientedGyro = false;
+	}
+
+	/**
+	 * Used to find out if the drive is field oriented
+	 * @return true if the stick angle is relative to the field
+	 */
+	public boolean isFieldOriented() {
+		return fieldOrientedGyro != null;
+	}
+
+	/**
+	 * Sets how far past the moment a drive command is applied to extrapolate the heading, to make up
+	 * for the time it takes the motor controllers to act on the new outputs
+	 * @param ms milliseconds to extrapolate ahead (default 0)
+	 */
+	public void setFieldOrientedLead(double ms) {
+		fieldOrientedLead = (long) (ms * 1e6);
+	}
+
 	/**
 	 * Used to update move and rotate values for serve drive. Should be
 	 * constantly updated unless values are set to 0
@@ -661,9 +1035,29 @@ public class SwerveDrive {
 	 * @param angleOffset degrees to offset the stick angle by
 	 */
 	public void drive(double stickAngle, double stickMag, double rot, double angleOffset) {
+		applyDrive(stickAngle, stickMag, rot, angleOffset, clock.nanoTime());
+	}
+
+	/**
+	 * Calculates and writes the wheel angles and speeds for a drive command
+	 * @param stickAngle calculated angle from joystick [stick.getDirectionDegrees()]
+	 * @param stickMag calculated magnatude from joystick [stick.getMagnatude()]
+	 * @param rot rotation value for the robot
+	 * @param angleOffset degrees to offset the stick angle by
+	 * @param commandTimestamp the clock time when the command was created, or 0 if
+	 * the command should not be traced
+	 */
+	private void applyDrive(double stickAngle, double stickMag, double rot, double angleOffset,
+			long commandTimestamp) {
+		LatencyTracer tracer = commandTimestamp == 0 ? null : this.tracer;
 		if (Double.isNaN(rot)) {
 			rot = 0.0;
 		}
+		GyroSampler gyro = fieldOrientedGyro;
+		if (gyro != null) {
+			//The gyro is clockwise positive, so turning the stick to the field subtracts its angle
+			angleOffset -= gyro.getAngle(clock.nanoTime() + fieldOrientedLead);
+		}
 		stickAngle = -stickAngle; //start for converting stick angle value to polar coordinate
 		stickAngle+= 90;
 		if (stickAngle > 180) {
@@ -691,16 +1085,18 @@ public class SwerveDrive {
 				divisor = Math.abs(rRWheelMag);
 			}
 		}
-		if (!voltageCompensate) {
-			transFL.set(fLWheelMag /= divisor);
-			transRL.set(rLWheelMag /= divisor);
-			transFR.set(1.2 * (fRWheelMag /= divisor));
-			transRR.set(1.2 * (rRWheelMag /= divisor));
-		} else {
-			transFL.set(maxVoltage * (fLWheelMag /= divisor));
-			transRL.set(maxVoltage * (rLWheelMag /= divisor));
-			transFR.set(1.2 * maxVoltage * (fRWheelMag /= divisor));
-			transRR.set(1.2 * maxVoltage * (rRWheelMag /= divisor));
+		if (tracer != null) {
+			tracer.record(Stage.KINEMATICS_DONE, commandTimestamp);
+			for (int wheel = 0; wheel < 4; wheel++) {
+				untracedSetpoints.set(wheel, commandTimestamp);
+			}
+		}
+		setTrans(0, fLWheelMag / divisor);
+		setTrans(1, rLWheelMag / divisor);
+		setTrans(2, 1.2 * fRWheelMag / divisor);
+		setTrans(3, 1.2 * rRWheelMag / divisor);
+		if (tracer != null) {
+			tracer.record(Stage.OUTPUTS_WRITTEN, commandTimestamp);
 		}
 	}
 
@@ -716,49 +1112,156 @@ public class SwerveDrive {
 	}
 
 	/**
-	 * Frees the speed controllers encoders and PID loops
+	 * Posts a drive command to be applied by the next call to update. Unlike drive, this is safe to
+	 * call from any thread, and if several commands are posted before update runs only the latest is
+	 * applied. When commands are posted, only the control loop should call the drive methods.
+	 * @param stickAngle calculated angle from joystick [stick.getDirectionDegrees()]
+	 * @param stickMag calculated magnatude from joystick [stick.getMagnatude()]
+	 * @param rot rotation value for the robot
+	 * @param angleOffset degrees to offset the stick angle by
 	 */
-	public void free() {
-		if (transFL instanceof PWM) {
-			((PWM) transFL).free();
-		} else {
-			((CANTalon) transFL).delete();
-		}
-		if (transRL instanceof PWM) {
-			((PWM) transRL).free();
-		} else {
-			((CANTalon) transRL).delete();
+	public void post(double stickAngle, double stickMag, double rot, double angleOffset) {
+		mailbox.post(new SwerveDriveCommand(stickAngle, stickMag, rot, angleOffset, clock.nanoTime()));
+	}
+
+	/**
+	 * Posts a drive command to be applied by the next call to update. Safe to call from any thread.
+	 * @param stickAngle calculated angle from joystick [stick.getDirectionDegrees()]
+	 * @param stickMag calculated magnatude from joystick [stick.getMagnatude()]
+	 * @param rot rotation value for the robot
+	 */
+	public void post(double stickAngle, double stickMag, double rot) {
+		post(stickAngle, stickMag, rot, 0.0);
+	}
+
+	/**
+	 * Posts a drive command to be applied by the next call to update. Safe to call from any thread.
+	 * @param command the command to apply
+	 */
+	public void post(SwerveDriveCommand command) {
+		mailbox.post(command);
+	}
+
+	/**
+	 * Applies the latest posted drive command. If no command was posted since the last update, the
+	 * previous command is applied again so the wheels keep tracking it, until it is older than the
+	 * command timeout. Then the motors are stopped, so the robot does not keep driving if whatever posts
+	 * the commands stops. Should be called every cycle from a single control thread, or use
+	 * startControlLoop to run it in its own thread.
+	 */
+	public void update() {
+		SwerveDriveCommand command = mailbox.take();
+		if (command != null) {
+			lastCommand = command;
+			LatencyTracer tracer = this.tracer;
+			if (tracer != null) {
+				tracer.record(Stage.COMMAND_ACCEPTED, command.timestamp);
+			}
+		} else if (lastCommand == null) {
+			return;
+		} else if (clock.nanoTime() - lastCommand.timestamp > commandTimeout) {
+			lastCommand = null;
+			stopMotors();
+			return;
 		}
-		if (transFR instanceof PWM) {
-			((PWM) transFR).free();
-		} else {
-			((CANTalon) transFR).delete();
+		//A repeated command is not traced again, as its latency would only measure how long it was held
+		applyDrive(lastCommand.stickAngle, lastCommand.stickMag, lastCommand.rot, lastCommand.angleOffset,
+				command != null ? command.timestamp : 0);
+		if (command != null) {
+			lastCommandLatency = clock.nanoTime() - command.timestamp;
 		}
-		if (transRR instanceof PWM) {
-			((PWM) transRR).free();
-		} else {
-			((CANTalon) transRR).delete();
+	}
+
+	/**
+	 * Sets the tracer used to record how long drive commands take to get through each stage. Drive
+	 * commands given with post are traced from when they were posted, and commands given with drive
+	 * are traced from when drive was called.
+	 * @param tracer the tracer to record to, or null to stop tracing
+	 */
+	public void setLatencyTracer(LatencyTracer tracer) {
+		for (int wheel = 0; wheel < 4; wheel++) {
+			untracedSetpoints.set(wheel, 0);
 		}
-		
-		if (rotFL instanceof PWM) {
-			((PWM) rotFL).free();
-		} else {
-			((CANTalon) rotFL).delete();
+		this.tracer = tracer;
+	}
+
+	/**
+	 * Records the first PID loop run after a traced command changed a wheel's setpoint. Called from
+	 * the PID thread.
+	 * @param wheel the MotorType value of the wheel
+	 */
+	private void traceSetpointConsumed(int wheel) {
+		LatencyTracer tracer = this.tracer;
+		if (tracer == null) {
+			return;
 		}
-		if (rotRL instanceof PWM) {
-			((PWM) rotRL).free();
-		} else {
-			((CANTalon) rotRL).delete();
+		long commandTimestamp = untracedSetpoints.getAndSet(wheel, 0);
+		if (commandTimestamp != 0) {
+			tracer.record(Stage.SETPOINT_CONSUMED, commandTimestamp);
 		}
-		if (rotFR instanceof PWM) {
-			((PWM) rotFR).free();
-		} else {
-			((CANTalon) rotFR).delete();
+	}
+
+	/**
+	 * Used to get the time between the latest command being posted and its outputs being written
+	 * @return the latency in nanoseconds
+	 */
+	public long getLastCommandLatency() {
+		return lastCommandLatency;
+	}
+
+	/**
+	 * Sets how long update keeps applying the last posted command when no new one has been posted,
+	 * measured from when the command was created. This should be a few times the period commands are
+	 * posted at.
+	 * @param ms the timeout in milliseconds (default 100)
+	 */
+	public void setCommandTimeout(double ms) {
+		commandTimeout = (long) (ms * 1e6);
+	}
+
+	/**
+	 * Used to get the mailbox posted commands go through, for its post and replaced counts
+	 * @return the command mailbox
+	 */
+	public CommandMailbox<SwerveDriveCommand> getCommandMailbox() {
+		return mailbox;
+	}
+
+	/**
+	 * Starts a thread that calls update at a fixed rate. Drive commands should then only be given
+	 * with post.
+	 * @param periodMs milliseconds between updates
+	 */
+	public synchronized void startControlLoop(double periodMs) {
+		stopControlLoop();
+		controlLoop = new PeriodicThread("SwerveDrive", periodMs) {
+			@Override
+			protected void periodic(long nowNanos) {
+				update();
+			}
+		};
+		controlLoop.start();
+	}
+
+	/**
+	 * Stops the thread started by startControlLoop
+	 */
+	public synchronized void stopControlLoop() {
+		if (controlLoop != null) {
+			controlLoop.interrupt();
+			controlLoop = null;
 		}
-		if (rotRR instanceof PWM) {
-			((PWM) rotRR).free();
-		} else {
-			((CANTalon) rotRR).delete();
+	}
+
+	/**
+	 * Frees the speed controllers encoders and PID loops
+	 */
+	public void free() {
+		stopControlLoop();
+		disableFieldOriented();
+		for (int wheel = 0; wheel < 4; wheel++) {
+			getTrans(wheel).free();
+			getRot(wheel).free();
 		}
 
 		encFL.free();
@@ -781,14 +1284,33 @@ public class SwerveDrive {
 	 * @param angle
 	 */
 	public void pointAllWheels(double angle) {
-		pidFL.setSetpoint(angle);
-		pidRL.setSetpoint(angle);
-		pidFR.setSetpoint(angle);
-		pidRR.setSetpoint(angle);
-		transFL.set(0);
-		transRL.set(0);
-		transFR.set(0);
-		transRR.set(0);
+		setSteeringTarget(0, angle, findEncAng(encFL.getDistance()));
+		setSteeringTarget(1, angle, findEncAng(encRL.getDistance()));
+		setSteeringTarget(2, angle, findEncAng(encFR.getDistance()));
+		setSteeringTarget(3, angle, findEncAng(encRR.getDistance()));
+		setTrans(0, 0);
+		setTrans(1, 0);
+		setTrans(2, 0);
+		setTrans(3, 0);
+	}
+
+	/**
+	 * Sets one wheel to point in a particular direction and stops its drive motor. The other wheels
+	 * are left as they are.
+	 * @param motor location of wheel frontLeft, rearLeft, frontRight, rearRight
+	 * @param angle the angle to point the wheel (-180 to 180)
+	 * @param allowReverse true to turn to the opposite angle instead when it is closer, as driving does
+	 */
+	public void pointWheel(MotorType motor, double angle, boolean allowReverse) {
+		double currentWheelAngle = getEncoderAngle(motor);
+		if (allowReverse && !goToAngle(angle, currentWheelAngle)) {
+			angle += 180;
+			if (angle > 180) {
+				angle -= 360;
+			}
+		}
+		setSteeringTarget(motor.value, angle, currentWheelAngle);
+		setTrans(motor.value, 0);
 	}
 
 	/**
@@ -828,14 +1350,17 @@ public class SwerveDrive {
 	 * Sets all motor values to 0
 	 */
 	public void stopMotors() {
-		transFL.set(0);
-		transRL.set(0);
-		transFR.set(0);
-		transRR.set(0);
-		rotFL.set(0);
-		rotRL.set(0);
-		rotFR.set(0);
-		rotRR.set(0);
+		setTrans(0, 0);
+		setTrans(1, 0);
+		setTrans(2, 0);
+		setTrans(3, 0);
+		stopSteeringProfiles();
+		//The rotation channels belong to the PID threads, so write around the coalescer and have it
+		//write the next PID output no matter what
+		for (int wheel = 0; wheel < 4; wheel++) {
+			getRot(wheel).set(0);
+			coalescer.invalidate(wheel + 4);
+		}
 	}
 	public void setupWeels() {
 		pidFL.setSetpoint(0.0);
@@ -849,25 +1374,90 @@ public class SwerveDrive {
 		pidFR.enable();
 		pidRR.enable();
 	}
+
+	/**
+	 * Stops the wheel rotation PID loops. The setpoints are still updated by the drive methods, so
+	 * they can be checked with getSetpoint, but nothing turns the wheels until enablePID is called.
+	 */
+	public void disablePID() {
+		pidFL.disable();
+		pidRL.disable();
+		pidFR.disable();
+		pidRR.disable();
+		stopSteeringProfiles();
+	}
+
+	/**
+	 * Sets a governor to scale the drive motor outputs by as the battery sags. The rotation motors are
+	 * not scaled, so the wheels keep pointing where they are told while the robot slows down.
+	 * @param governor the governor to read the scale from, or null to always use full output
+	 */
+	public void setPowerGovernor(PowerGovernor governor) {
+		powerGovernor = governor;
+	}
 	
+	/**
+	 * Gets the governor set with setPowerGovernor
+	 * @return the power governor, or null if there is none
+	 */
+	public PowerGovernor getPowerGovernor() {
+		return powerGovernor;
+	}
+	
+	/**
+	 * Sets the clock the steering profile is timed with, the field oriented heading is extrapolated to
+	 * and drive commands are timestamped and timed out with. This is only needed to run the drive
+	 * against a controlled clock, such as when replaying recorded inputs, in which case the field
+	 * oriented gyro sampler's samples, commands given to post and any latency tracer must use the same
+	 * clock.
+	 * @param clock the clock to use (default Clock.SYSTEM)
+	 */
+	public void setClock(Clock clock) {
+		this.clock = clock;
+	}
+	
+	/**
+	 * Switches the drive motors between voltage compensation and percent output. In voltage
+	 * compensation, the drive outputs are scaled to maxVoltage so the robot drives the same speed
+	 * as the battery drains. Motors whose hardware does not support voltage mode stay in percent
+	 * output.
+	 * @param toggle true to enable voltage compensation
+	 * @param maxVoltage the voltage applied at full output
+	 */
 	public void toggleVoltageCompensation(boolean toggle, double maxVoltage) {
 		voltageCompensate = toggle;
 		this.maxVoltage = maxVoltage;
 		
+		for (int wheel = 0; wheel < 4; wheel++) {
+			MotorBackend trans = getTrans(wheel);
+			if (voltageCompensate && trans.supportsVoltageMode()) {
+				trans.setControlMode(ControlMode.VOLTAGE);
+				if (trans.supportsRampRate()) {
+					trans.setRampRate(voltageRampRate);
+				}
+			} else {
+				if (voltageCompensate) {
+					System.err.println("Drive motor " + wheel + " does not support voltage compensation");
+				}
+				trans.setControlMode(ControlMode.PERCENT);
+			}
+		}
+		updateDriveEpsilons();
+		coalescer.invalidate();
+	}
+
+	/**
+	 * Sets the ramp rate used by the drive motors while voltage compensation is enabled
+	 * @param voltsPerSecond the maximum change in output voltage per second, 0 for no ramp
+	 */
+	public void setVoltageRampRate(double voltsPerSecond) {
+		voltageRampRate = voltsPerSecond;
 		if (voltageCompensate) {
-			((CANTalon) transFL).changeControlMode(TalonControlMode.Voltage);
-			((CANTalon) transFL).setVoltageRampRate(RobotSettings.shooterWheelsVoltageRampRate);
-			((CANTalon) transRL).changeControlMode(TalonControlMode.Voltage);
-			((CANTalon) transRL).setVoltageRampRate(RobotSettings.shooterWheelsVoltageRampRate);
-			((CANTalon) transFR).changeControlMode(TalonControlMode.Voltage);
-			((CANTalon) transFR).setVoltageRampRate(RobotSettings.shooterWheelsVoltageRampRate);
-			((CANTalon) transRR).changeControlMode(TalonControlMode.Voltage);
-			((CANTalon) transRR).setVoltageRampRate(RobotSettings.shooterWheelsVoltageRampRate);
-		} else {
-			((CANTalon) transFL).changeControlMode(TalonControlMode.Speed);
-			((CANTalon) transRL).changeControlMode(TalonControlMode.Speed);
-			((CANTalon) transFR).changeControlMode(TalonControlMode.Speed);
-			((CANTalon) transRR).changeControlMode(TalonControlMode.Speed);
+			for (int wheel = 0; wheel < 4; wheel++) {
+				if (getTrans(wheel).supportsRampRate()) {
+					getTrans(wheel).setRampRate(voltsPerSecond);
+				}
+			}
 		}
 	}
 }
@@ -0,0 +1,62 @@
+package org.team484.api.motion;
+
+/**
+ * An immutable drive command for SwerveDrive, holding the same values as SwerveDrive.drive plus the
+ * time the command was created so the latency until it is applied can be measured and a command that
+ * is no longer being posted can be stopped. The time must be from the same clock as the drive's.
+ */
+public class SwerveDriveCommand {
+
+	/**
+	 * Calculated angle from joystick [stick.getDirectionDegrees()]
+	 */
+	public final double stickAngle;
+
+	/**
+	 * Calculated magnatude from joystick [stick.getMagnatude()]
+	 */
+	public final double stickMag;
+
+	/**
+	 * Rotation value for the robot
+	 */
+	public final double rot;
+
+	/**
+	 * Degrees to offset the stick angle by
+	 */
+	public final double angleOffset;
+
+	/**
+	 * The clock time in nanoseconds when the command was created
+	 */
+	public final long timestamp;
+
+	/**
+	 * Creates a new swerve drive command timestamped with System.nanoTime(), for a drive using the
+	 * default clock.
+	 * @param stickAngle calculated angle from joystick [stick.getDirectionDegrees()]
+	 * @param stickMag calculated magnatude from joystick [stick.getMagnatude()]
+	 * @param rot rotation value for the robot
+	 * @param angleOffset degrees to offset the stick angle by
+	 */
+	public SwerveDriveCommand(double stickAngle, double stickMag, double rot, double angleOffset) {
+		this(stickAngle, stickMag, rot, angleOffset, System.nanoTime());
+	}
+
+	/**
+	 * Creates a new swerve drive command with a given timestamp.
+	 * @param stickAngle calculated angle from joystick [stick.getDirectionDegrees()]
+	 * @param stickMag calculated magnatude from joystick [stick.getMagnatude()]
+	 * @param rot rotation value for the robot
+	 * @param angleOffset degrees to offset the stick angle by
+	 * @param timestamp the time the command was created, from the drive's clock
+	 */
+	public SwerveDriveCommand(double stickAngle, double stickMag, double rot, double angleOffset, long timestamp) {
+		this.stickAngle = stickAngle;
+		this.stickMag = stickMag;
+		this.rot = rot;
+		this.angleOffset = angleOffset;
+		this.timestamp = timestamp;
+	}
+}
@@ -0,0 +1,272 @@
+package org.team484.api.motion;
+
+import org.team484.api.motion.SwerveDrive.MotorType;
+import org.team484.api.sensor.DistanceSensor;
+import org.team484.api.util.PeriodicThread;
+import org.team484.api.util.Pose;
+import org.team484.api.util.PoseHolder;
+
+import edu.wpi.first.wpilibj.Encoder;
+import edu.wpi.first.wpilibj.interfaces.Gyro;
+
+/**
+ * SwerveOdometry tracks the position of a swerve drive robot on the field. It runs in its own thread
+ * at a fixed rate and integrates the distance each drive wheel traveled in the direction its module
+ * is pointing (forward kinematics). The robot's movement each loop is the least squares fit of the
+ * four wheel movements, so a slipping wheel only pulls the estimate partway off.
+ * <p>
+ * If a gyro is given, the gyro is used for the heading of the robot and the wheels are only used for
+ * the translation. Otherwise the heading is also integrated from the wheels.
+ * <p>
+ * The module angles and wheelbase are read through a SwerveOdometry.Modules, which is usually a
+ * SwerveDrive, and the wheel distances through DistanceSensors, so the odometry can also be run
+ * against a simulation or a replay.
+ * <p>
+ * The pose is published through a PoseHolder, so any thread may read the latest pose at any time
+ * without blocking the odometry loop. Call start to begin tracking and interrupt the thread to stop.
+ */
+public class SwerveOdometry extends PeriodicThread {
+
+	/*
+	 * Modules in the order of their MotorType values so that index i of every array in this class is
+	 * the module whose MotorType value is i.
+	 */
+	private static final MotorType[] MODULES = {
+			MotorType.kFrontLeft,
+			MotorType.kRearLeft,
+			MotorType.kFrontRight,
+			MotorType.kRearRight
+	};
+
+	/**
+	 * The parts of a swerve drive that the odometry reads besides the wheel distances.
+	 */
+	public interface Modules {
+		/**
+		 * Gets the distance between the left and right wheels.
+		 * @return the wheelbase width in field units.
+		 */
+		double getWheelbaseWidth();
+
+		/**
+		 * Gets the distance between the front and back wheels.
+		 * @return the wheelbase length in field units.
+		 */
+		double getWheelbaseLength();
+
+		/**
+		 * Gets the angle a module is pointing.
+		 * @param module - The location of the module.
+		 * @return the angle in degrees, counter clockwise increasing, with 0 pointing right.
+		 */
+		double getModuleAngle(MotorType module);
+
+		/**
+		 * Reads the modules of a swerve drive.
+		 * @param swerve - The swerve drive.
+		 * @return the modules of the swerve drive.
+		 */
+		static Modules of(final SwerveDrive swerve) {
+			return new Modules() {
+				@Override
+				public double getWheelbaseWidth() {
+					return swerve.getWheelbaseWidth();
+				}
+
+				@Override
+				public double getWheelbaseLength() {
+					return swerve.getWheelbaseLength();
+				}
+
+				@Override
+				public double getModuleAngle(MotorType module) {
+					return swerve.getEncoderAngle(module);
+				}
+			};
+		}
+	}
+
+	private final Modules modules;
+	private final DistanceSensor[] driveEncoders = new DistanceSensor[4];
+	private final Gyro gyro;
+
+	private final PoseHolder pose = new PoseHolder();
+	private final double[] lastDistance = new double[4];
+	private boolean initialized = false;
+
+	private double x = 0;
+	private double y = 0;
+	private double heading = 0;
+	private double gyroZero = 0; //The gyro angle (clockwise) that corresponds to a heading of 0
+
+	private volatile boolean resetPending = false;
+	private volatile double resetX, resetY, resetHeading;
+
+	/**
+	 * Creates a new odometry thread for a swerve drive without a gyro. The heading is integrated from
+	 * the wheels.
+	 * @param swerve - The swerve drive to read module angles and wheelbase dimensions from.
+	 * @param driveFL - The encoder on the front left drive wheel, set to getDistance in field units.
+	 * @param driveRL - The encoder on the rear left drive wheel, set to getDistance in field units.
+	 * @param driveFR - The encoder on the front right drive wheel, set to getDistance in field units.
+	 * @param driveRR - The encoder on the rear right drive wheel, set to getDistance in field units.
+	 * @param periodMs - Milliseconds between odometry updates.
+	 */
+	public SwerveOdometry(SwerveDrive swerve, Encoder driveFL, Encoder driveRL, Encoder driveFR,
+			Encoder driveRR, double periodMs) {
+		this(swerve, driveFL, driveRL, driveFR, driveRR, null, periodMs);
+	}
+
+	/**
+	 * Creates a new odometry thread for a swerve drive using a gyro for the heading.
+	 * @param swerve - The swerve drive to read module angles and wheelbase dimensions from.
+	 * @param driveFL - The encoder on the front left drive wheel, set to getDistance in field units.
+	 * @param driveRL - The encoder on the rear left drive wheel, set to getDistance in field units.
+	 * @param driveFR - The encoder on the front right drive wheel, set to getDistance in field units.
+	 * @param driveRR - The encoder on the rear right drive wheel, set to getDistance in field units.
+	 * @param gyro - The gyro to use for the heading, or null to integrate the heading from the wheels.
+	 * @param periodMs - Milliseconds between odometry updates.
+	 */
+	public SwerveOdometry(SwerveDrive swerve, Encoder driveFL, Encoder driveRL, Encoder driveFR,
+			Encoder driveRR, Gyro gyro, double periodMs) {
+		this(Modules.of(swerve), DistanceSensor.of(driveFL), DistanceSensor.of(driveRL),
+				DistanceSensor.of(driveFR), DistanceSensor.of(driveRR), gyro, periodMs);
+	}
+
+	/**
+	 * Creates a new odometry thread for a swerve drive.
+	 * @param swerve - The swerve drive to read module angles and wheelbase dimensions from.
+	 * @param driveFL - The sensor on the front left drive wheel, reading distance in field units.
+	 * @param driveRL - The sensor on the rear left drive wheel, reading distance in field units.
+	 * @param driveFR - The sensor on the front right drive wheel, reading distance in field units.
+	 * @param driveRR - The sensor on the rear right drive wheel, reading distance in field units.
+	 * @param gyro - The gyro to use for the heading, or null to integrate the heading from the wheels.
+	 * @param periodMs - Milliseconds between odometry updates.
+	 */
+	public SwerveOdometry(SwerveDrive swerve, DistanceSensor driveFL, DistanceSensor driveRL,
+			DistanceSensor driveFR, DistanceSensor driveRR, Gyro gyro, double periodMs) {
+		this(Modules.of(swerve), driveFL, driveRL, driveFR, driveRR, gyro, periodMs);
+	}
+
+	/**
+	 * Creates a new odometry thread for any source of module angles, such as a simulation.
+	 * @param modules - The modules to read angles and wheelbase dimensions from.
+	 * @param driveFL - The sensor on the front left drive wheel, reading distance in field units.
+	 * @param driveRL - The sensor on the rear left drive wheel, reading distance in field units.
+	 * @param driveFR - The sensor on the front right drive wheel, reading distance in field units.
+	 * @param driveRR - The sensor on the rear right drive wheel, reading distance in field units.
+	 * @param gyro - The gyro to use for the heading, or null to integrate the heading from the wheels.
+	 * @param periodMs - Milliseconds between odometry updates.
+	 */
+	public SwerveOdometry(Modules modules, DistanceSensor driveFL, DistanceSensor driveRL,
+			DistanceSensor driveFR, DistanceSensor driveRR, Gyro gyro, double periodMs) {
+		super("SwerveOdometry", periodMs);
+		this.modules = modules;
+		driveEncoders[MotorType.kFrontLeft.value] = driveFL;
+		driveEncoders[MotorType.kRearLeft.value] = driveRL;
+		driveEncoders[MotorType.kFrontRight.value] = driveFR;
+		driveEncoders[MotorType.kRearRight.value] = driveRR;
+		this.gyro = gyro;
+	}
+
+	/**
+	 * Sets the pose of the robot. The new pose takes effect on the next odometry update.
+	 * @param x - The x (right) position.
+	 * @param y - The y (forward) position.
+	 * @param heading - The heading in degrees, counter clockwise increasing.
+	 */
+	public void resetPose(double x, double y, double heading) {
+		resetX = x;
+		resetY = y;
+		resetHeading = heading;
+		resetPending = true;
+	}
+
+	/**
+	 * Copies the latest pose into the given object without allocating.
+	 * @param out - The pose to copy into.
+	 * @return the same pose object that was passed in.
+	 */
+	public Pose getPose(Pose out) {
+		return pose.get(out);
+	}
+
+	/**
+	 * Gets a copy of the latest pose in a new object.
+	 * @return the latest pose.
+	 */
+	public Pose getPose() {
+		return pose.get();
+	}
+
+	/**
+	 * Gets the holder the pose is published through, for sharing with other classes.
+	 * @return the pose holder.
+	 */
+	public PoseHolder getPoseHolder() {
+		return pose;
+	}
+
+	@Override
+	protected void periodic(long nowNanos) {
+		if (!initialized || resetPending) {
+			for (int i = 0; i < 4; i++) {
+				lastDistance[i] = driveEncoders[i].getDistance();
+			}
+			if (resetPending) {
+				resetPending = false;
+				x = resetX;
+				y = resetY;
+				heading = resetHeading;
+			}
+			if (gyro != null) {
+				gyroZero = gyro.getAngle() + heading;
+			}
+			initialized = true;
+			pose.set(x, y, heading, nowNanos);
+			return;
+		}
+
+		double halfWidth = modules.getWheelbaseWidth() / 2.0;
+		double halfLength = modules.getWheelbaseLength() / 2.0;
+
+		double sumX = 0, sumY = 0, sumTurn = 0, sumRadiusSq = 0;
+		for (int i = 0; i < 4; i++) {
+			double distance = driveEncoders[i].getDistance();
+			double delta = distance - lastDistance[i];
+			lastDistance[i] = distance;
+
+			double angle = Math.toRadians(modules.getModuleAngle(MODULES[i]));
+			double dx = delta * Math.cos(angle);
+			double dy = delta * Math.sin(angle);
+			double moduleX = (i == MotorType.kFrontRight.value || i == MotorType.kRearRight.value)
+					? halfWidth : -halfWidth;
+			double moduleY = (i == MotorType.kFrontLeft.value || i == MotorType.kFrontRight.value)
+					? halfLength : -halfLength;
+
+			sumX += dx;
+			sumY += dy;
+			sumTurn += moduleX * dy - moduleY * dx;
+			sumRadiusSq += moduleX * moduleX + moduleY * moduleY;
+		}
+		double robotDx = sumX / 4.0;
+		double robotDy = sumY / 4.0;
+
+		double newHeading;
+		if (gyro != null) {
+			newHeading = gyroZero - gyro.getAngle();
+		} else {
+			newHeading = heading + Math.toDegrees(sumTurn / sumRadiusSq);
+		}
+
+		//Rotate the robot relative movement onto the field using the heading half way through the move
+		double midHeading = Math.toRadians((heading + newHeading) / 2.0);
+		double cos = Math.cos(midHeading);
+		double sin = Math.sin(midHeading);
+		x += robotDx * cos - robotDy * sin;
+		y += robotDx * sin + robotDy * cos;
+		heading = newHeading;
+
+		pose.set(x, y, heading, nowNanos);
+	}
+}
@@ -0,0 +1,350 @@
+package org.team484.api.motion;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+/**
+ * A time parameterized path for a swerve (holonomic) drive. The trajectory is stored as parallel
+ * arrays of primitives, one entry per sample, so it takes little memory and can be sampled without
+ * allocating. Trajectories are meant to be generated once, either offline or when the robot program
+ * starts, and saved to a file so later runs can load them instead of generating them again.
+ * <p>
+ * Positions are in field units with x to the right and y forward from the robot's starting position.
+ * Headings are in degrees and increase counter clockwise. Velocities are in field units per second
+ * and degrees per second, and are relative to the field (not the robot).
+ * <p>
+ * Sampling is done by time. Each trajectory keeps a cursor to the last sampled index, so sampling
+ * with increasing times (as a follower does) is constant time. Sampling out of order falls back on
+ * a binary search. Because of the cursor, a trajectory should only be sampled from one thread.
+ */
+public class SwerveTrajectory {
+
+	private static final int FILE_MAGIC = 0x53575452; //"SWTR"
+	private static final int FILE_VERSION = 1;
+
+	private final double[] time;
+	private final double[] x;
+	private final double[] y;
+	private final double[] heading;
+	private final double[] velocityX;
+	private final double[] velocityY;
+	private final double[] rotationRate;
+
+	private int cursor = 0;
+
+	private SwerveTrajectory(int length) {
+		time = new double[length];
+		x = new double[length];
+		y = new double[length];
+		heading = new double[length];
+		velocityX = new double[length];
+		velocityY = new double[length];
+		rotationRate = new double[length];
+	}
+
+	/**
+	 * Generates a trajectory that drives in a straight line from each waypoint to the next, turning in
+	 * place at up to 180 degrees per second and 360 degrees per second squared between waypoints that
+	 * are in the same position. See the other generate method for details.
+	 * @param xs - The x position of each waypoint.
+	 * @param ys - The y position of each waypoint.
+	 * @param headings - The heading of the robot at each waypoint in degrees.
+	 * @param maxVelocity - The maximum speed in field units per second.
+	 * @param maxAcceleration - The maximum acceleration in field units per second squared.
+	 * @param dt - Seconds between samples.
+	 * @return the generated trajectory.
+	 */
+	public static SwerveTrajectory generate(double[] xs, double[] ys, double[] headings, double maxVelocity,
+			double maxAcceleration, double dt) {
+		return generate(xs, ys, headings, maxVelocity, maxAcceleration, 180, 360, dt);
+	}
+
+	/**
+	 * Generates a trajectory that drives in a straight line from each waypoint to the next. Each
+	 * segment follows a trapezoidal velocity profile that starts and ends at rest, and the heading
+	 * turns the shortest way from one waypoint's heading to the next over the course of the segment.
+	 * A segment between two waypoints in the same position turns in place, following a trapezoidal
+	 * profile of the rotation instead.
+	 * @param xs - The x position of each waypoint.
+	 * @param ys - The y position of each waypoint.
+	 * @param headings - The heading of the robot at each waypoint in degrees.
+	 * @param maxVelocity - The maximum speed in field units per second.
+	 * @param maxAcceleration - The maximum acceleration in field units per second squared.
+	 * @param maxRotationRate - The maximum rotation rate when turning in place, in degrees per second.
+	 * @param maxRotationAcceleration - The maximum rotational acceleration when turning in place, in
+	 *                                  degrees per second squared.
+	 * @param dt - Seconds between samples.
+	 * @return the generated trajectory.
+	 */
+	public static SwerveTrajectory generate(double[] xs, double[] ys, double[] headings, double maxVelocity,
+			double maxAcceleration, double maxRotationRate, double maxRotationAcceleration, double dt) {
+		if (xs.length != ys.length || xs.length != headings.length || xs.length < 2) {
+			throw new IllegalArgumentException("Need at least two waypoints with an x, y and heading each");
+		}
+
+		//Find the time each segment takes so the arrays can be sized before they are filled in
+		int segments = xs.length - 1;
+		double[] segmentLength = new double[segments];
+		double[] segmentTime = new double[segments];
+		double totalTime = 0;
+		for (int i = 0; i < segments; i++) {
+			segmentLength[i] = Math.hypot(xs[i + 1] - xs[i], ys[i + 1] - ys[i]);
+			if (segmentLength[i] > 0) {
+				segmentTime[i] = profileTime(segmentLength[i], maxVelocity, maxAcceleration);
+			} else {
+				double turn = Math.abs(wrapDegrees(headings[i + 1] - headings[i]));
+				segmentTime[i] = profileTime(turn, maxRotationRate, maxRotationAcceleration);
+			}
+			totalTime += segmentTime[i];
+		}
+		int length = (int) Math.ceil(totalTime / dt) + 1;
+		SwerveTrajectory trajectory = new SwerveTrajectory(length);
+
+		int segment = 0;
+		double segmentStart = 0;
+		for (int i = 0; i < length; i++) {
+			double t = Math.min(i * dt, totalTime);
+			while (segment < segments - 1 && t > segmentStart + segmentTime[segment]) {
+				segmentStart += segmentTime[segment];
+				segment++;
+			}
+			double segmentT = Math.min(t - segmentStart, segmentTime[segment]);
+			double turn = wrapDegrees(headings[segment + 1] - headings[segment]);
+			double distance = 0, speed = 0, fraction, rotationRate;
+			double dirX = 0, dirY = 0;
+			if (segmentLength[segment] > 0) {
+				distance = profileDistance(segmentT, segmentLength[segment], maxVelocity, maxAcceleration);
+				speed = profileVelocity(segmentT, segmentLength[segment], maxVelocity, maxAcceleration);
+				fraction = distance / segmentLength[segment];
+				rotationRate = turn * speed / segmentLength[segment];
+				dirX = (xs[segment + 1] - xs[segment]) / segmentLength[segment];
+				dirY = (ys[segment + 1] - ys[segment]) / segmentLength[segment];
+			} else if (turn != 0) {
+				//Turning in place, so the heading follows its own profile
+				double angle = Math.abs(turn);
+				fraction = profileDistance(segmentT, angle, maxRotationRate, maxRotationAcceleration) / angle;
+				rotationRate = Math.signum(turn)
+						* profileVelocity(segmentT, angle, maxRotationRate, maxRotationAcceleration);
+			} else {
+				fraction = 1;
+				rotationRate = 0;
+			}
+
+			trajectory.time[i] = t;
+			trajectory.x[i] = xs[segment] + dirX * distance;
+			trajectory.y[i] = ys[segment] + dirY * distance;
+			trajectory.heading[i] = wrapDegrees(headings[segment] + turn * fraction);
+			trajectory.velocityX[i] = dirX * speed;
+			trajectory.velocityY[i] = dirY * speed;
+			trajectory.rotationRate[i] = rotationRate;
+		}
+		return trajectory;
+	}
+
+	/**
+	 * Loads a trajectory that was previously saved with save.
+	 * @param file - The file to load from.
+	 * @return the trajectory, or null if the file could not be read.
+	 */
+	public static SwerveTrajectory load(File file) {
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+			if (in.readInt() != FILE_MAGIC || in.readInt() != FILE_VERSION) {
+				System.err.println("Not a swerve trajectory file: " + file);
+				return null;
+			}
+			//7 doubles per sample follow a 3 int header, so a length the file cannot hold means it is corrupt
+			int length = in.readInt();
+			if (length < 1 || length > (file.length() - 12) / 56) {
+				System.err.println("Swerve trajectory file has a bad length: " + file);
+				return null;
+			}
+			SwerveTrajectory trajectory = new SwerveTrajectory(length);
+			readArray(in, trajectory.time);
+			readArray(in, trajectory.x);
+			readArray(in, trajectory.y);
+			readArray(in, trajectory.heading);
+			readArray(in, trajectory.velocityX);
+			readArray(in, trajectory.velocityY);
+			readArray(in, trajectory.rotationRate);
+			return trajectory;
+		} catch (IOException e) {
+			e.printStackTrace();
+			return null;
+		}
+	}
+
+	/**
+	 * Saves this trajectory to a file so it can be loaded later without generating it again.
+	 * @param file - The file to save to.
+	 * @return - If the trajectory was saved successfully.
+	 */
+	public boolean save(File file) {
+		try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)))) {
+			out.writeInt(FILE_MAGIC);
+			out.writeInt(FILE_VERSION);
+			out.writeInt(time.length);
+			writeArray(out, time);
+			writeArray(out, x);
+			writeArray(out, y);
+			writeArray(out, heading);
+			writeArray(out, velocityX);
+			writeArray(out, velocityY);
+			writeArray(out, rotationRate);
+			return true;
+		} catch (IOException e) {
+			e.printStackTrace();
+			return false;
+		}
+	}
+
+	/**
+	 * Gets the total time it takes to follow this trajectory.
+	 * @return the duration in seconds.
+	 */
+	public double getDuration() {
+		return time[time.length - 1];
+	}
+
+	/**
+	 * Gets the number of samples in this trajectory.
+	 * @return the number of samples.
+	 */
+	public int length() {
+		return time.length;
+	}
+
+	/**
+	 * Samples the trajectory at a point in time, interpolating between the stored samples. Times
+	 * before the start or after the end are clamped to the first or last sample.
+	 * @param t - The time since the start of the trajectory in seconds.
+	 * @param out - The state object to write the sample into.
+	 * @return the same state object that was passed in.
+	 */
+	public State sample(double t, State out) {
+		int last = time.length - 1;
+		if (t <= time[0]) {
+			return copySample(0, out);
+		}
+		if (t >= time[last]) {
+			return copySample(last, out);
+		}
+
+		//Move the cursor forward for increasing times, otherwise binary search for the sample
+		if (t < time[cursor]) {
+			int low = 0, high = cursor;
+			while (high - low > 1) {
+				int mid = (low + high) >>> 1;
+				if (time[mid] <= t) {
+					low = mid;
+				} else {
+					high = mid;
+				}
+			}
+			cursor = low;
+		}
+		while (cursor < last - 1 && time[cursor + 1] <= t) {
+			cursor++;
+		}
+
+		int i = cursor;
+		double fraction = (t - time[i]) / (time[i + 1] - time[i]);
+		out.time = t;
+		out.x = lerp(x[i], x[i + 1], fraction);
+		out.y = lerp(y[i], y[i + 1], fraction);
+		out.heading = wrapDegrees(heading[i] + wrapDegrees(heading[i + 1] - heading[i]) * fraction);
+		out.velocityX = lerp(velocityX[i], velocityX[i + 1], fraction);
+		out.velocityY = lerp(velocityY[i], velocityY[i + 1], fraction);
+		out.rotationRate = lerp(rotationRate[i], rotationRate[i + 1], fraction);
+		return out;
+	}
+
+	private State copySample(int i, State out) {
+		out.time = time[i];
+		out.x = x[i];
+		out.y = y[i];
+		out.heading = heading[i];
+		out.velocityX = velocityX[i];
+		out.velocityY = velocityY[i];
+		out.rotationRate = rotationRate[i];
+		return out;
+	}
+
+	/**
+	 * The state of the robot at one point in a trajectory. State objects are mutable so a follower can
+	 * reuse the same one every loop.
+	 */
+	public static class State {
+		public double time;
+		public double x;
+		public double y;
+		public double heading;
+		public double velocityX;
+		public double velocityY;
+		public double rotationRate;
+	}
+
+	/*
+	 * Trapezoidal profile helpers. A profile covers the given distance starting and ending at rest,
+	 * and becomes a triangle profile when the distance is too short to reach the max velocity.
+	 */
+
+	private static double profileTime(double distance, double maxVelocity, double maxAcceleration) {
+		double accelDistance = maxVelocity * maxVelocity / maxAcceleration;
+		if (distance < accelDistance) {
+			return 2.0 * Math.sqrt(distance / maxAcceleration);
+		}
+		return 2.0 * maxVelocity / maxAcceleration + (distance - accelDistance) / maxVelocity;
+	}
+
+	private static double profileVelocity(double t, double distance, double maxVelocity, double maxAcceleration) {
+		double cruise = Math.min(maxVelocity, Math.sqrt(distance * maxAcceleration));
+		double total = profileTime(distance, maxVelocity, maxAcceleration);
+		return Math.max(Math.min(Math.min(t, total - t) * maxAcceleration, cruise), 0);
+	}
+
+	private static double profileDistance(double t, double distance, double maxVelocity, double maxAcceleration) {
+		double cruise = Math.min(maxVelocity, Math.sqrt(distance * maxAcceleration));
+		double accelTime = cruise / maxAcceleration;
+		double total = profileTime(distance, maxVelocity, maxAcceleration);
+		if (t <= accelTime) {
+			return 0.5 * maxAcceleration * t * t;
+		}
+		if (t <= total - accelTime) {
+			return 0.5 * maxAcceleration * accelTime * accelTime + cruise * (t - accelTime);
+		}
+		double remaining = Math.max(total - t, 0);
+		return distance - 0.5 * maxAcceleration * remaining * remaining;
+	}
+
+	private static double lerp(double a, double b, double fraction) {
+		return a + (b - a) * fraction;
+	}
+
+	private static double wrapDegrees(double angle) {
+		while (angle > 180) {
+			angle -= 360;
+		}
+		while (angle <= -180) {
+			angle += 360;
+		}
+		return angle;
+	}
+
+	private static void writeArray(DataOutputStream out, double[] array) throws IOException {
+		for (double value : array) {
+			out.writeDouble(value);
+		}
+	}
+
+	private static void readArray(DataInputStream in, double[] array) throws IOException {
+		for (int i = 0; i < array.length; i++) {
+			array[i] = in.readDouble();
+		}
+	}
+}
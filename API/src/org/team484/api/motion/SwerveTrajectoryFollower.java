@@ -0,0 +1,135 @@
+package org.team484.api.motion;
+
+import org.team484.api.util.Clock;
+import org.team484.api.util.Pose;
+import org.team484.api.util.PoseHolder;
+
+/**
+ * Follows a SwerveTrajectory by sampling it by time and feeding the result into SwerveDrive.drive
+ * every cycle. The velocity from the trajectory is used as a feed forward, and if a PoseHolder (for
+ * example from SwerveOdometry) is given, the difference between the measured and planned position is
+ * added back in proportionally. Nothing is allocated per cycle.
+ * <p>
+ * Call start once when the trajectory should begin, then call update every cycle until isFinished
+ * returns true. The time since start is read from a Clock, which is System.nanoTime() unless set
+ * otherwise.
+ */
+public class SwerveTrajectoryFollower {
+
+	private final SwerveDrive swerve;
+	private final SwerveTrajectory trajectory;
+	private final double maxVelocity;
+	private final double maxRotationRate;
+
+	private PoseHolder poseSource = null;
+	private double kPosition = 0;
+	private double kHeading = 0;
+
+	private final SwerveTrajectory.State state = new SwerveTrajectory.State();
+	private final Pose pose = new Pose();
+	private volatile Clock clock = Clock.SYSTEM;
+	private long startTime = 0;
+	private boolean started = false;
+
+	/**
+	 * Creates a new follower for a trajectory.
+	 * @param swerve - The swerve drive to command.
+	 * @param trajectory - The trajectory to follow.
+	 * @param maxVelocity - The speed of the robot at a stick magnitude of 1, in field units per second.
+	 * @param maxRotationRate - The rotation rate of the robot at a rotation of 1, in degrees per second.
+	 */
+	public SwerveTrajectoryFollower(SwerveDrive swerve, SwerveTrajectory trajectory, double maxVelocity,
+			double maxRotationRate) {
+		this.swerve = swerve;
+		this.trajectory = trajectory;
+		this.maxVelocity = maxVelocity;
+		this.maxRotationRate = maxRotationRate;
+	}
+
+	/**
+	 * Sets a source for the measured pose of the robot and the gains used to correct for the error
+	 * between the measured and planned pose. Without a pose source, the follower assumes the robot is
+	 * exactly where the trajectory says it should be.
+	 * @param poseSource - The holder to read the measured pose from.
+	 * @param kPosition - Field units per second of correction per field unit of position error.
+	 * @param kHeading - Degrees per second of correction per degree of heading error.
+	 */
+	public void setPoseFeedback(PoseHolder poseSource, double kPosition, double kHeading) {
+		this.poseSource = poseSource;
+		this.kPosition = kPosition;
+		this.kHeading = kHeading;
+	}
+
+	/**
+	 * Starts following the trajectory from the beginning.
+	 */
+	public void start() {
+		startTime = clock.nanoTime();
+		started = true;
+	}
+
+	/**
+	 * Checks if the end of the trajectory has been reached.
+	 * @return true once the trajectory's duration has elapsed.
+	 */
+	public boolean isFinished() {
+		return started && getElapsedTime() >= trajectory.getDuration();
+	}
+
+	/**
+	 * Gets the time since start was called.
+	 * @return the elapsed time in seconds.
+	 */
+	public double getElapsedTime() {
+		return (clock.nanoTime() - startTime) / 1e9;
+	}
+
+	/**
+	 * Sets the clock the trajectory is timed with. This is only needed to follow the trajectory against
+	 * a controlled clock, such as in a simulation or when replaying recorded inputs, and should be set
+	 * before start.
+	 * @param clock - The clock to use (default Clock.SYSTEM)
+	 */
+	public void setClock(Clock clock) {
+		this.clock = clock;
+	}
+
+	/**
+	 * Samples the trajectory for the current time and drives the swerve drive. Should be called every
+	 * cycle. Stops the drive motors once the trajectory is finished.
+	 */
+	public void update() {
+		if (!started) {
+			return;
+		}
+		double t = getElapsedTime();
+		if (t >= trajectory.getDuration()) {
+			swerve.drive(0, 0, 0);
+			return;
+		}
+		trajectory.sample(t, state);
+
+		double velocityX = state.velocityX;
+		double velocityY = state.velocityY;
+		double rotationRate = state.rotationRate;
+		double heading = state.heading;
+		if (poseSource != null) {
+			poseSource.get(pose);
+			velocityX += kPosition * (state.x - pose.getX());
+			velocityY += kPosition * (state.y - pose.getY());
+			double headingError = state.heading - pose.getHeading();
+			while (headingError > 180) headingError -= 360;
+			while (headingError <= -180) headingError += 360;
+			rotationRate += kHeading * headingError;
+			heading = pose.getHeading();
+		}
+
+		//SwerveDrive takes a joystick style angle (clockwise from forward) and subtracts the offset
+		//from the polar angle, so passing the heading as the offset makes the command field oriented
+		double polarAngle = Math.toDegrees(Math.atan2(velocityY, velocityX));
+		double stickAngle = 90.0 - polarAngle;
+		double stickMag = Math.min(Math.hypot(velocityX, velocityY) / maxVelocity, 1.0);
+		double rot = Math.max(Math.min(rotationRate / maxRotationRate, 1.0), -1.0);
+		swerve.drive(stickAngle, stickMag, rot, heading);
+	}
+}
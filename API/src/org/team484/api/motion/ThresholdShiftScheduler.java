@@ -0,0 +1,39 @@
+package org.team484.api.motion;
+
+/**
+ * The original ShifterDrive shifting logic: shift to high gear above a speed plus a deadband and back
+ * to low gear below the speed minus the deadband. It relies on the shifting cooldown to keep from
+ * shifting back and forth.
+ */
+public class ThresholdShiftScheduler implements ShiftScheduler {
+
+	//The robot shifts to high gear when its speed >shiftingSpeed + deadband
+	//The robot shifts to low gear when its speed <shiftingSpeed - deadband
+	private volatile double shiftingSpeed = 70;
+	private volatile double shiftingDeadband = 5;
+
+	/**
+	 * Sets the speed at which the shifter will change back and fourth between high and low gears.
+	 * @param speed - speed in units per seconds.
+	 */
+	public void setShiftingSpeed(double speed) {
+		shiftingSpeed = speed;
+	}
+
+	/**
+	 * Sets the deadband for shifting (in units per second).
+	 * @param deadband - the deadband in the shifter
+	 */
+	public void setShiftingDeadband(double deadband) {
+		shiftingDeadband = deadband;
+	}
+
+	@Override
+	public boolean selectLowGear(ShiftInputs inputs) {
+		if (inputs.lowGear) {
+			return !(inputs.speed > shiftingSpeed + shiftingDeadband);
+		} else {
+			return inputs.speed < shiftingSpeed - shiftingDeadband;
+		}
+	}
+}
@@ -0,0 +1,132 @@
+package org.team484.api.motion;
+
+import org.team484.api.util.Clock;
+
+import edu.wpi.first.wpilibj.DoubleSolenoid.Value;
+
+/**
+ * Transmission drives the pistons of a shifting gearbox with any number of speeds, such as a three
+ * speed gearbox built from two pistons. The gears and the piston pattern for each are described by a
+ * GearTable. The pistons are ShifterSolenoids, so setting a piston to the value it already has does not
+ * reach the PCM.
+ * <p>
+ * The commanded gear, the gear before it, and the time of the shift are replaced as a whole on every
+ * shift, so readers on other threads never see a gear with the wrong shift time.
+ */
+public class Transmission {
+
+	/**
+	 * The commanded gear and the one before it
+	 */
+	private static class State {
+		final int gear;
+		final int previous;
+		final long time;
+
+		State(int gear, int previous, long time) {
+			this.gear = gear;
+			this.previous = previous;
+			this.time = time;
+		}
+	}
+
+	private final GearTable table;
+	private final ShifterSolenoid[] pistons;
+	private volatile State state;
+	private volatile Clock clock = Clock.SYSTEM;
+	private volatile long shiftDelay = 0; //Time for a shift to complete (in ns)
+
+	/**
+	 * Creates a transmission. The starting gear is found from the values the pistons are set to, or is
+	 * the lowest gear if they do not match a gear.
+	 * @param table - The gears of the gearbox.
+	 * @param pistons - The solenoids of the pistons, in the order of the bits of the piston patterns.
+	 */
+	public Transmission(GearTable table, ShifterSolenoid... pistons) {
+		this.table = table;
+		this.pistons = pistons.clone();
+		for (int gear = 0; gear < table.getGearCount(); gear++) {
+			if (table.getPattern(gear) >> pistons.length != 0) {
+				System.err.println("Gear " + gear + " uses more pistons than the transmission has");
+			}
+		}
+		int pattern = 0;
+		for (int i = 0; i < pistons.length; i++) {
+			if (pistons[i].get() == Value.kForward) {
+				pattern |= 1 << i;
+			}
+		}
+		int gear = Math.max(table.findGear(pattern), 0);
+		state = new State(gear, gear, 0);
+	}
+
+	/**
+	 * Sets the pistons to the pattern for a gear.
+	 * @param gear - The gear, from 0 for the lowest. Gears past the ends of the table are clamped.
+	 */
+	public synchronized void shiftTo(int gear) {
+		gear = Math.max(Math.min(gear, table.getTopGear()), 0);
+		int pattern = table.getPattern(gear);
+		for (int i = 0; i < pistons.length; i++) {
+			pistons[i].set((pattern & (1 << i)) != 0 ? Value.kForward : Value.kReverse);
+		}
+		State old = state;
+		if (gear != old.gear) {
+			state = new State(gear, old.gear, clock.nanoTime());
+		}
+	}
+
+	/**
+	 * Gets the gear last commanded.
+	 * @return the gear, from 0 for the lowest.
+	 */
+	public int getGear() {
+		return state.gear;
+	}
+
+	/**
+	 * Gets the gear the gearbox is in. During the shift delay after a shift, this is the gear that was
+	 * being shifted out of.
+	 * @return the gear, from 0 for the lowest.
+	 */
+	public int getEngagedGear() {
+		State state = this.state;
+		if (shiftDelay > 0 && clock.nanoTime() - state.time < shiftDelay) {
+			return state.previous;
+		}
+		return state.gear;
+	}
+
+	/**
+	 * Gets the clock time of the last change of gear.
+	 * @return the time in nanoseconds, or 0 if the gear has not changed.
+	 */
+	public long getLastShiftTime() {
+		return state.time;
+	}
+
+	/**
+	 * Sets the time from commanding a shift to the gearbox being in the new gear, as measured on the
+	 * robot.
+	 * @param ms - The shift time in milliseconds (default 0)
+	 */
+	public void setShiftDelay(double ms) {
+		shiftDelay = (long) (ms * 1e6);
+	}
+
+	/**
+	 * Sets the clock that shift times are read from.
+	 * @param clock - The clock to use (default Clock.SYSTEM)
+	 */
+	public void setClock(Clock clock) {
+		this.clock = clock;
+	}
+
+	/**
+	 * Gets the gears of the gearbox.
+	 * @return the gear table.
+	 */
+	public GearTable getGearTable() {
+		return table;
+	}
+}
@@ -0,0 +1,89 @@
+package org.team484.api.sensor;
+
+/**
+ * Estimates rate and acceleration with an alpha-beta-gamma filter, which tracks position, rate and
+ * acceleration, predicts the next count from them, and corrects each by a fixed fraction of the error
+ * in the prediction. Only the newest sample is used, so the cost per sample does not depend on any
+ * window. Larger gains follow changes faster, smaller gains reject more noise. With gamma set to 0 it
+ * is a plain alpha-beta filter and reports no acceleration.
+ */
+public class AlphaBetaVelocityEstimator implements VelocityEstimator {
+
+	private final double alpha;
+	private final double beta;
+	private final double gamma;
+
+	private boolean initialized = false;
+	private long lastTime = 0;
+	private double position = 0;
+	private double rate = 0;
+	private double acceleration = 0;
+
+	/**
+	 * Creates an estimator with gains that suit sampling every few milliseconds (0.5, 0.1, 0.01).
+	 */
+	public AlphaBetaVelocityEstimator() {
+		this(0.5, 0.1, 0.01);
+	}
+
+	/**
+	 * Creates an estimator.
+	 * @param alpha - The fraction of the error applied to the position, between 0 and 1.
+	 * @param beta - The gain on the error applied to the rate.
+	 * @param gamma - The gain on the error applied to the acceleration, or 0 for none.
+	 */
+	public AlphaBetaVelocityEstimator(double alpha, double beta, double gamma) {
+		this.alpha = alpha;
+		this.beta = beta;
+		this.gamma = gamma;
+	}
+
+	@Override
+	public int getWindowSize() {
+		return 1;
+	}
+
+	@Override
+	public void update(EncoderSampleBuffer samples) {
+		if (samples.size() == 0) {
+			return;
+		}
+		double count = samples.getCount(0);
+		long time = samples.getTime(0);
+		if (!initialized) {
+			initialized = true;
+			position = count;
+			lastTime = time;
+			return;
+		}
+		double dt = (time - lastTime) / 1e9;
+		if (dt <= 0) {
+			return;
+		}
+		lastTime = time;
+
+		double predicted = position + rate * dt + 0.5 * acceleration * dt * dt;
+		double predictedRate = rate + acceleration * dt;
+		double error = count - predicted;
+		position = predicted + alpha * error;
+		rate = predictedRate + beta * error / dt;
+		acceleration += gamma * 2 * error / (dt * dt);
+	}
+
+	@Override
+	public double getRate() {
+		return rate;
+	}
+
+	@Override
+	public double getAcceleration() {
+		return acceleration;
+	}
+
+	@Override
+	public void reset() {
+		initialized = false;
+		rate = 0;
+		acceleration = 0;
+	}
+}
@@ -0,0 +1,62 @@
+package org.team484.api.sensor;
+
+import edu.wpi.first.wpilibj.Encoder;
+
+/**
+ * DistanceSensor is the part of an encoder that the drive classes actually use: a distance, a rate
+ * and a way to reset and free it. Drive classes take a DistanceSensor instead of an Encoder so they
+ * can be run against simulated sensors. Use DistanceSensor.of to use a WPILib Encoder.
+ */
+public interface DistanceSensor {
+
+	/**
+	 * Gets the distance traveled since the sensor was last reset.
+	 * @return the distance in the units the sensor was set up with.
+	 */
+	double getDistance();
+
+	/**
+	 * Gets the current rate of travel.
+	 * @return the rate in distance units per second.
+	 */
+	double getRate();
+
+	/**
+	 * Resets the distance to 0.
+	 */
+	void reset();
+
+	/**
+	 * Frees the hardware resources used by the sensor.
+	 */
+	void free();
+
+	/**
+	 * Wraps a WPILib encoder as a distance sensor.
+	 * @param encoder - The encoder to wrap.
+	 * @return the distance sensor for the encoder.
+	 */
+	static DistanceSensor of(final Encoder encoder) {
+		return new DistanceSensor() {
+			@Override
+			public double getDistance() {
+				return encoder.getDistance();
+			}
+
+			@Override
+			public double getRate() {
+				return encoder.getRate();
+			}
+
+			@Override
+			public void reset() {
+				encoder.reset();
+			}
+
+			@Override
+			public void free() {
+				encoder.free();
+			}
+		};
+	}
+}
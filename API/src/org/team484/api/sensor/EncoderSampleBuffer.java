@@ -0,0 +1,85 @@
+package org.team484.api.sensor;
+
+/**
+ * A fixed size ring buffer of encoder counts and the times they were read, kept in primitive arrays
+ * so that adding a sample never allocates. When the buffer is full each new sample replaces the
+ * oldest one. Samples are looked up by age, where age 0 is the newest sample.
+ * <p>
+ * The buffer is not thread safe. It is filled and read by the EncoderSampler thread.
+ */
+public class EncoderSampleBuffer {
+
+	private final int[] counts;
+	private final long[] times;
+	private int newest = -1;
+	private int size = 0;
+
+	/**
+	 * Creates an empty buffer.
+	 * @param capacity - The number of samples to keep.
+	 */
+	public EncoderSampleBuffer(int capacity) {
+		counts = new int[Math.max(capacity, 1)];
+		times = new long[counts.length];
+	}
+
+	/**
+	 * Adds a sample, replacing the oldest one if the buffer is full.
+	 * @param count - The encoder count.
+	 * @param nanos - The System.nanoTime() value the count was read at.
+	 */
+	public void add(int count, long nanos) {
+		newest = (newest + 1) % counts.length;
+		counts[newest] = count;
+		times[newest] = nanos;
+		if (size < counts.length) {
+			size++;
+		}
+	}
+
+	/**
+	 * Removes every sample.
+	 */
+	public void clear() {
+		newest = -1;
+		size = 0;
+	}
+
+	/**
+	 * Gets the number of samples in the buffer.
+	 * @return the number of samples.
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Gets the number of samples the buffer can hold.
+	 * @return the capacity.
+	 */
+	public int capacity() {
+		return counts.length;
+	}
+
+	/**
+	 * Gets the count of a sample.
+	 * @param age - 0 for the newest sample, up to size() - 1 for the oldest.
+	 * @return the encoder count.
+	 */
+	public int getCount(int age) {
+		return counts[index(age)];
+	}
+
+	/**
+	 * Gets the time of a sample.
+	 * @param age - 0 for the newest sample, up to size() - 1 for the oldest.
+	 * @return the System.nanoTime() value the sample was read at.
+	 */
+	public long getTime(int age) {
+		return times[index(age)];
+	}
+
+	private int index(int age) {
+		return (newest - age + counts.length) % counts.length;
+	}
+}
@@ -0,0 +1,114 @@
+package org.team484.api.sensor;
+
+import org.team484.api.util.PeriodicThread;
+
+import edu.wpi.first.wpilibj.Encoder;
+
+/**
+ * EncoderSampler reads an encoder's count on its own thread at a fixed rate, records each count and
+ * the time it was read in an EncoderSampleBuffer, and runs a VelocityEstimator on the samples. The
+ * latest rate and acceleration are published with a sequence lock, the same way HeadingHolder shares
+ * gyro samples, so any thread can read them without locking and without seeing a rate and acceleration
+ * from different samples.
+ * <p>
+ * Nothing is allocated once the sampler is created. Call start to begin sampling and interrupt the
+ * thread to stop it.
+ */
+public class EncoderSampler extends PeriodicThread {
+
+	private final Encoder encoder;
+	private final VelocityEstimator estimator;
+	private final EncoderSampleBuffer samples;
+	private volatile int resetCount = 0;
+	private int lastResetCount = 0;
+
+	private volatile int sequence = 0;
+	private volatile double rate = 0;
+	private volatile double acceleration = 0;
+	private volatile long timestamp = 0;
+
+	/**
+	 * Creates a sampler for an encoder.
+	 * @param encoder - The encoder to sample. Its count is read with get().
+	 * @param periodMs - Milliseconds between samples. A few milliseconds is typical.
+	 * @param estimator - The estimator to run on the samples.
+	 */
+	public EncoderSampler(Encoder encoder, double periodMs, VelocityEstimator estimator) {
+		super("EncoderSampler", periodMs);
+		this.encoder = encoder;
+		this.estimator = estimator;
+		samples = new EncoderSampleBuffer(estimator.getWindowSize());
+	}
+
+	@Override
+	protected void periodic(long nowNanos) {
+		int resets = resetCount;
+		if (resets != lastResetCount) {
+			lastResetCount = resets;
+			samples.clear();
+			estimator.reset();
+		}
+		samples.add(encoder.get(), nowNanos);
+		estimator.update(samples);
+
+		sequence++;
+		rate = estimator.getRate();
+		acceleration = estimator.getAcceleration();
+		timestamp = nowNanos;
+		sequence++;
+	}
+
+	/**
+	 * Clears the samples and estimate on the next sample. Call this before and after resetting the
+	 * encoder so that counts from before the reset are never fit together with counts from after it.
+	 */
+	public void clear() {
+		resetCount++;
+	}
+
+	/**
+	 * Gets the estimated rate from the latest sample.
+	 * @return the rate in pulses per second.
+	 */
+	public double getRate() {
+		return rate;
+	}
+
+	/**
+	 * Gets the estimated acceleration from the latest sample.
+	 * @return the acceleration in pulses per second per second.
+	 */
+	public double getAcceleration() {
+		return acceleration;
+	}
+
+	/**
+	 * Gets the time of the latest sample.
+	 * @return the System.nanoTime() value of the sample, or 0 if there has not been one.
+	 */
+	public long getTimestamp() {
+		return timestamp;
+	}
+
+	/**
+	 * Gets the rate and acceleration from the same sample.
+	 * @param output - An array of at least 2 elements to write the rate and acceleration to, in pulses
+	 *                 per second and pulses per second per second.
+	 */
+	public void get(double[] output) {
+		int seq;
+		do {
+			seq = sequence;
+			output[0] = rate;
+			output[1] = acceleration;
+		} while ((seq & 1) != 0 || seq != sequence);
+	}
+
+	/**
+	 * Gets the estimator the samples are run through.
+	 * @return the velocity estimator.
+	 */
+	public VelocityEstimator getEstimator() {
+		return estimator;
+	}
+}
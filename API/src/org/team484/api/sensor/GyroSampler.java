@@ -0,0 +1,89 @@
+package org.team484.api.sensor;
+
+import org.team484.api.util.HeadingHolder;
+import org.team484.api.util.PeriodicThread;
+
+import edu.wpi.first.wpilibj.interfaces.Gyro;
+
+/**
+ * GyroSampler reads a gyro on its own thread at a higher rate than the main robot loop and publishes
+ * the angle and turn rate through a HeadingHolder. Readers get the angle extrapolated to the moment
+ * they ask for it, so the heading used by the drive is not a cycle old while the robot spins quickly.
+ * <p>
+ * The gyro is only used from the sampler thread once it is started, including for resets. Call start
+ * to begin sampling and interrupt the thread to stop it.
+ */
+public class GyroSampler extends PeriodicThread {
+
+	private final Gyro gyro;
+	private final HeadingHolder holder = new HeadingHolder();
+	private volatile boolean resetRequested = false;
+	private volatile long maxExtrapolation = 50000000L;
+
+	/**
+	 * Creates a sampler for a gyro.
+	 * @param gyro - The gyro to sample.
+	 * @param periodMs - Milliseconds between samples. A few milliseconds is typical.
+	 */
+	public GyroSampler(Gyro gyro, double periodMs) {
+		super("GyroSampler", periodMs);
+		this.gyro = gyro;
+	}
+
+	@Override
+	protected void periodic(long nowNanos) {
+		if (resetRequested) {
+			resetRequested = false;
+			gyro.reset();
+		}
+		holder.set(gyro.getAngle(), gyro.getRate(), nowNanos);
+	}
+
+	/**
+	 * Resets the gyro angle to 0 on the next sample.
+	 */
+	public void reset() {
+		resetRequested = true;
+	}
+
+	/**
+	 * Sets the furthest the angle is extrapolated past the latest sample.
+	 * @param ms - The maximum extrapolation in milliseconds (default 50)
+	 */
+	public void setMaxExtrapolation(double ms) {
+		maxExtrapolation = (long) (ms * 1e6);
+	}
+
+	/**
+	 * Gets the gyro angle extrapolated to now.
+	 * @return the angle in degrees, clockwise increasing as the gyro reports it.
+	 */
+	public double getAngle() {
+		return getAngle(System.nanoTime());
+	}
+
+	/**
+	 * Gets the gyro angle extrapolated to a given time.
+	 * @param atNanos - The System.nanoTime() value to extrapolate to.
+	 * @return the angle in degrees, clockwise increasing as the gyro reports it.
+	 */
+	public double getAngle(long atNanos) {
+		return holder.extrapolate(atNanos, maxExtrapolation);
+	}
+
+	/**
+	 * Gets the turn rate from the latest sample.
+	 * @return the rate in degrees per second, clockwise increasing.
+	 */
+	public double getRate() {
+		return holder.getRate();
+	}
+
+	/**
+	 * Gets the holder the samples are published through.
+	 * @return the heading holder.
+	 */
+	public HeadingHolder getHeadingHolder() {
+		return holder;
+	}
+}
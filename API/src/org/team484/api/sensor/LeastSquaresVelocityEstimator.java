@@ -0,0 +1,85 @@
+package org.team484.api.sensor;
+
+/**
+ * Estimates rate as the slope of the least squares line through the last few samples, and
+ * acceleration from the least squares parabola through the same samples. Every count in the window
+ * contributes, so a single late or missed pulse moves the estimate far less than it moves a rate found
+ * from the time between two pulses. A longer window gives a smoother estimate that lags further behind.
+ */
+public class LeastSquaresVelocityEstimator implements VelocityEstimator {
+
+	private final int window;
+	private double rate = 0;
+	private double acceleration = 0;
+
+	/**
+	 * Creates an estimator.
+	 * @param window - The number of samples to fit, at least 2. Acceleration needs at least 3.
+	 */
+	public LeastSquaresVelocityEstimator(int window) {
+		this.window = Math.max(window, 2);
+	}
+
+	@Override
+	public int getWindowSize() {
+		return window;
+	}
+
+	@Override
+	public void update(EncoderSampleBuffer samples) {
+		int n = Math.min(samples.size(), window);
+		if (n < 2) {
+			return;
+		}
+		//Times and counts are taken relative to the newest sample to keep the sums small
+		long t0 = samples.getTime(0);
+		int c0 = samples.getCount(0);
+		double st = 0, st2 = 0, st3 = 0, st4 = 0, sc = 0, stc = 0, st2c = 0;
+		for (int age = 0; age < n; age++) {
+			double t = (samples.getTime(age) - t0) / 1e9;
+			double c = samples.getCount(age) - c0;
+			double t2 = t * t;
+			st += t;
+			st2 += t2;
+			st3 += t2 * t;
+			st4 += t2 * t2;
+			sc += c;
+			stc += t * c;
+			st2c += t2 * c;
+		}
+
+		double lineDenominator = n * st2 - st * st;
+		if (lineDenominator <= 0) {
+			return;
+		}
+		rate = (n * stc - st * sc) / lineDenominator;
+
+		if (n < 3) {
+			acceleration = 0;
+			return;
+		}
+		//Solve the normal equations for c = a + b*t + q*t^2 with Cramer's rule
+		double det = n * (st2 * st4 - st3 * st3) - st * (st * st4 - st3 * st2) + st2 * (st * st3 - st2 * st2);
+		if (Math.abs(det) < 1e-18) {
+			return;
+		}
+		double detQ = n * (st2 * st2c - stc * st3) - st * (st * st2c - stc * st2) + sc * (st * st3 - st2 * st2);
+		acceleration = 2 * detQ / det;
+	}
+
+	@Override
+	public double getRate() {
+		return rate;
+	}
+
+	@Override
+	public double getAcceleration() {
+		return acceleration;
+	}
+
+	@Override
+	public void reset() {
+		rate = 0;
+		acceleration = 0;
+	}
+}
@@ -1,6 +1,7 @@
 package org.team484.api.sensor;
 
 import org.team484.api.motion.ShifterSolenoid;
+import org.team484.api.motion.Transmission;
 
 import edu.wpi.first.wpilibj.DigitalSource;
 import edu.wpi.first.wpilibj.Encoder;
@@ -24,6 +25,8 @@ public class ShifterEncoder extends Encoder {
 	 */
 	private double lowGearRPP = 10.42/256.0/3.0, highGearRPP = 2.83/256.0/3.0, distancePerPulse = 1;
 	private ShifterSolenoid shifter;
+	private volatile EncoderSampler sampler = null;
+	private volatile Transmission transmission = null;
 	
 	/**
 	   * Shifter Encoder constructor. Construct a Shifter Encoder given a and b channels and a shifter
@@ -275,12 +278,183 @@ public class ShifterEncoder extends Encoder {
 	  /**
 	   * Gets the RPM of the motors powering the shifting gearbox this encoder is attached to. This is
 	   * found by multiplying the raw rate of this encoder (the pulses per second) by the set rotations
-	   * per puse for the gearbox. That value is then multiplied by 60 to covert the units to RPM.
+	   * per puse for the gearbox. That value is then multiplied by 60 to covert the units to RPM. When
+	   * velocity estimation is enabled, the estimated rate is used in place of the raw rate. The gear
+	   * comes from the state cached in the ShifterSolenoid, and only changes once the shifter's shift
+	   * delay has passed.
 	   * @return the rate the attached motors are spinning in RPM.
 	   */
 	  public double getRPM() {
-		  double rpp = shifter.isLowGear() ? lowGearRPP : highGearRPP;
-		  return Math.abs(getRawRate() * rpp * 60.0);
+		  Transmission transmission = this.transmission;
+		  if (transmission != null) {
+			  return getRPMInGear(transmission.getEngagedGear());
+		  }
+		  return getRPM(shifter.isLowGearEngaged());
+	  }
+	  
+	  /**
+	   * Gets the RPM the motors would spin at the current speed in a gear of the transmission. If no
+	   * transmission is set, gear 0 is low gear and any other gear is high gear.
+	   * @param gear - The gear, from 0 for the lowest.
+	   * @return the rate the attached motors would spin in RPM.
+	   */
+	  public double getRPMInGear(int gear) {
+		  Transmission transmission = this.transmission;
+		  if (transmission == null) {
+			  return getRPM(gear == 0);
+		  }
+		  return Math.abs(getFilteredRawRate() * transmission.getGearTable().getRPP(gear) * 60.0);
+	  }
+	  
+	  /**
+	   * Sets the transmission of a gearbox with more than two speeds. While a transmission is set,
+	   * getRPM uses the rotations per pulse of the gear the transmission is in, instead of the low and
+	   * high gear RPP and the ShifterSolenoid.
+	   * @param transmission - The transmission, or null to go back to the ShifterSolenoid.
+	   */
+	  public void setTransmission(Transmission transmission) {
+		  this.transmission = transmission;
+	  }
+	  
+	  /**
+	   * Gets the transmission set with setTransmission.
+	   * @return the transmission, or null if none is set.
+	   */
+	  public Transmission getTransmission() {
+		  return transmission;
+	  }
+	  
+	  /**
+	   * Gets the RPM the motors powering the shifting gearbox would spin at the current speed in a given
+	   * gear. This is used to predict the motor speed after a shift.
+	   * @param lowGear - True for the RPM in low gear, false for the RPM in high gear.
+	   * @return the rate the attached motors would spin in RPM.
+	   */
+	  public double getRPM(boolean lowGear) {
+		  double rpp = lowGear ? lowGearRPP : highGearRPP;
+		  return Math.abs(getFilteredRawRate() * rpp * 60.0);
+	  }
+	  
+	  /**
+	   * Starts sampling this encoder on its own thread and estimating its rate and acceleration from the
+	   * samples. The WPILib rate is found from the time between the last few pulses, which jumps around
+	   * at low speed; the estimate is much steadier. While sampling, the filtered getters and getRPM use
+	   * the estimate. Any previous sampler is stopped.
+	   * @param periodMs - Milliseconds between samples. A few milliseconds is typical.
+	   * @param estimator - The estimator to use, such as a LeastSquaresVelocityEstimator or an
+	   *                    AlphaBetaVelocityEstimator.
+	   * @return the running sampler.
+	   */
+	  public synchronized EncoderSampler enableVelocityEstimation(double periodMs, VelocityEstimator estimator) {
+		  disableVelocityEstimation();
+		  EncoderSampler newSampler = new EncoderSampler(this, periodMs, estimator);
+		  newSampler.start();
+		  sampler = newSampler;
+		  return newSampler;
+	  }
+	  
+	  /**
+	   * Stops the velocity estimation sampler, if one is running. The filtered getters go back to the
+	   * WPILib rate.
+	   */
+	  public synchronized void disableVelocityEstimation() {
+		  EncoderSampler oldSampler = sampler;
+		  sampler = null;
+		  if (oldSampler != null) {
+			  oldSampler.interrupt();
+		  }
+	  }
+	  
+	  /**
+	   * Gets the velocity estimation sampler.
+	   * @return the sampler, or null if velocity estimation is not enabled.
+	   */
+	  public EncoderSampler getSampler() {
+		  return sampler;
+	  }
+	  
+	  /**
+	   * Gets the estimated rate in pulses per second. If velocity estimation is not enabled, this is the
+	   * same as getRawRate.
+	   * @return the rate the encoder is rotating in pulses per second.
+	   */
+	  public double getFilteredRawRate() {
+		  EncoderSampler sampler = this.sampler;
+		  return sampler == null ? getRawRate() : sampler.getRate();
+	  }
+	  
+	  /**
+	   * Gets the estimated rate in distance units per second. If velocity estimation is not enabled, this
+	   * is the same as getRate.
+	   * @return the rate in distance per second.
+	   */
+	  public double getFilteredRate() {
+		  EncoderSampler sampler = this.sampler;
+		  return sampler == null ? getRate() : sampler.getRate() * distancePerPulse;
+	  }
+	  
+	  /**
+	   * Gets the estimated acceleration in distance units per second per second.
+	   * @return the acceleration, or 0 if velocity estimation is not enabled.
+	   */
+	  public double getAcceleration() {
+		  EncoderSampler sampler = this.sampler;
+		  return sampler == null ? 0 : sampler.getAcceleration() * distancePerPulse;
+	  }
+	  
+	  /**
+	   * Gets how quickly the RPM of the motors would be changing in a given gear.
+	   * @param lowGear - True for low gear, false for high gear.
+	   * @return the change in RPM per second, or 0 if velocity estimation is not enabled.
+	   */
+	  public double getRPMAcceleration(boolean lowGear) {
+		  EncoderSampler sampler = this.sampler;
+		  if (sampler == null) {
+			  return 0;
+		  }
+		  double rpp = lowGear ? lowGearRPP : highGearRPP;
+		  return sampler.getAcceleration() * rpp * 60.0;
+	  }
+	  
+	  /**
+	   * Resets the encoder count to 0. If velocity estimation is enabled, the samples taken before the
+	   * reset are discarded so the count jumping to 0 is not seen as motion.
+	   */
+	  @Override
+	  public void reset() {
+		  EncoderSampler sampler = this.sampler;
+		  if (sampler != null) {
+			  sampler.clear();
+		  }
+		  super.reset();
+		  if (sampler != null) {
+			  sampler.clear();
+		  }
+	  }
+	  
+	  /**
+	   * Stops velocity estimation and frees the encoder.
+	   */
+	  @Override
+	  public void free() {
+		  disableVelocityEstimation();
+		  super.free();
+	  }
+	  
+	  /**
+	   * Gets the number of rotations per pulse for this encoder when the shifter is in low gear.
+	   * @return the rotations per pulse.
+	   */
+	  public double getLowGearRPP() {
+		  return lowGearRPP;
+	  }
+	  
+	  /**
+	   * Gets the number of rotations per pulse for this encoder when the shifter is in high gear.
+	   * @return the rotations per pulse.
+	   */
+	  public double getHighGearRPP() {
+		  return highGearRPP;
 	  }
 	  
 	  /**
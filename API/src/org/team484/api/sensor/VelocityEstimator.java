@@ -0,0 +1,39 @@
+package org.team484.api.sensor;
+
+/**
+ * Estimates the rate and acceleration of an encoder from the counts sampled into an
+ * EncoderSampleBuffer. Estimators are updated once per sample from the sampler thread and must not
+ * allocate while doing so. Rates are in pulses per second, the same unit as
+ * ShifterEncoder.getRawRate.
+ */
+public interface VelocityEstimator {
+
+	/**
+	 * Gets the number of samples the estimator needs to keep.
+	 * @return the size of the sample buffer to use.
+	 */
+	int getWindowSize();
+
+	/**
+	 * Updates the estimate after a new sample has been added.
+	 * @param samples - The sampled counts, with the new sample at age 0.
+	 */
+	void update(EncoderSampleBuffer samples);
+
+	/**
+	 * Gets the estimated rate.
+	 * @return the rate in pulses per second.
+	 */
+	double getRate();
+
+	/**
+	 * Gets the estimated acceleration.
+	 * @return the acceleration in pulses per second per second.
+	 */
+	double getAcceleration();
+
+	/**
+	 * Clears the estimate, such as after the encoder is reset.
+	 */
+	void reset();
+}
@@ -0,0 +1,54 @@
+package org.team484.api.sim;
+
+/**
+ * A model of the robot battery as a voltage source with an internal resistance, so the voltage sags
+ * as more current is drawn. The voltage for each step is calculated from the current drawn during
+ * the previous step.
+ */
+public class BatterySim {
+
+	private final double openCircuitVoltage;
+	private final double resistance;
+	private volatile double current = 0;
+
+	/**
+	 * Creates a battery model with the values of a typical charged FRC battery and wiring.
+	 */
+	public BatterySim() {
+		this(12.7, 0.025);
+	}
+
+	/**
+	 * Creates a battery model.
+	 * @param openCircuitVoltage - The voltage with no load.
+	 * @param resistance - The resistance of the battery and main wiring in ohms.
+	 */
+	public BatterySim(double openCircuitVoltage, double resistance) {
+		this.openCircuitVoltage = openCircuitVoltage;
+		this.resistance = resistance;
+	}
+
+	/**
+	 * Sets the total current drawn from the battery.
+	 * @param current - The current in amps.
+	 */
+	public void setCurrent(double current) {
+		this.current = current;
+	}
+
+	/**
+	 * Gets the total current drawn from the battery.
+	 * @return the current in amps.
+	 */
+	public double getCurrent() {
+		return current;
+	}
+
+	/**
+	 * Gets the voltage at the battery terminals for the current being drawn.
+	 * @return the voltage.
+	 */
+	public double getVoltage() {
+		return Math.max(openCircuitVoltage - current * resistance, 0);
+	}
+}
@@ -0,0 +1,105 @@
+package org.team484.api.sim;
+
+/**
+ * A model of a brushed DC motor built from the numbers on its spec sheet. The motor is treated as a
+ * resistance in series with a back EMF that is proportional to its speed, and its torque is
+ * proportional to its current.
+ */
+public class DCMotor {
+
+	/**
+	 * The voltage the spec sheet numbers were measured at
+	 */
+	public final double nominalVoltage;
+
+	/**
+	 * The winding resistance in ohms
+	 */
+	public final double resistance;
+
+	/**
+	 * Newton meters of torque per amp
+	 */
+	public final double torquePerAmp;
+
+	/**
+	 * Radians per second of free speed per volt of back EMF
+	 */
+	public final double speedPerVolt;
+
+	/**
+	 * Creates a motor model from spec sheet numbers.
+	 * @param nominalVoltage - The voltage the numbers were measured at.
+	 * @param freeSpeedRPM - The speed with no load in RPM.
+	 * @param freeCurrent - The current with no load in amps.
+	 * @param stallTorque - The torque when stalled in newton meters.
+	 * @param stallCurrent - The current when stalled in amps.
+	 */
+	public DCMotor(double nominalVoltage, double freeSpeedRPM, double freeCurrent, double stallTorque,
+			double stallCurrent) {
+		this.nominalVoltage = nominalVoltage;
+		resistance = nominalVoltage / stallCurrent;
+		torquePerAmp = stallTorque / stallCurrent;
+		speedPerVolt = freeSpeedRPM * 2.0 * Math.PI / 60.0 / (nominalVoltage - resistance * freeCurrent);
+	}
+
+	/**
+	 * Gets the current the motor draws.
+	 * @param voltage - The voltage applied to the motor.
+	 * @param speed - The speed of the motor shaft in radians per second.
+	 * @return the current in amps.
+	 */
+	public double getCurrent(double voltage, double speed) {
+		return (voltage - speed / speedPerVolt) / resistance;
+	}
+
+	/**
+	 * Gets the torque the motor produces.
+	 * @param current - The current through the motor in amps.
+	 * @return the torque in newton meters.
+	 */
+	public double getTorque(double current) {
+		return current * torquePerAmp;
+	}
+
+	/**
+	 * Gets the speed the motor runs at with no load.
+	 * @param voltage - The voltage applied to the motor.
+	 * @return the free speed in radians per second.
+	 */
+	public double getFreeSpeed(double voltage) {
+		return voltage * speedPerVolt;
+	}
+
+	/**
+	 * Creates a model of a CIM motor.
+	 * @return the motor model.
+	 */
+	public static DCMotor cim() {
+		return new DCMotor(12, 5330, 2.7, 2.41, 131);
+	}
+
+	/**
+	 * Creates a model of a Mini CIM motor.
+	 * @return the motor model.
+	 */
+	public static DCMotor miniCim() {
+		return new DCMotor(12, 5840, 3, 1.41, 89);
+	}
+
+	/**
+	 * Creates a model of a 775pro motor.
+	 * @return the motor model.
+	 */
+	public static DCMotor vex775Pro() {
+		return new DCMotor(12, 18730, 0.7, 0.71, 134);
+	}
+
+	/**
+	 * Creates a model of a BAG motor.
+	 * @return the motor model.
+	 */
+	public static DCMotor bag() {
+		return new DCMotor(12, 13180, 1.8, 0.43, 53);
+	}
+}
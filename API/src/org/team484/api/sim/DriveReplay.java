@@ -0,0 +1,109 @@
+package org.team484.api.sim;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+import org.team484.api.util.LatencyHistogram;
+import org.team484.api.util.LogReader;
+import org.team484.api.util.ManualClock;
+
+/**
+ * Replays recorded inputs from a log through drive code, one cycle per row, with a ManualClock set to
+ * the time of each row. The same log always produces the same outputs, so a replay can reproduce a
+ * bug seen on the robot and can be compared against a baseline to catch changes in behavior.
+ * Subclasses feed the inputs of a row to a drive and record its outputs.
+ */
+public abstract class DriveReplay {
+
+	private static final String TIME_OUTPUT = "time (ms)";
+
+	protected final LogReader log;
+	protected final ManualClock clock = new ManualClock();
+	private double defaultPeriodMs = 20;
+
+	/**
+	 * @param log - The recorded inputs.
+	 */
+	protected DriveReplay(LogReader log) {
+		this.log = log;
+	}
+
+	/**
+	 * Sets the time between rows to use if the log has no time column.
+	 * @param ms - The time between rows in milliseconds (default 20)
+	 */
+	public void setDefaultPeriod(double ms) {
+		defaultPeriodMs = ms;
+	}
+
+	/**
+	 * Gets the names of the outputs recorded each cycle.
+	 * @return the output names.
+	 */
+	protected abstract String[] getOutputNames();
+
+	/**
+	 * Runs one cycle of the drive code with the inputs from a row of the log.
+	 * @param row - The row of the log.
+	 * @param outputs - The array to write the outputs to, in the order of getOutputNames.
+	 */
+	protected abstract void cycle(int row, double[] outputs);
+
+	/**
+	 * Replays every row of the log.
+	 * @return the outputs and CPU times of the replay.
+	 */
+	public ReplayResult run() {
+		ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+		boolean cpuTime = threads.isCurrentThreadCpuTimeSupported();
+		if (cpuTime && !threads.isThreadCpuTimeEnabled()) {
+			threads.setThreadCpuTimeEnabled(true);
+		}
+
+		String[] names = getOutputNames();
+		String[] columns = new String[names.length + 1];
+		columns[0] = TIME_OUTPUT;
+		System.arraycopy(names, 0, columns, 1, names.length);
+		double[][] rows = new double[log.getRowCount()][];
+		double[] outputs = new double[names.length];
+		LatencyHistogram cpuTimes = new LatencyHistogram();
+
+		for (int row = 0; row < rows.length; row++) {
+			double timeMs = log.getTimeMs(row, defaultPeriodMs);
+			clock.set(Math.round(timeMs * 1e6));
+			long start = cpuTime ? threads.getCurrentThreadCpuTime() : System.nanoTime();
+			cycle(row, outputs);
+			long end = cpuTime ? threads.getCurrentThreadCpuTime() : System.nanoTime();
+			cpuTimes.record(end - start);
+
+			rows[row] = new double[columns.length];
+			rows[row][0] = timeMs;
+			System.arraycopy(outputs, 0, rows[row], 1, outputs.length);
+		}
+		return new ReplayResult(LogReader.of(columns, rows), cpuTimes);
+	}
+
+	/**
+	 * Gets a value from the log, treating a missing or unreadable value as 0.
+	 * @param row - The row of the log.
+	 * @param column - The column index, or -1 for none.
+	 * @return the value.
+	 */
+	protected double input(int row, int column) {
+		double value = log.get(row, column);
+		return Double.isNaN(value) ? 0 : value;
+	}
+
+	/**
+	 * Looks up a column of the log, printing an error if it is missing.
+	 * @param name - The column name.
+	 * @return the column index, or -1 if it is missing.
+	 */
+	protected int column(String name) {
+		int column = log.getColumn(name);
+		if (column < 0) {
+			System.err.println("Replay log has no column " + name);
+		}
+		return column;
+	}
+}
@@ -0,0 +1,104 @@
+package org.team484.api.sim;
+
+import java.io.File;
+
+import org.team484.api.util.LatencyHistogram;
+import org.team484.api.util.LogReader;
+
+/**
+ * The outputs recorded by a DriveReplay for every cycle, along with how much CPU time each cycle took.
+ * The outputs can be saved as a baseline and later replays compared against it.
+ */
+public class ReplayResult {
+
+	private final LogReader outputs;
+	private final LatencyHistogram cpuTimes;
+
+	ReplayResult(LogReader outputs, LatencyHistogram cpuTimes) {
+		this.outputs = outputs;
+		this.cpuTimes = cpuTimes;
+	}
+
+	/**
+	 * Gets the recorded outputs. The first column is the time of the cycle and the rest are the
+	 * outputs named by the replay.
+	 * @return the outputs, one row per cycle.
+	 */
+	public LogReader getOutputs() {
+		return outputs;
+	}
+
+	/**
+	 * Gets the CPU time of the drive code for each cycle.
+	 * @return the histogram of CPU times.
+	 */
+	public LatencyHistogram getCpuTimes() {
+		return cpuTimes;
+	}
+
+	/**
+	 * Saves the outputs to compare later replays against.
+	 * @param file - The file to write.
+	 * @return if the file was written.
+	 */
+	public boolean saveBaseline(File file) {
+		return outputs.write(file);
+	}
+
+	/**
+	 * Compares the outputs against a saved baseline. The first difference is printed.
+	 * @param file - The baseline file written by saveBaseline.
+	 * @param tolerance - The largest difference between two values that still counts as equal.
+	 * @return true if every output matches the baseline, false if any differ or the baseline could not
+	 *         be read.
+	 */
+	public boolean matchesBaseline(File file, double tolerance) {
+		LogReader baseline = LogReader.read(file);
+		if (baseline == null) {
+			return false;
+		}
+		return matches(baseline, tolerance);
+	}
+
+	/**
+	 * Compares the outputs against a baseline. The first difference is printed.
+	 * @param baseline - The baseline outputs.
+	 * @param tolerance - The largest difference between two values that still counts as equal.
+	 * @return true if every output matches the baseline.
+	 */
+	public boolean matches(LogReader baseline, double tolerance) {
+		String[] columns = outputs.getColumns();
+		if (!String.join(",", columns).equals(String.join(",", baseline.getColumns()))) {
+			System.err.println("Replay outputs " + String.join(",", columns) + " do not match baseline outputs "
+					+ String.join(",", baseline.getColumns()));
+			return false;
+		}
+		if (outputs.getRowCount() != baseline.getRowCount()) {
+			System.err.println("Replay has " + outputs.getRowCount() + " cycles but baseline has "
+					+ baseline.getRowCount());
+			return false;
+		}
+		for (int row = 0; row < outputs.getRowCount(); row++) {
+			for (int column = 0; column < columns.length; column++) {
+				double actual = outputs.get(row, column);
+				double expected = baseline.get(row, column);
+				boolean bothNaN = Double.isNaN(actual) && Double.isNaN(expected);
+				if (!bothNaN && !(Math.abs(actual - expected) <= tolerance)) {
+					System.err.println("Replay diverged from baseline at cycle " + row + " (" + outputs.get(row, 0)
+							+ " ms): " + columns[column] + " was " + actual + ", expected " + expected);
+					return false;
+				}
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Prints the number of cycles and the CPU time percentiles.
+	 */
+	public void printReport() {
+		System.out.printf("%d cycles, CPU time per cycle (us): p50 %d, p90 %d, p99 %d, max %d, mean %.1f%n",
+				cpuTimes.getCount(), cpuTimes.getPercentile(50) / 1000, cpuTimes.getPercentile(90) / 1000,
+				cpuTimes.getPercentile(99) / 1000, cpuTimes.getMax() / 1000, cpuTimes.getMean() / 1000);
+	}
+}
@@ -0,0 +1,43 @@
+package org.team484.api.sim;
+
+import org.team484.api.sensor.DistanceSensor;
+
+/**
+ * A distance sensor that reports whatever values it was last given, for feeding recorded encoder
+ * values into drive code.
+ */
+public class ReplaySensor implements DistanceSensor {
+
+	private volatile double distance = 0;
+	private volatile double rate = 0;
+	private volatile double offset = 0;
+
+	/**
+	 * Sets the values the sensor reports.
+	 * @param distance - The distance, before any reset.
+	 * @param rate - The rate.
+	 */
+	public void set(double distance, double rate) {
+		this.distance = distance;
+		this.rate = rate;
+	}
+
+	@Override
+	public double getDistance() {
+		return distance - offset;
+	}
+
+	@Override
+	public double getRate() {
+		return rate;
+	}
+
+	@Override
+	public void reset() {
+		offset = distance;
+	}
+
+	@Override
+	public void free() {
+	}
+}
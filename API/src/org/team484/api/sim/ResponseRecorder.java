@@ -0,0 +1,118 @@
+package org.team484.api.sim;
+
+/**
+ * Builds a SteeringLoopSim.Response from samples of a module's angle. A run is made of segments, each
+ * with its own target angle, and the settle time of the run is that of its slowest segment. It is
+ * used by the simulations and by the on-robot tuning routine so both are scored the same way.
+ */
+public class ResponseRecorder {
+
+	private final double settleTolerance;
+
+	private boolean inSegment = false;
+	private double target;
+	private double direction;
+	private double segmentStart;
+	private double lastUnsettled;
+	private double lastError;
+	private double error;
+
+	private double worstSettleTime = 0;
+	private boolean allSettled = true;
+	private double overshoot = 0;
+	private int crossings = 0;
+	private double integratedError = 0;
+	private double peakCurrent = 0;
+	private long samples = 0;
+
+	/**
+	 * Creates a recorder with no segments.
+	 * @param settleTolerance - How close the module must stay to the target to count as settled.
+	 */
+	public ResponseRecorder(double settleTolerance) {
+		this.settleTolerance = settleTolerance;
+	}
+
+	/**
+	 * Starts a new segment, ending the one before it.
+	 * @param time - The time the segment starts in seconds.
+	 * @param angle - The angle the module is at.
+	 * @param target - The angle the module is commanded to.
+	 */
+	public void startSegment(double time, double angle, double target) {
+		endSegment();
+		inSegment = true;
+		this.target = target;
+		segmentStart = time;
+		lastUnsettled = time;
+		error = wrap(target - angle);
+		lastError = error;
+		direction = Math.signum(error);
+		if (Math.abs(error) <= settleTolerance) {
+			direction = 0;
+		}
+	}
+
+	/**
+	 * Records the module's angle.
+	 * @param time - The time of the sample in seconds.
+	 * @param dt - The time since the last sample in seconds.
+	 * @param angle - The angle of the module.
+	 * @param current - The steering motor current, or 0 if it is not known.
+	 */
+	public void sample(double time, double dt, double angle, double current) {
+		error = wrap(target - angle);
+		integratedError += Math.abs(error) * dt;
+		if (direction != 0) {
+			overshoot = Math.max(overshoot, -direction * error);
+		}
+		if (error != 0 && lastError != 0 && Math.signum(error) != Math.signum(lastError)) {
+			crossings++;
+		}
+		if (error != 0) {
+			lastError = error;
+		}
+		if (Math.abs(error) > settleTolerance) {
+			lastUnsettled = time;
+		}
+		peakCurrent = Math.max(peakCurrent, Math.abs(current));
+		samples++;
+	}
+
+	/**
+	 * Ends the run.
+	 * @return the response over all of the segments.
+	 */
+	public SteeringLoopSim.Response finish() {
+		endSegment();
+		return new SteeringLoopSim.Response(allSettled ? worstSettleTime : -1, overshoot, crossings,
+				integratedError, error, peakCurrent, samples);
+	}
+
+	private void endSegment() {
+		if (!inSegment) {
+			return;
+		}
+		inSegment = false;
+		if (Math.abs(error) > settleTolerance) {
+			allSettled = false;
+		} else {
+			worstSettleTime = Math.max(worstSettleTime, lastUnsettled - segmentStart);
+		}
+	}
+
+	/**
+	 * Wraps an angle into the range SwerveDrive uses.
+	 * @param angle - The angle in degrees.
+	 * @return the same angle from -180 to 180.
+	 */
+	public static double wrap(double angle) {
+		angle %= 360.0;
+		if (angle > 180) {
+			angle -= 360;
+		} else if (angle <= -180) {
+			angle += 360;
+		}
+		return angle;
+	}
+}
@@ -0,0 +1,431 @@
+package org.team484.api.sim;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.team484.api.motion.AutoShifter;
+import org.team484.api.motion.ShiftInputs;
+import org.team484.api.motion.ShifterDrive.ShifterMode;
+import org.team484.api.util.LogReader;
+import org.team484.api.util.ParameterSweep;
+
+/**
+ * Searches for the shifting speed, deadband and cooldown of ShifterDrive by replaying the gearbox
+ * speeds and throttle recorded in match logs through the same AutoShifter logic the robot runs, once
+ * for every combination of a grid of settings. Each combination is scored by how many times it shifts,
+ * how long the motors spend outside their powerband while the driver is on the throttle, and the
+ * average current the drive motors would draw, estimated from a DCMotor model. Lower scores are
+ * better. The replays are spread across every core.
+ * <p>
+ * Since the three measures pull against each other, the combinations that no other combination beats
+ * on all three at once are marked as the Pareto front, and print lists them along with the best score.
+ * <pre>
+ * ShiftStrategyOptimizer optimizer = new ShiftStrategyOptimizer("left encoder - speed",
+ *         "right encoder - speed", "driverStickaxis 1");
+ * optimizer.addMatch(LogReader.read(logFile));
+ * ShiftStrategyOptimizer.print(optimizer.optimize());
+ * </pre>
+ */
+public class ShiftStrategyOptimizer {
+
+	/**
+	 * A combination of shifting settings.
+	 */
+	public static class Settings {
+		public final double shiftingSpeed;
+		public final double deadband;
+		public final int cooldownMs;
+
+		public Settings(double shiftingSpeed, double deadband, int cooldownMs) {
+			this.shiftingSpeed = shiftingSpeed;
+			this.deadband = deadband;
+			this.cooldownMs = cooldownMs;
+		}
+
+		@Override
+		public String toString() {
+			return String.format("speed=%.1f deadband=%.1f cooldown=%dms", shiftingSpeed, deadband, cooldownMs);
+		}
+	}
+
+	/**
+	 * The measures and score of one combination of settings over every match.
+	 */
+	public static class Result implements Comparable<Result> {
+		public final Settings settings;
+		public final int shifts;
+		public final double outOfPowerbandTime;
+		public final double averageCurrent;
+		public final double score;
+		private boolean pareto = false;
+
+		Result(Settings settings, int shifts, double outOfPowerbandTime, double averageCurrent, double score) {
+			this.settings = settings;
+			this.shifts = shifts;
+			this.outOfPowerbandTime = outOfPowerbandTime;
+			this.averageCurrent = averageCurrent;
+			this.score = score;
+		}
+
+		/**
+		 * Checks if no other result is at least as good on every measure and better on one.
+		 * @return true if this result is on the Pareto front.
+		 */
+		public boolean isPareto() {
+			return pareto;
+		}
+
+		boolean dominates(Result other) {
+			return shifts <= other.shifts && outOfPowerbandTime <= other.outOfPowerbandTime
+					&& averageCurrent <= other.averageCurrent
+					&& (shifts < other.shifts || outOfPowerbandTime < other.outOfPowerbandTime
+							|| averageCurrent < other.averageCurrent);
+		}
+
+		@Override
+		public int compareTo(Result other) {
+			return Double.compare(score, other.score);
+		}
+
+		@Override
+		public String toString() {
+			return String.format("%s: %d shifts, %.1fs out of powerband, %.1fA average (score %.3f)",
+					settings, shifts, outOfPowerbandTime, averageCurrent, score);
+		}
+	}
+
+	/**
+	 * The samples of one match, held in arrays so replays read them without allocating
+	 */
+	private static class Match {
+		final long[] times;
+		final double[] leftRates;
+		final double[] rightRates;
+		final double[] throttles;
+
+		Match(long[] times, double[] leftRates, double[] rightRates, double[] throttles) {
+			this.times = times;
+			this.leftRates = leftRates;
+			this.rightRates = rightRates;
+			this.throttles = throttles;
+		}
+	}
+
+	private final String leftRateColumn;
+	private final String rightRateColumn;
+	private final String throttleColumn;
+	private final List<Match> matches = new ArrayList<>();
+	private double defaultPeriodMs = 20;
+
+	private double[] shiftingSpeeds = {40, 50, 60, 70, 80, 90, 100, 110, 120};
+	private double[] deadbands = {0, 2.5, 5, 10, 15};
+	private int[] cooldowns = {0, 250, 500, 750, 1000};
+
+	private double distancePerPulse = 1;
+	private double lowGearRPP = 10.42 / 256.0 / 3.0;
+	private double highGearRPP = 2.83 / 256.0 / 3.0;
+	private DCMotor motor = DCMotor.cim();
+	private int motorsPerSide = 2;
+	private double batteryVoltage = 12;
+	private double powerbandMin = 1500;
+	private double powerbandMax = 4500;
+	private double throttleDeadband = 0.1;
+
+	private double shiftWeight = 1;
+	private double powerbandWeight = 1;
+	private double currentWeight = 0.1;
+	private int threads = Runtime.getRuntime().availableProcessors();
+
+	/**
+	 * Creates an optimizer for logs with the given columns.
+	 * @param leftRateColumn - The column of the left gearbox encoder speed.
+	 * @param rightRateColumn - The column of the right gearbox encoder speed.
+	 * @param throttleColumn - The column of the throttle the driver commanded, from -1 to 1.
+	 */
+	public ShiftStrategyOptimizer(String leftRateColumn, String rightRateColumn, String throttleColumn) {
+		this.leftRateColumn = leftRateColumn;
+		this.rightRateColumn = rightRateColumn;
+		this.throttleColumn = throttleColumn;
+	}
+
+	/**
+	 * Sets the time between rows to use for logs with no time column.
+	 * @param ms - The time between rows in milliseconds (default 20)
+	 */
+	public void setDefaultPeriod(double ms) {
+		defaultPeriodMs = ms;
+	}
+
+	/**
+	 * Adds a recorded match to replay.
+	 * @param log - The match log.
+	 * @return true if the log has all of the needed columns and was added.
+	 */
+	public boolean addMatch(LogReader log) {
+		if (log == null) {
+			return false;
+		}
+		int left = log.getColumn(leftRateColumn);
+		int right = log.getColumn(rightRateColumn);
+		int throttle = log.getColumn(throttleColumn);
+		if (left < 0 || right < 0 || throttle < 0) {
+			System.err.println("Match log is missing the columns " + leftRateColumn + ", " + rightRateColumn
+					+ " or " + throttleColumn);
+			return false;
+		}
+		int rows = log.getRowCount();
+		long[] times = new long[rows];
+		double[] leftRates = new double[rows];
+		double[] rightRates = new double[rows];
+		double[] throttles = new double[rows];
+		for (int row = 0; row < rows; row++) {
+			times[row] = Math.round(log.getTimeMs(row, defaultPeriodMs) * 1e6);
+			leftRates[row] = valueOrZero(log.get(row, left));
+			rightRates[row] = valueOrZero(log.get(row, right));
+			throttles[row] = valueOrZero(log.get(row, throttle));
+		}
+		matches.add(new Match(times, leftRates, rightRates, throttles));
+		return true;
+	}
+
+	/**
+	 * Sets the values of each setting to try. Every combination is replayed.
+	 * @param shiftingSpeeds - The shifting speeds in encoder units per second.
+	 * @param deadbands - The deadbands in encoder units per second.
+	 * @param cooldownsMs - The cooldowns in milliseconds.
+	 */
+	public void setGrid(double[] shiftingSpeeds, double[] deadbands, int[] cooldownsMs) {
+		this.shiftingSpeeds = shiftingSpeeds.clone();
+		this.deadbands = deadbands.clone();
+		this.cooldowns = cooldownsMs.clone();
+	}
+
+	/**
+	 * Sets the gearing used to find the motor RPM from the encoder speed. This defaults to the Vex ball
+	 * shifter with 256 PPR encoders, the same as ShifterEncoder.
+	 * @param distancePerPulse - The distance per pulse the logged speeds were measured with.
+	 * @param lowGearRPP - The rotations of the motors per pulse in low gear.
+	 * @param highGearRPP - The rotations of the motors per pulse in high gear.
+	 */
+	public void setGearing(double distancePerPulse, double lowGearRPP, double highGearRPP) {
+		this.distancePerPulse = distancePerPulse;
+		this.lowGearRPP = lowGearRPP;
+		this.highGearRPP = highGearRPP;
+	}
+
+	/**
+	 * Sets the drive motors used to estimate current. This defaults to two CIMs per side.
+	 * @param motor - The motor model.
+	 * @param motorsPerSide - The number of motors in each gearbox.
+	 */
+	public void setMotors(DCMotor motor, int motorsPerSide) {
+		this.motor = motor;
+		this.motorsPerSide = motorsPerSide;
+	}
+
+	/**
+	 * Sets the motor RPM range the motors should be kept in while the driver is on the throttle. This
+	 * defaults to 1500 to 4500 RPM.
+	 * @param minRPM - The bottom of the powerband.
+	 * @param maxRPM - The top of the powerband.
+	 */
+	public void setPowerband(double minRPM, double maxRPM) {
+		powerbandMin = minRPM;
+		powerbandMax = maxRPM;
+	}
+
+	/**
+	 * Sets how much each measure counts toward the score.
+	 * @param shiftWeight - Score per shift.
+	 * @param powerbandWeight - Score per second outside the powerband.
+	 * @param currentWeight - Score per amp of average current.
+	 */
+	public void setWeights(double shiftWeight, double powerbandWeight, double currentWeight) {
+		this.shiftWeight = shiftWeight;
+		this.powerbandWeight = powerbandWeight;
+		this.currentWeight = currentWeight;
+	}
+
+	/**
+	 * Sets the number of threads to run the replays on. This defaults to the number of cores.
+	 * @param threads - The thread count.
+	 */
+	public void setThreads(int threads) {
+		this.threads = threads;
+	}
+
+	/**
+	 * Replays every match with every combination of settings.
+	 * @return the results, best score first, or null if there are no matches or the replays failed.
+	 */
+	public List<Result> optimize() {
+		if (matches.isEmpty()) {
+			System.err.println("No matches to optimize shifting over");
+			return null;
+		}
+		List<Settings> grid = new ArrayList<>();
+		for (double speed : shiftingSpeeds) {
+			for (double deadband : deadbands) {
+				for (int cooldown : cooldowns) {
+					grid.add(new Settings(speed, deadband, cooldown));
+				}
+			}
+		}
+		List<Result> results = ParameterSweep.run(grid, this::evaluate, threads);
+		if (results == null) {
+			return null;
+		}
+		results = new ArrayList<>(results);
+		markPareto(results);
+		Collections.sort(results);
+		return results;
+	}
+
+	/**
+	 * Gets the results on the Pareto front.
+	 * @param results - The results returned by optimize.
+	 * @return the results no other result beats on every measure, best score first.
+	 */
+	public static List<Result> getParetoFront(List<Result> results) {
+		List<Result> front = new ArrayList<>();
+		for (Result result : results) {
+			if (result.isPareto()) {
+				front.add(result);
+			}
+		}
+		return front;
+	}
+
+	/**
+	 * Prints the best settings and a summary of the Pareto front. Settings on the front that measure
+	 * exactly the same as a better scoring one are counted but not listed.
+	 * @param results - The results returned by optimize.
+	 */
+	public static void print(List<Result> results) {
+		if (results == null || results.isEmpty()) {
+			System.out.println("No results");
+			return;
+		}
+		System.out.println("Best: " + results.get(0));
+		List<Result> front = getParetoFront(results);
+		System.out.println("Pareto front (" + front.size() + " of " + results.size() + " combinations):");
+		List<Result> listed = new ArrayList<>();
+		int[] equivalents = new int[front.size()];
+		for (Result result : front) {
+			int same = -1;
+			for (int i = 0; i < listed.size() && same < 0; i++) {
+				Result other = listed.get(i);
+				if (other.shifts == result.shifts && other.outOfPowerbandTime == result.outOfPowerbandTime
+						&& other.averageCurrent == result.averageCurrent) {
+					same = i;
+				}
+			}
+			if (same < 0) {
+				listed.add(result);
+			} else {
+				equivalents[same]++;
+			}
+		}
+		for (int i = 0; i < listed.size(); i++) {
+			System.out.println("  " + listed.get(i) + (equivalents[i] > 0 ? " (+" + equivalents[i] + " equivalent)" : ""));
+		}
+	}
+
+	private static void markPareto(List<Result> results) {
+		for (Result result : results) {
+			result.pareto = true;
+			for (Result other : results) {
+				if (other.dominates(result)) {
+					result.pareto = false;
+					break;
+				}
+			}
+		}
+	}
+
+	private Result evaluate(Settings settings) {
+		int shifts = 0;
+		double outOfPowerband = 0;
+		double charge = 0;
+		double totalTime = 0;
+		for (Match match : matches) {
+			AutoShifter shifter = new AutoShifter();
+			shifter.setShiftingSpeed(settings.shiftingSpeed);
+			shifter.setShiftingDeadband(settings.deadband);
+			shifter.setShiftingCooldown(settings.cooldownMs);
+			ShiftInputs inputs = new ShiftInputs();
+			boolean lowGear = shifter.isInLowGear();
+
+			for (int row = 0; row < match.times.length; row++) {
+				double leftRate = match.leftRates[row];
+				double rightRate = match.rightRates[row];
+				double throttle = Math.min(Math.abs(match.throttles[row]), 1);
+				inputs.speed = AutoShifter.combineSpeeds(Math.abs(leftRate), Math.abs(rightRate));
+				inputs.lowGearRPM = getRPM(inputs.speed, lowGearRPP);
+				inputs.highGearRPM = getRPM(inputs.speed, highGearRPP);
+				inputs.throttle = throttle;
+				inputs.nowNanos = match.times[row];
+				shifter.update(ShifterMode.AUTO, inputs);
+				if (shifter.isInLowGear() != lowGear) {
+					lowGear = shifter.isInLowGear();
+					shifts++;
+				}
+
+				if (row + 1 < match.times.length) {
+					double dt = Math.max(match.times[row + 1] - match.times[row], 0) / 1e9;
+					double rpp = lowGear ? lowGearRPP : highGearRPP;
+					double rpm = getRPM(inputs.speed, rpp);
+					if (throttle > throttleDeadband && (rpm < powerbandMin || rpm > powerbandMax)) {
+						outOfPowerband += dt;
+					}
+					charge += dt * (getCurrent(throttle, getRPM(Math.abs(leftRate), rpp))
+							+ getCurrent(throttle, getRPM(Math.abs(rightRate), rpp)));
+					totalTime += dt;
+				}
+			}
+		}
+		double averageCurrent = totalTime > 0 ? charge / totalTime : 0;
+		double score = shiftWeight * shifts + powerbandWeight * outOfPowerband + currentWeight * averageCurrent;
+		return new Result(settings, shifts, outOfPowerband, averageCurrent, score);
+	}
+
+	private double getRPM(double speed, double rpp) {
+		return speed / distancePerPulse * rpp * 60.0;
+	}
+
+	/**
+	 * Estimates the current drawn by the motors of one gearbox, assuming the driver is pushing in the
+	 * direction the robot is moving.
+	 */
+	private double getCurrent(double throttle, double rpm) {
+		double current = motor.getCurrent(throttle * batteryVoltage, rpm * 2.0 * Math.PI / 60.0);
+		return Math.max(current, 0) * motorsPerSide;
+	}
+
+	private static double valueOrZero(double value) {
+		return Double.isNaN(value) ? 0 : value;
+	}
+
+	/**
+	 * Optimizes shifting over recorded match logs and prints the results.
+	 * @param args - The left speed column, the right speed column, the throttle column, and then the
+	 *               paths of one or more logs.
+	 */
+	public static void main(String[] args) {
+		if (args.length < 4) {
+			System.err.println("Usage: ShiftStrategyOptimizer <left speed column> <right speed column> "
+					+ "<throttle column> <log file>...");
+			return;
+		}
+		ShiftStrategyOptimizer optimizer = new ShiftStrategyOptimizer(args[0], args[1], args[2]);
+		for (int i = 3; i < args.length; i++) {
+			optimizer.addMatch(LogReader.read(new File(args[i])));
+		}
+		long start = System.nanoTime();
+		List<Result> results = optimizer.optimize();
+		System.out.printf("Optimized in %.2fs%n", (System.nanoTime() - start) / 1e9);
+		print(results);
+	}
+}
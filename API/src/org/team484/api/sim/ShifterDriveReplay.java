@@ -0,0 +1,68 @@
+package org.team484.api.sim;
+
+import org.team484.api.motion.AutoShifter;
+import org.team484.api.motion.ShifterDrive.ShifterMode;
+import org.team484.api.util.LogReader;
+
+/**
+ * Replays recorded gearbox encoder speeds through ShifterDrive's gear selection. ShifterDrive reads
+ * its speeds from ShifterEncoders and shifts with ShifterSolenoids, which both need robot hardware, so
+ * the replay runs the AutoShifter that ShifterDrive uses on the recorded speeds instead. Each cycle
+ * records the gear that was last commanded and whether the solenoids were set that cycle.
+ * <pre>
+ * ShifterDriveReplay replay = new ShifterDriveReplay(LogReader.read(logFile),
+ *         "left encoder - speed", "right encoder - speed");
+ * replay.getAutoShifter().setShiftingSpeed(80);
+ * ReplayResult result = replay.run();
+ * </pre>
+ */
+public class ShifterDriveReplay extends DriveReplay {
+
+	private static final String[] OUTPUTS = {"low gear", "shift commanded"};
+
+	private final AutoShifter autoShifter = new AutoShifter();
+	private final int leftColumn;
+	private final int rightColumn;
+	private ShifterMode mode = ShifterMode.AUTO;
+
+	/**
+	 * Creates a replay of a log.
+	 * @param log - The recorded inputs.
+	 * @param leftRateColumn - The column of the left gearbox encoder speed.
+	 * @param rightRateColumn - The column of the right gearbox encoder speed.
+	 */
+	public ShifterDriveReplay(LogReader log, String leftRateColumn, String rightRateColumn) {
+		super(log);
+		leftColumn = column(leftRateColumn);
+		rightColumn = column(rightRateColumn);
+	}
+
+	/**
+	 * Gets the gear selection logic being replayed through, to apply the same settings as on the robot.
+	 * @return the auto shifter.
+	 */
+	public AutoShifter getAutoShifter() {
+		return autoShifter;
+	}
+
+	/**
+	 * Sets the shifter mode to replay in.
+	 * @param mode - The shifter mode (default AUTO)
+	 */
+	public void setShifterMode(ShifterMode mode) {
+		this.mode = mode;
+	}
+
+	@Override
+	protected String[] getOutputNames() {
+		return OUTPUTS.clone();
+	}
+
+	@Override
+	protected void cycle(int row, double[] outputs) {
+		ShifterMode gear = autoShifter.update(mode, input(row, leftColumn), input(row, rightColumn),
+				clock.nanoTime());
+		outputs[0] = autoShifter.isInLowGear() ? 1 : 0;
+		outputs[1] = gear == null ? 0 : 1;
+	}
+}
@@ -0,0 +1,177 @@
+package org.team484.api.sim;
+
+import org.team484.api.motion.SteeringController;
+
+import edu.wpi.first.wpilibj.PIDOutput;
+import edu.wpi.first.wpilibj.PIDSource;
+
+/**
+ * A PID loop that does the same calculation as a continuous WPILib PIDController with an input
+ * range of -180 to 180 and an output range of -1 to 1, as SwerveDrive sets its steering loops up.
+ * Unlike the WPILib controller it has no thread of its own and is stepped by calling calculate, or
+ * run when it has a source and output, so it can run as fast as a simulation can. FACTORY builds
+ * these as the steering loops of a SwerveDrive.
+ */
+public class SimPIDController implements SteeringController {
+
+	/**
+	 * Builds SimPIDControllers as the steering loops of a SwerveDrive
+	 */
+	public static final SteeringController.Factory FACTORY = SimPIDController::new;
+
+	/**
+	 * The period WPILib PIDControllers run at by default
+	 */
+	public static final double DEFAULT_PERIOD = 0.05;
+
+	private double kP;
+	private double kI;
+	private double kD;
+	private double setpoint = 0;
+	private double error = 0;
+	private double prevError = 0;
+	private double totalError = 0;
+	private final PIDSource source;
+	private final PIDOutput output;
+	private volatile boolean enabled = false;
+
+	/**
+	 * Creates a PID loop that is stepped with calculate.
+	 * @param kP - The proportional value.
+	 * @param kI - The integral value.
+	 * @param kD - The derivative value.
+	 */
+	public SimPIDController(double kP, double kI, double kD) {
+		this(kP, kI, kD, null, null);
+	}
+
+	/**
+	 * Creates a PID loop that is stepped with run. It starts out disabled.
+	 * @param kP - The proportional value.
+	 * @param kI - The integral value.
+	 * @param kD - The derivative value.
+	 * @param source - The source of the angle in degrees.
+	 * @param output - The output the loop writes to.
+	 */
+	public SimPIDController(double kP, double kI, double kD, PIDSource source, PIDOutput output) {
+		setPID(kP, kI, kD);
+		this.source = source;
+		this.output = output;
+	}
+
+	/**
+	 * Changes the PID values.
+	 * @param kP - The proportional value.
+	 * @param kI - The integral value.
+	 * @param kD - The derivative value.
+	 */
+	@Override
+	public void setPID(double kP, double kI, double kD) {
+		this.kP = kP;
+		this.kI = kI;
+		this.kD = kD;
+	}
+
+	/**
+	 * Sets the angle the loop drives to.
+	 * @param setpoint - The setpoint in degrees.
+	 */
+	@Override
+	public void setSetpoint(double setpoint) {
+		this.setpoint = setpoint;
+	}
+
+	/**
+	 * Gets the angle the loop drives to.
+	 * @return the setpoint in degrees.
+	 */
+	@Override
+	public double getSetpoint() {
+		return setpoint;
+	}
+
+	/**
+	 * Gets the error from the last calculation.
+	 * @return the error in degrees.
+	 */
+	@Override
+	public double getError() {
+		return error;
+	}
+
+	/**
+	 * Clears the integral and derivative history.
+	 */
+	public void reset() {
+		error = 0;
+		prevError = 0;
+		totalError = 0;
+	}
+
+	/**
+	 * Starts writing to the output when run is called.
+	 */
+	@Override
+	public void enable() {
+		enabled = true;
+	}
+
+	/**
+	 * Stops writing to the output and writes 0 to it, as a WPILib PIDController does.
+	 */
+	@Override
+	public void disable() {
+		enabled = false;
+		if (output != null) {
+			output.pidWrite(0);
+		}
+	}
+
+	/**
+	 * Checks if the loop writes to its output when run is called.
+	 * @return true if the loop is enabled.
+	 */
+	public boolean isEnabled() {
+		return enabled;
+	}
+
+	@Override
+	public void free() {
+		enabled = false;
+	}
+
+	/**
+	 * Runs one cycle of the loop from the source to the output, if the loop is enabled and was created
+	 * with them.
+	 */
+	public void run() {
+		if (enabled && source != null && output != null) {
+			output.pidWrite(calculate(source.pidGet()));
+		}
+	}
+
+	/**
+	 * Runs one cycle of the loop.
+	 * @param input - The measured angle in degrees.
+	 * @return the output from -1 to 1.
+	 */
+	public double calculate(double input) {
+		error = setpoint - input;
+		if (Math.abs(error) > 180) {
+			error = error > 0 ? error - 360 : error + 360;
+		}
+		if (kI != 0) {
+			double potentialI = (totalError + error) * kI;
+			if (potentialI < 1 && potentialI > -1) {
+				totalError += error;
+			} else if (potentialI >= 1) {
+				totalError = 1 / kI;
+			} else {
+				totalError = -1 / kI;
+			}
+		}
+		double result = kP * error + kI * totalError + kD * (error - prevError);
+		prevError = error;
+		return Math.max(Math.min(result, 1), -1);
+	}
+}
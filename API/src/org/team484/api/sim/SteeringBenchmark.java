@@ -0,0 +1,53 @@
+package org.team484.api.sim;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.team484.api.util.ParameterSweep;
+
+/**
+ * Compares how quickly the default swerve module settles after steering steps with and without
+ * SwerveDrive's steering profile, and reports how fast the simulation runs. Run it with no
+ * arguments from a workstation.
+ */
+public class SteeringBenchmark {
+
+	private static final double KP = 0.02;
+	private static final double KI = 0;
+	private static final double KD = 0;
+
+	public static void main(String[] args) {
+		SwerveModuleSim.Parameters parameters = new SwerveModuleSim.Parameters();
+		double freeSpeed = Math.toDegrees(parameters.steerMotor.getFreeSpeed(12) / parameters.steerGearRatio);
+
+		SteeringLoopSim direct = new SteeringLoopSim(parameters, KP, KI, KD);
+		SteeringLoopSim profiled = new SteeringLoopSim(parameters, KP, KI, KD);
+		profiled.enableSteeringProfile(freeSpeed * 0.5, freeSpeed * 2, 0, 0.5 / freeSpeed, 0);
+
+		List<Double> steps = new ArrayList<>();
+		for (double step = 15; step <= 90; step += 15) {
+			steps.add(step);
+		}
+
+		long start = System.nanoTime();
+		List<SteeringLoopSim.Response> directResults = ParameterSweep.run(steps, step -> direct.run(0, step, 2));
+		List<SteeringLoopSim.Response> profiledResults = ParameterSweep.run(steps, step -> profiled.run(0, step, 2));
+		double seconds = (System.nanoTime() - start) / 1e9;
+		if (directResults == null || profiledResults == null) {
+			System.err.println("The benchmark failed to run");
+			return;
+		}
+
+		System.out.println("step   settle(ms) direct/profiled   overshoot(deg) direct/profiled");
+		long simulatedSteps = 0;
+		for (int i = 0; i < steps.size(); i++) {
+			SteeringLoopSim.Response d = directResults.get(i);
+			SteeringLoopSim.Response p = profiledResults.get(i);
+			System.out.printf("%5.0f  %8.0f / %-8.0f       %6.2f / %-6.2f%n", steps.get(i),
+					d.settleTime * 1000, p.settleTime * 1000, d.overshoot, p.overshoot);
+			simulatedSteps += d.steps + p.steps;
+		}
+		System.out.printf("%d physics steps in %.3fs (%.0f steps per second)%n", simulatedSteps, seconds,
+				simulatedSteps / seconds);
+	}
+}
@@ -0,0 +1,234 @@
+package org.team484.api.sim;
+
+import org.team484.api.motion.SwerveDrive;
+import org.team484.api.motion.SwerveDrive.MotorType;
+import org.team484.api.util.ManualClock;
+
+/**
+ * Runs SwerveDrive's steering control loop for the front left module of a SwerveDriveSim, entirely on
+ * the calling thread and in simulated time. Each run builds a real SwerveDrive on the simulated
+ * modules, so the PID loop, the steering profile and the feed forward are SwerveDrive's own. The PID
+ * loop, the drive period in which pointWheel moves the steering profile and the physics are each
+ * stepped at their own rate, the same way they run on the robot, so one run of a few seconds of robot
+ * time takes a few milliseconds.
+ * <p>
+ * Each run builds its own drive, modules and battery, so one SteeringLoopSim can be run from several
+ * threads at once as long as its settings are not changed during the runs.
+ */
+public class SteeringLoopSim {
+
+	/**
+	 * The result of one run of the module.
+	 */
+	public static class Response {
+		/**
+		 * Seconds until the module stayed within the settle tolerance of the target, for the slowest
+		 * target of the run, or -1 if the module did not settle on every target
+		 */
+		public final double settleTime;
+
+		/**
+		 * The furthest the module went past a target, in degrees
+		 */
+		public final double overshoot;
+
+		/**
+		 * The number of times the module crossed a target
+		 */
+		public final int crossings;
+
+		/**
+		 * The integral of the absolute error over the run, in degree seconds
+		 */
+		public final double integratedError;
+
+		/**
+		 * The error at the end of the run, in degrees
+		 */
+		public final double finalError;
+
+		/**
+		 * The highest steering motor current during the run, in amps
+		 */
+		public final double peakCurrent;
+
+		/**
+		 * The number of samples the response was built from, one per physics step in a simulation
+		 */
+		public final long steps;
+
+		Response(double settleTime, double overshoot, int crossings, double integratedError,
+				double finalError, double peakCurrent, long steps) {
+			this.settleTime = settleTime;
+			this.overshoot = overshoot;
+			this.crossings = crossings;
+			this.integratedError = integratedError;
+			this.finalError = finalError;
+			this.peakCurrent = peakCurrent;
+			this.steps = steps;
+		}
+	}
+
+	private final SwerveModuleSim.Parameters parameters;
+	private double kP;
+	private double kI;
+	private double kD;
+	private double pidPeriod = SimPIDController.DEFAULT_PERIOD;
+	private double drivePeriod = 0.02;
+	private double physicsStep = 0.001;
+	private double settleTolerance = 2;
+	private boolean profileEnabled = false;
+	private double maxVelocity;
+	private double maxAcceleration;
+	private double maxJerk;
+	private double kV;
+	private double kA;
+	private boolean allowReverse = false;
+
+	/**
+	 * Creates a steering loop simulation.
+	 * @param parameters - The physical properties of the module.
+	 * @param kP - The steering P value.
+	 * @param kI - The steering I value.
+	 * @param kD - The steering D value.
+	 */
+	public SteeringLoopSim(SwerveModuleSim.Parameters parameters, double kP, double kI, double kD) {
+		this.parameters = parameters;
+		setPID(kP, kI, kD);
+	}
+
+	/**
+	 * Changes the steering PID values.
+	 * @param kP - The proportional value.
+	 * @param kI - The integral value.
+	 * @param kD - The derivative value.
+	 */
+	public void setPID(double kP, double kI, double kD) {
+		this.kP = kP;
+		this.kI = kI;
+		this.kD = kD;
+	}
+
+	/**
+	 * Sets how often the PID loop runs. This defaults to the WPILib PIDController default of 50ms.
+	 * @param seconds - The PID period.
+	 */
+	public void setPIDPeriod(double seconds) {
+		pidPeriod = seconds;
+	}
+
+	/**
+	 * Sets how often the drive code runs and moves the steering profile. This defaults to 20ms.
+	 * @param seconds - The drive period.
+	 */
+	public void setDrivePeriod(double seconds) {
+		drivePeriod = seconds;
+	}
+
+	/**
+	 * Sets the physics time step. This defaults to 1ms.
+	 * @param seconds - The physics step.
+	 */
+	public void setPhysicsStep(double seconds) {
+		physicsStep = seconds;
+	}
+
+	/**
+	 * Sets how close the module must stay to the target to count as settled. This defaults to 2
+	 * degrees.
+	 * @param degrees - The settle tolerance.
+	 */
+	public void setSettleTolerance(double degrees) {
+		settleTolerance = degrees;
+	}
+
+	/**
+	 * Runs the steering setpoint through SwerveDrive's steering profile with these settings.
+	 * @param maxVelocity - The maximum turning speed in degrees per second.
+	 * @param maxAcceleration - The maximum turning acceleration in degrees per second squared.
+	 * @param maxJerk - The maximum change in acceleration, or 0 for a trapezoidal profile.
+	 * @param kV - Output per degree per second of turning speed.
+	 * @param kA - Output per degree per second squared of turning acceleration.
+	 */
+	public void enableSteeringProfile(double maxVelocity, double maxAcceleration, double maxJerk, double kV,
+			double kA) {
+		this.maxVelocity = maxVelocity;
+		this.maxAcceleration = maxAcceleration;
+		this.maxJerk = maxJerk;
+		this.kV = kV;
+		this.kA = kA;
+		profileEnabled = true;
+	}
+
+	/**
+	 * Sends the target straight to the PID setpoint, as SwerveDrive does by default.
+	 */
+	public void disableSteeringProfile() {
+		profileEnabled = false;
+	}
+
+	/**
+	 * Sets whether the module turns to the opposite angle and reverses its wheel when that is closer
+	 * to the target, as SwerveDrive does while driving. This is off by default.
+	 * @param allowReverse - True to use SwerveDrive.goToAngle to pick the angle.
+	 */
+	public void setReversal(boolean allowReverse) {
+		this.allowReverse = allowReverse;
+	}
+
+	/**
+	 * Simulates the module turning from rest at one angle to another.
+	 * @param startAngle - The angle the module starts at in degrees.
+	 * @param targetAngle - The angle the module is commanded to in degrees.
+	 * @param duration - The length of the run in seconds.
+	 * @return the response of the module.
+	 */
+	public Response run(double startAngle, double targetAngle, double duration) {
+		return run(startAngle, new double[] {targetAngle}, duration);
+	}
+
+	/**
+	 * Simulates the module being commanded to a series of angles, starting from rest.
+	 * @param startAngle - The angle the module starts at in degrees.
+	 * @param targets - The angles the module is commanded to in order, in degrees.
+	 * @param segmentDuration - How long each angle is commanded for in seconds.
+	 * @return the response of the module over all of the angles.
+	 */
+	public Response run(double startAngle, double[] targets, double segmentDuration) {
+		SwerveDriveSim drive = new SwerveDriveSim(parameters, new BatterySim());
+		drive.setPIDPeriod(Math.max(Math.round(pidPeriod / physicsStep), 1) * physicsStep);
+		SwerveModuleSim module = drive.getModule(MotorType.kFrontLeft);
+		module.setSteerAngle(startAngle);
+		ManualClock clock = new ManualClock();
+		SwerveDrive swerve = drive.createSwerveDrive(kP, kI, kD);
+		swerve.setClock(clock);
+		if (profileEnabled) {
+			swerve.enableSteeringProfile(maxVelocity, maxAcceleration, maxJerk, kV, kA);
+		}
+		ResponseRecorder recorder = new ResponseRecorder(settleTolerance);
+
+		long segmentSteps = Math.round(segmentDuration / physicsStep);
+		long driveEvery = Math.max(Math.round(drivePeriod / physicsStep), 1);
+		double target = 0;
+		long step = 0;
+		for (double commanded : targets) {
+			target = commanded;
+			double angle = ResponseRecorder.wrap(module.getSteerEncoder().getDistance());
+			if (allowReverse && !SwerveDrive.goToAngle(target, angle)) {
+				target = ResponseRecorder.wrap(target + 180);
+			}
+			recorder.startSegment(step * physicsStep, module.getSteerAngle(), target);
+			for (long i = 0; i < segmentSteps; i++, step++) {
+				clock.set(Math.round(step * physicsStep * 1e9));
+				if (step % driveEvery == 0) {
+					swerve.pointWheel(MotorType.kFrontLeft, target, false);
+				}
+				drive.step(physicsStep);
+				recorder.sample((step + 1) * physicsStep, physicsStep, module.getSteerAngle(),
+						module.getSteerCurrent());
+			}
+		}
+		swerve.free();
+		return recorder.finish();
+	}
+}
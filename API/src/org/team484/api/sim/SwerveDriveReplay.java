@@ -0,0 +1,122 @@
+package org.team484.api.sim;
+
+import org.team484.api.motion.SimulatedMotorBackend;
+import org.team484.api.motion.SwerveDrive;
+import org.team484.api.motion.SwerveDrive.MotorType;
+import org.team484.api.util.LogReader;
+
+/**
+ * Replays recorded joystick, steering encoder and gyro values through a SwerveDrive built on simulated
+ * motors and SimPIDController steering loops, so it needs no robot. The steering loops are never
+ * stepped, so the replay records the wheel angle setpoints the drive code chooses instead of the
+ * rotation motor outputs, along with the drive motor outputs. The steering encoders report the recorded angles rather than a simulation, so
+ * the drive sees exactly what it saw on the robot.
+ * <pre>
+ * SwerveDriveReplay replay = new SwerveDriveReplay(LogReader.read(logFile), 0.02, 0, 0);
+ * replay.setJoystickColumns("driverStick axis 0", "driverStick axis 1", "driverStick axis 2");
+ * replay.setEncoderColumns("FL - distance", "RL - distance", "FR - distance", "RR - distance");
+ * ReplayResult result = replay.run();
+ * </pre>
+ */
+public class SwerveDriveReplay extends DriveReplay {
+
+	private static final MotorType[] MOTORS = {MotorType.kFrontLeft, MotorType.kRearLeft,
+			MotorType.kFrontRight, MotorType.kRearRight};
+	private static final String[] OUTPUTS = {
+			"FL drive", "RL drive", "FR drive", "RR drive",
+			"FL setpoint", "RL setpoint", "FR setpoint", "RR setpoint"};
+
+	private final SwerveDrive swerve;
+	private final ReplaySensor[] encoders = new ReplaySensor[4];
+	private int xColumn = -1;
+	private int yColumn = -1;
+	private int rotColumn = -1;
+	private final int[] encoderColumns = {-1, -1, -1, -1};
+	private int gyroColumn = -1;
+
+	/**
+	 * Creates a replay of a log.
+	 * @param log - The recorded inputs.
+	 * @param kP - The steering P value.
+	 * @param kI - The steering I value.
+	 * @param kD - The steering D value.
+	 */
+	public SwerveDriveReplay(LogReader log, double kP, double kI, double kD) {
+		super(log);
+		for (int i = 0; i < 4; i++) {
+			encoders[i] = new ReplaySensor();
+		}
+		swerve = new SwerveDrive(kP, kI, kD, encoders[0], encoders[1], encoders[2], encoders[3],
+				new SimulatedMotorBackend(), new SimulatedMotorBackend(), new SimulatedMotorBackend(),
+				new SimulatedMotorBackend(), new SimulatedMotorBackend(), new SimulatedMotorBackend(),
+				new SimulatedMotorBackend(), new SimulatedMotorBackend(), false, SimPIDController.FACTORY);
+		swerve.setClock(clock);
+	}
+
+	/**
+	 * Gets the SwerveDrive being replayed through, to apply the same settings as on the robot.
+	 * @return the swerve drive.
+	 */
+	public SwerveDrive getSwerveDrive() {
+		return swerve;
+	}
+
+	/**
+	 * Sets the columns holding the joystick axes. The stick angle and magnitude are found from the
+	 * axes the same way Joystick.getDirectionDegrees and Joystick.getMagnitude do.
+	 * @param xColumn - The column of the joystick x axis.
+	 * @param yColumn - The column of the joystick y axis.
+	 * @param rotColumn - The column of the rotation axis.
+	 */
+	public void setJoystickColumns(String xColumn, String yColumn, String rotColumn) {
+		this.xColumn = column(xColumn);
+		this.yColumn = column(yColumn);
+		this.rotColumn = column(rotColumn);
+	}
+
+	/**
+	 * Sets the columns holding the steering encoder distances.
+	 * @param frontLeft - The column of the front left encoder.
+	 * @param rearLeft - The column of the rear left encoder.
+	 * @param frontRight - The column of the front right encoder.
+	 * @param rearRight - The column of the rear right encoder.
+	 */
+	public void setEncoderColumns(String frontLeft, String rearLeft, String frontRight, String rearRight) {
+		encoderColumns[0] = column(frontLeft);
+		encoderColumns[1] = column(rearLeft);
+		encoderColumns[2] = column(frontRight);
+		encoderColumns[3] = column(rearRight);
+	}
+
+	/**
+	 * Sets the column holding the gyro angle. When set, the recorded gyro angle is passed to drive as
+	 * the angle offset, as robot code that drives field oriented with drive(..., gyro.getAngle()) does.
+	 * @param gyroColumn - The column of the gyro angle.
+	 */
+	public void setGyroColumn(String gyroColumn) {
+		this.gyroColumn = column(gyroColumn);
+	}
+
+	@Override
+	protected String[] getOutputNames() {
+		return OUTPUTS.clone();
+	}
+
+	@Override
+	protected void cycle(int row, double[] outputs) {
+		for (int i = 0; i < 4; i++) {
+			encoders[i].set(input(row, encoderColumns[i]), 0);
+		}
+		double x = input(row, xColumn);
+		double y = input(row, yColumn);
+		double stickAngle = Math.toDegrees(Math.atan2(x, -y));
+		double stickMag = Math.sqrt(x * x + y * y);
+		double rot = input(row, rotColumn);
+		swerve.drive(stickAngle, stickMag, rot, input(row, gyroColumn));
+
+		for (int i = 0; i < 4; i++) {
+			outputs[i] = swerve.getMotorValue(MOTORS[i], false);
+			outputs[i + 4] = swerve.getSetpoint(MOTORS[i]);
+		}
+	}
+}
@@ -0,0 +1,133 @@
+package org.team484.api.sim;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.team484.api.motion.SwerveDrive;
+import org.team484.api.motion.SwerveDrive.MotorType;
+
+/**
+ * Four SwerveModuleSim modules powered from one BatterySim. This provides everything a SwerveDrive
+ * is built from, so a SwerveDrive can be run with no robot attached:
+ * <pre>
+ * SwerveDriveSim sim = new SwerveDriveSim();
+ * SwerveDrive swerve = sim.createSwerveDrive(0.02, 0, 0);
+ * </pre>
+ * The SwerveDrive's steering PID loops are SimPIDControllers that step runs once every PID period of
+ * simulated time, so the drive runs as fast as the simulation can. Give the SwerveDrive a ManualClock
+ * that follows the simulated time if it uses a steering profile.
+ */
+public class SwerveDriveSim {
+
+	private final SwerveModuleSim[] modules = new SwerveModuleSim[4];
+	private final BatterySim battery;
+	private volatile double otherCurrent = 0;
+	private volatile SimPIDController[] steeringLoops = new SimPIDController[0];
+	private double pidPeriod = SimPIDController.DEFAULT_PERIOD;
+	private double sinceSteeringLoops = Double.POSITIVE_INFINITY; //Seconds since the loops last ran
+
+	/**
+	 * Creates a drive model with default modules and battery.
+	 */
+	public SwerveDriveSim() {
+		this(new SwerveModuleSim.Parameters(), new BatterySim());
+	}
+
+	/**
+	 * Creates a drive model with four identical modules.
+	 * @param parameters - The physical properties of each module.
+	 * @param battery - The battery that powers the modules.
+	 */
+	public SwerveDriveSim(SwerveModuleSim.Parameters parameters, BatterySim battery) {
+		for (int i = 0; i < 4; i++) {
+			modules[i] = new SwerveModuleSim(parameters);
+		}
+		this.battery = battery;
+	}
+
+	/**
+	 * Gets one of the module models.
+	 * @param module - The location of the module.
+	 * @return the module model.
+	 */
+	public SwerveModuleSim getModule(MotorType module) {
+		return modules[module.value];
+	}
+
+	/**
+	 * Gets the battery model.
+	 * @return the battery.
+	 */
+	public BatterySim getBattery() {
+		return battery;
+	}
+
+	/**
+	 * Sets the current drawn by everything other than the drive, such as other mechanisms, so the
+	 * battery sags as it would on the robot.
+	 * @param current - The current in amps.
+	 */
+	public void setOtherCurrent(double current) {
+		otherCurrent = current;
+	}
+
+	/**
+	 * Sets how often step runs the steering PID loops. This defaults to the WPILib PIDController
+	 * default of 50ms.
+	 * @param seconds - The PID period.
+	 */
+	public void setPIDPeriod(double seconds) {
+		pidPeriod = seconds;
+	}
+
+	/**
+	 * Creates a SwerveDrive that uses the simulated motors and encoders. Its steering PID loops are
+	 * run by step, and replace those of any SwerveDrive created before.
+	 * @param kP - The steering P value.
+	 * @param kI - The steering I value.
+	 * @param kD - The steering D value.
+	 * @return the SwerveDrive.
+	 */
+	public SwerveDrive createSwerveDrive(double kP, double kI, double kD) {
+		List<SimPIDController> loops = new ArrayList<>(4);
+		SwerveDrive swerve = new SwerveDrive(kP, kI, kD,
+				modules[0].getSteerEncoder(), modules[1].getSteerEncoder(),
+				modules[2].getSteerEncoder(), modules[3].getSteerEncoder(),
+				modules[0].getSteerMotor(), modules[1].getSteerMotor(),
+				modules[2].getSteerMotor(), modules[3].getSteerMotor(),
+				modules[0].getDriveMotor(), modules[1].getDriveMotor(),
+				modules[2].getDriveMotor(), modules[3].getDriveMotor(), false,
+				(p, i, d, source, output) -> {
+					SimPIDController loop = new SimPIDController(p, i, d, source, output);
+					loops.add(loop);
+					return loop;
+				});
+		steeringLoops = loops.toArray(new SimPIDController[loops.size()]);
+		sinceSteeringLoops = Double.POSITIVE_INFINITY;
+		return swerve;
+	}
+
+	/**
+	 * Runs the steering PID loops if a PID period has passed since they last ran, then advances all of
+	 * the modules and updates the battery voltage.
+	 * @param dt - The time to advance in seconds.
+	 * @return the battery voltage after the step.
+	 */
+	public double step(double dt) {
+		//Allow for rounding so a PID period that is a whole number of steps runs on every period
+		if (sinceSteeringLoops >= pidPeriod - 1e-9) {
+			for (SimPIDController loop : steeringLoops) {
+				loop.run();
+			}
+			sinceSteeringLoops = 0;
+		}
+		sinceSteeringLoops += dt;
+		double voltage = battery.getVoltage();
+		double current = otherCurrent;
+		for (SwerveModuleSim module : modules) {
+			current += module.step(dt, voltage);
+		}
+		battery.setCurrent(current);
+		return battery.getVoltage();
+	}
+}
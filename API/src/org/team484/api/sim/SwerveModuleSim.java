@@ -0,0 +1,334 @@
+package org.team484.api.sim;
+
+import org.team484.api.motion.MotorBackend;
+import org.team484.api.motion.SimulatedMotorBackend;
+import org.team484.api.sensor.DistanceSensor;
+
+/**
+ * A physics model of one swerve module, standing in for the two motor controllers and the two
+ * encoders that SwerveDrive uses for a module. The steering motor turns the module through a gear
+ * reduction against the module's inertia and friction, and the steering encoder only reports whole
+ * counts. The drive motor turns the wheel, which grips the floor up to the friction limit of the
+ * weight on it and slips beyond that. Both motors are powered from a voltage that the caller passes
+ * in each step, usually from a BatterySim.
+ * <p>
+ * The model is only of the module itself: the floor under the wheel moves with the wheel's share of
+ * the robot's mass, but the module is not connected to the other modules. A step only does a few
+ * dozen floating point operations, so a model runs many thousands of steps per second. The motors,
+ * encoders and getters may be used from other threads while step is running. The model's state is
+ * only published for them at the end of each step, so they see it as of the last full step.
+ */
+public class SwerveModuleSim {
+
+	private static final double GRAVITY = 9.81;
+	private static final double MAX_SUBSTEP = 0.0005;
+
+	/**
+	 * The physical properties of a swerve module. The defaults are for a CIM driven 4 inch wheel
+	 * steered by a 775pro through a 71:1 reduction.
+	 */
+	public static class Parameters {
+		public DCMotor steerMotor = DCMotor.vex775Pro();
+		public double steerGearRatio = 71;
+		public double steerInertia = 0.004; //kg m^2 about the steering axis
+		public double steerFriction = 0.3; //Nm at the steering axis
+		public double steerEfficiency = 0.8;
+		public int steerEncoderCounts = 1024; //Counts per module rotation
+
+		public DCMotor driveMotor = DCMotor.cim();
+		public double driveGearRatio = 8.31;
+		public double wheelRadius = 0.0508; //m
+		public double wheelInertia = 0.0006; //kg m^2 including the gears
+		public double driveEfficiency = 0.9;
+		public int driveEncoderCounts = 1024; //Counts per wheel rotation
+
+		public double supportedMass = 15; //kg of robot on this wheel
+		public double frictionCoefficient = 1.1;
+	}
+
+	private final Parameters parameters;
+	private final SimulatedMotorBackend steerMotor = new SimulatedMotorBackend();
+	private final SimulatedMotorBackend driveMotor = new SimulatedMotorBackend();
+
+	//State worked on by step, only read and written by the thread running it
+	private double steerAngle = 0; //rad, not wrapped
+	private double steerVelocity = 0; //rad/s
+	private double wheelVelocity = 0; //rad/s
+	private double wheelAngle = 0; //rad
+	private double groundVelocity = 0; //m/s
+
+	//State published at the end of each step for other threads
+	private volatile double publishedSteerAngle = 0;
+	private volatile double publishedSteerVelocity = 0;
+	private volatile double publishedWheelVelocity = 0;
+	private volatile double publishedGroundVelocity = 0;
+
+	private volatile double steerEncoderDistance = 0;
+	private volatile double steerEncoderOffset = 0;
+	private volatile double driveEncoderDistance = 0;
+	private volatile double driveEncoderOffset = 0;
+	private volatile double steerCurrent = 0;
+	private volatile double driveCurrent = 0;
+
+	private final DistanceSensor steerEncoder = new DistanceSensor() {
+		@Override
+		public double getDistance() {
+			return steerEncoderDistance - steerEncoderOffset;
+		}
+
+		@Override
+		public double getRate() {
+			return Math.toDegrees(publishedSteerVelocity);
+		}
+
+		@Override
+		public void reset() {
+			steerEncoderOffset = steerEncoderDistance;
+		}
+
+		@Override
+		public void free() {
+		}
+	};
+
+	private final DistanceSensor driveEncoder = new DistanceSensor() {
+		@Override
+		public double getDistance() {
+			return driveEncoderDistance - driveEncoderOffset;
+		}
+
+		@Override
+		public double getRate() {
+			return publishedWheelVelocity * parameters.wheelRadius;
+		}
+
+		@Override
+		public void reset() {
+			driveEncoderOffset = driveEncoderDistance;
+		}
+
+		@Override
+		public void free() {
+		}
+	};
+
+	/**
+	 * Creates a module model with the default parameters.
+	 */
+	public SwerveModuleSim() {
+		this(new Parameters());
+	}
+
+	/**
+	 * Creates a module model.
+	 * @param parameters - The physical properties of the module.
+	 */
+	public SwerveModuleSim(Parameters parameters) {
+		this.parameters = parameters;
+	}
+
+	/**
+	 * Gets the simulated motor controller that steers the module. Positive output turns the module
+	 * counter clockwise.
+	 * @return the steering motor.
+	 */
+	public MotorBackend getSteerMotor() {
+		return steerMotor;
+	}
+
+	/**
+	 * Gets the simulated motor controller that drives the wheel.
+	 * @return the drive motor.
+	 */
+	public MotorBackend getDriveMotor() {
+		return driveMotor;
+	}
+
+	/**
+	 * Gets the simulated steering encoder. Its distance is the module angle in degrees, counter
+	 * clockwise increasing, as SwerveDrive expects.
+	 * @return the steering encoder.
+	 */
+	public DistanceSensor getSteerEncoder() {
+		return steerEncoder;
+	}
+
+	/**
+	 * Gets the simulated drive wheel encoder. Its distance is in meters.
+	 * @return the drive encoder.
+	 */
+	public DistanceSensor getDriveEncoder() {
+		return driveEncoder;
+	}
+
+	/**
+	 * Gets the true angle of the module, without encoder resolution.
+	 * @return the angle in degrees from -180 to 180.
+	 */
+	public double getSteerAngle() {
+		double angle = Math.toDegrees(publishedSteerAngle) % 360.0;
+		if (angle > 180) {
+			angle -= 360;
+		} else if (angle <= -180) {
+			angle += 360;
+		}
+		return angle;
+	}
+
+	/**
+	 * Gets the turning speed of the module.
+	 * @return the speed in degrees per second.
+	 */
+	public double getSteerVelocity() {
+		return Math.toDegrees(publishedSteerVelocity);
+	}
+
+	/**
+	 * Gets the speed of the wheel's surface.
+	 * @return the speed in meters per second.
+	 */
+	public double getWheelSpeed() {
+		return publishedWheelVelocity * parameters.wheelRadius;
+	}
+
+	/**
+	 * Gets the speed of the floor under the wheel relative to the module. This differs from the
+	 * wheel speed while the wheel is slipping.
+	 * @return the speed in meters per second.
+	 */
+	public double getGroundSpeed() {
+		return publishedGroundVelocity;
+	}
+
+	/**
+	 * Gets the current drawn by the steering motor during the last step.
+	 * @return the motor current in amps.
+	 */
+	public double getSteerCurrent() {
+		return steerCurrent;
+	}
+
+	/**
+	 * Gets the current drawn by the drive motor during the last step.
+	 * @return the motor current in amps.
+	 */
+	public double getDriveCurrent() {
+		return driveCurrent;
+	}
+
+	/**
+	 * Sets the module to an angle at rest, for setting up a test. This must not be called while step
+	 * is running.
+	 * @param degrees - The angle to put the module at.
+	 */
+	public void setSteerAngle(double degrees) {
+		steerAngle = Math.toRadians(degrees);
+		steerVelocity = 0;
+		publish();
+	}
+
+	/**
+	 * Advances the model.
+	 * @param dt - The time to advance in seconds. Long steps are split into short ones internally.
+	 * @param batteryVoltage - The voltage available to the motor controllers.
+	 * @return the current drawn from the battery during the step in amps.
+	 */
+	public double step(double dt, double batteryVoltage) {
+		int substeps = Math.max((int) Math.ceil(dt / MAX_SUBSTEP), 1);
+		double h = dt / substeps;
+		double batteryCurrent = 0;
+		for (int i = 0; i < substeps; i++) {
+			batteryCurrent += stepSteering(h, batteryVoltage) + stepDrive(h, batteryVoltage);
+		}
+		publish();
+		return batteryCurrent / substeps;
+	}
+
+	private double stepSteering(double dt, double batteryVoltage) {
+		DCMotor motor = parameters.steerMotor;
+		double voltage = steerMotor.getAppliedVoltage(batteryVoltage);
+		double current = motor.getCurrent(voltage, steerVelocity * parameters.steerGearRatio);
+		double torque = motor.getTorque(current) * parameters.steerGearRatio * parameters.steerEfficiency;
+
+		double friction = parameters.steerFriction;
+		double netTorque;
+		if (steerVelocity != 0) {
+			netTorque = torque - Math.copySign(friction, steerVelocity);
+		} else if (Math.abs(torque) <= friction) {
+			netTorque = 0;
+		} else {
+			netTorque = torque - Math.copySign(friction, torque);
+		}
+		double newVelocity = steerVelocity + netTorque / parameters.steerInertia * dt;
+		if (steerVelocity != 0 && Math.signum(newVelocity) != Math.signum(steerVelocity)
+				&& Math.abs(torque) <= friction) {
+			//Friction stopped the module
+			newVelocity = 0;
+		}
+		steerVelocity = newVelocity;
+		steerAngle += steerVelocity * dt;
+		steerCurrent = current;
+		return batteryCurrent(current, voltage, batteryVoltage);
+	}
+
+	private double stepDrive(double dt, double batteryVoltage) {
+		DCMotor motor = parameters.driveMotor;
+		double radius = parameters.wheelRadius;
+		double mass = parameters.supportedMass;
+		double inertia = parameters.wheelInertia;
+		double maxForce = parameters.frictionCoefficient * mass * GRAVITY;
+
+		double voltage = driveMotor.getAppliedVoltage(batteryVoltage);
+		double current = motor.getCurrent(voltage, wheelVelocity * parameters.driveGearRatio);
+		double torque = motor.getTorque(current) * parameters.driveGearRatio * parameters.driveEfficiency;
+
+		double slip = wheelVelocity * radius - groundVelocity;
+		boolean rolling = Math.abs(slip) < 1e-4;
+		if (rolling) {
+			//Wheel and floor move together if the friction needed to do so is available
+			double acceleration = torque / radius / (mass + inertia / (radius * radius));
+			if (Math.abs(mass * acceleration) <= maxForce) {
+				groundVelocity += acceleration * dt;
+				wheelVelocity = groundVelocity / radius;
+			} else {
+				rolling = false;
+				slip = torque;
+			}
+		}
+		if (!rolling) {
+			double force = Math.copySign(maxForce, slip);
+			double newWheelVelocity = wheelVelocity + (torque - force * radius) / inertia * dt;
+			double newGroundVelocity = groundVelocity + force / mass * dt;
+			if (Math.signum(newWheelVelocity * radius - newGroundVelocity) != Math.signum(slip)) {
+				//The slip ended during this step, so the wheel and floor lock together
+				double momentum = mass * newGroundVelocity + inertia / radius * newWheelVelocity;
+				newGroundVelocity = momentum / (mass + inertia / (radius * radius));
+				newWheelVelocity = newGroundVelocity / radius;
+			}
+			wheelVelocity = newWheelVelocity;
+			groundVelocity = newGroundVelocity;
+		}
+		wheelAngle += wheelVelocity * dt;
+		driveCurrent = current;
+		return batteryCurrent(current, voltage, batteryVoltage);
+	}
+
+	private static double batteryCurrent(double motorCurrent, double motorVoltage, double batteryVoltage) {
+		if (batteryVoltage <= 0) {
+			return 0;
+		}
+		return motorCurrent * motorVoltage / batteryVoltage;
+	}
+
+	private void publish() {
+		publishedSteerAngle = steerAngle;
+		publishedSteerVelocity = steerVelocity;
+		publishedWheelVelocity = wheelVelocity;
+		publishedGroundVelocity = groundVelocity;
+		double steerCountSize = 360.0 / parameters.steerEncoderCounts;
+		steerEncoderDistance = Math.floor(Math.toDegrees(steerAngle) / steerCountSize) * steerCountSize;
+		double driveCountSize = 2.0 * Math.PI * parameters.wheelRadius / parameters.driveEncoderCounts;
+		double wheelDistance = wheelAngle * parameters.wheelRadius;
+		driveEncoderDistance = Math.floor(wheelDistance / driveCountSize) * driveCountSize;
+	}
+}
@@ -0,0 +1,328 @@
+package org.team484.api.sim;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.team484.api.motion.SwerveDrive;
+import org.team484.api.motion.SwerveDrive.MotorType;
+import org.team484.api.util.ParameterSweep;
+
+/**
+ * Searches for steering PID values for each swerve module by simulating every combination of a grid
+ * of kP, kI and kD values against a model of the module. Each combination is run through a set of
+ * test profiles, made of steps and of reversals that make the module turn to the opposite angle the
+ * way SwerveDrive.driveWheel does, and is scored by how slowly it settles, how far it overshoots and
+ * how much it oscillates. Lower scores are better. The simulations are spread across every core.
+ * <p>
+ * The recommended gains can be applied with apply, or checked and refined on the robot with an
+ * org.team484.api.tuning.OnRobotSteeringTuner.
+ */
+public class SwerveSteeringTuner {
+
+	/**
+	 * A set of PID values.
+	 */
+	public static class Gains {
+		public final double kP;
+		public final double kI;
+		public final double kD;
+
+		public Gains(double kP, double kI, double kD) {
+			this.kP = kP;
+			this.kI = kI;
+			this.kD = kD;
+		}
+
+		@Override
+		public String toString() {
+			return String.format("kP=%.5f kI=%.5f kD=%.5f", kP, kI, kD);
+		}
+	}
+
+	/**
+	 * A test profile: the module starts at rest at one angle and is commanded to a series of others.
+	 */
+	public static class Profile {
+		public final double startAngle;
+		public final double[] targets;
+
+		public Profile(double startAngle, double... targets) {
+			this.startAngle = startAngle;
+			this.targets = targets;
+		}
+	}
+
+	/**
+	 * The score of one set of gains on one module.
+	 */
+	public static class Result implements Comparable<Result> {
+		public final Gains gains;
+		public final double score;
+		public final SteeringLoopSim.Response[] responses;
+
+		public Result(Gains gains, double score, SteeringLoopSim.Response[] responses) {
+			this.gains = gains;
+			this.score = score;
+			this.responses = responses;
+		}
+
+		@Override
+		public int compareTo(Result other) {
+			return Double.compare(score, other.score);
+		}
+	}
+
+	private final SwerveModuleSim.Parameters[] modules;
+	private final List<Profile> profiles = new ArrayList<>();
+	private double[] kPs = {0.002, 0.005, 0.01, 0.015, 0.02, 0.03};
+	private double[] kIs = {0};
+	private double[] kDs = {0, 0.005, 0.01, 0.02, 0.05};
+	private double pidPeriod = SimPIDController.DEFAULT_PERIOD;
+	private double segmentDuration = 1;
+	private double settleTolerance = 2;
+	private double settleWeight = 1;
+	private double overshootWeight = 0.02;
+	private double crossingWeight = 0.05;
+	private double unsettledPenalty = 10;
+	private int threads = Runtime.getRuntime().availableProcessors();
+	private final List<List<Result>> results = new ArrayList<>();
+
+	/**
+	 * Creates a tuner with all four modules modeled with the same parameters.
+	 * @param parameters - The physical properties of the modules.
+	 */
+	public SwerveSteeringTuner(SwerveModuleSim.Parameters parameters) {
+		this(parameters, parameters, parameters, parameters);
+	}
+
+	/**
+	 * Creates a tuner with each module modeled separately.
+	 * @param frontLeft - The physical properties of the front left module.
+	 * @param rearLeft - The physical properties of the rear left module.
+	 * @param frontRight - The physical properties of the front right module.
+	 * @param rearRight - The physical properties of the rear right module.
+	 */
+	public SwerveSteeringTuner(SwerveModuleSim.Parameters frontLeft, SwerveModuleSim.Parameters rearLeft,
+			SwerveModuleSim.Parameters frontRight, SwerveModuleSim.Parameters rearRight) {
+		modules = new SwerveModuleSim.Parameters[] {frontLeft, rearLeft, frontRight, rearRight};
+		//Steps
+		profiles.add(new Profile(0, 15));
+		profiles.add(new Profile(0, 45));
+		profiles.add(new Profile(0, 90));
+		//Reversals, each of which turns the module to the opposite angle
+		profiles.add(new Profile(0, 135, -45, 170));
+		profiles.add(new Profile(90, -80, 100, -100));
+	}
+
+	/**
+	 * Sets the values of kP, kI and kD to try. Every combination is simulated.
+	 * @param kPs - The proportional values.
+	 * @param kIs - The integral values.
+	 * @param kDs - The derivative values.
+	 */
+	public void setGrid(double[] kPs, double[] kIs, double[] kDs) {
+		this.kPs = kPs.clone();
+		this.kIs = kIs.clone();
+		this.kDs = kDs.clone();
+	}
+
+	/**
+	 * Replaces the test profiles.
+	 * @param profiles - The profiles to score every set of gains with.
+	 */
+	public void setProfiles(List<Profile> profiles) {
+		this.profiles.clear();
+		this.profiles.addAll(profiles);
+	}
+
+	/**
+	 * Gets the test profiles.
+	 * @return the profiles.
+	 */
+	public List<Profile> getProfiles() {
+		return Collections.unmodifiableList(profiles);
+	}
+
+	/**
+	 * Sets how often the PID loops run on the robot. This defaults to the WPILib PIDController
+	 * default of 50ms.
+	 * @param seconds - The PID period.
+	 */
+	public void setPIDPeriod(double seconds) {
+		pidPeriod = seconds;
+	}
+
+	/**
+	 * Sets how long each target of a profile is held. This defaults to 1 second.
+	 * @param seconds - The segment duration.
+	 */
+	public void setSegmentDuration(double seconds) {
+		segmentDuration = seconds;
+	}
+
+	/**
+	 * Gets how long each target of a profile is held.
+	 * @return the segment duration in seconds.
+	 */
+	public double getSegmentDuration() {
+		return segmentDuration;
+	}
+
+	/**
+	 * Sets how close the module must stay to a target to count as settled. This defaults to 2
+	 * degrees.
+	 * @param degrees - The settle tolerance.
+	 */
+	public void setSettleTolerance(double degrees) {
+		settleTolerance = degrees;
+	}
+
+	/**
+	 * Gets how close the module must stay to a target to count as settled.
+	 * @return the settle tolerance in degrees.
+	 */
+	public double getSettleTolerance() {
+		return settleTolerance;
+	}
+
+	/**
+	 * Sets how much each part of the response counts toward the score.
+	 * @param settleWeight - Score per second of settle time.
+	 * @param overshootWeight - Score per degree of overshoot.
+	 * @param crossingWeight - Score per crossing of the target.
+	 * @param unsettledPenalty - Score added for each profile the module did not settle in.
+	 */
+	public void setWeights(double settleWeight, double overshootWeight, double crossingWeight,
+			double unsettledPenalty) {
+		this.settleWeight = settleWeight;
+		this.overshootWeight = overshootWeight;
+		this.crossingWeight = crossingWeight;
+		this.unsettledPenalty = unsettledPenalty;
+	}
+
+	/**
+	 * Sets the number of threads to run the simulations on. This defaults to the number of cores.
+	 * @param threads - The thread count.
+	 */
+	public void setThreads(int threads) {
+		this.threads = threads;
+	}
+
+	/**
+	 * Scores the responses of a set of gains to the test profiles.
+	 * @param responses - The response to each profile.
+	 * @return the score. Lower is better.
+	 */
+	public double score(SteeringLoopSim.Response[] responses) {
+		double score = 0;
+		for (SteeringLoopSim.Response response : responses) {
+			if (response.settleTime < 0) {
+				score += unsettledPenalty;
+			} else {
+				score += settleWeight * response.settleTime;
+			}
+			score += overshootWeight * response.overshoot + crossingWeight * response.crossings;
+		}
+		return score;
+	}
+
+	/**
+	 * Simulates every set of gains on every module.
+	 * @return the best gains for each module, indexed by MotorType value, or null if the simulations
+	 *         failed.
+	 */
+	public Result[] tune() {
+		final List<Gains> grid = new ArrayList<>();
+		for (double kP : kPs) {
+			for (double kI : kIs) {
+				for (double kD : kDs) {
+					grid.add(new Gains(kP, kI, kD));
+				}
+			}
+		}
+		List<int[]> tasks = new ArrayList<>();
+		for (int module = 0; module < 4; module++) {
+			for (int gains = 0; gains < grid.size(); gains++) {
+				tasks.add(new int[] {module, gains});
+			}
+		}
+		List<Result> all = ParameterSweep.run(tasks, task -> evaluate(modules[task[0]], grid.get(task[1])), threads);
+		if (all == null) {
+			return null;
+		}
+
+		results.clear();
+		Result[] best = new Result[4];
+		for (int module = 0; module < 4; module++) {
+			List<Result> moduleResults = new ArrayList<>(all.subList(module * grid.size(), (module + 1) * grid.size()));
+			Collections.sort(moduleResults);
+			results.add(moduleResults);
+			best[module] = moduleResults.get(0);
+		}
+		return best;
+	}
+
+	/**
+	 * Gets every result for a module from the last tune, best first.
+	 * @param module - The location of the module.
+	 * @return the results, or an empty list if tune has not been run.
+	 */
+	public List<Result> getResults(MotorType module) {
+		if (results.size() != 4) {
+			return Collections.emptyList();
+		}
+		return Collections.unmodifiableList(results.get(module.value));
+	}
+
+	/**
+	 * Prints the recommended gains for each module.
+	 * @param best - The results returned by tune.
+	 */
+	public static void print(Result[] best) {
+		String[] names = {"front left", "rear left", "front right", "rear right"};
+		for (int module = 0; module < 4; module++) {
+			System.out.println("Steering " + names[module] + ": " + best[module].gains
+					+ String.format(" (score %.3f)", best[module].score));
+		}
+	}
+
+	/**
+	 * Sets the steering PID values of each module of a SwerveDrive.
+	 * @param swerve - The swerve drive to set.
+	 * @param best - The results returned by tune.
+	 */
+	public static void apply(SwerveDrive swerve, Result[] best) {
+		MotorType[] motors = {MotorType.kFrontLeft, MotorType.kRearLeft, MotorType.kFrontRight,
+				MotorType.kRearRight};
+		for (MotorType motor : motors) {
+			Gains gains = best[motor.value].gains;
+			swerve.setPID(motor, gains.kP, gains.kI, gains.kD);
+		}
+	}
+
+	private Result evaluate(SwerveModuleSim.Parameters module, Gains gains) {
+		SteeringLoopSim sim = new SteeringLoopSim(module, gains.kP, gains.kI, gains.kD);
+		sim.setPIDPeriod(pidPeriod);
+		sim.setSettleTolerance(settleTolerance);
+		sim.setReversal(true);
+		SteeringLoopSim.Response[] responses = new SteeringLoopSim.Response[profiles.size()];
+		for (int i = 0; i < responses.length; i++) {
+			Profile profile = profiles.get(i);
+			responses[i] = sim.run(profile.startAngle, profile.targets, segmentDuration);
+		}
+		return new Result(gains, score(responses), responses);
+	}
+
+	/**
+	 * Tunes the default module model and prints the recommended gains.
+	 * @param args - Not used.
+	 */
+	public static void main(String[] args) {
+		SwerveSteeringTuner tuner = new SwerveSteeringTuner(new SwerveModuleSim.Parameters());
+		long start = System.nanoTime();
+		Result[] best = tuner.tune();
+		System.out.printf("Tuned in %.2fs%n", (System.nanoTime() - start) / 1e9);
+		print(best);
+	}
+}
@@ -0,0 +1,211 @@
+package org.team484.api.tuning;
+
+import org.team484.api.motion.SwerveDrive;
+import org.team484.api.motion.SwerveDrive.MotorType;
+import org.team484.api.sim.ResponseRecorder;
+import org.team484.api.sim.SteeringLoopSim;
+import org.team484.api.sim.SwerveSteeringTuner;
+
+/**
+ * A guided routine that refines steering PID values on the robot. Starting from gains for each module,
+ * usually those recommended by a SwerveSteeringTuner, it tries the starting gains and versions of them
+ * with kP and kD scaled up and down. Each set is run through the tuner's test profiles one module at a
+ * time using SwerveDrive.pointWheel, and scored with the tuner's scoring. When every module is done
+ * the best gains are set on the SwerveDrive and printed.
+ * <p>
+ * Every wheel the routine has pointed is pointed again on every update, so a steering profile enabled
+ * on the SwerveDrive keeps moving towards the target while the routine waits, as it does while
+ * driving. Finished modules are left pointing straight ahead.
+ * The robot should be up on blocks with its wheels off the ground. Call update from testPeriodic until
+ * isFinished returns true. Each module takes about a minute with the default profiles.
+ */
+public class OnRobotSteeringTuner {
+
+	private static final String[] NAMES = {"front left", "rear left", "front right", "rear right"};
+	private static final MotorType[] MOTORS = {MotorType.kFrontLeft, MotorType.kRearLeft,
+			MotorType.kFrontRight, MotorType.kRearRight};
+	private static final double[] SCALES = {0.7, 1, 1.4};
+
+	private final SwerveDrive swerve;
+	private final SwerveSteeringTuner tuner;
+	private final SwerveSteeringTuner.Gains[][] candidates = new SwerveSteeringTuner.Gains[4][];
+	private final SwerveSteeringTuner.Result[] best = new SwerveSteeringTuner.Result[4];
+
+	private int module = 0;
+	private int candidate = 0;
+	private int profile = 0;
+	private int segment = -1; //-1 while moving to the start angle
+	private long segmentStart = 0;
+	private long lastSample = 0;
+	private boolean started = false;
+	private boolean finished = false;
+	private ResponseRecorder recorder;
+	private SteeringLoopSim.Response[] responses;
+	//The angle each module is being pointed at, or NaN for a module the routine has not pointed yet
+	private final double[] targets = {Double.NaN, Double.NaN, Double.NaN, Double.NaN};
+
+	/**
+	 * Creates the routine.
+	 * @param swerve - The swerve drive to tune.
+	 * @param tuner - The tuner whose profiles, timing and scoring are used.
+	 * @param starting - The gains to start from for each module, indexed by MotorType value.
+	 */
+	public OnRobotSteeringTuner(SwerveDrive swerve, SwerveSteeringTuner tuner, SwerveSteeringTuner.Gains[] starting) {
+		this.swerve = swerve;
+		this.tuner = tuner;
+		for (int m = 0; m < 4; m++) {
+			SwerveSteeringTuner.Gains start = starting[m];
+			candidates[m] = new SwerveSteeringTuner.Gains[SCALES.length * SCALES.length];
+			int i = 0;
+			for (double pScale : SCALES) {
+				for (double dScale : SCALES) {
+					candidates[m][i++] = new SwerveSteeringTuner.Gains(start.kP * pScale, start.kI, start.kD * dScale);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Creates the routine starting from the results of an offline tune.
+	 * @param swerve - The swerve drive to tune.
+	 * @param tuner - The tuner that produced the results.
+	 * @param offline - The results returned by SwerveSteeringTuner.tune.
+	 */
+	public OnRobotSteeringTuner(SwerveDrive swerve, SwerveSteeringTuner tuner, SwerveSteeringTuner.Result[] offline) {
+		this(swerve, tuner, new SwerveSteeringTuner.Gains[] {offline[0].gains, offline[1].gains,
+				offline[2].gains, offline[3].gains});
+	}
+
+	/**
+	 * Runs the routine. Call this every robot cycle.
+	 */
+	public void update() {
+		if (finished) {
+			return;
+		}
+		step(System.nanoTime());
+		for (int m = 0; m < 4; m++) {
+			if (!Double.isNaN(targets[m])) {
+				swerve.pointWheel(MOTORS[m], targets[m], false);
+			}
+		}
+	}
+
+	/**
+	 * Moves the routine on to the next segment, profile, candidate or module once it is time to.
+	 * @param now - The current time in nanoseconds.
+	 */
+	private void step(long now) {
+		if (module >= 4) {
+			//Give the last module time to straighten out before finishing
+			if ((now - segmentStart) / 1e9 >= tuner.getSegmentDuration()) {
+				finished = true;
+				System.out.println("Steering tuner: done");
+				SwerveSteeringTuner.print(best);
+			}
+			return;
+		}
+		if (!started) {
+			started = true;
+			System.out.println("Steering tuner: the robot must be on blocks with its wheels off the ground");
+			startCandidate(now);
+			return;
+		}
+		MotorType motor = MOTORS[module];
+		double time = (now - segmentStart) / 1e9;
+		if (segment >= 0) {
+			recorder.sample(time + segment * tuner.getSegmentDuration(), (now - lastSample) / 1e9,
+					swerve.getEncoderAngle(motor), 0);
+		}
+		lastSample = now;
+		if (time < tuner.getSegmentDuration()) {
+			return;
+		}
+
+		SwerveSteeringTuner.Profile current = tuner.getProfiles().get(profile);
+		segment++;
+		if (segment < current.targets.length) {
+			startSegment(now, current.targets[segment]);
+			return;
+		}
+		responses[profile] = recorder.finish();
+		profile++;
+		if (profile < responses.length) {
+			startProfile(now);
+			return;
+		}
+		finishCandidate();
+		candidate++;
+		if (candidate < candidates[module].length) {
+			startCandidate(now);
+			return;
+		}
+		finishModule();
+		module++;
+		if (module < 4) {
+			candidate = 0;
+			startCandidate(now);
+		} else {
+			segmentStart = now;
+		}
+	}
+
+	/**
+	 * Used to find out if the routine has tuned every module.
+	 * @return true when the routine is done.
+	 */
+	public boolean isFinished() {
+		return finished;
+	}
+
+	/**
+	 * Gets the best gains found for a module so far.
+	 * @param motor - The location of the module.
+	 * @return the best result, or null if no gains have been tried on the module yet.
+	 */
+	public SwerveSteeringTuner.Result getBest(MotorType motor) {
+		return best[motor.value];
+	}
+
+	private void startCandidate(long now) {
+		SwerveSteeringTuner.Gains gains = candidates[module][candidate];
+		System.out.println("Steering tuner: " + NAMES[module] + " trying " + gains);
+		swerve.setPID(MOTORS[module], gains.kP, gains.kI, gains.kD);
+		responses = new SteeringLoopSim.Response[tuner.getProfiles().size()];
+		profile = 0;
+		startProfile(now);
+	}
+
+	private void startProfile(long now) {
+		recorder = new ResponseRecorder(tuner.getSettleTolerance());
+		segment = -1;
+		segmentStart = now;
+		targets[module] = tuner.getProfiles().get(profile).startAngle;
+	}
+
+	private void startSegment(long now, double target) {
+		MotorType motor = MOTORS[module];
+		double angle = swerve.getEncoderAngle(motor);
+		if (!SwerveDrive.goToAngle(target, angle)) {
+			target = ResponseRecorder.wrap(target + 180);
+		}
+		recorder.startSegment(segment * tuner.getSegmentDuration(), angle, target);
+		targets[module] = target;
+		segmentStart = now;
+	}
+
+	private void finishCandidate() {
+		SwerveSteeringTuner.Result result = new SwerveSteeringTuner.Result(candidates[module][candidate],
+				tuner.score(responses), responses);
+		System.out.printf("Steering tuner: %s score %.3f%n", NAMES[module], result.score);
+		if (best[module] == null || result.score < best[module].score) {
+			best[module] = result;
+		}
+	}
+
+	private void finishModule() {
+		SwerveSteeringTuner.Gains gains = best[module].gains;
+		swerve.setPID(MOTORS[module], gains.kP, gains.kI, gains.kD);
+		targets[module] = SwerveDrive.goToAngle(0, swerve.getEncoderAngle(MOTORS[module])) ? 0 : 180;
+	}
+}
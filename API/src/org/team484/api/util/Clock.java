@@ -0,0 +1,19 @@
+package org.team484.api.util;
+
+/**
+ * A source of time for code that needs to be run against a controlled clock, such as when replaying
+ * recorded inputs. Clock.SYSTEM reads System.nanoTime().
+ */
+public interface Clock {
+
+	/**
+	 * The clock that reads System.nanoTime()
+	 */
+	Clock SYSTEM = System::nanoTime;
+
+	/**
+	 * Gets the current time.
+	 * @return the time in nanoseconds. Only the difference between two times is meaningful.
+	 */
+	long nanoTime();
+}
@@ -0,0 +1,55 @@
+package org.team484.api.util;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * CommandMailbox hands the latest command from any number of producer threads to a single consumer
+ * thread without locking. Posting a command is one atomic swap, and a new command replaces any
+ * command that has not been taken yet, so the consumer always acts on the most recent one. Commands
+ * should be immutable since the producer and consumer share them.
+ * @param <T> - The command type.
+ */
+public class CommandMailbox<T> {
+
+	private final AtomicReference<T> latest = new AtomicReference<>();
+	private volatile long postCount = 0;
+	private volatile long replacedCount = 0;
+
+	/**
+	 * Posts a command, replacing any command that has not been taken yet. Safe to call from any
+	 * thread.
+	 * @param command - The command to post.
+	 */
+	public void post(T command) {
+		if (latest.getAndSet(command) != null) {
+			replacedCount++;
+		}
+		postCount++;
+	}
+
+	/**
+	 * Takes the latest command out of the mailbox.
+	 * @return the latest command, or null if no command was posted since the last take.
+	 */
+	public T take() {
+		return latest.getAndSet(null);
+	}
+
+	/**
+	 * Gets the number of commands that were posted. When posting from several threads at once this
+	 * count is approximate.
+	 * @return the post count.
+	 */
+	public long getPostCount() {
+		return postCount;
+	}
+
+	/**
+	 * Gets the number of commands that were replaced by a newer command before they were taken.
+	 * When posting from several threads at once this count is approximate.
+	 * @return the replaced command count.
+	 */
+	public long getReplacedCount() {
+		return replacedCount;
+	}
+}
@@ -0,0 +1,80 @@
+package org.team484.api.util;
+
+/**
+ * HeadingHolder shares the latest gyro angle and turn rate between one writer thread and any number
+ * of reader threads without locking, using the same sequence lock as PoseHolder. Readers can
+ * extrapolate the angle to a later time using the rate, which makes up for the time since the sample
+ * was taken.
+ * <p>
+ * Only one thread may call set. Any thread may call the other methods.
+ */
+public class HeadingHolder {
+
+	private volatile int sequence = 0;
+	private volatile double angle = 0;
+	private volatile double rate = 0;
+	private volatile long timestamp = 0;
+
+	/**
+	 * Publishes a new sample. Must only be called from a single thread.
+	 * @param angle - The angle in degrees.
+	 * @param rate - The turn rate in degrees per second.
+	 * @param timestamp - The System.nanoTime() value of the sample.
+	 */
+	public void set(double angle, double rate, long timestamp) {
+		sequence++;
+		this.angle = angle;
+		this.rate = rate;
+		this.timestamp = timestamp;
+		sequence++;
+	}
+
+	/**
+	 * Gets the angle of the latest sample, without extrapolation.
+	 * @return the angle in degrees.
+	 */
+	public double getAngle() {
+		return angle;
+	}
+
+	/**
+	 * Gets the turn rate of the latest sample.
+	 * @return the rate in degrees per second.
+	 */
+	public double getRate() {
+		return rate;
+	}
+
+	/**
+	 * Gets the time of the latest sample.
+	 * @return the System.nanoTime() value of the sample.
+	 */
+	public long getTimestamp() {
+		return timestamp;
+	}
+
+	/**
+	 * Gets the angle extrapolated from the latest sample to a given time at the sampled rate.
+	 * @param atNanos - The System.nanoTime() value to extrapolate to.
+	 * @param maxNanos - The furthest to extrapolate, so a stalled writer does not make the angle run
+	 *                   away.
+	 * @return the extrapolated angle in degrees.
+	 */
+	public double extrapolate(long atNanos, long maxNanos) {
+		int seq;
+		double angle;
+		double rate;
+		long timestamp;
+		do {
+			seq = sequence;
+			angle = this.angle;
+			rate = this.rate;
+			timestamp = this.timestamp;
+		} while ((seq & 1) != 0 || seq != sequence);
+		if (timestamp == 0) {
+			return angle;
+		}
+		long dt = Math.max(Math.min(atNanos - timestamp, maxNanos), 0);
+		return angle + rate * dt / 1e9;
+	}
+}
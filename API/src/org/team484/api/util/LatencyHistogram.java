@@ -0,0 +1,117 @@
+package org.team484.api.util;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A fixed size histogram of latencies. All of the buckets are allocated when the histogram is
+ * created, so recording a value never allocates and is safe from any number of threads at once.
+ * <p>
+ * Values are bucketed in microseconds. Below 4 us each microsecond has its own bucket, and above that
+ * every power of two is split into 4 buckets, so a reported percentile is at most 25% above the real
+ * value. Latencies beyond about three weeks are clamped into the last bucket.
+ */
+public class LatencyHistogram {
+
+	private static final int SUB_BUCKETS = 4;
+	private static final int BUCKETS = 160;
+
+	private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+	private final AtomicLong count = new AtomicLong();
+	private final AtomicLong total = new AtomicLong();
+	private final AtomicLong max = new AtomicLong();
+
+	/**
+	 * Records a latency.
+	 * @param nanos - The latency in nanoseconds. Negative values are recorded as 0.
+	 */
+	public void record(long nanos) {
+		if (nanos < 0) {
+			nanos = 0;
+		}
+		counts.incrementAndGet(bucketOf(nanos / 1000));
+		count.incrementAndGet();
+		total.addAndGet(nanos);
+		long currentMax = max.get();
+		while (nanos > currentMax && !max.compareAndSet(currentMax, nanos)) {
+			currentMax = max.get();
+		}
+	}
+
+	/**
+	 * Gets the number of recorded latencies.
+	 * @return the count.
+	 */
+	public long getCount() {
+		return count.get();
+	}
+
+	/**
+	 * Gets the largest recorded latency.
+	 * @return the max latency in nanoseconds.
+	 */
+	public long getMax() {
+		return max.get();
+	}
+
+	/**
+	 * Gets the average recorded latency.
+	 * @return the mean latency in nanoseconds, or 0 if nothing was recorded.
+	 */
+	public double getMean() {
+		long n = count.get();
+		return n == 0 ? 0 : (double) total.get() / n;
+	}
+
+	/**
+	 * Gets a percentile of the recorded latencies.
+	 * @param percentile - The percentile to get, from 0 to 100.
+	 * @return the upper bound of the bucket the percentile falls in, in nanoseconds, or 0 if nothing
+	 *         was recorded.
+	 */
+	public long getPercentile(double percentile) {
+		long n = count.get();
+		if (n == 0) {
+			return 0;
+		}
+		long target = (long) Math.ceil(percentile / 100.0 * n);
+		long seen = 0;
+		for (int i = 0; i < BUCKETS; i++) {
+			seen += counts.get(i);
+			if (seen >= target && seen > 0) {
+				return Math.min(upperBoundMicros(i) * 1000, max.get());
+			}
+		}
+		return max.get();
+	}
+
+	/**
+	 * Clears all recorded latencies.
+	 */
+	public void reset() {
+		for (int i = 0; i < BUCKETS; i++) {
+			counts.set(i, 0);
+		}
+		count.set(0);
+		total.set(0);
+		max.set(0);
+	}
+
+	private static int bucketOf(long micros) {
+		if (micros < SUB_BUCKETS) {
+			return (int) micros;
+		}
+		int exponent = 63 - Long.numberOfLeadingZeros(micros);
+		int sub = (int) (micros >> (exponent - 2)) & (SUB_BUCKETS - 1);
+		return Math.min(SUB_BUCKETS + (exponent - 2) * SUB_BUCKETS + sub, BUCKETS - 1);
+	}
+
+	private static long upperBoundMicros(int bucket) {
+		if (bucket < SUB_BUCKETS) {
+			return bucket + 1;
+		}
+		int exponent = (bucket - SUB_BUCKETS) / SUB_BUCKETS + 2;
+		int sub = (bucket - SUB_BUCKETS) % SUB_BUCKETS;
+		return (long) (SUB_BUCKETS + sub + 1) << (exponent - 2);
+	}
+}
@@ -0,0 +1,90 @@
+package org.team484.api.util;
+
+/**
+ * LatencyTracer records how long it takes a drive command to get through each stage of the drive
+ * stack. Every command is tagged with the time it was created, and each stage records the time since
+ * then into its own preallocated histogram. Give a tracer to a drive class to enable tracing, and add
+ * it to a RobotLogger to write the percentiles to the log. The tracer reads the same clock as the
+ * drive, which is System.nanoTime() unless set otherwise.
+ */
+public class LatencyTracer {
+
+	private volatile Clock clock = Clock.SYSTEM;
+
+	/**
+	 * The stages a drive command passes through.
+	 */
+	public enum Stage {
+		/**
+		 * The control loop took the command out of its mailbox
+		 */
+		COMMAND_ACCEPTED,
+
+		/**
+		 * The wheel angles and speeds for the command were calculated
+		 */
+		KINEMATICS_DONE,
+
+		/**
+		 * The motor outputs for the command were written
+		 */
+		OUTPUTS_WRITTEN,
+
+		/**
+		 * A PID loop ran with the setpoint from the command
+		 */
+		SETPOINT_CONSUMED,
+
+		/**
+		 * The shifters were moved into a different gear because of the command
+		 */
+		SHIFT_COMMANDED
+	}
+
+	private final LatencyHistogram[] histograms = new LatencyHistogram[Stage.values().length];
+
+	/**
+	 * Creates a new latency tracer with an empty histogram for every stage.
+	 */
+	public LatencyTracer() {
+		for (int i = 0; i < histograms.length; i++) {
+			histograms[i] = new LatencyHistogram();
+		}
+	}
+
+	/**
+	 * Records that a command reached a stage. Safe to call from any thread.
+	 * @param stage - The stage that was reached.
+	 * @param commandTimestamp - The clock time when the command was created.
+	 */
+	public void record(Stage stage, long commandTimestamp) {
+		histograms[stage.ordinal()].record(clock.nanoTime() - commandTimestamp);
+	}
+
+	/**
+	 * Sets the clock the time since a command was created is read from. This must be the same clock as
+	 * the drive's.
+	 * @param clock - The clock to use (default Clock.SYSTEM)
+	 */
+	public void setClock(Clock clock) {
+		this.clock = clock;
+	}
+
+	/**
+	 * Gets the histogram of latencies for a stage.
+	 * @param stage - The stage to get the histogram for.
+	 * @return the histogram.
+	 */
+	public LatencyHistogram getHistogram(Stage stage) {
+		return histograms[stage.ordinal()];
+	}
+
+	/**
+	 * Clears the histograms for all stages.
+	 */
+	public void reset() {
+		for (LatencyHistogram histogram : histograms) {
+			histogram.reset();
+		}
+	}
+}
@@ -0,0 +1,174 @@
+package org.team484.api.util;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reads a CSV log written by RobotLogger, or any CSV file with a header row, into memory so its
+ * columns can be looked up by name. Values are read as numbers; true and false are read as 1 and 0,
+ * and anything else that is not a number is read as NaN.
+ */
+public class LogReader {
+
+	private final String[] columns;
+	private final Map<String, Integer> columnIndexes = new HashMap<>();
+	private final double[][] rows;
+
+	private LogReader(String[] columns, double[][] rows) {
+		this.columns = columns;
+		this.rows = rows;
+		for (int i = 0; i < columns.length; i++) {
+			columnIndexes.put(columns[i], i);
+		}
+	}
+
+	/**
+	 * Reads a log file.
+	 * @param file - The file to read.
+	 * @return the log, or null if it could not be read.
+	 */
+	public static LogReader read(File file) {
+		try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
+			String header = reader.readLine();
+			if (header == null) {
+				System.err.println("Log file is empty: " + file);
+				return null;
+			}
+			String[] columns = header.split(",", -1);
+			for (int i = 0; i < columns.length; i++) {
+				columns[i] = columns[i].trim();
+			}
+			List<double[]> rows = new ArrayList<>();
+			String line;
+			while ((line = reader.readLine()) != null) {
+				if (line.isEmpty()) {
+					continue;
+				}
+				String[] cells = line.split(",", -1);
+				double[] row = new double[columns.length];
+				for (int i = 0; i < row.length; i++) {
+					row[i] = i < cells.length ? parse(cells[i].trim()) : Double.NaN;
+				}
+				rows.add(row);
+			}
+			return new LogReader(columns, rows.toArray(new double[rows.size()][]));
+		} catch (IOException e) {
+			e.printStackTrace();
+			return null;
+		}
+	}
+
+	/**
+	 * Creates a log from values in memory, for writing and comparing replay results.
+	 * @param columns - The column names.
+	 * @param rows - The values, one array per row.
+	 * @return the log.
+	 */
+	public static LogReader of(String[] columns, double[][] rows) {
+		return new LogReader(columns.clone(), rows);
+	}
+
+	/**
+	 * Gets the column names in order.
+	 * @return the column names.
+	 */
+	public String[] getColumns() {
+		return columns.clone();
+	}
+
+	/**
+	 * Gets the number of rows after the header.
+	 * @return the row count.
+	 */
+	public int getRowCount() {
+		return rows.length;
+	}
+
+	/**
+	 * Gets the index of a column.
+	 * @param name - The column name.
+	 * @return the index, or -1 if there is no such column.
+	 */
+	public int getColumn(String name) {
+		Integer index = columnIndexes.get(name);
+		return index == null ? -1 : index;
+	}
+
+	/**
+	 * Gets a value.
+	 * @param row - The row index.
+	 * @param column - The column index.
+	 * @return the value, or NaN if the column index is -1.
+	 */
+	public double get(int row, int column) {
+		return column < 0 ? Double.NaN : rows[row][column];
+	}
+
+	/**
+	 * Gets a value.
+	 * @param row - The row index.
+	 * @param column - The column name.
+	 * @return the value, or NaN if there is no such column.
+	 */
+	public double get(int row, String column) {
+		return get(row, getColumn(column));
+	}
+
+	/**
+	 * Gets the time of a row from the RobotLogger time column.
+	 * @param row - The row index.
+	 * @param defaultPeriodMs - The time between rows to assume if the log has no time column.
+	 * @return the time of the row in milliseconds since the log started.
+	 */
+	public double getTimeMs(int row, double defaultPeriodMs) {
+		int column = getColumn(RobotLogger.TIME_COLUMN);
+		return column < 0 ? row * defaultPeriodMs : rows[row][column];
+	}
+
+	/**
+	 * Writes the log as CSV.
+	 * @param file - The file to write.
+	 * @return if the file was written.
+	 */
+	public boolean write(File file) {
+		try (PrintWriter writer = new PrintWriter(file)) {
+			writer.println(String.join(",", columns));
+			StringBuilder line = new StringBuilder();
+			for (double[] row : rows) {
+				line.setLength(0);
+				for (int i = 0; i < row.length; i++) {
+					if (i > 0) {
+						line.append(',');
+					}
+					line.append(row[i]);
+				}
+				writer.println(line);
+			}
+			return !writer.checkError();
+		} catch (IOException e) {
+			e.printStackTrace();
+			return false;
+		}
+	}
+
+	private static double parse(String cell) {
+		if (cell.equals("true")) {
+			return 1;
+		}
+		if (cell.equals("false")) {
+			return 0;
+		}
+		try {
+			return Double.parseDouble(cell);
+		} catch (NumberFormatException e) {
+			return Double.NaN;
+		}
+	}
+}
@@ -0,0 +1,45 @@
+package org.team484.api.util;
+
+/**
+ * A clock that only moves when it is told to, for running code deterministically.
+ */
+public class ManualClock implements Clock {
+
+	private volatile long now;
+
+	/**
+	 * Creates a clock that starts at 0.
+	 */
+	public ManualClock() {
+		this(0);
+	}
+
+	/**
+	 * Creates a clock.
+	 * @param startNanos - The time the clock starts at in nanoseconds.
+	 */
+	public ManualClock(long startNanos) {
+		now = startNanos;
+	}
+
+	@Override
+	public long nanoTime() {
+		return now;
+	}
+
+	/**
+	 * Sets the time.
+	 * @param nanos - The new time in nanoseconds.
+	 */
+	public void set(long nanos) {
+		now = nanos;
+	}
+
+	/**
+	 * Moves the time forward. This should only be called from one thread.
+	 * @param nanos - The time to move forward in nanoseconds.
+	 */
+	public void advance(long nanos) {
+		now += nanos;
+	}
+}
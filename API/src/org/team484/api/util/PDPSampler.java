@@ -0,0 +1,168 @@
+package org.team484.api.util;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import edu.wpi.first.wpilibj.PowerDistributionPanel;
+
+/**
+ * PDPSampler reads the battery voltage and the currents of the PDP channels it has been asked to watch
+ * on its own thread, once per period, and shares them with any number of readers. WPILib reads the PDP
+ * one value at a time, so each sample makes one read for the voltage, one per watched channel and one
+ * for the total current if it is watched. Sharing one sampler between everything that needs currents
+ * keeps each of those values from being read several times per cycle, and channels nobody watches
+ * are not read at all.
+ * <p>
+ * Each user watches the channels it needs and unwatches them when it is done. A channel stays watched
+ * until every user that watched it has unwatched it.
+ * <p>
+ * Each sample is read first and then published under a sequence lock, so readers never mix channels
+ * from different samples and never wait on the PDP. The currents are kept in an atomic array, as the
+ * raw long bits of each value, so they cannot be reordered around the sequence counter. Nothing is
+ * allocated after the sampler is created. Call start to begin sampling and interrupt the thread to
+ * stop it.
+ */
+public class PDPSampler extends PeriodicThread {
+
+	/**
+	 * The number of current channels on the PDP
+	 */
+	public static final int CHANNELS = 16;
+
+	private final PowerDistributionPanel pdp;
+	private volatile int watchedChannels = 0; //One bit per channel
+	private final int[] watchCounts = new int[CHANNELS]; //Users watching each channel
+	private volatile boolean watchTotal = false;
+
+	private volatile int sequence = 0;
+	private final AtomicLongArray currents = new AtomicLongArray(CHANNELS); //Double.doubleToRawLongBits
+	private final double[] readings = new double[CHANNELS]; //Only used by the sampler thread
+	private volatile double voltage = Double.NaN;
+	private volatile double totalCurrent = Double.NaN;
+	private volatile long timestamp = 0;
+
+	/**
+	 * Creates a sampler for a PDP.
+	 * @param pdp - The PDP to sample.
+	 * @param periodMs - Milliseconds between samples.
+	 */
+	public PDPSampler(PowerDistributionPanel pdp, double periodMs) {
+		super("PDPSampler", periodMs);
+		this.pdp = pdp;
+	}
+
+	/**
+	 * Adds channels to read every sample. Channels that are not watched read as 0.
+	 * @param channels - The PDP channels, from 0 to 15.
+	 */
+	public synchronized void watch(int... channels) {
+		int watched = watchedChannels;
+		for (int channel : channels) {
+			if (channel < 0 || channel >= CHANNELS) {
+				System.err.println("PDP channel " + channel + " does not exist");
+			} else {
+				watchCounts[channel]++;
+				watched |= 1 << channel;
+			}
+		}
+		watchedChannels = watched;
+	}
+
+	/**
+	 * Removes channels given to watch. A channel is no longer read once every watch of it has been
+	 * removed, and then reads as 0.
+	 * @param channels - The PDP channels, from 0 to 15.
+	 */
+	public synchronized void unwatch(int... channels) {
+		int watched = watchedChannels;
+		for (int channel : channels) {
+			if (channel < 0 || channel >= CHANNELS || watchCounts[channel] == 0) {
+				System.err.println("PDP channel " + channel + " is not watched");
+			} else if (--watchCounts[channel] == 0) {
+				watched &= ~(1 << channel);
+			}
+		}
+		watchedChannels = watched;
+	}
+
+	/**
+	 * Adds the total current of the PDP to the values read every sample.
+	 */
+	public void watchTotalCurrent() {
+		watchTotal = true;
+	}
+
+	@Override
+	protected void periodic(long nowNanos) {
+		int watched = watchedChannels;
+		double newVoltage = pdp.getVoltage();
+		double newTotal = watchTotal ? pdp.getTotalCurrent() : Double.NaN;
+		for (int channel = 0; channel < CHANNELS; channel++) {
+			readings[channel] = (watched & (1 << channel)) != 0 ? pdp.getCurrent(channel) : 0;
+		}
+		sequence++;
+		for (int channel = 0; channel < CHANNELS; channel++) {
+			currents.set(channel, Double.doubleToRawLongBits(readings[channel]));
+		}
+		voltage = newVoltage;
+		totalCurrent = newTotal;
+		timestamp = nowNanos;
+		sequence++;
+	}
+
+	/**
+	 * Gets the current of a channel from the latest sample.
+	 * @param channel - The PDP channel, from 0 to 15.
+	 * @return the current in amps, or 0 if the channel is not watched.
+	 */
+	public double getCurrent(int channel) {
+		int seq;
+		double current;
+		do {
+			seq = sequence;
+			current = Double.longBitsToDouble(currents.get(channel));
+		} while ((seq & 1) != 0 || seq != sequence);
+		return current;
+	}
+
+	/**
+	 * Gets the total current of several channels, all from the same sample.
+	 * @param channels - The PDP channels, from 0 to 15.
+	 * @return the sum of the currents in amps.
+	 */
+	public double getCurrent(int[] channels) {
+		int seq;
+		double total;
+		do {
+			seq = sequence;
+			total = 0;
+			for (int channel : channels) {
+				total += Double.longBitsToDouble(currents.get(channel));
+			}
+		} while ((seq & 1) != 0 || seq != sequence);
+		return total;
+	}
+
+	/**
+	 * Gets the battery voltage from the latest sample.
+	 * @return the voltage, or NaN if there has not been a sample.
+	 */
+	public double getVoltage() {
+		return voltage;
+	}
+
+	/**
+	 * Gets the total current of the PDP from the latest sample.
+	 * @return the current in amps, or NaN if there has not been a sample or the total is not watched.
+	 */
+	public double getTotalCurrent() {
+		return totalCurrent;
+	}
+
+	/**
+	 * Gets the time of the latest sample.
+	 * @return the System.nanoTime() value of the sample, or 0 if there has not been one.
+	 */
+	public long getTimestamp() {
+		return timestamp;
+	}
+}
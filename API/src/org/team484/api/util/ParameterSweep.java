@@ -0,0 +1,55 @@
+package org.team484.api.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Runs a function over a list of parameter sets in parallel, for searching through settings with a
+ * simulation. The function must be safe to call from several threads at once, which is the case for
+ * the simulations in org.team484.api.sim as long as each call builds its own model.
+ */
+public class ParameterSweep {
+
+	private ParameterSweep() {
+	}
+
+	/**
+	 * Runs a function over every parameter set using all of the processor cores.
+	 * @param parameters - The parameter sets to try.
+	 * @param function - The function to run for each parameter set.
+	 * @return the results, in the same order as the parameter sets, or null if the sweep failed.
+	 */
+	public static <P, R> List<R> run(List<P> parameters, Function<P, R> function) {
+		return run(parameters, function, Runtime.getRuntime().availableProcessors());
+	}
+
+	/**
+	 * Runs a function over every parameter set using a fixed number of threads.
+	 * @param parameters - The parameter sets to try.
+	 * @param function - The function to run for each parameter set.
+	 * @param threads - The number of threads to use. 1 runs everything on the calling thread.
+	 * @return the results, in the same order as the parameter sets, or null if the sweep failed.
+	 */
+	public static <P, R> List<R> run(List<P> parameters, Function<P, R> function, int threads) {
+		if (threads <= 1) {
+			List<R> results = new ArrayList<>(parameters.size());
+			for (P p : parameters) {
+				results.add(function.apply(p));
+			}
+			return results;
+		}
+		ForkJoinPool pool = new ForkJoinPool(threads);
+		try {
+			return pool.submit(() -> parameters.parallelStream().map(function).collect(Collectors.toList())).get();
+		} catch (InterruptedException | ExecutionException e) {
+			e.printStackTrace();
+			return null;
+		} finally {
+			pool.shutdown();
+		}
+	}
+}
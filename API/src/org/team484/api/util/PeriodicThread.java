@@ -0,0 +1,72 @@
+package org.team484.api.util;
+
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * PeriodicThread is a base class for background loops that need to run at a fixed rate, such as
+ * odometry or sensor sampling. The loop is scheduled off of System.nanoTime() so it is not affected
+ * by the wall clock being changed, and each period is measured from the start of the previous one so
+ * the rate does not drift when the work in the loop takes a varying amount of time.
+ * <p>
+ * After creating an instance, call start to begin running the loop in its own thread. Interrupt the
+ * thread to stop it. The thread is a daemon thread so it will not keep the robot program alive.
+ */
+public abstract class PeriodicThread extends Thread {
+
+	private final long periodNanos;
+	private volatile long overrunCount = 0;
+
+	/**
+	 * Creates a new periodic thread that will run at the given period once started.
+	 * @param name - The name to give the thread.
+	 * @param periodMs - Milliseconds between the start of each loop. May be fractional.
+	 */
+	public PeriodicThread(String name, double periodMs) {
+		super(name);
+		setDaemon(true);
+		periodNanos = Math.max((long) (periodMs * 1e6), 1);
+	}
+
+	/**
+	 * Called once per period from the loop thread.
+	 * @param nowNanos - The System.nanoTime() value at the start of this loop.
+	 */
+	protected abstract void periodic(long nowNanos);
+
+	/**
+	 * Gets the period of this loop.
+	 * @return the period in nanoseconds.
+	 */
+	public long getPeriodNanos() {
+		return periodNanos;
+	}
+
+	/**
+	 * Gets the number of times the loop fell more than one full period behind schedule. When this
+	 * happens the schedule is reset rather than running several loops back to back.
+	 * @return the number of overruns since the thread was started.
+	 */
+	public long getOverrunCount() {
+		return overrunCount;
+	}
+
+	/**
+	 * Runs the loop until the thread is interrupted. To run the loop in a separate thread, use start
+	 * instead of run.
+	 */
+	@Override
+	public void run() {
+		long nextLoop = System.nanoTime();
+		while (!Thread.interrupted()) {
+			periodic(System.nanoTime());
+			nextLoop += periodNanos;
+			long wait = nextLoop - System.nanoTime();
+			if (wait > 0) {
+				LockSupport.parkNanos(wait);
+			} else if (wait < -periodNanos) {
+				overrunCount++;
+				nextLoop = System.nanoTime();
+			}
+		}
+	}
+}
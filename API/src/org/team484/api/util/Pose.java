@@ -0,0 +1,53 @@
+package org.team484.api.util;
+
+/**
+ * A position and heading of the robot on the field. Pose objects are mutable so that a caller can
+ * create one and reuse it every loop when reading from a PoseHolder instead of allocating a new one.
+ * <p>
+ * The x axis points to the right of the robot's starting position and the y axis points forward from
+ * it. The heading is in degrees and increases counter clockwise, with 0 being the starting direction.
+ */
+public class Pose {
+
+	double x = 0;
+	double y = 0;
+	double heading = 0;
+	long timestamp = 0;
+
+	/**
+	 * Gets the x (right) position of the robot.
+	 * @return the x position in the units of the encoders that produced it.
+	 */
+	public double getX() {
+		return x;
+	}
+
+	/**
+	 * Gets the y (forward) position of the robot.
+	 * @return the y position in the units of the encoders that produced it.
+	 */
+	public double getY() {
+		return y;
+	}
+
+	/**
+	 * Gets the heading of the robot.
+	 * @return the heading in degrees, counter clockwise increasing.
+	 */
+	public double getHeading() {
+		return heading;
+	}
+
+	/**
+	 * Gets the time this pose was measured at.
+	 * @return the System.nanoTime() value of the measurement.
+	 */
+	public long getTimestamp() {
+		return timestamp;
+	}
+
+	@Override
+	public String toString() {
+		return "Pose(" + x + ", " + y + ", " + heading + ")";
+	}
+}
@@ -0,0 +1,62 @@
+package org.team484.api.util;
+
+/**
+ * PoseHolder shares the latest robot pose between one writer thread and any number of reader threads
+ * without locking. It is a sequence lock: the writer bumps a counter to an odd number before writing
+ * and back to an even number after, and a reader retries if the counter was odd or changed while it
+ * was copying the values. Readers never block the writer.
+ * <p>
+ * Only one thread may call set. Any thread may call get.
+ */
+public class PoseHolder {
+
+	private volatile int sequence = 0;
+	private volatile double x = 0;
+	private volatile double y = 0;
+	private volatile double heading = 0;
+	private volatile long timestamp = 0;
+
+	/**
+	 * Publishes a new pose. Must only be called from a single thread.
+	 * @param x - The x (right) position.
+	 * @param y - The y (forward) position.
+	 * @param heading - The heading in degrees, counter clockwise increasing.
+	 * @param timestamp - The System.nanoTime() value of the measurement.
+	 */
+	public void set(double x, double y, double heading, long timestamp) {
+		sequence++;
+		this.x = x;
+		this.y = y;
+		this.heading = heading;
+		this.timestamp = timestamp;
+		sequence++;
+	}
+
+	/**
+	 * Copies the latest pose into the given object without allocating.
+	 * @param out - The pose to copy into.
+	 * @return the same pose object that was passed in.
+	 */
+	public Pose get(Pose out) {
+		int seq;
+		do {
+			seq = sequence;
+			if ((seq & 1) != 0) {
+				continue;
+			}
+			out.x = x;
+			out.y = y;
+			out.heading = heading;
+			out.timestamp = timestamp;
+		} while ((seq & 1) != 0 || seq != sequence);
+		return out;
+	}
+
+	/**
+	 * Gets a copy of the latest pose in a new object.
+	 * @return the latest pose.
+	 */
+	public Pose get() {
+		return get(new Pose());
+	}
+}
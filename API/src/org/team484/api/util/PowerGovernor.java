@@ -0,0 +1,142 @@
+package org.team484.api.util;
+
+/**
+ * PowerGovernor keeps the robot from browning out by scaling down motor outputs as the battery sags.
+ * It runs in its own thread at a fixed rate, reads the battery voltage and total current from a
+ * PDPSampler, and publishes a scale factor from the minimum scale to 1 that SwerveDrive, ShifterDrive
+ * and SpeedControllerGroup multiply their outputs by once it has been given to them. One governor is
+ * meant to be shared by every drive class on the robot.
+ * <p>
+ * Below the start voltage, the scale falls in a straight line to the minimum scale at the minimum
+ * voltage. If a current limit is set, the scale is also lowered in proportion to how far the total
+ * current is over the limit. The scale drops as soon as either calls for it, and rises back towards 1
+ * no faster than the recovery rate so the output does not oscillate as the voltage recovers. If the
+ * sampler stops publishing, the scale recovers to 1 so a failed sampler cannot leave the robot slow.
+ * <p>
+ * The scale is a single volatile value, so any thread can read it without locking. Call start to
+ * begin governing and interrupt the thread to stop. The sampler must be started separately.
+ */
+public class PowerGovernor extends PeriodicThread {
+
+	private final PDPSampler sampler;
+
+	private volatile double startVoltage = 9;
+	private volatile double minVoltage = 7;
+	private volatile double minScale = 0.25;
+	private volatile double currentLimit = Double.POSITIVE_INFINITY;
+	private volatile double recoveryRate = 1; //Scale per second
+	private volatile long staleNanos = 250000000L;
+
+	private volatile double scale = 1;
+	private volatile long governedCount = 0;
+	private long lastTime = 0;
+
+	/**
+	 * Creates a new governor. The sampler is told to watch the total current.
+	 * @param sampler - The sampler to read the battery voltage and total current from.
+	 * @param periodMs - Milliseconds between updates of the scale. This should be about the sampler's
+	 *                   period, as a brownout develops within tens of milliseconds.
+	 */
+	public PowerGovernor(PDPSampler sampler, double periodMs) {
+		super("PowerGovernor", periodMs);
+		this.sampler = sampler;
+		sampler.watchTotalCurrent();
+	}
+
+	/**
+	 * Sets the voltages the scale is lowered between.
+	 * @param startVoltage - The battery voltage below which outputs start being scaled down (default 9)
+	 * @param minVoltage - The battery voltage at which outputs reach the minimum scale (default 7)
+	 */
+	public void setVoltageRange(double startVoltage, double minVoltage) {
+		if (!(startVoltage > minVoltage)) {
+			System.err.println("The start voltage must be above the minimum voltage");
+			return;
+		}
+		this.startVoltage = startVoltage;
+		this.minVoltage = minVoltage;
+	}
+
+	/**
+	 * Sets the lowest the scale can go, so the robot can always move a little.
+	 * @param minScale - The minimum scale, from 0 to 1 (default 0.25)
+	 */
+	public void setMinScale(double minScale) {
+		this.minScale = Math.max(Math.min(minScale, 1), 0);
+	}
+
+	/**
+	 * Sets the total current above which outputs are scaled down.
+	 * @param amps - The current limit, or Double.POSITIVE_INFINITY for none (default none)
+	 */
+	public void setCurrentLimit(double amps) {
+		currentLimit = amps;
+	}
+
+	/**
+	 * Sets how quickly the scale rises back towards 1 once the battery recovers.
+	 * @param perSecond - The largest increase in scale per second (default 1)
+	 */
+	public void setRecoveryRate(double perSecond) {
+		recoveryRate = perSecond;
+	}
+
+	/**
+	 * Sets how old the sampler's latest sample may be before it is no longer trusted.
+	 * @param ms - The age in milliseconds (default 250)
+	 */
+	public void setStaleTime(double ms) {
+		staleNanos = (long) (ms * 1e6);
+	}
+
+	/**
+	 * Gets the latest scale factor. Safe to call from any thread.
+	 * @return the scale to multiply motor outputs by, from the minimum scale to 1.
+	 */
+	public double getScale() {
+		return scale;
+	}
+
+	/**
+	 * Gets the number of updates in which the scale was below 1.
+	 * @return the governed update count.
+	 */
+	public long getGovernedCount() {
+		return governedCount;
+	}
+
+	@Override
+	protected void periodic(long nowNanos) {
+		double dt = lastTime == 0 ? 0 : (nowNanos - lastTime) / 1e9;
+		lastTime = nowNanos;
+
+		double target = 1;
+		double voltage = sampler.getVoltage();
+		if (!Double.isNaN(voltage) && nowNanos - sampler.getTimestamp() <= staleNanos) {
+			double minScale = this.minScale;
+			double startVoltage = this.startVoltage;
+			double minVoltage = this.minVoltage;
+			if (voltage < startVoltage) {
+				double fraction = (voltage - minVoltage) / (startVoltage - minVoltage);
+				target = minScale + (1 - minScale) * Math.max(fraction, 0);
+			}
+			double current = sampler.getTotalCurrent();
+			double currentLimit = this.currentLimit;
+			if (!Double.isNaN(current) && current > currentLimit) {
+				//The current is roughly proportional to the output, so scale it back by the overshoot
+				target = Math.min(target, Math.max(scale * currentLimit / current, minScale));
+			}
+		}
+
+		double newScale;
+		if (target <= scale) {
+			newScale = target;
+		} else {
+			newScale = Math.min(target, scale + recoveryRate * dt);
+		}
+		scale = newScale;
+		if (newScale < 1) {
+			governedCount++;
+		}
+	}
+}
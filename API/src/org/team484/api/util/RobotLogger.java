@@ -42,6 +42,7 @@ public class RobotLogger extends Thread {
 		ENCODER,
 		GYRO,
 		JOYSTICK,
+		LATENCY_TRACER,
 		PDP,
 		RELAY,
 		SOLENOID,
@@ -65,6 +66,11 @@ public class RobotLogger extends Thread {
 	//------------------------ Constants ------------------------
 	private static final String FILE_NAME_PREFIX = "ROBOT_LOG_";
 	private static final String FILE_EXTENSION = ".csv";
+	
+	/**
+	 * The name of the first column of every log, the milliseconds since logging started
+	 */
+	public static final String TIME_COLUMN = "time (ms)";
 	private static final String[] saveDirectories = {
 			"/U/",
 			"/V/",
@@ -164,6 +170,16 @@ public class RobotLogger extends Thread {
 		addObjectToLogger(ObjectType.JOYSTICK, joystick, name);
 	}
 	
+	/**
+	 * Adds a latency tracer to the logger. The 50th and 99th percentile and max latency of each stage
+	 * are logged in microseconds.
+	 * @param name - The name to give the latency tracer.
+	 * @param tracer - The instance of the latency tracer.
+	 */
+	public void log(String name, LatencyTracer tracer) {
+		addObjectToLogger(ObjectType.LATENCY_TRACER, tracer, name);
+	}
+	
 	/**
 	 * Adds a PDP to the logger.
 	 * @param name - The name to give the PDP.
@@ -225,13 +241,16 @@ public class RobotLogger extends Thread {
 		if (!createWriter()) return;
 		
 		StringBuilder outputString = new StringBuilder();
+		outputString.append(TIME_COLUMN + ",");
 		for (LoggerObject loggerobj : loggerObjects) {
 			writeObjNames(loggerobj, outputString);
 		}
 		writeLine(outputString);
 		
 		long loopStart = System.currentTimeMillis();
+		long logStart = System.nanoTime();
 		while(!Thread.interrupted()) {
+			outputString.append((System.nanoTime() - logStart) / 1000000 + ",");
 			for (LoggerObject loggerobj : loggerObjects) {
 				writeObj(loggerobj, outputString);
 			}
@@ -289,7 +308,7 @@ public class RobotLogger extends Thread {
 	private void writeLine(StringBuilder line) {
 		line.setLength(Math.max(line.length() - 1, 0));
 		if (writer != null) {
-			writer.write(line.toString());
+			writer.println(line.toString());
 		}
 		line.setLength(0);
 	}
@@ -352,6 +371,13 @@ public class RobotLogger extends Thread {
 				sb.append(loggerObject.name + "button " + i + ",");
 			}
 			break;
+		case LATENCY_TRACER:
+			for (LatencyTracer.Stage stage : LatencyTracer.Stage.values()) {
+				sb.append(loggerObject.name + " - " + stage.name() + " p50 (us),");
+				sb.append(loggerObject.name + " - " + stage.name() + " p99 (us),");
+				sb.append(loggerObject.name + " - " + stage.name() + " max (us),");
+			}
+			break;
 		case PDP:
 			sb.append(loggerObject.name + " - temp,");
 			sb.append(loggerObject.name + " - current,");
@@ -425,6 +451,15 @@ public class RobotLogger extends Thread {
 				sb.append(joystick.getRawButton(i) + ",");
 			}
 			break;
+		case LATENCY_TRACER:
+			LatencyTracer tracer = (LatencyTracer) loggerObject.obj;
+			for (LatencyTracer.Stage stage : LatencyTracer.Stage.values()) {
+				LatencyHistogram histogram = tracer.getHistogram(stage);
+				sb.append(histogram.getPercentile(50) / 1000 + ",");
+				sb.append(histogram.getPercentile(99) / 1000 + ",");
+				sb.append(histogram.getMax() / 1000 + ",");
+			}
+			break;
 		case PDP:
 			PowerDistributionPanel pdp = (PowerDistributionPanel) loggerObject.obj;
 			sb.append(pdp.getTemperature() + ",");
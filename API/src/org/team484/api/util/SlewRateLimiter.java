@@ -0,0 +1,185 @@
+package org.team484.api.util;
+
+/**
+ * SlewRateLimiter limits how quickly a motor output may change, so a step on the joystick becomes a
+ * ramp instead of a current spike. Speeding up (the output moving away from 0) and slowing down (the
+ * output moving towards 0) have separate limits, so the robot can be allowed to stop faster than it
+ * starts. An output that changes sign is treated as slowing down to 0 and then speeding up.
+ * <p>
+ * The limiter can be set to only ramp while the battery voltage read by a PDPSampler is below a
+ * threshold, so the robot keeps its full response until it is about to brown out. The time between
+ * outputs is read from a Clock, which is System.nanoTime() unless set otherwise. A gap of more than
+ * two nominal periods, such as after the robot sat disabled or idle, and the very first output are
+ * each limited as if one nominal period had passed, so a stale time cannot let a full step through.
+ * Limiting starts out disabled, in which case every output passes through but is still tracked.
+ * Nothing is allocated per output, and the limiter should only be used from one thread.
+ */
+public class SlewRateLimiter {
+
+	private volatile boolean enabled = false;
+	private volatile double accelerationRate = Double.POSITIVE_INFINITY; //Output per second
+	private volatile double decelerationRate = Double.POSITIVE_INFINITY;
+	private volatile PDPSampler voltageSource = null;
+	private volatile double lowVoltage = 0;
+	private volatile Clock clock = Clock.SYSTEM;
+	private volatile long nominalPeriod = 20000000L; //The expected time between outputs (in ns)
+
+	private double lastOutput = 0;
+	private long lastTime = 0;
+	private boolean hasOutput = false;
+	private long limitedCount = 0;
+
+	/**
+	 * Enables limiting at all battery voltages.
+	 * @param accelerationRate - The fastest the output may move away from 0, in output per second.
+	 * @param decelerationRate - The fastest the output may move towards 0, in output per second.
+	 */
+	public void enable(double accelerationRate, double decelerationRate) {
+		enable(accelerationRate, decelerationRate, null, 0);
+	}
+
+	/**
+	 * Enables limiting only while the battery voltage is low. While the sampler has no voltage reading
+	 * yet, the output is limited.
+	 * @param accelerationRate - The fastest the output may move away from 0, in output per second.
+	 * @param decelerationRate - The fastest the output may move towards 0, in output per second.
+	 * @param voltageSource - The sampler to read the battery voltage from, or null to always limit.
+	 * @param lowVoltage - The battery voltage to start limiting below.
+	 */
+	public void enable(double accelerationRate, double decelerationRate, PDPSampler voltageSource,
+			double lowVoltage) {
+		if (!(accelerationRate > 0) || !(decelerationRate > 0)) {
+			System.err.println("Slew rate limits must be greater than 0");
+			return;
+		}
+		this.accelerationRate = accelerationRate;
+		this.decelerationRate = decelerationRate;
+		this.voltageSource = voltageSource;
+		this.lowVoltage = lowVoltage;
+		enabled = true;
+	}
+
+	/**
+	 * Disables limiting so every output passes through.
+	 */
+	public void disable() {
+		enabled = false;
+	}
+
+	/**
+	 * Checks if limiting is enabled.
+	 * @return true if outputs may be limited.
+	 */
+	public boolean isEnabled() {
+		return enabled;
+	}
+
+	/**
+	 * Sets the clock the time between outputs is read from.
+	 * @param clock - The clock to use (default Clock.SYSTEM)
+	 */
+	public void setClock(Clock clock) {
+		this.clock = clock;
+	}
+
+	/**
+	 * Sets how often calculate is expected to be called. Longer gaps between outputs are limited as if
+	 * only this much time had passed.
+	 * @param ms - The loop period in milliseconds (default 20)
+	 */
+	public void setNominalPeriod(double ms) {
+		if (!(ms > 0)) {
+			System.err.println("The nominal period must be greater than 0");
+			return;
+		}
+		nominalPeriod = (long) (ms * 1e6);
+	}
+
+	/**
+	 * Sets the output the next ramp starts from. Call this when the motors have been stopped or set
+	 * from outside.
+	 * @param output - The output the motors are at now.
+	 */
+	public void reset(double output) {
+		lastOutput = output;
+		lastTime = clock.nanoTime();
+		hasOutput = true;
+	}
+
+	/**
+	 * Limits an output and records it as the output the next ramp starts from.
+	 * @param target - The output that was asked for.
+	 * @return the output to write to the motors.
+	 */
+	public double calculate(double target) {
+		long now = clock.nanoTime();
+		double output = target;
+		if (enabled && isLimiting()) {
+			long nominalPeriod = this.nominalPeriod;
+			long elapsed = now - lastTime;
+			if (!hasOutput || elapsed > 2 * nominalPeriod) {
+				//Nothing has ramped in between, so only allow one period's worth of change
+				elapsed = nominalPeriod;
+			}
+			output = limit(lastOutput, target, elapsed / 1e9);
+			if (output != target) {
+				limitedCount++;
+			}
+		}
+		lastOutput = output;
+		lastTime = now;
+		hasOutput = true;
+		return output;
+	}
+
+	/**
+	 * Gets the last output returned by calculate.
+	 * @return the output.
+	 */
+	public double getLastOutput() {
+		return lastOutput;
+	}
+
+	/**
+	 * Gets the number of outputs that were changed by the limiter. Meant for diagnostics, and may be
+	 * slightly behind when read from another thread.
+	 * @return the number of limited outputs.
+	 */
+	public long getLimitedCount() {
+		return limitedCount;
+	}
+
+	private boolean isLimiting() {
+		PDPSampler voltageSource = this.voltageSource;
+		if (voltageSource == null) {
+			return true;
+		}
+		double voltage = voltageSource.getVoltage();
+		return Double.isNaN(voltage) || voltage < lowVoltage;
+	}
+
+	private double limit(double from, double to, double dt) {
+		if (dt <= 0) {
+			return from;
+		}
+		double decelStep = decelerationRate * dt;
+		double accelStep = accelerationRate * dt;
+		if (from != 0 && (to == 0 || Math.signum(to) != Math.signum(from) || Math.abs(to) < Math.abs(from))) {
+			//Slowing down, possibly through 0
+			double magnitude = Math.abs(from);
+			double stop = Math.signum(to) == Math.signum(from) ? Math.abs(to) : 0;
+			if (magnitude - decelStep > stop) {
+				return Math.signum(from) * (magnitude - decelStep);
+			}
+			if (stop > 0) {
+				return to;
+			}
+			//Reached 0 part way through the step, so spend the rest of it speeding up the other way
+			double remaining = dt - magnitude / decelerationRate;
+			from = 0;
+			accelStep = accelerationRate * remaining;
+		}
+		double magnitude = Math.min(Math.abs(to), Math.abs(from) + accelStep);
+		return Math.signum(to) * magnitude;
+	}
+}
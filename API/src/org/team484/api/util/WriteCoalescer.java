@@ -0,0 +1,197 @@
+package org.team484.api.util;
+
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * WriteCoalescer decides whether an output value actually needs to be sent to a motor controller.
+ * Each output is a numbered channel. A write is skipped when the value is within a set epsilon of the
+ * last value that was written to that channel, unless the refresh interval has passed since that
+ * write, in which case the value is written anyway so motor safety watchdogs are kept fed.
+ * <p>
+ * Coalescing starts out disabled, in which case every write goes through but is still counted.
+ * Each channel should only be written from one thread, though different channels may be written
+ * from different threads. Invalidating and configuring may be done from any thread: an invalidation
+ * is only counted, and the thread writing the channel picks it up on its next write. Each channel has
+ * its own epsilon, so channels in different units (such as volts and percent output) can share a
+ * coalescer. The counters are meant for diagnostics and may be slightly behind when read from another
+ * thread.
+ */
+public class WriteCoalescer {
+
+	private final double[] lastValue;
+	private final long[] lastWriteTime;
+	private final boolean[] hasWritten;
+	private final long[] writeCount;
+	private final long[] suppressedCount;
+	private final AtomicIntegerArray invalidations; //Incremented by invalidate from any thread
+	private final int[] seenInvalidations; //The invalidation count each channel last wrote with
+
+	private volatile boolean enabled = false;
+	private volatile double[] epsilons; //Replaced as a whole when an epsilon changes
+	private volatile long refreshNanos = 50000000L;
+
+	/**
+	 * Creates a new write coalescer.
+	 * @param channels - The number of outputs this coalescer tracks.
+	 */
+	public WriteCoalescer(int channels) {
+		lastValue = new double[channels];
+		lastWriteTime = new long[channels];
+		hasWritten = new boolean[channels];
+		writeCount = new long[channels];
+		suppressedCount = new long[channels];
+		invalidations = new AtomicIntegerArray(channels);
+		seenInvalidations = new int[channels];
+		epsilons = new double[channels];
+	}
+
+	/**
+	 * Enables coalescing. Writes within epsilon of the last written value will be skipped until
+	 * refreshMs has passed since the last write.
+	 * @param epsilon - The largest change in value that is not worth writing, for every channel.
+	 * @param refreshMs - Milliseconds after which a value is written even if it has not changed. This
+	 *                    should be well under the motor safety expiration time (100 ms by default).
+	 */
+	public synchronized void enable(double epsilon, double refreshMs) {
+		double[] newEpsilons = new double[hasWritten.length];
+		for (int i = 0; i < newEpsilons.length; i++) {
+			newEpsilons[i] = epsilon;
+		}
+		epsilons = newEpsilons;
+		this.refreshNanos = (long) (refreshMs * 1e6);
+		invalidate();
+		enabled = true;
+	}
+
+	/**
+	 * Sets the epsilon of one channel, for a channel whose values are in different units than the rest.
+	 * @param channel - The output channel.
+	 * @param epsilon - The largest change in value that is not worth writing.
+	 */
+	public synchronized void setEpsilon(int channel, double epsilon) {
+		double[] newEpsilons = epsilons.clone();
+		newEpsilons[channel] = epsilon;
+		epsilons = newEpsilons;
+		invalidate(channel);
+	}
+
+	/**
+	 * Gets the epsilon of one channel.
+	 * @param channel - The output channel.
+	 * @return the largest change in value that is not worth writing.
+	 */
+	public double getEpsilon(int channel) {
+		return epsilons[channel];
+	}
+
+	/**
+	 * Disables coalescing so every write goes through.
+	 */
+	public void disable() {
+		enabled = false;
+	}
+
+	/**
+	 * Checks if coalescing is enabled.
+	 * @return true if writes may be skipped.
+	 */
+	public boolean isEnabled() {
+		return enabled;
+	}
+
+	/**
+	 * Forgets the last written values so the next write to every channel goes through. Call this when
+	 * the controllers may have been changed from outside, such as after disabling them. Safe to call
+	 * from any thread.
+	 */
+	public void invalidate() {
+		for (int i = 0; i < hasWritten.length; i++) {
+			invalidations.incrementAndGet(i);
+		}
+	}
+
+	/**
+	 * Forgets the last written value of one channel so the next write to it goes through. Safe to call
+	 * from any thread.
+	 * @param channel - The output channel.
+	 */
+	public void invalidate(int channel) {
+		invalidations.incrementAndGet(channel);
+	}
+
+	/**
+	 * Checks if a value should be written to a channel. If this returns true, the caller must write
+	 * the value, as it is recorded as the last written value.
+	 * @param channel - The output channel.
+	 * @param value - The value that is about to be written.
+	 * @return true if the value should be written.
+	 */
+	public boolean shouldWrite(int channel, double value) {
+		long now = System.nanoTime();
+		int invalidation = invalidations.get(channel);
+		if (enabled && hasWritten[channel] && invalidation == seenInvalidations[channel]
+				&& Math.abs(value - lastValue[channel]) <= epsilons[channel]
+				&& now - lastWriteTime[channel] < refreshNanos) {
+			suppressedCount[channel]++;
+			return false;
+		}
+		seenInvalidations[channel] = invalidation;
+		lastValue[channel] = value;
+		lastWriteTime[channel] = now;
+		hasWritten[channel] = true;
+		writeCount[channel]++;
+		return true;
+	}
+
+	/**
+	 * Gets the number of writes that went through on all channels.
+	 * @return the write count.
+	 */
+	public long getWriteCount() {
+		long total = 0;
+		for (long count : writeCount) {
+			total += count;
+		}
+		return total;
+	}
+
+	/**
+	 * Gets the number of writes that were skipped on all channels.
+	 * @return the skipped write count.
+	 */
+	public long getSuppressedCount() {
+		long total = 0;
+		for (long count : suppressedCount) {
+			total += count;
+		}
+		return total;
+	}
+
+	/**
+	 * Gets the number of writes that went through on one channel.
+	 * @param channel - The output channel.
+	 * @return the write count.
+	 */
+	public long getWriteCount(int channel) {
+		return writeCount[channel];
+	}
+
+	/**
+	 * Gets the number of writes that were skipped on one channel.
+	 * @param channel - The output channel.
+	 * @return the skipped write count.
+	 */
+	public long getSuppressedCount(int channel) {
+		return suppressedCount[channel];
+	}
+
+	/**
+	 * Sets all write counters back to 0.
+	 */
+	public void resetCounters() {
+		for (int i = 0; i < writeCount.length; i++) {
+			writeCount[i] = 0;
+			suppressedCount[i] = 0;
+		}
+	}
+}
@@ -0,0 +1,120 @@
+package org.team484.api.motion;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+import org.junit.Test;
+
+public class DifferentialTrajectoryTest {
+
+	private static final double EPSILON = 1e-9;
+
+	private static DifferentialTrajectory sCurve() {
+		DifferentialTrajectory.Path path = new DifferentialTrajectory.Path(new double[] {0, 2, 4},
+				new double[] {0, 1, 1}, new double[] {0, 0, 0});
+		return DifferentialTrajectory.generate(path, 0.6, 2, 3, 2, 0.01);
+	}
+
+	@Test
+	public void startsAndEndsAtTheWaypointsAtRest() {
+		DifferentialTrajectory trajectory = sCurve();
+		DifferentialTrajectory.State state = new DifferentialTrajectory.State();
+		trajectory.sample(0, state);
+		assertEquals(0, state.x, EPSILON);
+		assertEquals(0, state.y, EPSILON);
+		assertEquals(0, state.velocity, EPSILON);
+		trajectory.sample(trajectory.getDuration(), state);
+		assertEquals(4, state.x, 1e-3);
+		assertEquals(1, state.y, 1e-3);
+		assertEquals(0, state.velocity, 0.05);
+		assertEquals(1, state.segment);
+	}
+
+	@Test
+	public void staysWithinTheLimits() {
+		DifferentialTrajectory trajectory = sCurve();
+		DifferentialTrajectory.State state = new DifferentialTrajectory.State();
+		for (double t = 0; t < trajectory.getDuration(); t += 0.01) {
+			trajectory.sample(t, state);
+			//The outer wheel of a turn goes faster than the middle of the robot
+			double wheel = Math.abs(state.velocity) * (1 + Math.abs(state.curvature) * 0.3);
+			assertTrue("wheel speed " + wheel + " at " + t, wheel <= 2 + 0.05);
+			double centripetal = state.velocity * state.velocity * Math.abs(state.curvature);
+			assertTrue("centripetal " + centripetal + " at " + t, centripetal <= 2 + 0.05);
+		}
+	}
+
+	@Test
+	public void plansHighGearOnlyWhenFastEnough() {
+		DifferentialTrajectory trajectory = sCurve();
+		DifferentialTrajectory.State state = new DifferentialTrajectory.State();
+		trajectory.planGears(100, 100);
+		assertEquals(0, trajectory.sample(trajectory.getDuration() / 2, state).gear);
+		trajectory.planGears(0.1, 100);
+		assertEquals(1, trajectory.sample(trajectory.getDuration() / 2, state).gear);
+	}
+
+	@Test
+	public void saveAndLoadRoundTrip() throws IOException {
+		DifferentialTrajectory trajectory = sCurve();
+		trajectory.planGears(0.5, 100);
+		File file = File.createTempFile("traj", ".dftr");
+		file.deleteOnExit();
+		assertTrue(trajectory.save(file));
+		DifferentialTrajectory loaded = DifferentialTrajectory.load(file);
+		assertNotNull(loaded);
+		assertEquals(trajectory.length(), loaded.length());
+		assertEquals(trajectory.getTrackWidth(), loaded.getTrackWidth(), 0);
+		assertEquals(trajectory.getDuration(), loaded.getDuration(), 0);
+		DifferentialTrajectory.State expected = new DifferentialTrajectory.State();
+		DifferentialTrajectory.State actual = new DifferentialTrajectory.State();
+		for (double t = 0; t < trajectory.getDuration(); t += 0.013) {
+			trajectory.sample(t, expected);
+			loaded.sample(t, actual);
+			assertEquals(expected.x, actual.x, 0);
+			assertEquals(expected.y, actual.y, 0);
+			assertEquals(expected.heading, actual.heading, 0);
+			assertEquals(expected.velocity, actual.velocity, 0);
+			assertEquals(expected.acceleration, actual.acceleration, 0);
+			assertEquals(expected.curvature, actual.curvature, 0);
+			assertEquals(expected.segment, actual.segment);
+			assertEquals(expected.gear, actual.gear);
+		}
+		file.delete();
+	}
+
+	@Test
+	public void loadRejectsALengthTheFileCannotHold() throws IOException {
+		File file = File.createTempFile("traj", ".dftr");
+		file.deleteOnExit();
+		try (DataOutputStream out = new DataOutputStream(new FileOutputStream(file))) {
+			out.writeInt(0x44465452);
+			out.writeInt(1);
+			out.writeInt(Integer.MAX_VALUE);
+			out.writeDouble(0.6);
+		}
+		assertNull(DifferentialTrajectory.load(file));
+		file.delete();
+	}
+
+	@Test
+	public void loadRejectsAnEmptyTrajectory() throws IOException {
+		File file = File.createTempFile("traj", ".dftr");
+		file.deleteOnExit();
+		try (DataOutputStream out = new DataOutputStream(new FileOutputStream(file))) {
+			out.writeInt(0x44465452);
+			out.writeInt(1);
+			out.writeInt(0);
+			out.writeDouble(0.6);
+		}
+		assertNull(DifferentialTrajectory.load(file));
+		file.delete();
+	}
+}
@@ -0,0 +1,74 @@
+package org.team484.api.motion;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+public class GearTableTest {
+
+	private static GearTable threeSpeed() {
+		return new GearTable(new double[] {0.3, 0.2, 0.1}, new int[] {3, 1, 0},
+				new double[] {100, 200, Double.POSITIVE_INFINITY}, new double[] {0, 80, 180});
+	}
+
+	@Test
+	public void twoSpeedShiftsWithHysteresis() {
+		GearTable table = GearTable.twoSpeed(0.2, 0.1, 100, 10);
+		assertEquals(2, table.getGearCount());
+		assertEquals(1, table.getPattern(0));
+		assertEquals(0, table.getPattern(1));
+		assertEquals(0, table.selectGear(0, 105));
+		assertEquals(1, table.selectGear(0, 115));
+		assertEquals(1, table.selectGear(1, 95));
+		assertEquals(0, table.selectGear(1, 85));
+	}
+
+	@Test
+	public void shiftsOneGearAtATime() {
+		GearTable table = threeSpeed();
+		assertEquals(1, table.selectGear(0, 1000));
+		assertEquals(2, table.selectGear(1, 1000));
+		assertEquals(2, table.selectGear(2, 1000));
+		assertEquals(1, table.selectGear(2, 0));
+		assertEquals(0, table.selectGear(1, 0));
+		assertEquals(0, table.selectGear(0, 0));
+	}
+
+	@Test
+	public void holdsTheGearBetweenItsShiftSpeeds() {
+		GearTable table = threeSpeed();
+		assertEquals(1, table.selectGear(1, 150));
+	}
+
+	@Test
+	public void gearsOutOfRangeAreClamped() {
+		GearTable table = threeSpeed();
+		assertEquals(0.3, table.getRPP(-1), 0);
+		assertEquals(0.1, table.getRPP(5), 0);
+		assertEquals(2, table.getTopGear());
+		assertEquals(1, table.selectGear(7, 0));
+	}
+
+	@Test
+	public void findsTheGearOfAPattern() {
+		GearTable table = threeSpeed();
+		assertEquals(0, table.findGear(3));
+		assertEquals(2, table.findGear(0));
+		assertEquals(-1, table.findGear(2));
+	}
+
+	@Test
+	public void mismatchedArraysUseTheShortest() {
+		GearTable table = new GearTable(new double[] {0.3, 0.2, 0.1}, new int[] {1, 0},
+				new double[] {100, 200, 300}, new double[] {0, 80, 180});
+		assertEquals(2, table.getGearCount());
+	}
+
+	@Test
+	public void tableIsCopied() {
+		double[] rpp = {0.2, 0.1};
+		GearTable table = new GearTable(rpp, new int[] {1, 0}, new double[] {100, 0}, new double[] {0, 90});
+		rpp[0] = 5;
+		assertEquals(0.2, table.getRPP(0), 0);
+	}
+}
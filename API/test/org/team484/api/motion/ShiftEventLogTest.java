@@ -0,0 +1,74 @@
+package org.team484.api.motion;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+public class ShiftEventLogTest {
+
+	@Test
+	public void copiesNewestFirst() {
+		ShiftEventLog log = new ShiftEventLog(4);
+		log.record(10, 1, 2.5);
+		log.record(20, 0, 1.5);
+		long[] times = new long[4];
+		int[] gears = new int[4];
+		double[] speeds = new double[4];
+		assertEquals(2, log.copy(times, gears, speeds));
+		assertEquals(20, times[0]);
+		assertEquals(0, gears[0]);
+		assertEquals(1.5, speeds[0], 0);
+		assertEquals(10, times[1]);
+		assertEquals(1, gears[1]);
+		assertEquals(2.5, speeds[1], 0);
+	}
+
+	@Test
+	public void fullLogKeepsTheMostRecentShifts() {
+		ShiftEventLog log = new ShiftEventLog(3);
+		for (int i = 0; i < 7; i++) {
+			log.record(i, i % 2, i * 0.5);
+		}
+		assertEquals(7, log.getTotal());
+		long[] times = new long[5];
+		int[] gears = new int[5];
+		double[] speeds = new double[5];
+		assertEquals(3, log.copy(times, gears, speeds));
+		assertEquals(6, times[0]);
+		assertEquals(5, times[1]);
+		assertEquals(4, times[2]);
+		assertEquals(2.5, speeds[1], 0);
+	}
+
+	@Test
+	public void copiesOnlyWhatFitsInTheSmallestArray() {
+		ShiftEventLog log = new ShiftEventLog(8);
+		for (int i = 0; i < 5; i++) {
+			log.record(i, 1, 0);
+		}
+		assertEquals(2, log.copy(new long[4], new int[2], new double[3]));
+	}
+
+	@Test
+	public void concurrentCopiesNeverMixEntries() throws InterruptedException {
+		final ShiftEventLog log = new ShiftEventLog(16);
+		Thread writer = new Thread(() -> {
+			for (int i = 1; i <= 200000; i++) {
+				//Every field of an entry is derived from the same number
+				log.record(i, i, i * 0.25);
+			}
+		});
+		writer.start();
+		long[] times = new long[16];
+		int[] gears = new int[16];
+		double[] speeds = new double[16];
+		while (writer.isAlive()) {
+			int count = log.copy(times, gears, speeds);
+			for (int i = 0; i < count; i++) {
+				assertEquals(times[i], gears[i]);
+				assertEquals(times[i] * 0.25, speeds[i], 0);
+			}
+		}
+		writer.join();
+	}
+}
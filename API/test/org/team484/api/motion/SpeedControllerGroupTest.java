@@ -0,0 +1,139 @@
+package org.team484.api.motion;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.team484.api.util.PDPSampler;
+
+public class SpeedControllerGroupTest {
+
+	private static final double EPSILON = 1e-9;
+
+	private SimulatedMotorBackend first;
+	private SimulatedMotorBackend second;
+	private SpeedControllerGroup group;
+
+	@Before
+	public void setUp() {
+		first = new SimulatedMotorBackend();
+		second = new SimulatedMotorBackend();
+		group = new SpeedControllerGroup(first, second);
+	}
+
+	@After
+	public void tearDown() {
+		group.disableCurrentBalancing();
+	}
+
+	/**
+	 * Starts a balancer that never adjusts the trims itself, as the sampler is not running.
+	 */
+	private CurrentBalancer startBalancer() {
+		CurrentBalancer balancer = group.enableCurrentBalancing(new PDPSampler(null, 20), new int[] {0, 1},
+				1000);
+		assertNotNull(balancer);
+		return balancer;
+	}
+
+	@Test
+	public void setWritesEveryMember() {
+		group.set(0.5);
+		assertEquals(0.5, first.get(), EPSILON);
+		assertEquals(0.5, second.get(), EPSILON);
+		assertEquals(2, group.getMemberWriteCount());
+	}
+
+	@Test
+	public void getReturnsTheGroupSetpoint() {
+		startBalancer();
+		group.setTrims(group.getCurrentBalancer(), new double[] {0.8, 1});
+		group.set(0.5);
+		assertEquals(0.4, first.get(), EPSILON);
+		assertEquals(0.5, group.get(), EPSILON);
+		group.stopMotor();
+		assertEquals(0, group.get(), EPSILON);
+	}
+
+	@Test
+	public void newTrimsAreWrittenWhileTheOutputIsSteady() {
+		group.enableWriteCoalescing(0.01, 1e6);
+		CurrentBalancer balancer = startBalancer();
+		group.set(0.5);
+		group.set(0.5);
+		assertEquals(1, group.getWriteCoalescer().getSuppressedCount());
+
+		group.setTrims(balancer, new double[] {1, 0.8});
+		group.set(0.5);
+		assertEquals(0.5, first.get(), EPSILON);
+		assertEquals(0.4, second.get(), EPSILON);
+
+		group.disableCurrentBalancing();
+		group.set(0.5);
+		assertEquals(0.5, second.get(), EPSILON);
+	}
+
+	@Test
+	public void trimsFromAStoppedBalancerAreIgnored() {
+		CurrentBalancer balancer = startBalancer();
+		group.disableCurrentBalancing();
+		group.setTrims(balancer, new double[] {1, 0.8});
+		group.set(0.5);
+		assertEquals(0.5, second.get(), EPSILON);
+	}
+
+	@Test
+	public void followersAreNotWritten() {
+		assertTrue(group.enableFollowerMode());
+		assertTrue(group.isFollowerModeEnabled());
+		assertTrue(group.isFollowing(1));
+		long secondWrites = second.getWriteCount();
+		group.set(0.5);
+		assertEquals(0.5, second.get(), EPSILON);
+		assertEquals(secondWrites, second.getWriteCount());
+		assertEquals(1, group.getMemberWriteCount());
+	}
+
+	@Test
+	public void disablingFollowerModeStopsTheFollowers() {
+		group.enableFollowerMode();
+		group.disableFollowerMode();
+		assertFalse(group.isFollowerModeEnabled());
+		assertFalse(second.isFollowing());
+		assertFalse(group.isFollowing(1));
+		group.set(0.5);
+		assertEquals(0.5, second.get(), EPSILON);
+		assertEquals(2, group.getMemberWriteCount());
+	}
+
+	@Test
+	public void enablingFollowerModeTwiceKeepsOneLeader() {
+		group.enableFollowerMode();
+		assertTrue(group.enableFollowerMode());
+		assertTrue(second.isFollowing());
+		assertFalse(first.isFollowing());
+	}
+
+	@Test
+	public void coalescingSkipsUnchangedSets() {
+		group.enableWriteCoalescing(0.01, 1e6);
+		group.set(0.5);
+		group.set(0.505);
+		assertEquals(2, group.getMemberWriteCount());
+		group.set(0.6);
+		assertEquals(4, group.getMemberWriteCount());
+	}
+
+	@Test
+	public void disableWritesTheNextSet() {
+		group.enableWriteCoalescing(0.01, 1e6);
+		group.set(0.5);
+		group.disable();
+		group.set(0.5);
+		assertEquals(4, group.getMemberWriteCount());
+	}
+}
@@ -0,0 +1,105 @@
+package org.team484.api.motion;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class SteeringProfileTest {
+
+	private static final long PERIOD = 5000000L;
+	private static final double DT = PERIOD / 1e9;
+
+	/**
+	 * Steps a profile towards a target until it arrives, checking the limits on the way. The step that
+	 * arrives stops the profile outright, so its change in velocity is not checked.
+	 * @return the time it took in seconds.
+	 */
+	private static double runToTarget(SteeringProfile profile, double target, double maxVelocity,
+			double maxAcceleration) {
+		long now = PERIOD;
+		double lastVelocity = profile.getVelocity();
+		for (int i = 0; i < 2000; i++) {
+			profile.update(target, 0, now);
+			double velocity = profile.getVelocity();
+			if (profile.getPosition() == target && velocity == 0) {
+				return i * DT;
+			}
+			assertTrue("velocity " + velocity, Math.abs(velocity) <= maxVelocity + 1e-6);
+			assertTrue("acceleration", Math.abs(velocity - lastVelocity) <= maxAcceleration * DT + 1e-6);
+			lastVelocity = velocity;
+			now += PERIOD;
+		}
+		throw new AssertionError("The profile never reached " + target);
+	}
+
+	@Test
+	public void trapezoidArrivesAtRest() {
+		SteeringProfile profile = new SteeringProfile(720, 3600, 0.001, 0.0001);
+		profile.reset(0, 0);
+		double time = runToTarget(profile, 90, 720, 3600);
+		//A triangle profile over 90 degrees at 3600 takes 2 * sqrt(90 / 3600) seconds
+		assertTrue("took " + time, time <= 0.316 + 2 * DT);
+		assertEquals(0, profile.getFeedForward(), 0);
+	}
+
+	@Test
+	public void sCurveArrivesAtRest() {
+		SteeringProfile profile = new SteeringProfile(720, 3600, 72000, 0.001, 0.0001);
+		profile.reset(0, 0);
+		runToTarget(profile, 90, 720, 3600);
+		assertEquals(90, profile.getPosition(), 0);
+		assertEquals(0, profile.getFeedForward(), 0);
+	}
+
+	@Test
+	public void sCurveDoesNotOvershoot() {
+		SteeringProfile profile = new SteeringProfile(720, 3600, 72000, 0, 0);
+		profile.reset(0, 0);
+		long now = PERIOD;
+		for (int i = 0; i < 400; i++) {
+			double position = profile.update(120, 0, now);
+			assertTrue("position " + position, position <= 120);
+			now += PERIOD;
+		}
+		assertEquals(120, profile.getPosition(), 0);
+	}
+
+	@Test
+	public void sCurveStaysWithinTheVelocityLimit() {
+		SteeringProfile profile = new SteeringProfile(200, 3600, 72000, 0, 0);
+		profile.reset(-170, 0);
+		runToTarget(profile, 170, 200, 3600);
+	}
+
+	@Test
+	public void turnsTheShortWayAround() {
+		SteeringProfile profile = new SteeringProfile(720, 3600, 0, 0);
+		profile.reset(170, 0);
+		profile.update(-170, 170, PERIOD);
+		assertTrue(profile.getVelocity() > 0);
+		runToTarget(profile, -170, 720, 3600);
+	}
+
+	@Test
+	public void stopClearsTheFeedForwardAndRestartsFromTheMeasuredAngle() {
+		SteeringProfile profile = new SteeringProfile(720, 3600, 0.001, 0.0001);
+		profile.reset(0, 0);
+		profile.update(90, 0, PERIOD);
+		profile.update(90, 0, 2 * PERIOD);
+		assertTrue(profile.getFeedForward() != 0);
+
+		profile.stop();
+		assertEquals(0, profile.getFeedForward(), 0);
+		assertEquals(45, profile.update(90, 45, 3 * PERIOD), 0);
+		assertEquals(0, profile.getVelocity(), 0);
+	}
+
+	@Test
+	public void longGapIsCappedAtATenthOfASecond() {
+		SteeringProfile profile = new SteeringProfile(720, 3600, 0, 0);
+		profile.reset(0, 0);
+		profile.update(180, 0, 5000000000L);
+		assertEquals(360, profile.getVelocity(), 1e-6);
+	}
+}
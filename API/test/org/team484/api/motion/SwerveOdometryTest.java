@@ -0,0 +1,101 @@
+package org.team484.api.motion;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.team484.api.motion.SwerveDrive.MotorType;
+import org.team484.api.sim.SwerveDriveSim;
+import org.team484.api.sim.SwerveModuleSim;
+import org.team484.api.util.Pose;
+
+public class SwerveOdometryTest {
+
+	private static final double WIDTH = 0.5;
+	private static final double LENGTH = 0.6;
+	private static final double DT = 0.005;
+	private static final MotorType[] MODULES = {
+			MotorType.kFrontLeft,
+			MotorType.kRearLeft,
+			MotorType.kFrontRight,
+			MotorType.kRearRight
+	};
+
+	private SwerveDriveSim sim;
+	private SwerveOdometry odometry;
+	private long now = 0;
+
+	@Before
+	public void setUp() {
+		sim = new SwerveDriveSim();
+		SwerveOdometry.Modules modules = new SwerveOdometry.Modules() {
+			@Override
+			public double getWheelbaseWidth() {
+				return WIDTH;
+			}
+
+			@Override
+			public double getWheelbaseLength() {
+				return LENGTH;
+			}
+
+			@Override
+			public double getModuleAngle(MotorType module) {
+				return sim.getModule(module).getSteerEncoder().getDistance();
+			}
+		};
+		odometry = new SwerveOdometry(modules,
+				sim.getModule(MotorType.kFrontLeft).getDriveEncoder(),
+				sim.getModule(MotorType.kRearLeft).getDriveEncoder(),
+				sim.getModule(MotorType.kFrontRight).getDriveEncoder(),
+				sim.getModule(MotorType.kRearRight).getDriveEncoder(), null, DT * 1000);
+		odometry.periodic(now);
+	}
+
+	private void drive(double output, double seconds) {
+		for (MotorType module : MODULES) {
+			sim.getModule(module).getDriveMotor().set(output);
+		}
+		for (int i = 0; i < Math.round(seconds / DT); i++) {
+			sim.step(DT);
+			now += (long) (DT * 1e9);
+			odometry.periodic(now);
+		}
+	}
+
+	@Test
+	public void straightRunMovesForward() {
+		for (MotorType module : MODULES) {
+			sim.getModule(module).setSteerAngle(90);
+		}
+		drive(0.5, 1);
+		double distance = sim.getModule(MotorType.kFrontLeft).getDriveEncoder().getDistance();
+		assertTrue(distance > 0.5);
+		Pose pose = odometry.getPose();
+		assertEquals(0, pose.getX(), 1e-6);
+		assertEquals(distance, pose.getY(), 1e-6);
+		assertEquals(0, pose.getHeading(), 1e-6);
+	}
+
+	@Test
+	public void spinInPlaceOnlyTurns() {
+		for (MotorType module : MODULES) {
+			double moduleX = (module == MotorType.kFrontRight || module == MotorType.kRearRight)
+					? WIDTH / 2 : -WIDTH / 2;
+			double moduleY = (module == MotorType.kFrontLeft || module == MotorType.kFrontRight)
+					? LENGTH / 2 : -LENGTH / 2;
+			//Point each wheel along the circle through the modules, counter clockwise
+			sim.getModule(module).setSteerAngle(Math.toDegrees(Math.atan2(moduleX, -moduleY)));
+		}
+		drive(0.3, 0.5);
+		SwerveModuleSim frontLeft = sim.getModule(MotorType.kFrontLeft);
+		double radius = Math.hypot(WIDTH / 2, LENGTH / 2);
+		double turned = Math.toDegrees(frontLeft.getDriveEncoder().getDistance() / radius);
+		assertTrue(turned > 45);
+		Pose pose = odometry.getPose();
+		assertEquals(0, pose.getX(), 0.01);
+		assertEquals(0, pose.getY(), 0.01);
+		assertEquals(turned, pose.getHeading(), 0.5);
+	}
+}
@@ -0,0 +1,125 @@
+package org.team484.api.motion;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+import org.junit.Test;
+
+public class SwerveTrajectoryTest {
+
+	private static final double EPSILON = 1e-9;
+
+	private static SwerveTrajectory straightLine() {
+		return SwerveTrajectory.generate(new double[] {0, 2}, new double[] {0, 0}, new double[] {0, 90}, 1, 2,
+				0.01);
+	}
+
+	@Test
+	public void straightLineFollowsATrapezoid() {
+		SwerveTrajectory trajectory = straightLine();
+		//0.5 s speeding up, 1.5 s at full speed and 0.5 s slowing down
+		assertEquals(2.5, trajectory.getDuration(), 0.011);
+		SwerveTrajectory.State state = new SwerveTrajectory.State();
+		trajectory.sample(0, state);
+		assertEquals(0, state.x, EPSILON);
+		assertEquals(0, state.velocityX, EPSILON);
+		trajectory.sample(1.25, state);
+		assertEquals(1, state.x, 0.01);
+		assertEquals(1, state.velocityX, 0.01);
+		assertEquals(0, state.velocityY, EPSILON);
+		trajectory.sample(trajectory.getDuration(), state);
+		assertEquals(2, state.x, EPSILON);
+		assertEquals(90, state.heading, EPSILON);
+		assertEquals(0, state.velocityX, 0.01);
+	}
+
+	@Test
+	public void samplesOutsideTheTrajectoryAreClamped() {
+		SwerveTrajectory trajectory = straightLine();
+		SwerveTrajectory.State state = new SwerveTrajectory.State();
+		assertEquals(0, trajectory.sample(-1, state).x, EPSILON);
+		assertEquals(2, trajectory.sample(100, state).x, EPSILON);
+	}
+
+	@Test
+	public void samplingBackwardsMatchesSamplingForwards() {
+		SwerveTrajectory trajectory = straightLine();
+		SwerveTrajectory.State forward = new SwerveTrajectory.State();
+		SwerveTrajectory.State backward = new SwerveTrajectory.State();
+		trajectory.sample(0.7, forward);
+		trajectory.sample(2.0, backward);
+		trajectory.sample(0.7, backward);
+		assertEquals(forward.x, backward.x, EPSILON);
+	}
+
+	@Test
+	public void turnInPlace() {
+		SwerveTrajectory trajectory = SwerveTrajectory.generate(new double[] {1, 1}, new double[] {1, 1},
+				new double[] {170, -170}, 1, 2, 0.01);
+		SwerveTrajectory.State state = new SwerveTrajectory.State();
+		trajectory.sample(trajectory.getDuration() / 2, state);
+		assertEquals(1, state.x, EPSILON);
+		assertEquals(180, Math.abs(state.heading), 0.5);
+		assertTrue(state.rotationRate > 0);
+	}
+
+	@Test
+	public void saveAndLoadRoundTrip() throws IOException {
+		SwerveTrajectory trajectory = SwerveTrajectory.generate(new double[] {0, 2, 2}, new double[] {0, 1, 3},
+				new double[] {0, 45, -90}, 1.5, 3, 0.02);
+		File file = File.createTempFile("traj", ".swtr");
+		file.deleteOnExit();
+		assertTrue(trajectory.save(file));
+		SwerveTrajectory loaded = SwerveTrajectory.load(file);
+		assertNotNull(loaded);
+		assertEquals(trajectory.length(), loaded.length());
+		assertEquals(trajectory.getDuration(), loaded.getDuration(), 0);
+		SwerveTrajectory.State expected = new SwerveTrajectory.State();
+		SwerveTrajectory.State actual = new SwerveTrajectory.State();
+		for (double t = 0; t < trajectory.getDuration(); t += 0.013) {
+			trajectory.sample(t, expected);
+			loaded.sample(t, actual);
+			assertEquals(expected.x, actual.x, 0);
+			assertEquals(expected.y, actual.y, 0);
+			assertEquals(expected.heading, actual.heading, 0);
+			assertEquals(expected.velocityX, actual.velocityX, 0);
+			assertEquals(expected.velocityY, actual.velocityY, 0);
+			assertEquals(expected.rotationRate, actual.rotationRate, 0);
+		}
+		file.delete();
+	}
+
+	@Test
+	public void loadRejectsALengthTheFileCannotHold() throws IOException {
+		File file = File.createTempFile("traj", ".swtr");
+		file.deleteOnExit();
+		try (DataOutputStream out = new DataOutputStream(new FileOutputStream(file))) {
+			out.writeInt(0x53575452);
+			out.writeInt(1);
+			out.writeInt(Integer.MAX_VALUE);
+			out.writeDouble(0);
+		}
+		assertNull(SwerveTrajectory.load(file));
+		file.delete();
+	}
+
+	@Test
+	public void loadRejectsOtherFiles() throws IOException {
+		File file = File.createTempFile("traj", ".swtr");
+		file.deleteOnExit();
+		try (DataOutputStream out = new DataOutputStream(new FileOutputStream(file))) {
+			out.writeInt(0x44465452);
+			out.writeInt(1);
+			out.writeInt(1);
+		}
+		assertNull(SwerveTrajectory.load(file));
+		file.delete();
+	}
+}
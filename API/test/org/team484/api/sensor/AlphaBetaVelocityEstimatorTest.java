@@ -0,0 +1,72 @@
+package org.team484.api.sensor;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+public class AlphaBetaVelocityEstimatorTest {
+
+	private static final long PERIOD = 5000000L;
+
+	@Test
+	public void convergesToAConstantRate() {
+		AlphaBetaVelocityEstimator estimator = new AlphaBetaVelocityEstimator();
+		EncoderSampleBuffer samples = new EncoderSampleBuffer(estimator.getWindowSize());
+		for (int i = 0; i < 400; i++) {
+			samples.add(i * 5, i * PERIOD);
+			estimator.update(samples);
+		}
+		assertEquals(1000, estimator.getRate(), 1);
+		assertEquals(0, estimator.getAcceleration(), 50);
+	}
+
+	@Test
+	public void alphaBetaReportsNoAcceleration() {
+		AlphaBetaVelocityEstimator estimator = new AlphaBetaVelocityEstimator(0.5, 0.1, 0);
+		EncoderSampleBuffer samples = new EncoderSampleBuffer(estimator.getWindowSize());
+		for (int i = 0; i < 100; i++) {
+			samples.add(i * i, i * PERIOD);
+			estimator.update(samples);
+		}
+		assertEquals(0, estimator.getAcceleration(), 0);
+	}
+
+	@Test
+	public void firstSampleOnlyStartsTheFilter() {
+		AlphaBetaVelocityEstimator estimator = new AlphaBetaVelocityEstimator();
+		EncoderSampleBuffer samples = new EncoderSampleBuffer(estimator.getWindowSize());
+		samples.add(5000, 0);
+		estimator.update(samples);
+		assertEquals(0, estimator.getRate(), 0);
+	}
+
+	@Test
+	public void repeatedTimestampIsIgnored() {
+		AlphaBetaVelocityEstimator estimator = new AlphaBetaVelocityEstimator();
+		EncoderSampleBuffer samples = new EncoderSampleBuffer(estimator.getWindowSize());
+		samples.add(0, 0);
+		estimator.update(samples);
+		samples.add(5, PERIOD);
+		estimator.update(samples);
+		double rate = estimator.getRate();
+		samples.add(100, PERIOD);
+		estimator.update(samples);
+		assertEquals(rate, estimator.getRate(), 0);
+	}
+
+	@Test
+	public void resetStartsOver() {
+		AlphaBetaVelocityEstimator estimator = new AlphaBetaVelocityEstimator();
+		EncoderSampleBuffer samples = new EncoderSampleBuffer(estimator.getWindowSize());
+		for (int i = 0; i < 50; i++) {
+			samples.add(i * 5, i * PERIOD);
+			estimator.update(samples);
+		}
+		estimator.reset();
+		assertEquals(0, estimator.getRate(), 0);
+		//A jump in the count across the reset is not seen as motion
+		samples.add(100000, 50 * PERIOD);
+		estimator.update(samples);
+		assertEquals(0, estimator.getRate(), 0);
+	}
+}
@@ -0,0 +1,65 @@
+package org.team484.api.sensor;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+public class LeastSquaresVelocityEstimatorTest {
+
+	private static final long PERIOD = 5000000L;
+
+	@Test
+	public void constantRateIsExact() {
+		LeastSquaresVelocityEstimator estimator = new LeastSquaresVelocityEstimator(8);
+		EncoderSampleBuffer samples = new EncoderSampleBuffer(estimator.getWindowSize());
+		for (int i = 0; i < 20; i++) {
+			samples.add(i * 5, 1000000000L + i * PERIOD);
+			estimator.update(samples);
+		}
+		assertEquals(1000, estimator.getRate(), 1e-6);
+		assertEquals(0, estimator.getAcceleration(), 1e-3);
+	}
+
+	@Test
+	public void constantAccelerationIsFound() {
+		LeastSquaresVelocityEstimator estimator = new LeastSquaresVelocityEstimator(10);
+		EncoderSampleBuffer samples = new EncoderSampleBuffer(estimator.getWindowSize());
+		double acceleration = 1e6;
+		for (int i = 0; i < 30; i++) {
+			double t = i * PERIOD / 1e9;
+			samples.add((int) Math.round(0.5 * acceleration * t * t), i * PERIOD);
+			estimator.update(samples);
+		}
+		//The slope of the line is the rate at the middle of the window
+		double t = 24.5 * PERIOD / 1e9;
+		assertEquals(acceleration * t, estimator.getRate(), 10);
+		assertEquals(acceleration, estimator.getAcceleration(), acceleration * 0.01);
+	}
+
+	@Test
+	public void oneMissedPulseBarelyMovesTheRate() {
+		LeastSquaresVelocityEstimator estimator = new LeastSquaresVelocityEstimator(10);
+		EncoderSampleBuffer samples = new EncoderSampleBuffer(estimator.getWindowSize());
+		for (int i = 0; i < 10; i++) {
+			samples.add(i * 5 - (i == 9 ? 1 : 0), i * PERIOD);
+			estimator.update(samples);
+		}
+		//Two sample rate would read 800
+		assertEquals(1000, estimator.getRate(), 40);
+	}
+
+	@Test
+	public void keepsTheLastEstimateWithTooFewSamples() {
+		LeastSquaresVelocityEstimator estimator = new LeastSquaresVelocityEstimator(4);
+		EncoderSampleBuffer samples = new EncoderSampleBuffer(estimator.getWindowSize());
+		samples.add(0, 0);
+		estimator.update(samples);
+		assertEquals(0, estimator.getRate(), 0);
+		samples.add(10, PERIOD);
+		estimator.update(samples);
+		assertEquals(2000, estimator.getRate(), 1e-6);
+		assertEquals(0, estimator.getAcceleration(), 0);
+		estimator.reset();
+		assertEquals(0, estimator.getRate(), 0);
+	}
+}
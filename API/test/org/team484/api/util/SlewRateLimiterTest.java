@@ -0,0 +1,95 @@
+package org.team484.api.util;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class SlewRateLimiterTest {
+
+	private static final double EPSILON = 1e-9;
+	private static final long PERIOD = 20000000L;
+
+	private ManualClock clock;
+	private SlewRateLimiter limiter;
+
+	@Before
+	public void setUp() {
+		clock = new ManualClock(1000000000L);
+		limiter = new SlewRateLimiter();
+		limiter.setClock(clock);
+	}
+
+	@Test
+	public void disabledPassesEveryOutputThrough() {
+		assertEquals(1, limiter.calculate(1), EPSILON);
+		assertEquals(-1, limiter.calculate(-1), EPSILON);
+		assertEquals(0, limiter.getLimitedCount());
+	}
+
+	@Test
+	public void rampsAtTheAccelerationRate() {
+		limiter.enable(2, 4);
+		clock.advance(PERIOD);
+		assertEquals(0.04, limiter.calculate(1), EPSILON);
+		clock.advance(PERIOD);
+		assertEquals(0.08, limiter.calculate(1), EPSILON);
+		clock.advance(PERIOD);
+		assertEquals(0.12, limiter.calculate(1), EPSILON);
+	}
+
+	@Test
+	public void slowsDownAtTheDecelerationRate() {
+		limiter.enable(2, 4);
+		limiter.reset(0.5);
+		clock.advance(PERIOD);
+		assertEquals(0.42, limiter.calculate(0), EPSILON);
+	}
+
+	@Test
+	public void firstOutputIsLimitedToOneNominalPeriod() {
+		limiter.enable(2, 2);
+		//No output has been made, so the time since the last one is meaningless
+		assertEquals(0.04, limiter.calculate(1), EPSILON);
+	}
+
+	@Test
+	public void idleGapIsLimitedToOneNominalPeriod() {
+		limiter.enable(2, 2);
+		limiter.calculate(0);
+		clock.advance(5000000000L);
+		assertEquals(0.04, limiter.calculate(1), EPSILON);
+	}
+
+	@Test
+	public void resetThenIdleIsLimitedToOneNominalPeriod() {
+		limiter.enable(2, 2);
+		limiter.reset(0);
+		clock.advance(3000000000L);
+		assertEquals(0.04, limiter.calculate(1), EPSILON);
+	}
+
+	@Test
+	public void gapUnderTwoPeriodsUsesTheRealTime() {
+		limiter.enable(2, 2);
+		limiter.calculate(0);
+		clock.advance(PERIOD * 3 / 2);
+		assertEquals(0.06, limiter.calculate(1), EPSILON);
+	}
+
+	@Test
+	public void nominalPeriodCanBeChanged() {
+		limiter.setNominalPeriod(50);
+		limiter.enable(2, 2);
+		assertEquals(0.1, limiter.calculate(1), EPSILON);
+	}
+
+	@Test
+	public void reversingSlowsDownThroughZero() {
+		limiter.enable(1, 10);
+		limiter.reset(0.1);
+		clock.advance(PERIOD);
+		//0.01 s to stop at 10 per second, then 0.01 s of speeding up the other way at 1 per second
+		assertEquals(-0.01, limiter.calculate(-1), EPSILON);
+	}
+}
@@ -0,0 +1,110 @@
+package org.team484.api.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class WriteCoalescerTest {
+
+	//Long enough that no test reaches it
+	private static final double NO_REFRESH = 1e6;
+
+	@Test
+	public void disabledWritesEverything() {
+		WriteCoalescer coalescer = new WriteCoalescer(1);
+		assertTrue(coalescer.shouldWrite(0, 0.5));
+		assertTrue(coalescer.shouldWrite(0, 0.5));
+		assertEquals(2, coalescer.getWriteCount());
+		assertEquals(0, coalescer.getSuppressedCount());
+	}
+
+	@Test
+	public void skipsValuesWithinEpsilon() {
+		WriteCoalescer coalescer = new WriteCoalescer(1);
+		coalescer.enable(0.01, NO_REFRESH);
+		assertTrue(coalescer.shouldWrite(0, 0.5));
+		assertFalse(coalescer.shouldWrite(0, 0.505));
+		assertTrue(coalescer.shouldWrite(0, 0.52));
+		assertEquals(2, coalescer.getWriteCount(0));
+		assertEquals(1, coalescer.getSuppressedCount(0));
+	}
+
+	@Test
+	public void comparesToTheLastWrittenValue() {
+		WriteCoalescer coalescer = new WriteCoalescer(1);
+		coalescer.enable(0.01, NO_REFRESH);
+		assertTrue(coalescer.shouldWrite(0, 0.5));
+		assertFalse(coalescer.shouldWrite(0, 0.508));
+		//Drifting in steps under epsilon still writes once the total change is over it
+		assertTrue(coalescer.shouldWrite(0, 0.516));
+	}
+
+	@Test
+	public void refreshWritesUnchangedValues() {
+		WriteCoalescer coalescer = new WriteCoalescer(1);
+		coalescer.enable(0.01, 0);
+		assertTrue(coalescer.shouldWrite(0, 0.5));
+		assertTrue(coalescer.shouldWrite(0, 0.5));
+	}
+
+	@Test
+	public void invalidateWritesTheNextValueOnEveryChannel() {
+		WriteCoalescer coalescer = new WriteCoalescer(2);
+		coalescer.enable(0.01, NO_REFRESH);
+		coalescer.shouldWrite(0, 0.5);
+		coalescer.shouldWrite(1, 0.5);
+		coalescer.invalidate();
+		assertTrue(coalescer.shouldWrite(0, 0.5));
+		assertTrue(coalescer.shouldWrite(1, 0.5));
+		assertFalse(coalescer.shouldWrite(0, 0.5));
+		assertFalse(coalescer.shouldWrite(1, 0.5));
+	}
+
+	@Test
+	public void invalidateOneChannelLeavesTheOthers() {
+		WriteCoalescer coalescer = new WriteCoalescer(2);
+		coalescer.enable(0.01, NO_REFRESH);
+		coalescer.shouldWrite(0, 0.5);
+		coalescer.shouldWrite(1, 0.5);
+		coalescer.invalidate(1);
+		assertFalse(coalescer.shouldWrite(0, 0.5));
+		assertTrue(coalescer.shouldWrite(1, 0.5));
+	}
+
+	@Test
+	public void invalidateFromAnotherThreadIsSeen() throws InterruptedException {
+		WriteCoalescer coalescer = new WriteCoalescer(1);
+		coalescer.enable(0.01, NO_REFRESH);
+		coalescer.shouldWrite(0, 0.5);
+		Thread other = new Thread(coalescer::invalidate);
+		other.start();
+		other.join();
+		assertTrue(coalescer.shouldWrite(0, 0.5));
+	}
+
+	@Test
+	public void eachChannelHasItsOwnEpsilon() {
+		WriteCoalescer coalescer = new WriteCoalescer(2);
+		coalescer.enable(0.01, NO_REFRESH);
+		coalescer.setEpsilon(1, 0.5);
+		assertEquals(0.01, coalescer.getEpsilon(0), 0);
+		assertEquals(0.5, coalescer.getEpsilon(1), 0);
+		coalescer.shouldWrite(0, 6);
+		coalescer.shouldWrite(1, 6);
+		assertTrue(coalescer.shouldWrite(0, 6.2));
+		assertFalse(coalescer.shouldWrite(1, 6.2));
+	}
+
+	@Test
+	public void settingAnEpsilonWritesTheNextValueOnThatChannel() {
+		WriteCoalescer coalescer = new WriteCoalescer(2);
+		coalescer.enable(0.01, NO_REFRESH);
+		coalescer.shouldWrite(0, 0.5);
+		coalescer.shouldWrite(1, 0.5);
+		coalescer.setEpsilon(1, 0.1);
+		assertFalse(coalescer.shouldWrite(0, 0.5));
+		assertTrue(coalescer.shouldWrite(1, 0.5));
+	}
+}